@@ -134,12 +134,14 @@ public class MapPanel extends javax.swing.JPanel {
                         background = new ImageIcon(resource);
                     }
                     case "station_gui" -> {
-                        // Add VisStations to this panel
+                        // Add VisStations to this panel, at the location known to the network
                         Station station = network.getStation(tokenizer.nextToken());
                         boolean transfer = tokenizer.nextToken().equals("transfer");
-                        int x = Integer.parseInt(tokenizer.nextToken());
-                        int y = Integer.parseInt(tokenizer.nextToken());
-                        VisStation gui_station = new VisStation(station, transfer, x, y);
+                        // Skip stations that are not in the network, as the network does
+                        if (station == null || !station.hasLocation()) {
+                            continue;
+                        }
+                        VisStation gui_station = new VisStation(station, transfer, station.getX(), station.getY());
                         stations.add(gui_station);
                         this.add(gui_station);
                     }
@@ -1,14 +1,25 @@
 package com.sanderjurgens.metroplanner.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * A line with a code and a number of stops, it may be circular or one way.
+ * The run time between two consecutive stops is the same in both directions.
+ * Trips run every headway, which is the same along the whole line.
  *
  * @author sanderjurgens
  */
 public class Line extends ArrayList<Station> {
 
+    /** The run time between consecutive stops of which it is not known, in seconds */
+    public static final int DEFAULT_RUN_TIME = 120;
+
+    /** The time between trips of a line of which it is not known, in seconds */
+    public static final int DEFAULT_HEADWAY = 300;
+
     /** Identification of the line */
     private final String code;
 
@@ -21,6 +32,18 @@ public class Line extends ArrayList<Station> {
     /** The number of stops on the line */
     private int count;
 
+    /** The index of each stop on the line */
+    private final HashMap<Station, Integer> indices;
+
+    /** The run time from each stop to the next stop, if it is known */
+    private final HashMap<Station, Integer> runTimes;
+
+    /** The time between consecutive trips, in seconds */
+    private int headway;
+
+    /** The stops where other lines can be reached, in order of their index */
+    private List<TransferPoint> transferPoints;
+
     /**
      * Constructs a line with given code.
      *
@@ -38,6 +61,10 @@ public class Line extends ArrayList<Station> {
         isCircular = circular;
         isOneWay = oneway;
         count = 0;
+        indices = new HashMap<>();
+        runTimes = new HashMap<>();
+        headway = DEFAULT_HEADWAY;
+        transferPoints = Collections.emptyList();
     }
 
     /**
@@ -76,6 +103,26 @@ public class Line extends ArrayList<Station> {
         return count;
     }
 
+    /**
+     * Returns the stops on this line where other lines can be reached, in
+     * order of their index.
+     *
+     * @return the transfer points of this line
+     */
+    public List<TransferPoint> getTransferPoints() {
+        return transferPoints;
+    }
+
+    /**
+     * Sets the stops on this line where other lines can be reached.
+     *
+     * @param transferPoints the transfer points of this line, in order of
+     * their index
+     */
+    void setTransferPoints(List<TransferPoint> transferPoints) {
+        this.transferPoints = Collections.unmodifiableList(transferPoints);
+    }
+
     /**
      * Returns whether this line is empty.
      *
@@ -137,14 +184,11 @@ public class Line extends ArrayList<Station> {
         if (stop == null) {
             throw new IllegalRequestException("Line.getIndex: stop is null");
         }
-        int iterator = 0;
-        for (Station s : this) {
-            if (s.equals(stop)) {
-                return iterator;
-            }
-            iterator = iterator + 1;
+        Integer index = indices.get(stop);
+        if (index == null) {
+            return -1;
         }
-        return -1;
+        return index;
     }
 
     /**
@@ -158,12 +202,7 @@ public class Line extends ArrayList<Station> {
         if (stop == null) {
             return false;
         }
-        for (Station s : this) {
-            if (s.equals(stop)) {
-                return false;
-            }
-        }
-        return true;
+        return !indices.containsKey(stop);
     }
 
     /**
@@ -178,10 +217,90 @@ public class Line extends ArrayList<Station> {
             throw new IllegalRequestException("Line.add: cannot add stop");
         }
         super.add(stop);
+        indices.put(stop, count);
         count = count + 1;
         return true;
     }
 
+    /**
+     * Returns the run time from the stop at a given index to the next stop,
+     * which is the first stop after the last stop of a circular line.
+     *
+     * @param i the index of a stop
+     * @return the run time in seconds
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public int getRunTime(int i) throws IndexOutOfBoundsException {
+        return runTimes.getOrDefault(getStop(i), DEFAULT_RUN_TIME);
+    }
+
+    /**
+     * Sets the run time from the stop at a given index to the next stop.
+     *
+     * @param i the index of a stop
+     * @param seconds the run time in seconds
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     * @throws IllegalRequestException if the time is negative
+     */
+    void setRunTime(int i, int seconds) throws IndexOutOfBoundsException, IllegalRequestException {
+        if (seconds < 0) {
+            throw new IllegalRequestException("Line.setRunTime: time is negative");
+        }
+        runTimes.put(getStop(i), seconds);
+    }
+
+    /**
+     * Returns the time between consecutive trips of this line.
+     *
+     * @return the headway in seconds
+     */
+    public int getHeadway() {
+        return headway;
+    }
+
+    /**
+     * Sets the time between consecutive trips of this line.
+     *
+     * @param seconds the headway in seconds
+     * @throws IllegalRequestException if the headway is negative
+     */
+    void setHeadway(int seconds) throws IllegalRequestException {
+        if (seconds < 0) {
+            throw new IllegalRequestException("Line.setHeadway: headway is negative");
+        }
+        headway = seconds;
+    }
+
+    /**
+     * Removes the stop at a given index from this line.
+     *
+     * @param i the index of the stop
+     * @return the stop that is removed
+     * @throws IndexOutOfBoundsException if there is no stop at the index
+     */
+    Station removeStop(int i) throws IndexOutOfBoundsException {
+        Station stop = getStop(i);
+        // The run time to the removed stop becomes the run time through it
+        int n = count;
+        if (i > 0 || (isCircular && n > 1)) {
+            int prev = Math.floorMod(i - 1, n);
+            if (i < n - 1 || isCircular) {
+                runTimes.put(getStop(prev), getRunTime(prev) + getRunTime(i));
+            } else {
+                runTimes.remove(getStop(prev));
+            }
+        }
+        runTimes.remove(stop);
+        super.remove(i);
+        indices.remove(stop);
+        count = count - 1;
+        // The stops after the removed stop move one place forward
+        for (int j = i; j < count; j++) {
+            indices.put(this.get(j), j);
+        }
+        return stop;
+    }
+
     /**
      * Returns the code of the line.
      *
@@ -1,6 +1,7 @@
 package com.sanderjurgens.metroplanner.model;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 
 /**
  * A set of all lines.
@@ -12,11 +13,15 @@ public class LineSet extends ArrayList<Line> {
     /** The number of lines in the set */
     private int count;
 
+    /** The index of each line in the set */
+    private final IdentityHashMap<Line, Integer> indices;
+
     /**
      * Constructs an empty set of lines.
      */
     public LineSet() {
         count = 0;
+        indices = new IdentityHashMap<>();
     }
 
     /**
@@ -53,6 +58,20 @@ public class LineSet extends ArrayList<Line> {
         return null;
     }
 
+    /**
+     * Returns the index of the given line in this set.
+     *
+     * @param line a given line
+     * @return the index of the given line, or -1 if it isn't in the set
+     */
+    public int getIndex(Line line) {
+        Integer index = indices.get(line);
+        if (index == null) {
+            return -1;
+        }
+        return index;
+    }
+
     /**
      * Indicates whether it is possible to add the given line to this set. The
      * line has to be unique.
@@ -84,6 +103,7 @@ public class LineSet extends ArrayList<Line> {
             throw new IllegalRequestException("LineSet.add: cannot add line");
         }
         super.add(line);
+        indices.put(line, count);
         count = count + 1;
         return true;
     }
@@ -5,7 +5,12 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An overall network that contains and regulates all lines and stations. It
@@ -15,6 +20,9 @@ import java.util.StringTokenizer;
  */
 public class Network {
 
+    /** The source of versions, unique over all networks */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
     /** The URL of the resource that the network is based on */
     private final URL url;
 
@@ -26,17 +34,28 @@ public class Network {
     /** The sets of lines in the network */
     private LineSet lineSet;    
 
+    /** The version of the network, which changes whenever it is modified */
+    private volatile long version;
+    /** The number of edits announced to the listeners */
+    private volatile long editCount;
+
+    /** The listeners that are notified of edits */
+    private final CopyOnWriteArrayList<NetworkListener> listeners;
+
     /**
      * Constructs a network based on a file
      *
      * @param url the URL of the resource containing the network
      * @throws IOException if an error occurs while reading the file
+     * @throws IllegalRequestException if a run time, transfer time or headway
+     * in the file does not fit the network, or is negative
      */
-    public Network(final URL url) throws IOException {
+    public Network(final URL url) throws IOException, IllegalRequestException {
         this.url = url;
         name = "";        
         staSet = new StationSet();
         lineSet = new LineSet();
+        listeners = new CopyOnWriteArrayList<>();
 
         // Iterate over all lines in the file
         try (BufferedReader br = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
@@ -88,12 +107,233 @@ public class Network {
                         }
                         lineSet.add(aLine);
                     }
+                    case "station_gui" -> {
+                        // Set the location of a station on the map
+                        Station station = staSet.getStation(tokenizer.nextToken());
+                        tokenizer.nextToken();
+                        int x = Integer.parseInt(tokenizer.nextToken());
+                        int y = Integer.parseInt(tokenizer.nextToken());
+                        if (station != null) {
+                            station.setLocation(x, y);
+                        }
+                    }
+                    case "segment" -> {
+                        // Set the run time between two consecutive stops of a line
+                        Line aLine = lineSet.getLine(tokenizer.nextToken());
+                        Station from = staSet.getStation(tokenizer.nextToken());
+                        Station to = staSet.getStation(tokenizer.nextToken());
+                        int seconds = Integer.parseInt(tokenizer.nextToken());
+                        int i = segment(aLine, from, to);
+                        if (i == -1) {
+                            throw new IllegalRequestException("Network: segment is not on the line");
+                        }
+                        aLine.setRunTime(i, seconds);
+                    }
+                    case "transfer" -> {
+                        // Set the time it takes to transfer between lines at a station
+                        Station station = staSet.getStation(tokenizer.nextToken());
+                        int seconds = Integer.parseInt(tokenizer.nextToken());
+                        if (station == null) {
+                            throw new IllegalRequestException("Network: transfer station is not in the network");
+                        }
+                        station.setTransferTime(seconds);
+                    }
+                    case "headway" -> {
+                        // Set the time between consecutive trips of a line
+                        Line aLine = lineSet.getLine(tokenizer.nextToken());
+                        int seconds = Integer.parseInt(tokenizer.nextToken());
+                        if (aLine == null) {
+                            throw new IllegalRequestException("Network: headway line is not in the network");
+                        }
+                        aLine.setHeadway(seconds);
+                    }
                     default -> {
                         // Skip line if any other identifier is found
                     }
                 }
             }
         }
+        updateTransferPoints();
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Returns the index of the first of two consecutive stops of a line, in
+     * the order in which the line visits them.
+     *
+     * @param line a line, or null
+     * @param a a stop, or null
+     * @param b another stop, or null
+     * @return the index of the first stop, or -1 if the stops are not
+     * consecutive stops of the line
+     */
+    private static int segment(Line line, Station a, Station b) {
+        if (line == null || a == null || b == null) {
+            return -1;
+        }
+        int i = line.getIndex(a);
+        int j = line.getIndex(b);
+        int n = line.getCount();
+        if (i == -1 || j == -1 || i == j) {
+            return -1;
+        }
+        if (j == i + 1 || (line.isCircular() && i == n - 1 && j == 0)) {
+            return i;
+        }
+        if (i == j + 1 || (line.isCircular() && j == n - 1 && i == 0)) {
+            return j;
+        }
+        return -1;
+    }
+
+    /**
+     * Computes for each line the stops where other lines can be reached.
+     */
+    private void updateTransferPoints() {
+        // Collect the lines that stop at each station
+        HashMap<Station, List<Line>> stationLines = new HashMap<>();
+        for (Line line : lineSet) {
+            for (Station stop : line) {
+                stationLines.computeIfAbsent(stop, s -> new ArrayList<>()).add(line);
+            }
+        }
+
+        // Walk along each line and record the stops shared with other lines
+        for (Line line : lineSet) {
+            List<TransferPoint> transferPoints = new ArrayList<>();
+            for (int i = 0; i < line.getCount(); i = i + 1) {
+                Station stop = line.getStop(i);
+                List<Line> lines = stationLines.get(stop);
+                if (lines.size() > 1) {
+                    List<Line> others = new ArrayList<>(lines.size() - 1);
+                    int[] indices = new int[lines.size() - 1];
+                    for (Line other : lines) {
+                        if (other != line) {
+                            indices[others.size()] = other.getIndex(stop);
+                            others.add(other);
+                        }
+                    }
+                    transferPoints.add(new TransferPoint(i, stop, others, indices));
+                }
+            }
+            line.setTransferPoints(transferPoints);
+        }
+    }
+
+    /**
+     * Returns the version of the network. Versions are unique over all
+     * networks, such that results computed for one network, or for an
+     * earlier state of it, can be recognized.
+     *
+     * @return the version of the network
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Marks the network as modified, by giving it a new version.
+     */
+    public void markModified() {
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of edits announced to the listeners. Such edits do
+     * not change the version of the network, since the listeners can handle
+     * them precisely.
+     *
+     * @return the number of edits
+     */
+    public long getEditCount() {
+        return editCount;
+    }
+
+    /**
+     * Adds a listener that is notified of edits, unless it is already added.
+     *
+     * @param listener a given listener
+     */
+    public void addListener(NetworkListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a listener that is notified of edits.
+     *
+     * @param listener a given listener
+     */
+    public void removeListener(NetworkListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Removes a stop from a line, and notifies the listeners of the
+     * connections that are removed. The neighbours of the stop become
+     * consecutive stops of the line, of which the listeners are notified as
+     * an added connection.
+     *
+     * The listeners are notified while the lock of the network is held. Edits
+     * are not synchronized with planners that read the network at the same
+     * time.
+     *
+     * @param line a line of the network
+     * @param stop a stop on the line
+     * @throws IllegalRequestException if the line is not in the network, or if
+     * the stop is not on the line
+     */
+    public synchronized void removeStop(Line line, Station stop) throws IllegalRequestException {
+        if (line == null || stop == null || lineSet.getIndex(line) == -1) {
+            throw new IllegalRequestException("Network.removeStop: line is not in the network");
+        }
+        int i = line.getIndex(stop);
+        if (i == -1) {
+            throw new IllegalRequestException("Network.removeStop: stop is not on the line");
+        }
+
+        // Find the neighbours of the stop before it is removed
+        int n = line.getCount();
+        Station prev = null;
+        Station next = null;
+        if (i > 0 || (line.isCircular() && n > 1)) {
+            prev = line.getStop(Math.floorMod(i - 1, n));
+        }
+        if (i < n - 1 || (line.isCircular() && n > 1)) {
+            next = line.getStop((i + 1) % n);
+        }
+        line.removeStop(i);
+        updateTransferPoints();
+        editCount = editCount + 1;
+
+        for (NetworkListener listener : listeners) {
+            if (prev != null) {
+                listener.connectionRemoved(this, line, prev, stop);
+            }
+            if (next != null && next != prev) {
+                listener.connectionRemoved(this, line, stop, next);
+            }
+            if (prev != null && next != null && next != prev) {
+                listener.connectionAdded(this, line, prev, next);
+            }
+        }
+    }
+
+    /**
+     * Closes a station, by removing it from every line that stops there. The
+     * station itself stays in the network.
+     *
+     * @param station a station of the network
+     * @throws IllegalRequestException if the station is not in the network
+     */
+    public synchronized void closeStation(Station station) throws IllegalRequestException {
+        if (station == null || staSet.getIndex(station) == -1) {
+            throw new IllegalRequestException("Network.closeStation: station is not in the network");
+        }
+        for (Line line : lineSet) {
+            if (line.getIndex(station) != -1) {
+                removeStop(line, station);
+            }
+        }
     }
 
     /**
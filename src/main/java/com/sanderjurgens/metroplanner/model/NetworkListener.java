@@ -0,0 +1,31 @@
+package com.sanderjurgens.metroplanner.model;
+
+/**
+ * A listener that is notified of edits to a network.
+ *
+ * @author sanderjurgens
+ */
+public interface NetworkListener {
+
+    /**
+     * Notifies that a line no longer connects two stations that were
+     * consecutive stops on it, in either direction.
+     *
+     * @param network the network that is edited
+     * @param line the line that is edited
+     * @param from a station of the connection
+     * @param to the other station of the connection
+     */
+    void connectionRemoved(Network network, Line line, Station from, Station to);
+
+    /**
+     * Notifies that a line connects two stations that were not consecutive
+     * stops on it before, such as the neighbours of a removed stop.
+     *
+     * @param network the network that is edited
+     * @param line the line that is edited
+     * @param from a station of the connection
+     * @param to the other station of the connection
+     */
+    void connectionAdded(Network network, Line line, Station from, Station to);
+}
@@ -0,0 +1,462 @@
+package com.sanderjurgens.metroplanner.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A compact form of a timetable, in which the trips are grouped by their stop
+ * pattern: the sequence of stops of a line in one direction.
+ *
+ * All trips of a pattern run at the run times of its line, so the time from
+ * the first stop to every stop is stored once per pattern, and a trip is only
+ * its departure from the first stop. The trips of a pattern are sorted by
+ * departure and stored as the difference with the previous trip, in two bytes
+ * each. Every block of at most {@value #BLOCK} trips begins with a full
+ * departure, such that the next departure at or after a given time is found
+ * by a binary search over the blocks followed by a short scan in one block.
+ *
+ * All data is kept in a single buffer of plain integers and characters, in
+ * the same layout as on disk, so that a timetable written by
+ * {@link #write(Path)} can be memory mapped by {@link #map(Path)} without
+ * reading it.
+ *
+ * @author sanderjurgens
+ */
+public class PatternTimetable {
+
+    /** The first integer of a pattern timetable on disk */
+    private static final int MAGIC = 0x4d505054;
+    /** The largest number of trips in a block */
+    public static final int BLOCK = 32;
+    /** The largest difference between consecutive departures stored in a block */
+    private static final int MAX_DELTA = Character.MAX_VALUE;
+    /** The number of integers in the header */
+    private static final int HEADER = 5;
+
+    /** The buffer holding all data */
+    private final ByteBuffer buffer;
+    /** The number of patterns */
+    private final int patternCount;
+    /** The number of stops over all patterns */
+    private final int stopCount;
+    /** The number of trips over all patterns */
+    private final int tripCount;
+    /** The number of blocks over all patterns */
+    private final int blockCount;
+
+    /** The offset of the line of each pattern */
+    private final int patternLine;
+    /** The offset of the direction of each pattern */
+    private final int patternForward;
+    /** The offset of the first stop of each pattern, and the number of stops at the end */
+    private final int patternStop;
+    /** The offset of the first trip of each pattern, and the number of trips at the end */
+    private final int patternTrip;
+    /** The offset of the first block of each pattern, and the number of blocks at the end */
+    private final int patternBlock;
+    /** The offset of the station of each stop */
+    private final int stopStation;
+    /** The offset of the position on the line of each stop */
+    private final int stopPosition;
+    /** The offset of the time from the first stop to each stop */
+    private final int stopOffset;
+    /** The offset of the departure of the first trip of each block */
+    private final int blockDeparture;
+    /** The offset of the first trip of each block */
+    private final int blockTrip;
+    /** The offset of the difference of each trip with the previous trip */
+    private final int tripDelta;
+
+    /**
+     * Constructs the pattern form of a given timetable.
+     *
+     * @param timetable a given timetable
+     */
+    public PatternTimetable(Timetable timetable) {
+        Network network = timetable.getNetwork();
+        LineSet lineSet = network.getLineSet();
+        StationSet staSet = network.getStationSet();
+
+        // Group the departures of the trips by line and direction
+        int[][] departures = new int[2 * lineSet.getCount()][];
+        int[] counts = new int[departures.length];
+        for (int trip = 0; trip < timetable.getTripCount(); trip++) {
+            counts[key(timetable.getTripLine(trip), timetable.isTripForward(trip))]++;
+        }
+        int patterns = 0;
+        int stops = 0;
+        int blocks = 0;
+        for (int k = 0; k < departures.length; k++) {
+            departures[k] = new int[counts[k]];
+            counts[k] = 0;
+        }
+        for (int trip = 0; trip < timetable.getTripCount(); trip++) {
+            int k = key(timetable.getTripLine(trip), timetable.isTripForward(trip));
+            departures[k][counts[k]++] = timetable.getTripDeparture(trip);
+        }
+        for (int k = 0; k < departures.length; k++) {
+            if (counts[k] > 0) {
+                Arrays.sort(departures[k]);
+                patterns++;
+                stops = stops + Timetable.rideCount(lineSet.get(k / 2)) + 1;
+                blocks = blocks + countBlocks(departures[k]);
+            }
+        }
+        patternCount = patterns;
+        stopCount = stops;
+        tripCount = timetable.getTripCount();
+        blockCount = blocks;
+
+        // Lay out the sections, then fill them pattern by pattern
+        int ints = HEADER + 2 * patterns + 3 * (patterns + 1) + 3 * stops + 2 * blocks;
+        buffer = ByteBuffer.allocate(4 * ints + 2 * tripCount);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, patternCount);
+        buffer.putInt(8, stopCount);
+        buffer.putInt(12, tripCount);
+        buffer.putInt(16, blockCount);
+        patternLine = 4 * HEADER;
+        patternForward = patternLine + 4 * patternCount;
+        patternStop = patternForward + 4 * patternCount;
+        patternTrip = patternStop + 4 * (patternCount + 1);
+        patternBlock = patternTrip + 4 * (patternCount + 1);
+        stopStation = patternBlock + 4 * (patternCount + 1);
+        stopPosition = stopStation + 4 * stopCount;
+        stopOffset = stopPosition + 4 * stopCount;
+        blockDeparture = stopOffset + 4 * stopCount;
+        blockTrip = blockDeparture + 4 * blockCount;
+        tripDelta = blockTrip + 4 * blockCount;
+
+        int p = 0;
+        int s = 0;
+        int t = 0;
+        int b = 0;
+        for (int k = 0; k < departures.length; k++) {
+            if (counts[k] == 0) {
+                continue;
+            }
+            Line line = lineSet.get(k / 2);
+            boolean forward = k % 2 == 0;
+            buffer.putInt(patternLine + 4 * p, k / 2);
+            buffer.putInt(patternForward + 4 * p, forward ? 1 : 0);
+            buffer.putInt(patternStop + 4 * p, s);
+            buffer.putInt(patternTrip + 4 * p, t);
+            buffer.putInt(patternBlock + 4 * p, b);
+
+            // The stops along the line, with the time since the first stop
+            int position = forward ? 0 : line.getCount() - 1;
+            int offset = 0;
+            for (int i = Timetable.rideCount(line); i >= 0; i--) {
+                buffer.putInt(stopStation + 4 * s, staSet.getIndex(line.getStop(position)));
+                buffer.putInt(stopPosition + 4 * s, position);
+                buffer.putInt(stopOffset + 4 * s, offset);
+                s++;
+                if (i > 0) {
+                    int next = Timetable.nextPosition(line, forward, position);
+                    offset = offset + line.getRunTime(forward ? position : next);
+                    position = next;
+                }
+            }
+
+            // The departures, as differences within blocks
+            int[] times = departures[k];
+            int first = 0;
+            for (int j = 0; j < times.length; j++) {
+                if (j == 0 || j - first == BLOCK || times[j] - times[j - 1] > MAX_DELTA) {
+                    first = j;
+                    buffer.putInt(blockDeparture + 4 * b, times[j]);
+                    buffer.putInt(blockTrip + 4 * b, t + j);
+                    b++;
+                    buffer.putChar(tripDelta + 2 * (t + j), (char) 0);
+                } else {
+                    buffer.putChar(tripDelta + 2 * (t + j), (char) (times[j] - times[j - 1]));
+                }
+            }
+            t = t + times.length;
+            p++;
+        }
+        buffer.putInt(patternStop + 4 * p, s);
+        buffer.putInt(patternTrip + 4 * p, t);
+        buffer.putInt(patternBlock + 4 * p, b);
+    }
+
+    /**
+     * Constructs a pattern timetable over a buffer in the layout on disk.
+     *
+     * @param buffer the buffer holding all data
+     * @throws IOException if the buffer does not hold a pattern timetable
+     */
+    private PatternTimetable(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < 4 * HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IOException("PatternTimetable.map: not a pattern timetable");
+        }
+        patternCount = buffer.getInt(4);
+        stopCount = buffer.getInt(8);
+        tripCount = buffer.getInt(12);
+        blockCount = buffer.getInt(16);
+        long ints = HEADER + 2L * patternCount + 3L * (patternCount + 1) + 3L * stopCount + 2L * blockCount;
+        if (patternCount < 0 || stopCount < 0 || tripCount < 0 || blockCount < 0
+                || buffer.capacity() != 4 * ints + 2L * tripCount) {
+            throw new IOException("PatternTimetable.map: corrupt pattern timetable");
+        }
+        patternLine = 4 * HEADER;
+        patternForward = patternLine + 4 * patternCount;
+        patternStop = patternForward + 4 * patternCount;
+        patternTrip = patternStop + 4 * (patternCount + 1);
+        patternBlock = patternTrip + 4 * (patternCount + 1);
+        stopStation = patternBlock + 4 * (patternCount + 1);
+        stopPosition = stopStation + 4 * stopCount;
+        stopOffset = stopPosition + 4 * stopCount;
+        blockDeparture = stopOffset + 4 * stopCount;
+        blockTrip = blockDeparture + 4 * blockCount;
+        tripDelta = blockTrip + 4 * blockCount;
+    }
+
+    /**
+     * Returns the key of a pattern by its line and direction.
+     *
+     * @param line the index of a line
+     * @param forward whether the direction is towards the last stop
+     * @return the key of the pattern
+     */
+    private static int key(int line, boolean forward) {
+        return 2 * line + (forward ? 0 : 1);
+    }
+
+    /**
+     * Returns the number of blocks needed for sorted departures.
+     *
+     * @param times the sorted departures of a pattern
+     * @return the number of blocks
+     */
+    private static int countBlocks(int[] times) {
+        int blocks = 0;
+        int first = 0;
+        for (int j = 0; j < times.length; j++) {
+            if (j == 0 || j - first == BLOCK || times[j] - times[j - 1] > MAX_DELTA) {
+                first = j;
+                blocks++;
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Writes the pattern timetable to a file, in the layout in which it can be
+     * memory mapped.
+     *
+     * @param path the path of the file
+     * @throws IOException if writing the file fails
+     */
+    public void write(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data = buffer.duplicate();
+            data.clear();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    /**
+     * Memory maps a pattern timetable that was written to a file. The file is
+     * read on demand by the operating system, and is not modified.
+     *
+     * @param path the path of the file
+     * @return the pattern timetable in the file
+     * @throws IOException if mapping the file fails, or if the file does not
+     * hold a pattern timetable
+     */
+    public static PatternTimetable map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PatternTimetable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the number of patterns.
+     *
+     * @return the number of patterns
+     */
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    /**
+     * Returns the line of a pattern.
+     *
+     * @param pattern the index of a pattern
+     * @return the index of the line
+     */
+    public int getLine(int pattern) {
+        return buffer.getInt(patternLine + 4 * pattern);
+    }
+
+    /**
+     * Returns whether a pattern runs towards the last stop of its line.
+     *
+     * @param pattern the index of a pattern
+     * @return whether the pattern runs forward
+     */
+    public boolean isForward(int pattern) {
+        return buffer.getInt(patternForward + 4 * pattern) != 0;
+    }
+
+    /**
+     * Returns the number of stops of a pattern.
+     *
+     * @param pattern the index of a pattern
+     * @return the number of stops
+     */
+    public int getStopCount(int pattern) {
+        return buffer.getInt(patternStop + 4 * (pattern + 1)) - buffer.getInt(patternStop + 4 * pattern);
+    }
+
+    /**
+     * Returns the station of a stop of a pattern.
+     *
+     * @param pattern the index of a pattern
+     * @param i the index of the stop in the pattern
+     * @return the index of the station
+     */
+    public int getStation(int pattern, int i) {
+        return buffer.getInt(stopStation + 4 * (buffer.getInt(patternStop + 4 * pattern) + i));
+    }
+
+    /**
+     * Returns the position on the line of a stop of a pattern.
+     *
+     * @param pattern the index of a pattern
+     * @param i the index of the stop in the pattern
+     * @return the position of the stop on the line of the pattern
+     */
+    public int getPosition(int pattern, int i) {
+        return buffer.getInt(stopPosition + 4 * (buffer.getInt(patternStop + 4 * pattern) + i));
+    }
+
+    /**
+     * Returns the time from the first stop of a pattern to one of its stops.
+     *
+     * @param pattern the index of a pattern
+     * @param i the index of the stop in the pattern
+     * @return the time in seconds
+     */
+    public int getOffset(int pattern, int i) {
+        return buffer.getInt(stopOffset + 4 * (buffer.getInt(patternStop + 4 * pattern) + i));
+    }
+
+    /**
+     * Returns the number of trips of a pattern.
+     *
+     * @param pattern the index of a pattern
+     * @return the number of trips
+     */
+    public int getTripCount(int pattern) {
+        return buffer.getInt(patternTrip + 4 * (pattern + 1)) - buffer.getInt(patternTrip + 4 * pattern);
+    }
+
+    /**
+     * Returns the departure of a trip of a pattern from its first stop.
+     *
+     * @param pattern the index of a pattern
+     * @param trip the index of the trip in the pattern, in order of departure
+     * @return the departure time
+     */
+    public int getDeparture(int pattern, int trip) {
+        int t = buffer.getInt(patternTrip + 4 * pattern) + trip;
+
+        // Find the last block that begins at or before the trip
+        int low = buffer.getInt(patternBlock + 4 * pattern);
+        int high = buffer.getInt(patternBlock + 4 * (pattern + 1)) - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (buffer.getInt(blockTrip + 4 * mid) <= t) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int time = buffer.getInt(blockDeparture + 4 * low);
+        for (int j = buffer.getInt(blockTrip + 4 * low) + 1; j <= t; j++) {
+            time = time + buffer.getChar(tripDelta + 2 * j);
+        }
+        return time;
+    }
+
+    /**
+     * Returns the first trip of a pattern that departs from one of its stops
+     * at or after a given time.
+     *
+     * @param pattern the index of a pattern
+     * @param i the index of the stop in the pattern
+     * @param time a given time
+     * @return the index of the trip in the pattern, or the number of trips of
+     * the pattern if there is none
+     */
+    public int getNextTrip(int pattern, int i, int time) {
+        int target = time - getOffset(pattern, i);
+        int begin = buffer.getInt(patternBlock + 4 * pattern);
+        int end = buffer.getInt(patternBlock + 4 * (pattern + 1));
+        int first = buffer.getInt(patternTrip + 4 * pattern);
+
+        // Find the last block that departs at or before the time
+        int low = begin;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(blockDeparture + 4 * mid) <= target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int block = low - 1;
+        if (block < begin) {
+            return begin < end ? 0 : getTripCount(pattern);
+        }
+
+        // Scan the block, or else take the first trip of the next block
+        int last = block + 1 < end ? buffer.getInt(blockTrip + 4 * (block + 1))
+                : buffer.getInt(patternTrip + 4 * (pattern + 1));
+        int j = buffer.getInt(blockTrip + 4 * block);
+        int departure = buffer.getInt(blockDeparture + 4 * block);
+        while (departure < target) {
+            j++;
+            if (j == last) {
+                return last - first;
+            }
+            departure = departure + buffer.getChar(tripDelta + 2 * j);
+        }
+        return j - first;
+    }
+
+    /**
+     * Returns the number of trips over all patterns.
+     *
+     * @return the number of trips
+     */
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    /**
+     * Returns the memory used by the pattern timetable, in memory or mapped.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public String toString() {
+        return "PatternTimetable[" + patternCount + " patterns, " + tripCount + " trips, "
+                + blockCount + " blocks]";
+    }
+}
@@ -1,16 +1,28 @@
 package com.sanderjurgens.metroplanner.model;
 
 /**
- * A standard station with a name and a code.
+ * A standard station with a name and a code, and optionally a location on
+ * the map of the network and the time it takes to transfer between lines.
  *
  * @author sanderjurgens
  */
 public class Station {
 
+    /** The transfer time of a station of which it is not known, in seconds */
+    public static final int DEFAULT_TRANSFER_TIME = 0;
+
     /** Identification of the station */
     private final String name;
     /** The name of the station */
     private final String code;
+    /** Whether the location of the station is known */
+    private boolean located;
+    /** The horizontal coordinate of the station on the map */
+    private int x;
+    /** The vertical coordinate of the station on the map */
+    private int y;
+    /** The time it takes to transfer between lines at the station, in seconds */
+    private int transferTime;
 
     /**
      * Constructs a station with given name and code.
@@ -25,6 +37,7 @@ public class Station {
         }
         this.code = code;
         this.name = name;        
+        transferTime = DEFAULT_TRANSFER_TIME;
     }
 
     /**
@@ -45,6 +58,67 @@ public class Station {
         return code;
     }
 
+    /**
+     * Returns whether the location of this station is known.
+     *
+     * @return whether this station has coordinates
+     */
+    public boolean hasLocation() {
+        return located;
+    }
+
+    /**
+     * Returns the horizontal coordinate of this station on the map.
+     *
+     * @return the horizontal coordinate, or 0 if the location is not known
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the vertical coordinate of this station on the map.
+     *
+     * @return the vertical coordinate, or 0 if the location is not known
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Sets the location of this station on the map.
+     *
+     * @param x the horizontal coordinate
+     * @param y the vertical coordinate
+     */
+    void setLocation(int x, int y) {
+        this.x = x;
+        this.y = y;
+        located = true;
+    }
+
+    /**
+     * Returns the time it takes to transfer between lines at this station.
+     *
+     * @return the transfer time in seconds
+     */
+    public int getTransferTime() {
+        return transferTime;
+    }
+
+    /**
+     * Sets the time it takes to transfer between lines at this station.
+     *
+     * @param seconds the transfer time in seconds
+     * @throws IllegalRequestException if the time is negative
+     */
+    void setTransferTime(int seconds) throws IllegalRequestException {
+        if (seconds < 0) {
+            throw new IllegalRequestException("Station.setTransferTime: time is negative");
+        }
+        transferTime = seconds;
+    }
+
     /**
      * Returns the name of this station.
      *
@@ -1,6 +1,7 @@
 package com.sanderjurgens.metroplanner.model;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * A set of all stations.
@@ -12,11 +13,15 @@ public class StationSet extends ArrayList<Station> {
     /** The number of stations in the set */
     private int count;
 
+    /** The index of each station in the set */
+    private final HashMap<Station, Integer> indices;
+
     /**
      * Constructs an empty set of stations.
      */
     public StationSet() {
         count = 0;
+        indices = new HashMap<>();
     }
 
     /**
@@ -53,6 +58,20 @@ public class StationSet extends ArrayList<Station> {
         return null;
     }
 
+    /**
+     * Returns the index of the given station in this set.
+     *
+     * @param station a given station
+     * @return the index of the given station, or -1 if it isn't in the set
+     */
+    public int getIndex(Station station) {
+        Integer index = indices.get(station);
+        if (index == null) {
+            return -1;
+        }
+        return index;
+    }
+
     /**
      * Indicates whether it is possible to add the station to this line. The
      * station has to be unique.
@@ -64,12 +83,7 @@ public class StationSet extends ArrayList<Station> {
         if (station == null) {
             return false;
         }
-        for (Station s : this) {
-            if (s.equals(station)) {
-                return false;
-            }
-        }
-        return true;
+        return !indices.containsKey(station);
     }
 
     /**
@@ -84,6 +98,7 @@ public class StationSet extends ArrayList<Station> {
             throw new IllegalRequestException("StationSet.add: cannot add station");
         }
         super.add(station);
+        indices.put(station, count);
         count = count + 1;
         return true;
     }
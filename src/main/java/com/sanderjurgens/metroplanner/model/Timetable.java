@@ -0,0 +1,496 @@
+package com.sanderjurgens.metroplanner.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+/**
+ * A timetable of the trips run on the lines of a network, read from a file.
+ *
+ * A trip rides its line from one terminal to the other, or once around a
+ * circular line, without waiting at the stops: it reaches every next stop
+ * after the run time of the segment in between. Every ride of a trip between
+ * two consecutive stops is a connection. The connections are stored in plain
+ * arrays, sorted by their departure time and then by their arrival time, so
+ * that a connection without run time comes before the connections that
+ * depart from its arrival at the same time. A connection departs no earlier
+ * than the previous connection of its trip arrives. Times are in seconds
+ * since midnight of the day of service, and may exceed a day for trips after
+ * midnight.
+ *
+ * A timetable file contains a trip or a service per line:
+ * <pre>
+ * trip:line:isforward:departure
+ * service:line:isforward:first:last:headway
+ * </pre>
+ * where the departure from the first stop is given as hh.mm or hh.mm.ss, and
+ * a service runs a trip every headway seconds from the first up to the last
+ * departure.
+ *
+ * The timetable is computed for the network as it is when the timetable is
+ * read. It keeps the version and number of edits of the network at that
+ * time, such that planners can tell when it is out of date.
+ *
+ * @author sanderjurgens
+ */
+public class Timetable {
+
+    /** The network of which the lines are run */
+    private final Network network;
+    /** The version of the network when the timetable was read */
+    private final long version;
+    /** The number of edits of the network when the timetable was read */
+    private final long edits;
+
+    /** The number of trips */
+    private int tripCount;
+    /** The line of each trip */
+    private int[] tripLine;
+    /** Whether each trip runs towards the last stop of its line */
+    private boolean[] tripForward;
+    /** The departure of each trip from its first stop */
+    private int[] tripDeparture;
+
+    /** The number of connections */
+    private int connectionCount;
+    /** The trip of each connection */
+    private int[] connectionTrip;
+    /** The station where each connection departs */
+    private int[] departureStation;
+    /** The station where each connection arrives */
+    private int[] arrivalStation;
+    /** The position on the line where each connection departs */
+    private int[] departurePosition;
+    /** The position on the line where each connection arrives */
+    private int[] arrivalPosition;
+    /** The departure time of each connection */
+    private int[] departureTime;
+    /** The arrival time of each connection */
+    private int[] arrivalTime;
+
+    /**
+     * Constructs the timetable of a network from a file.
+     *
+     * @param network the network of which the lines are run
+     * @param url the URL of the resource containing the timetable
+     * @throws IOException if an error occurs while reading the file
+     * @throws IllegalRequestException if a trip does not fit the network
+     */
+    public Timetable(Network network, URL url) throws IOException, IllegalRequestException {
+        this.network = network;
+        version = network.getVersion();
+        edits = network.getEditCount();
+        tripLine = new int[16];
+        tripForward = new boolean[16];
+        tripDeparture = new int[16];
+
+        // Iterate over all lines in the file
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+
+                // Ignore empty lines and comments
+                if (line.equals("") || line.startsWith("#")) {
+                    continue;
+                }
+
+                // Split line by delimiter ":"
+                StringTokenizer tokenizer = new StringTokenizer(line, ":");
+                String id = tokenizer.nextToken();
+
+                // Apply logic based on the line identifier
+                switch (id) {
+                    case "trip" -> {
+                        // Add a single trip
+                        int l = lineIndex(tokenizer.nextToken());
+                        boolean forward = direction(l, tokenizer.nextToken());
+                        addTrip(l, forward, parseTime(tokenizer.nextToken()));
+                    }
+                    case "service" -> {
+                        // Add a trip per headway between the first and last departure
+                        int l = lineIndex(tokenizer.nextToken());
+                        boolean forward = direction(l, tokenizer.nextToken());
+                        int first = parseTime(tokenizer.nextToken());
+                        int last = parseTime(tokenizer.nextToken());
+                        int headway = Integer.parseInt(tokenizer.nextToken());
+                        if (headway <= 0) {
+                            throw new IllegalRequestException("Timetable: headway is not positive");
+                        }
+                        for (int t = first; t <= last; t = t + headway) {
+                            addTrip(l, forward, t);
+                        }
+                    }
+                    default -> {
+                        // Skip line if any other identifier is found
+                    }
+                }
+            }
+        }
+        buildConnections();
+    }
+
+    /**
+     * Returns the index of the line with a given code.
+     *
+     * @param code a given code
+     * @return the index of the line
+     * @throws IllegalRequestException if the line is not in the network
+     */
+    private int lineIndex(String code) throws IllegalRequestException {
+        Line line = network.getLine(code);
+        if (line == null) {
+            throw new IllegalRequestException("Timetable: line is not in the network");
+        }
+        return network.getLineSet().getIndex(line);
+    }
+
+    /**
+     * Returns the direction of a trip on a line.
+     *
+     * @param l the index of the line
+     * @param forward "1" if the trip runs towards the last stop of the line
+     * @return whether the trip runs towards the last stop of the line
+     * @throws IllegalRequestException if the trip runs against a one way line
+     */
+    private boolean direction(int l, String forward) throws IllegalRequestException {
+        boolean isForward = forward.equals("1");
+        if (!isForward && network.getLineSet().get(l).isOneWay()) {
+            throw new IllegalRequestException("Timetable: line is one way");
+        }
+        return isForward;
+    }
+
+    /**
+     * Adds a trip to the timetable.
+     *
+     * @param l the index of the line
+     * @param forward whether the trip runs towards the last stop of the line
+     * @param departure the departure from the first stop
+     */
+    private void addTrip(int l, boolean forward, int departure) {
+        if (tripCount == tripLine.length) {
+            tripLine = Arrays.copyOf(tripLine, 2 * tripCount);
+            tripForward = Arrays.copyOf(tripForward, 2 * tripCount);
+            tripDeparture = Arrays.copyOf(tripDeparture, 2 * tripCount);
+        }
+        tripLine[tripCount] = l;
+        tripForward[tripCount] = forward;
+        tripDeparture[tripCount] = departure;
+        tripCount++;
+    }
+
+    /**
+     * Computes the connections of all trips, sorted by departure time and
+     * then by arrival time.
+     */
+    private void buildConnections() {
+        LineSet lineSet = network.getLineSet();
+        StationSet staSet = network.getStationSet();
+        int count = 0;
+        for (int trip = 0; trip < tripCount; trip++) {
+            count = count + rideCount(lineSet.get(tripLine[trip]));
+        }
+        connectionCount = count;
+
+        // Sort by departure, then arrival, keeping the connections of a trip in order for equal times
+        int[] trips = new int[count];
+        int[] froms = new int[count];
+        int[] tos = new int[count];
+        int[] departures = new int[count];
+        int[] arrivals = new int[count];
+        long[] keys = new long[count];
+        int c = 0;
+        for (int trip = 0; trip < tripCount; trip++) {
+            Line line = lineSet.get(tripLine[trip]);
+            int time = tripDeparture[trip];
+            int p = tripForward[trip] ? 0 : line.getCount() - 1;
+            for (int r = rideCount(line); r > 0; r--) {
+                int q = nextPosition(line, tripForward[trip], p);
+                trips[c] = trip;
+                froms[c] = p;
+                tos[c] = q;
+                departures[c] = time;
+                time = time + line.getRunTime(tripForward[trip] ? p : q);
+                arrivals[c] = time;
+                keys[c] = ((long) arrivals[c] << 32) | c;
+                p = q;
+                c++;
+            }
+        }
+        // Rank by arrival first, then sort by departure and rank
+        Arrays.sort(keys);
+        int[] byArrival = new int[count];
+        for (int i = 0; i < count; i++) {
+            byArrival[i] = (int) keys[i];
+            keys[i] = ((long) departures[byArrival[i]] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        connectionTrip = new int[count];
+        departureStation = new int[count];
+        arrivalStation = new int[count];
+        departurePosition = new int[count];
+        arrivalPosition = new int[count];
+        departureTime = new int[count];
+        arrivalTime = new int[count];
+        for (int i = 0; i < count; i++) {
+            int j = byArrival[(int) keys[i]];
+            Line line = lineSet.get(tripLine[trips[j]]);
+            connectionTrip[i] = trips[j];
+            departurePosition[i] = froms[j];
+            arrivalPosition[i] = tos[j];
+            departureStation[i] = staSet.getIndex(line.getStop(froms[j]));
+            arrivalStation[i] = staSet.getIndex(line.getStop(tos[j]));
+            departureTime[i] = departures[j];
+            arrivalTime[i] = arrivals[j];
+        }
+    }
+
+    /**
+     * Returns the position of the next stop of a trip on a line.
+     *
+     * @param line a given line
+     * @param forward whether the trip runs towards the last stop of the line
+     * @param p the position of a stop on the line
+     * @return the position of the next stop, which is the first or last stop
+     * after the end of a circular line
+     */
+    static int nextPosition(Line line, boolean forward, int p) {
+        int n = line.getCount();
+        return forward ? (p + 1) % n : Math.floorMod(p - 1, n);
+    }
+
+    /**
+     * Returns the number of rides of a trip on a line.
+     *
+     * @param line a given line
+     * @return the number of rides between consecutive stops
+     */
+    static int rideCount(Line line) {
+        int n = line.getCount();
+        if (n < 2) {
+            return 0;
+        }
+        return line.isCircular() ? n : n - 1;
+    }
+
+    /**
+     * Returns the time of day given as hh.mm or hh.mm.ss. The hours may
+     * exceed a day, but the minutes and seconds are below 60.
+     *
+     * @param time a given time of day
+     * @return the time in seconds since midnight
+     * @throws IllegalRequestException if the time is not valid
+     */
+    public static int parseTime(String time) throws IllegalRequestException {
+        String[] parts = time.split("\\.");
+        try {
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalRequestException("Timetable.parseTime: time is not valid");
+            }
+            int seconds = 0;
+            for (int i = 0; i < parts.length; i++) {
+                // Only digits, such that no field is negative
+                if (parts[i].isEmpty() || !parts[i].chars().allMatch(Character::isDigit)) {
+                    throw new IllegalRequestException("Timetable.parseTime: time is not valid");
+                }
+                int value = Integer.parseInt(parts[i]);
+                if (i > 0 && value > 59) {
+                    throw new IllegalRequestException("Timetable.parseTime: time is not valid");
+                }
+                seconds = seconds + value * (i == 0 ? 3600 : i == 1 ? 60 : 1);
+            }
+            return seconds;
+        } catch (NumberFormatException e) {
+            throw new IllegalRequestException("Timetable.parseTime: time is not valid");
+        }
+    }
+
+    /**
+     * Returns a time in seconds since midnight as hh.mm.ss.
+     *
+     * @param seconds a time in seconds since midnight
+     * @return the time of day
+     */
+    public static String formatTime(int seconds) {
+        return String.format("%02d.%02d.%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * Returns the network of which the lines are run.
+     *
+     * @return the network of the timetable
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * Returns whether the timetable is read for a given network as it is now,
+     * so neither modified nor edited since.
+     *
+     * @param network a given network
+     * @return whether the timetable is current
+     */
+    public boolean isCurrent(Network network) {
+        return network == this.network && network.getVersion() == version && network.getEditCount() == edits;
+    }
+
+    /**
+     * Returns the number of trips.
+     *
+     * @return the number of trips
+     */
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    /**
+     * Returns the line of a trip.
+     *
+     * @param trip the index of a trip
+     * @return the index of the line of the trip
+     */
+    public int getTripLine(int trip) {
+        return tripLine[trip];
+    }
+
+    /**
+     * Returns whether a trip runs towards the last stop of its line.
+     *
+     * @param trip the index of a trip
+     * @return whether the trip runs forward
+     */
+    public boolean isTripForward(int trip) {
+        return tripForward[trip];
+    }
+
+    /**
+     * Returns the departure of a trip from its first stop.
+     *
+     * @param trip the index of a trip
+     * @return the departure time
+     */
+    public int getTripDeparture(int trip) {
+        return tripDeparture[trip];
+    }
+
+    /**
+     * Returns the number of connections.
+     *
+     * @return the number of connections
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Returns the first connection that departs at or after a given time.
+     *
+     * @param time a given time
+     * @return the index of the connection, or the number of connections if
+     * there is none
+     */
+    public int getFirstConnection(int time) {
+        int low = 0;
+        int high = connectionCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departureTime[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the trip of a connection.
+     *
+     * @param connection the index of a connection
+     * @return the index of the trip
+     */
+    public int getTrip(int connection) {
+        return connectionTrip[connection];
+    }
+
+    /**
+     * Returns the station where a connection departs.
+     *
+     * @param connection the index of a connection
+     * @return the index of the station
+     */
+    public int getDepartureStation(int connection) {
+        return departureStation[connection];
+    }
+
+    /**
+     * Returns the station where a connection arrives.
+     *
+     * @param connection the index of a connection
+     * @return the index of the station
+     */
+    public int getArrivalStation(int connection) {
+        return arrivalStation[connection];
+    }
+
+    /**
+     * Returns the position on the line where a connection departs.
+     *
+     * @param connection the index of a connection
+     * @return the position of the stop on the line of the trip
+     */
+    public int getDeparturePosition(int connection) {
+        return departurePosition[connection];
+    }
+
+    /**
+     * Returns the position on the line where a connection arrives.
+     *
+     * @param connection the index of a connection
+     * @return the position of the stop on the line of the trip
+     */
+    public int getArrivalPosition(int connection) {
+        return arrivalPosition[connection];
+    }
+
+    /**
+     * Returns the departure time of a connection.
+     *
+     * @param connection the index of a connection
+     * @return the departure time
+     */
+    public int getDepartureTime(int connection) {
+        return departureTime[connection];
+    }
+
+    /**
+     * Returns the arrival time of a connection.
+     *
+     * @param connection the index of a connection
+     * @return the arrival time
+     */
+    public int getArrivalTime(int connection) {
+        return arrivalTime[connection];
+    }
+
+    /**
+     * Returns the memory used by the connections and trips.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        return 28L * connectionCount + 9L * tripCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Timetable[" + tripCount + " trips, " + connectionCount + " connections]";
+    }
+}
@@ -0,0 +1,92 @@
+package com.sanderjurgens.metroplanner.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A stop on a line where other lines can be reached.
+ *
+ * @author sanderjurgens
+ */
+public class TransferPoint {
+
+    /** The index of the stop on the line */
+    private final int index;
+
+    /** The station of the stop */
+    private final Station station;
+
+    /** The other lines that stop at the station */
+    private final List<Line> lines;
+    /** The index of the station on each of the other lines */
+    private final int[] indices;
+
+    /**
+     * Constructs a transfer point at a stop of a line.
+     *
+     * @param index the index of the stop on the line
+     * @param station the station of the stop
+     * @param lines the other lines that stop at the station
+     * @param indices the index of the station on each of the other lines
+     * @throws IllegalRequestException if the station or lines are null, or if
+     * the number of lines and indices differ
+     */
+    public TransferPoint(int index, Station station, List<Line> lines, int[] indices)
+            throws IllegalRequestException {
+        if (station == null || lines == null || indices == null || lines.size() != indices.length) {
+            throw new IllegalRequestException("TransferPoint: pre failed");
+        }
+        this.index = index;
+        this.station = station;
+        this.lines = Collections.unmodifiableList(lines);
+        this.indices = indices.clone();
+    }
+
+    /**
+     * Returns the index of the stop on the line.
+     *
+     * @return the index of the stop on the line
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the station of the stop.
+     *
+     * @return the station of the stop
+     */
+    public Station getStation() {
+        return station;
+    }
+
+    /**
+     * Returns the other lines that stop at the station.
+     *
+     * @return the other lines that stop at the station
+     */
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns the index of the station on the i-th of the other lines.
+     *
+     * @param i the position of a line in the list of other lines
+     * @return the index of the station on that line
+     * @throws IndexOutOfBoundsException if the position is out of bounds
+     */
+    public int getIndexOn(int i) throws IndexOutOfBoundsException {
+        return indices[i];
+    }
+
+    /**
+     * Returns the station of the transfer point.
+     *
+     * @return the station of the transfer point
+     */
+    @Override
+    public String toString() {
+        return station.toString();
+    }
+}
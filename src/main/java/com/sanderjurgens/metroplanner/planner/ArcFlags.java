@@ -0,0 +1,216 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The arc flags of a station graph: the graph is partitioned into regions, and
+ * every edge is flagged with the regions towards which it lies on a shortest
+ * route.
+ *
+ * The regions are cut from a {@link Partition} order of the stations, such
+ * that they are geographic clusters of about equal size if the stations have
+ * locations on the map.
+ *
+ * An edge gets the flag of its own region if it ends inside it. A route into a
+ * region enters it for the last time at a boundary station, one that is
+ * reached by an edge from another region. A Breadth-First Search backward from
+ * every boundary station flags the edges that lie on a shortest route towards
+ * it. The regions are processed in parallel, each writing only its own flags.
+ *
+ * @author sanderjurgens
+ */
+public class ArcFlags {
+
+    /** The number of stations in the graph */
+    private final int stationCount;
+    /** The number of edges in the graph */
+    private final int edgeCount;
+    /** The number of regions */
+    private final int regionCount;
+    /** The region of each station */
+    private final int[] regions;
+    /** Whether the regions were found from the locations of the stations */
+    private final boolean geographic;
+    /** The flags of all edges per region, as bits */
+    private final long[][] flags;
+
+    /**
+     * Constructs the arc flags of a given station graph, with regions from
+     * the partition order of the graph.
+     *
+     * @param network the network of the graph
+     * @param graph a given station graph
+     * @param regionCount the number of regions
+     * @throws IllegalRequestException if the number of regions is not
+     * positive
+     */
+    public ArcFlags(Network network, StationGraph graph, int regionCount) throws IllegalRequestException {
+        this(graph, new Partition(network, graph), regionCount);
+    }
+
+    /**
+     * Constructs the arc flags of a given station graph, with regions from a
+     * given partition order.
+     *
+     * @param graph a given station graph
+     * @param partition the partition order of the graph
+     * @param regionCount the number of regions
+     * @throws IllegalRequestException if the number of regions is not
+     * positive
+     */
+    public ArcFlags(StationGraph graph, Partition partition, int regionCount) throws IllegalRequestException {
+        if (regionCount <= 0) {
+            throw new IllegalRequestException("ArcFlags: region count is not positive");
+        }
+        stationCount = graph.getStationCount();
+        edgeCount = graph.getEdgeCount();
+        this.regionCount = Math.max(1, Math.min(regionCount, stationCount));
+        regions = new int[stationCount];
+        for (int v = 0; v < stationCount; v++) {
+            regions[v] = partition.getCell(v, this.regionCount);
+        }
+        geographic = partition.isGeographic();
+
+        flags = new long[this.regionCount][(edgeCount + 63) >>> 6];
+        ThreadLocal<int[]> buffers = ThreadLocal.withInitial(() -> new int[2 * stationCount]);
+        IntStream.range(0, this.regionCount).parallel().forEach(r -> flagRegion(graph, r, buffers.get()));
+    }
+
+    /**
+     * Computes the flags of a region.
+     *
+     * @param graph the station graph
+     * @param region the region
+     * @param buffer the distances and queue of the searches, of twice the
+     * number of stations
+     */
+    private void flagRegion(StationGraph graph, int region, int[] buffer) {
+        long[] bits = flags[region];
+        int n = stationCount;
+        for (int e = 0; e < edgeCount; e++) {
+            if (regions[graph.getHead(e)] == region) {
+                bits[e >>> 6] |= 1L << e;
+            }
+        }
+        for (int b = 0; b < n; b++) {
+            if (regions[b] != region || !isBoundary(graph, b)) {
+                continue;
+            }
+            // Search backward from the boundary station, flagging every edge one step closer
+            Arrays.fill(buffer, 0, n, -1);
+            int head = n;
+            int tail = n;
+            buffer[b] = 0;
+            buffer[tail++] = b;
+            while (head < tail) {
+                int v = buffer[head++];
+                for (int i = graph.getInBegin(v); i < graph.getInEnd(v); i++) {
+                    int e = graph.getInEdge(i);
+                    int u = graph.getTail(e);
+                    if (buffer[u] == -1) {
+                        buffer[u] = buffer[v] + 1;
+                        buffer[tail++] = u;
+                    }
+                    if (buffer[u] == buffer[v] + 1) {
+                        bits[e >>> 6] |= 1L << e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether a station is reached by an edge from another region.
+     *
+     * @param graph the station graph
+     * @param v the index of a station
+     * @return whether the station is a boundary station of its region
+     */
+    private boolean isBoundary(StationGraph graph, int v) {
+        for (int i = graph.getInBegin(v); i < graph.getInEnd(v); i++) {
+            if (regions[graph.getTail(graph.getInEdge(i))] != regions[v]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether an edge lies on a shortest route towards a region.
+     *
+     * @param edge the index of an edge
+     * @param region a region
+     * @return whether the edge is flagged for the region
+     */
+    public boolean isFlagged(int edge, int region) {
+        return (flags[region][edge >>> 6] & (1L << edge)) != 0;
+    }
+
+    /**
+     * Returns the region of a station.
+     *
+     * @param station the index of a station
+     * @return the region of the station
+     */
+    public int getRegion(int station) {
+        return regions[station];
+    }
+
+    /**
+     * Returns the number of regions.
+     *
+     * @return the number of regions
+     */
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    /**
+     * Returns whether the regions were found from the locations of the
+     * stations.
+     *
+     * @return whether the partition is geographic
+     */
+    public boolean isGeographic() {
+        return geographic;
+    }
+
+    /**
+     * Returns the share of flags that are set, over all edges and regions.
+     *
+     * @return the share of flags set between 0 and 1, or 0 if there are no
+     * edges
+     */
+    public double getFlagRatio() {
+        long set = 0;
+        for (long[] bits : flags) {
+            for (long word : bits) {
+                set = set + Long.bitCount(word);
+            }
+        }
+        return edgeCount == 0 ? 0 : (double) set / ((long) edgeCount * regionCount);
+    }
+
+    /**
+     * Returns whether the flags were built for a given station graph, as far
+     * as can be seen from the number of stations and edges.
+     *
+     * @param graph a given station graph
+     * @return whether the flags fit the graph
+     */
+    public boolean fits(StationGraph graph) {
+        return graph.getStationCount() == stationCount && graph.getEdgeCount() == edgeCount;
+    }
+
+    /**
+     * Returns the memory used by the flags and regions.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        return 8L * regionCount * ((edgeCount + 63) >>> 6) + 4L * stationCount;
+    }
+}
@@ -0,0 +1,137 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * stops, using arc flags to prune the search.
+ *
+ * The Breadth-First Search only follows edges that are flagged for the region
+ * of the destination, so that it stays close to the shortest routes once the
+ * destination is far away.
+ *
+ * @author sanderjurgens
+ */
+public class ArcFlagsPlanner extends Planner {
+
+    /** The graph of all stations in the network */
+    private final StationGraph graph;
+    /** The arc flags of the graph */
+    private final ArcFlags flags;
+
+    /** The edge along which each station was reached in the current query */
+    private final int[] tree;
+    /** The query in which each station was reached */
+    private final int[] reached;
+    /** The number of the current query */
+    private int query;
+    /** The queue of the search */
+    private final int[] queue;
+    /** The edges of a route, from destination to origin */
+    private final int[] path;
+    /** The number of stations visited by the last query */
+    private int visited;
+
+    /**
+     * Constructs an arc flags planner for a given network.
+     *
+     * @param network a given network
+     * @param graph the station graph of the network
+     * @param flags the arc flags of the graph
+     * @throws IllegalRequestException if the flags do not fit the graph
+     */
+    public ArcFlagsPlanner(Network network, StationGraph graph, ArcFlags flags) throws IllegalRequestException {
+        super(network);
+        if (!flags.fits(graph)) {
+            throw new IllegalRequestException("ArcFlagsPlanner: flags do not fit the graph");
+        }
+        this.graph = graph;
+        this.flags = flags;
+        tree = new int[graph.getStationCount()];
+        reached = new int[graph.getStationCount()];
+        queue = new int[graph.getStationCount()];
+        path = new int[graph.getStationCount()];
+    }
+
+    /**
+     * Returns the arc flags of this planner.
+     *
+     * @return the arc flags of this planner
+     */
+    public ArcFlags getFlags() {
+        return flags;
+    }
+
+    /**
+     * Returns the number of stations visited by the last query.
+     *
+     * @return the number of stations visited
+     */
+    public int getVisitedCount() {
+        return visited;
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of stops,
+     * and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the graph was built
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("ArcFlagsPlanner.findCompactRoute: stop is null");
+        }
+        if (!graph.isCurrent(network)) {
+            throw new IllegalRequestException("ArcFlagsPlanner.findCompactRoute: graph is out of date");
+        }
+        route.clear();
+        visited = 0;
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (origin == -1 || destination == -1 || origin == destination) {
+            return;
+        }
+
+        // Breadth-First Search along the edges flagged for the region of the destination
+        int region = flags.getRegion(destination);
+        query = query + 1;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = origin;
+        reached[origin] = query;
+        tree[origin] = -1;
+        while (head < tail && reached[destination] != query) {
+            int u = queue[head++];
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                int v = graph.getHead(e);
+                if (reached[v] != query && flags.isFlagged(e, region)) {
+                    reached[v] = query;
+                    // Prefer to reach the next station without changing line
+                    tree[v] = graph.findEdge(u, v, tree[u]);
+                    queue[tail++] = v;
+                }
+            }
+        }
+        visited = tail;
+        if (reached[destination] != query) {
+            return;
+        }
+
+        // Follow the edges back to the origin, then add them in order
+        int length = 0;
+        for (int v = destination; v != origin; v = graph.getTail(tree[v])) {
+            path[length++] = tree[v];
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            graph.addHop(route, path[i]);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.LineSet;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import com.sanderjurgens.metroplanner.model.StationSet;
+import java.util.Arrays;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * transfers, using bitsets of stations and lines.
+ *
+ * For every line the set of stations it serves, and for every station the set
+ * of lines serving it, are precomputed as bitsets. Each level of the
+ * Breadth-First Search then consists of word-wide OR and AND operations: the
+ * stations reachable with k transfers are the union of the stations on the
+ * lines entered with k transfers, and the lines entered with k + 1 transfers
+ * are those that intersect this union.
+ *
+ * One way lines that are not circular are the exception, since only the
+ * stations after the entry point can be reached. For these lines a bitset is
+ * precomputed for every suffix of the line, and the line may be entered again
+ * on a later level if this happens at an earlier stop.
+ *
+ * The bitsets are rebuilt automatically when the network has changed since
+ * they were last built.
+ *
+ * @author sanderjurgens
+ */
+public class BitsetTransfersPlanner extends Planner {
+
+    /** The version of the network when the bitsets were built */
+    private long version;
+    /** The number of edits of the network when the bitsets were built */
+    private long edits;
+    /** The number of stations in the network */
+    private int stationCount;
+    /** The number of lines in the network */
+    private int lineCount;
+    /** The number of words in a bitset of stations */
+    private int stationWords;
+
+    /** The indices of the stops on each line, in order */
+    private int[][] stops;
+    /** Whether each line can only be traveled from its entry point onwards */
+    private boolean[] directional;
+
+    /** The bitset of stations on each line */
+    private long[][] lineStations;
+    /** The bitset of lines on each station */
+    private long[][] stationLines;
+    /**
+     * The bitset of stations on each suffix of each directional line, or null
+     * for other lines
+     */
+    private long[][][] suffixStations;
+
+    /**
+     * Constructs a bitset based minimum transfer planner for a given network.
+     *
+     * @param network a given network
+     */
+    public BitsetTransfersPlanner(Network network) {
+        super(network);
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the bitsets for the network as it is now.
+     */
+    private void rebuild() {
+        version = network.getVersion();
+        edits = network.getEditCount();
+        StationSet staSet = network.getStationSet();
+        LineSet lineSet = network.getLineSet();
+        stationCount = staSet.getCount();
+        lineCount = lineSet.getCount();
+        stationWords = words(stationCount);
+        int lineWords = words(lineCount);
+
+        stops = new int[lineCount][];
+        directional = new boolean[lineCount];
+        lineStations = new long[lineCount][stationWords];
+        stationLines = new long[stationCount][lineWords];
+        suffixStations = new long[lineCount][][];
+        for (int l = 0; l < lineCount; l++) {
+            Line line = lineSet.get(l);
+            stops[l] = new int[line.getCount()];
+            for (int p = 0; p < line.getCount(); p++) {
+                int s = staSet.getIndex(line.getStop(p));
+                stops[l][p] = s;
+                set(lineStations[l], s);
+                set(stationLines[s], l);
+            }
+            // Only stations after the entry point are reachable on these lines
+            directional[l] = line.isOneWay() && !line.isCircular();
+            if (directional[l]) {
+                suffixStations[l] = new long[line.getCount()][];
+                long[] suffix = new long[stationWords];
+                for (int p = line.getCount() - 1; p >= 0; p--) {
+                    set(suffix, stops[l][p]);
+                    suffixStations[l][p] = suffix.clone();
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of
+     * transfers, and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("BitsetTransfersPlanner.findCompactRoute: stop is null");
+        }
+        route.clear();
+        if (version != network.getVersion() || edits != network.getEditCount()) {
+            rebuild();
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (from == to || origin == -1 || destination == -1) {
+            return;
+        }
+
+        // Every entry onto a line is recorded with its entry point and the entry it came from
+        int capacity = lineCount;
+        for (int l = 0; l < lineCount; l++) {
+            if (directional[l]) {
+                capacity = capacity + stops[l].length;
+            }
+        }
+        int[] entryLine = new int[capacity];
+        int[] entryPos = new int[capacity];
+        int[] entryParent = new int[capacity];
+        int entries = 0;
+        // The earliest entry point used so far on each line, or -1 if never entered
+        int[] entered = new int[lineCount];
+        Arrays.fill(entered, -1);
+
+        // The origin's lines form the first level
+        for (int l = 0; l < lineCount; l++) {
+            if (get(stationLines[origin], l)) {
+                entered[l] = position(l, origin);
+                entryLine[entries] = l;
+                entryPos[entries] = entered[l];
+                entryParent[entries] = -1;
+                entries = entries + 1;
+            }
+        }
+
+        // Expand level by level until the destination is reachable
+        long[] reach = new long[stationWords];
+        int levelStart = 0;
+        int target = -1;
+        while (levelStart < entries && target == -1) {
+            int levelEnd = entries;
+            // Union of the stations that are reachable on this level
+            Arrays.fill(reach, 0L);
+            for (int e = levelStart; e < levelEnd; e++) {
+                or(reach, reachable(entryLine[e], entryPos[e]));
+            }
+            if (get(reach, destination)) {
+                target = findEntry(levelStart, levelEnd, entryLine, entryPos, destination);
+                break;
+            }
+            // Enter all lines that intersect the reachable stations
+            for (int l = 0; l < lineCount; l++) {
+                int pos = -1;
+                if (directional[l]) {
+                    // Enter again only if an earlier stop on the line is reached
+                    int limit = entered[l] == -1 ? stops[l].length : entered[l];
+                    for (int p = 0; p < limit && pos == -1; p++) {
+                        if (get(reach, stops[l][p])) {
+                            pos = p;
+                        }
+                    }
+                } else if (entered[l] == -1) {
+                    int stop = firstCommon(lineStations[l], reach);
+                    if (stop != -1) {
+                        pos = position(l, stop);
+                    }
+                }
+                if (pos != -1) {
+                    entered[l] = pos;
+                    entryLine[entries] = l;
+                    entryPos[entries] = pos;
+                    entryParent[entries] = findEntry(levelStart, levelEnd, entryLine, entryPos, stops[l][pos]);
+                    entries = entries + 1;
+                }
+            }
+            levelStart = levelEnd;
+        }
+
+        // Path reconstruction if a route is found
+        if (target != -1) {
+            // Follow parent pointers, adding a segment per line in reverse
+            Station exit = to;
+            for (int e = target; e != -1; e = entryParent[e]) {
+                Line line = network.getLineSet().get(entryLine[e]);
+                int t = line.getIndex(exit);
+                route.add(entryLine[e], entryPos[e], t, isForward(line, entryPos[e], t));
+                exit = line.getStop(entryPos[e]);
+            }
+            route.reverseOrder();
+        }
+    }
+
+    /**
+     * Returns the bitset of stations that are reachable on a line from a given
+     * entry point.
+     *
+     * @param line the index of a line
+     * @param pos the position of the entry point on the line
+     * @return the bitset of stations that are reachable
+     */
+    private long[] reachable(int line, int pos) {
+        if (directional[line]) {
+            return suffixStations[line][pos];
+        }
+        return lineStations[line];
+    }
+
+    /**
+     * Returns an entry of the given level from which a given station can be
+     * reached.
+     *
+     * @param start the first entry of the level
+     * @param end the entry after the last entry of the level
+     * @param entryLine the line of each entry
+     * @param entryPos the position of the entry point of each entry
+     * @param station the index of the station to reach
+     * @return an entry from which the station can be reached, or -1 if none
+     */
+    private int findEntry(int start, int end, int[] entryLine, int[] entryPos, int station) {
+        for (int e = start; e < end; e++) {
+            if (get(reachable(entryLine[e], entryPos[e]), station)) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position of a station on a line.
+     *
+     * @param line the index of a line
+     * @param station the index of a station
+     * @return the position of the station on the line, or -1 if it isn't on
+     * the line
+     */
+    private int position(int line, int station) {
+        for (int p = 0; p < stops[line].length; p++) {
+            if (stops[line][p] == station) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of words needed for a bitset of a given size.
+     *
+     * @param size the number of bits
+     * @return the number of words
+     */
+    private static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Sets a bit in a bitset.
+     *
+     * @param bits a given bitset
+     * @param i the index of the bit
+     */
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * Returns whether a bit is set in a bitset.
+     *
+     * @param bits a given bitset
+     * @param i the index of the bit
+     * @return whether the bit is set
+     */
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Adds all bits of a bitset to another bitset.
+     *
+     * @param bits the bitset to add to
+     * @param other the bitset to add
+     */
+    private static void or(long[] bits, long[] other) {
+        for (int w = 0; w < bits.length; w++) {
+            bits[w] |= other[w];
+        }
+    }
+
+    /**
+     * Returns the first bit that is set in both bitsets.
+     *
+     * @param a a given bitset
+     * @param b another bitset of the same size
+     * @return the index of the first common bit, or -1 if there is none
+     */
+    private static int firstCommon(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++) {
+            long common = a[w] & b[w];
+            if (common != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(common);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns false, since removing a stop from a line leaves the lines of
+     * every other station, and the stops they connect, as they were.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isImprovedByRemovedStops() {
+        return false;
+    }
+}
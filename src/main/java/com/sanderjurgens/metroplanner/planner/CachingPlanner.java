@@ -0,0 +1,114 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Station;
+
+/**
+ * A planner that remembers the routes found by another planner in a shared
+ * {@link RouteCache}.
+ *
+ * Routes are cached for the version of the network at the time of the query,
+ * so that modifying the network makes all earlier routes unusable. The cache
+ * listens to edits of the network, and invalidates only the routes that ride
+ * along a removed connection, unless the other planner can find better routes
+ * once a stop is removed; then all of its routes are invalidated. Finding a
+ * cached route allocates no memory and does not wait for the other planner.
+ * Queries that are not cached are passed to the other planner one at a time,
+ * such that this planner may be used by many threads at once.
+ *
+ * The cached routes are shared between all callers, and must not be modified.
+ *
+ * @author sanderjurgens
+ */
+public class CachingPlanner extends Planner {
+
+    /** The planner that finds the routes */
+    private final Planner planner;
+    /** The cache of the routes found */
+    private final RouteCache cache;
+    /** The identifier of this planner in the cache */
+    private final int id;
+
+    /**
+     * Constructs a caching planner around a given planner.
+     *
+     * @param planner the planner that finds the routes
+     * @param cache the cache of the routes found
+     * @throws IllegalRequestException if the cache has no identifiers left
+     */
+    public CachingPlanner(Planner planner, RouteCache cache) throws IllegalRequestException {
+        super(planner.network);
+        this.planner = planner;
+        this.cache = cache;
+        id = cache.newPlannerId(planner.isImprovedByRemovedStops());
+        network.addListener(cache);
+    }
+
+    /**
+     * Returns the planner that finds the routes.
+     *
+     * @return the planner that finds the routes
+     */
+    public Planner getPlanner() {
+        return planner;
+    }
+
+    /**
+     * Returns the cache of the routes found.
+     *
+     * @return the cache of the routes found
+     */
+    public RouteCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Finds a route from origin to destination, from the cache or by the other
+     * planner.
+     *
+     * @param from origin
+     * @param to destination
+     * @return a route from origin to destination
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    @Override
+    public Route findRoute(Station from, Station to) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("CachingPlanner.findRoute: stop is null");
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (origin == -1 || destination == -1) {
+            synchronized (planner) {
+                return planner.findRoute(from, to);
+            }
+        }
+        // Read the version and edits first, such that a concurrent edit makes the route stale
+        long version = network.getVersion();
+        long edits = network.getEditCount();
+        Route route = cache.get(version, id, origin, destination);
+        if (route == null) {
+            synchronized (planner) {
+                route = planner.findRoute(from, to);
+            }
+            cache.put(network, version, edits, id, origin, destination, route);
+        }
+        return route;
+    }
+
+    /**
+     * Finds a route from origin to destination by the other planner, and
+     * stores it in a given compact route. Compact routes are not cached.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route) {
+        synchronized (planner) {
+            planner.findCompactRoute(from, to, route);
+        }
+    }
+}
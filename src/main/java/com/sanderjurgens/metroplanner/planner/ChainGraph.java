@@ -0,0 +1,268 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+
+/**
+ * A compressed station graph, in which every chain of plain stops between two
+ * core stations is a single weighted edge.
+ *
+ * A plain stop lies on a single line, is not a terminal of it, and only
+ * connects its two neighbours on that line. All other stations, such as
+ * transfer stations and terminals, are core stations. If a circular line
+ * consists of plain stops only, its first stop in the graph is taken as a
+ * core station. Every chain is stored by the core station where it begins, its
+ * first edge in the station graph and its number of stops; the plain stops on
+ * it are found again by following the line from the first edge.
+ *
+ * @author sanderjurgens
+ */
+public class ChainGraph {
+
+    /** The station graph that is compressed */
+    private final StationGraph graph;
+    /** Whether each station is a core station */
+    private final boolean[] core;
+    /** The number of core stations */
+    private final int coreCount;
+
+    /** The first chain of each station, and the number of chains at the end */
+    private final int[] chainStart;
+    /** The core station where each chain ends */
+    private final int[] chainHead;
+    /** The number of stops of each chain */
+    private final int[] chainWeight;
+    /** The first edge of each chain */
+    private final int[] chainFirst;
+
+    /**
+     * Constructs the compressed graph of a given station graph.
+     *
+     * @param graph a given station graph
+     */
+    public ChainGraph(StationGraph graph) {
+        this.graph = graph;
+        int n = graph.getStationCount();
+        core = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            core[v] = !isPlain(v);
+        }
+
+        // Circular lines without core stations get one
+        boolean[] covered = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            if (core[v]) {
+                for (int e = graph.getOutBegin(v); e < graph.getOutEnd(v); e++) {
+                    for (int f = e; !core[graph.getHead(f)]; f = nextEdge(f)) {
+                        covered[graph.getHead(f)] = true;
+                    }
+                }
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            if (!core[v] && !covered[v]) {
+                core[v] = true;
+                for (int e = graph.getOutBegin(v); e < graph.getOutEnd(v); e++) {
+                    for (int f = e; !core[graph.getHead(f)]; f = nextEdge(f)) {
+                        covered[graph.getHead(f)] = true;
+                    }
+                }
+            }
+        }
+
+        // Follow every edge out of a core station to the end of its chain
+        int count = 0;
+        chainStart = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            if (core[v]) {
+                count++;
+                chainStart[v + 1] = graph.getOutEnd(v) - graph.getOutBegin(v);
+            }
+            chainStart[v + 1] += chainStart[v];
+        }
+        coreCount = count;
+        chainHead = new int[chainStart[n]];
+        chainWeight = new int[chainStart[n]];
+        chainFirst = new int[chainStart[n]];
+        for (int v = 0; v < n; v++) {
+            if (core[v]) {
+                int c = chainStart[v];
+                for (int e = graph.getOutBegin(v); e < graph.getOutEnd(v); e++, c++) {
+                    int weight = 1;
+                    int f = e;
+                    while (!core[graph.getHead(f)]) {
+                        f = nextEdge(f);
+                        weight++;
+                    }
+                    chainHead[c] = graph.getHead(f);
+                    chainWeight[c] = weight;
+                    chainFirst[c] = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether a station is a plain stop: all its edges belong to one
+     * line, and it has one edge out and in per direction of the line, to and
+     * from two different neighbours if the line has two directions.
+     *
+     * @param v the index of a station
+     * @return whether the station is a plain stop
+     */
+    private boolean isPlain(int v) {
+        int out = graph.getOutEnd(v) - graph.getOutBegin(v);
+        int in = graph.getInEnd(v) - graph.getInBegin(v);
+        if (out == 0 || out != in || out > 2) {
+            return false;
+        }
+        int line = graph.getLine(graph.getOutBegin(v));
+        for (int e = graph.getOutBegin(v); e < graph.getOutEnd(v); e++) {
+            if (graph.getLine(e) != line || graph.getHead(e) == v) {
+                return false;
+            }
+        }
+        for (int i = graph.getInBegin(v); i < graph.getInEnd(v); i++) {
+            if (graph.getLine(graph.getInEdge(i)) != line) {
+                return false;
+            }
+        }
+        if (out == 1) {
+            // A one way line: the edge in must continue into the edge out
+            return graph.continues(graph.getInEdge(graph.getInBegin(v)), graph.getOutBegin(v));
+        }
+        int first = graph.getOutBegin(v);
+        return graph.getHead(first) != graph.getHead(first + 1)
+                && graph.isForward(first) != graph.isForward(first + 1);
+    }
+
+    /**
+     * Returns the edge that continues a given edge through the plain stop at
+     * its head.
+     *
+     * @param edge the index of an edge ending at a plain stop
+     * @return the index of the continuing edge
+     * @throws IllegalRequestException if the head of the edge is not a plain
+     * stop
+     */
+    public int nextEdge(int edge) throws IllegalRequestException {
+        int v = graph.getHead(edge);
+        for (int e = graph.getOutBegin(v); e < graph.getOutEnd(v); e++) {
+            if (graph.continues(edge, e)) {
+                return e;
+            }
+        }
+        throw new IllegalRequestException("ChainGraph.nextEdge: chain is broken");
+    }
+
+    /**
+     * Returns the edge that precedes a given edge through the plain stop at
+     * its tail.
+     *
+     * @param edge the index of an edge beginning at a plain stop
+     * @return the index of the preceding edge
+     * @throws IllegalRequestException if the tail of the edge is not a plain
+     * stop
+     */
+    public int previousEdge(int edge) throws IllegalRequestException {
+        int v = graph.getTail(edge);
+        for (int i = graph.getInBegin(v); i < graph.getInEnd(v); i++) {
+            if (graph.continues(graph.getInEdge(i), edge)) {
+                return graph.getInEdge(i);
+            }
+        }
+        throw new IllegalRequestException("ChainGraph.previousEdge: chain is broken");
+    }
+
+    /**
+     * Returns the station graph that is compressed.
+     *
+     * @return the station graph
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns whether a station is a core station.
+     *
+     * @param station the index of a station
+     * @return whether the station is a core station
+     */
+    public boolean isCore(int station) {
+        return core[station];
+    }
+
+    /**
+     * Returns the number of core stations.
+     *
+     * @return the number of core stations
+     */
+    public int getCoreCount() {
+        return coreCount;
+    }
+
+    /**
+     * Returns the number of chains.
+     *
+     * @return the number of chains
+     */
+    public int getChainCount() {
+        return chainHead.length;
+    }
+
+    /**
+     * Returns the first chain of a core station.
+     *
+     * @param station the index of a core station
+     * @return the index of the first chain
+     */
+    public int getChainBegin(int station) {
+        return chainStart[station];
+    }
+
+    /**
+     * Returns the chain after the last chain of a core station.
+     *
+     * @param station the index of a core station
+     * @return the index after the last chain
+     */
+    public int getChainEnd(int station) {
+        return chainStart[station + 1];
+    }
+
+    /**
+     * Returns the core station where a chain ends.
+     *
+     * @param chain the index of a chain
+     * @return the index of the station
+     */
+    public int getChainHead(int chain) {
+        return chainHead[chain];
+    }
+
+    /**
+     * Returns the number of stops of a chain.
+     *
+     * @param chain the index of a chain
+     * @return the number of stops
+     */
+    public int getChainWeight(int chain) {
+        return chainWeight[chain];
+    }
+
+    /**
+     * Returns the first edge of a chain.
+     *
+     * @param chain the index of a chain
+     * @return the index of the edge in the station graph
+     */
+    public int getChainFirst(int chain) {
+        return chainFirst[chain];
+    }
+
+    @Override
+    public String toString() {
+        return "ChainGraph[" + coreCount + " of " + graph.getStationCount() + " stations, "
+                + chainHead.length + " of " + graph.getEdgeCount() + " edges]";
+    }
+}
@@ -0,0 +1,232 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * stops, searching only the core stations of a compressed graph.
+ *
+ * A plain origin first rides its line in both directions to the nearest core
+ * stations, and a plain destination is reached from the nearest core stations
+ * before it on its lines. In between, a Dijkstra search runs over the core
+ * stations, with every chain of plain stops as a single edge weighted by its
+ * number of stops. The chains are expanded into their stops again when the
+ * route is built.
+ *
+ * @author sanderjurgens
+ */
+public class ChainPlanner extends Planner {
+
+    /** The compressed graph of the stations */
+    private final ChainGraph chains;
+    /** The graph of all stations in the network */
+    private final StationGraph graph;
+
+    /** The queue of the search */
+    private final IntHeap heap;
+    /** The distance of each core station from the origin */
+    private final int[] distances;
+    /** The chain along which each core station was reached, or -1 minus the seed */
+    private final int[] parents;
+    /** The query in which each core station was reached */
+    private final int[] reached;
+    /** The number of the current query */
+    private int query;
+
+    /** The core station, distance and first edge of each seed from the origin */
+    private final int[] seeds;
+    /** The core station, distance and first edge of each way into the destination */
+    private final int[] exits;
+    /** The chains of a route, from destination to origin */
+    private final int[] path;
+
+    /**
+     * Constructs a chain planner for a given network.
+     *
+     * @param network a given network
+     * @param chains the compressed graph of the station graph of the network
+     */
+    public ChainPlanner(Network network, ChainGraph chains) {
+        super(network);
+        this.chains = chains;
+        graph = chains.getGraph();
+        int n = graph.getStationCount();
+        heap = new IntHeap(n);
+        distances = new int[n];
+        parents = new int[n];
+        reached = new int[n];
+        seeds = new int[6];
+        exits = new int[6];
+        path = new int[n];
+    }
+
+    /**
+     * Returns the compressed graph of this planner.
+     *
+     * @return the compressed graph of this planner
+     */
+    public ChainGraph getChains() {
+        return chains;
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of stops,
+     * and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the graph was built
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("ChainPlanner.findCompactRoute: stop is null");
+        }
+        if (!graph.isCurrent(network)) {
+            throw new IllegalRequestException("ChainPlanner.findCompactRoute: graph is out of date");
+        }
+        route.clear();
+        int s = network.getStationSet().getIndex(from);
+        int t = network.getStationSet().getIndex(to);
+        if (s == -1 || t == -1 || s == t) {
+            return;
+        }
+
+        // Ride from a plain origin to the nearest core stations, or straight to the destination
+        int best = Integer.MAX_VALUE;
+        int direct = -1;
+        int seedCount = 0;
+        if (chains.isCore(s)) {
+            seeds[0] = s;
+            seeds[1] = 0;
+            seeds[2] = -1;
+            seedCount = 1;
+        } else {
+            for (int e = graph.getOutBegin(s); e < graph.getOutEnd(s); e++) {
+                int f = e;
+                int weight = 1;
+                while (graph.getHead(f) != t && !chains.isCore(graph.getHead(f))) {
+                    f = chains.nextEdge(f);
+                    weight++;
+                }
+                if (graph.getHead(f) == t) {
+                    if (weight < best) {
+                        best = weight;
+                        direct = e;
+                    }
+                } else {
+                    seeds[3 * seedCount] = graph.getHead(f);
+                    seeds[3 * seedCount + 1] = weight;
+                    seeds[3 * seedCount + 2] = e;
+                    seedCount++;
+                }
+            }
+        }
+
+        // Find the core stations from which the destination is reached
+        int exitCount = 0;
+        if (chains.isCore(t)) {
+            exits[0] = t;
+            exits[1] = 0;
+            exits[2] = -1;
+            exitCount = 1;
+        } else {
+            for (int i = graph.getInBegin(t); i < graph.getInEnd(t); i++) {
+                int f = graph.getInEdge(i);
+                int weight = 1;
+                while (!chains.isCore(graph.getTail(f))) {
+                    f = chains.previousEdge(f);
+                    weight++;
+                }
+                exits[3 * exitCount] = graph.getTail(f);
+                exits[3 * exitCount + 1] = weight;
+                exits[3 * exitCount + 2] = f;
+                exitCount++;
+            }
+        }
+
+        // Dijkstra search over the core stations
+        query = query + 1;
+        heap.clear();
+        for (int i = 0; i < seedCount; i++) {
+            reach(seeds[3 * i], seeds[3 * i + 1], -1 - i);
+        }
+        int last = -1;
+        int exit = -1;
+        while (!heap.isEmpty() && heap.peekKey() < best) {
+            int u = heap.poll();
+            for (int i = 0; i < exitCount; i++) {
+                if (exits[3 * i] == u && distances[u] + exits[3 * i + 1] < best) {
+                    best = distances[u] + exits[3 * i + 1];
+                    last = u;
+                    exit = i;
+                }
+            }
+            for (int c = chains.getChainBegin(u); c < chains.getChainEnd(u); c++) {
+                reach(chains.getChainHead(c), distances[u] + chains.getChainWeight(c), c);
+            }
+        }
+        if (best == Integer.MAX_VALUE) {
+            return;
+        }
+        if (last == -1) {
+            ride(route, direct, best);
+            return;
+        }
+
+        // Expand the seed, the chains and the exit into rides in order
+        int length = 0;
+        int u = last;
+        while (parents[u] >= 0) {
+            path[length++] = parents[u];
+            u = graph.getTail(chains.getChainFirst(parents[u]));
+        }
+        int seed = -1 - parents[u];
+        ride(route, seeds[3 * seed + 2], seeds[3 * seed + 1]);
+        for (int i = length - 1; i >= 0; i--) {
+            ride(route, chains.getChainFirst(path[i]), chains.getChainWeight(path[i]));
+        }
+        ride(route, exits[3 * exit + 2], exits[3 * exit + 1]);
+    }
+
+    /**
+     * Reaches a core station, unless it was already reached at a smaller
+     * distance.
+     *
+     * @param v the index of the station
+     * @param distance the distance at which it is reached
+     * @param parent the chain along which it is reached, or -1 minus the seed
+     */
+    private void reach(int v, int distance, int parent) {
+        if (reached[v] == query && (distance >= distances[v] || !heap.contains(v))) {
+            return;
+        }
+        reached[v] = query;
+        distances[v] = distance;
+        parents[v] = parent;
+        heap.offer(v, distance);
+    }
+
+    /**
+     * Adds a number of rides along a line to a route, starting with a given
+     * edge and continuing through plain stops.
+     *
+     * @param route the compact route to add the rides to
+     * @param first the index of the first edge, or -1 for none
+     * @param count the number of rides
+     */
+    private void ride(CompactRoute route, int first, int count) {
+        int e = first;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                e = chains.nextEdge(e);
+            }
+            graph.addHop(route, e);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.Network;
+import java.util.Arrays;
+
+/**
+ * A planned route in compact form, consisting of segments that are stored as
+ * parallel arrays of primitives.
+ *
+ * Each segment is given by the index of its line in the network, the positions
+ * on the line where it begins and ends, and the direction of travel. The number
+ * of transfers and stops can be computed without creating any objects, and the
+ * equivalent {@link Route} is only created when it is requested.
+ *
+ * A compact route can be filled by a planner again and again, such that no
+ * memory is allocated once its arrays are large enough.
+ *
+ * @author sanderjurgens
+ */
+public class CompactRoute {
+
+    /** Direction of travel towards the last stop of a line */
+    public static final int FORWARD = 1;
+    /** Direction of travel towards the first stop of a line */
+    public static final int BACKWARD = -1;
+
+    /** The network of the lines in the route */
+    private final Network network;
+
+    /** The line of each segment */
+    private int[] lines;
+    /** The position on the line where each segment begins */
+    private int[] from;
+    /** The position on the line where each segment ends */
+    private int[] to;
+    /** The direction of travel of each segment */
+    private int[] directions;
+
+    /** The number of segments in the route */
+    private int count;
+
+    /** The equivalent route, or null if it was not requested yet */
+    private Route route;
+
+    /**
+     * Constructs an empty compact route in a given network.
+     *
+     * @param network the network of the lines in the route
+     */
+    public CompactRoute(Network network) {
+        this.network = network;
+        lines = new int[4];
+        from = new int[4];
+        to = new int[4];
+        directions = new int[4];
+        count = 0;
+    }
+
+    /**
+     * Returns the network of the lines in this route.
+     *
+     * @return the network of the lines in this route
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * Returns the number of segments in this route.
+     *
+     * @return the number of segments in this route
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns whether this route is empty.
+     *
+     * @return whether this route is empty
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Returns the index of the line of a given segment.
+     *
+     * @param i the index of a segment
+     * @return the index of the line of the segment
+     */
+    public int getLine(int i) {
+        return lines[i];
+    }
+
+    /**
+     * Returns the position on the line where a given segment begins.
+     *
+     * @param i the index of a segment
+     * @return the position where the segment begins
+     */
+    public int getFrom(int i) {
+        return from[i];
+    }
+
+    /**
+     * Returns the position on the line where a given segment ends.
+     *
+     * @param i the index of a segment
+     * @return the position where the segment ends
+     */
+    public int getTo(int i) {
+        return to[i];
+    }
+
+    /**
+     * Returns the direction of travel of a given segment.
+     *
+     * @param i the index of a segment
+     * @return {@link #FORWARD} or {@link #BACKWARD}
+     */
+    public int getDirection(int i) {
+        return directions[i];
+    }
+
+    /**
+     * Returns the number of transfers in this route.
+     *
+     * @return the number of transfers in this route
+     */
+    public int getTransfers() {
+        return Math.max(count - 1, 0);
+    }
+
+    /**
+     * Returns the number of stops traveled along this route.
+     *
+     * @return the number of stops traveled along this route
+     */
+    public int getStops() {
+        int stops = 0;
+        for (int i = 0; i < count; i++) {
+            int length = network.getLineSet().get(lines[i]).getCount();
+            stops = stops + Math.floorMod(directions[i] * (to[i] - from[i]), length);
+        }
+        return stops;
+    }
+
+    /**
+     * Removes all segments from this route.
+     */
+    public void clear() {
+        count = 0;
+        route = null;
+    }
+
+    /**
+     * Adds a segment to the end of this route.
+     *
+     * @param line the index of the line of the segment
+     * @param begin the position on the line where the segment begins
+     * @param end the position on the line where the segment ends
+     * @param forward whether the direction is towards the last stop of the line
+     */
+    public void add(int line, int begin, int end, boolean forward) {
+        if (count == lines.length) {
+            int capacity = 2 * lines.length;
+            lines = Arrays.copyOf(lines, capacity);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            directions = Arrays.copyOf(directions, capacity);
+        }
+        lines[count] = line;
+        from[count] = begin;
+        to[count] = end;
+        directions[count] = forward ? FORWARD : BACKWARD;
+        count = count + 1;
+        route = null;
+    }
+
+    /**
+     * Adds a ride between two consecutive stops to the end of this route. The
+     * last segment is extended if it ends at the same stop, on the same line
+     * and in the same direction, otherwise a new segment is added.
+     *
+     * @param line the index of the line of the ride
+     * @param begin the position on the line where the ride begins
+     * @param end the position on the line where the ride ends
+     * @param forward whether the direction is towards the last stop of the line
+     */
+    public void addHop(int line, int begin, int end, boolean forward) {
+        int last = count - 1;
+        if (last >= 0 && lines[last] == line && to[last] == begin
+                && directions[last] == (forward ? FORWARD : BACKWARD)) {
+            to[last] = end;
+            route = null;
+        } else {
+            add(line, begin, end, forward);
+        }
+    }
+
+    /**
+     * Reverses the order of the segments in this route, without changing the
+     * segments themselves. This is useful for planners that find the segments
+     * from destination to origin.
+     */
+    public void reverseOrder() {
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            swap(lines, i, j);
+            swap(from, i, j);
+            swap(to, i, j);
+            swap(directions, i, j);
+        }
+        route = null;
+    }
+
+    /**
+     * Returns the equivalent route, creating it the first time it is requested.
+     *
+     * @return the route consisting of the segments of this compact route
+     * @throws IllegalRequestException if a segment does not fit its line
+     */
+    public Route toRoute() throws IllegalRequestException {
+        if (route == null) {
+            route = new Route();
+            for (int i = 0; i < count; i++) {
+                Line line = network.getLineSet().get(lines[i]);
+                boolean forward = directions[i] == FORWARD;
+                RouteSegment segment = new RouteSegment(line, line.getStop(from[i]), line.getStop(to[i]),
+                        forward ? line.getTerminalB() : line.getTerminalA());
+                // Passing the terminal means using the circular nature of the line
+                segment.setCircular(forward ? to[i] < from[i] : from[i] < to[i]);
+                route.append(segment);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Swaps two elements of an array.
+     *
+     * @param array a given array
+     * @param i the index of an element
+     * @param j the index of another element
+     */
+    private static void swap(int[] array, int i, int j) {
+        int element = array[i];
+        array[i] = array[j];
+        array[j] = element;
+    }
+}
@@ -0,0 +1,328 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An index of the strongly connected components of a station graph, that
+ * answers whether one station can be reached from another in constant time.
+ *
+ * Within a component, every station can reach every other. The components
+ * form a directed acyclic graph, and for every component the index keeps the
+ * set of components it can reach as a row of bits. Without one way lines there
+ * is a component per connected part of the network, and the index is small.
+ *
+ * The components are found by an iterative version of Tarjan's algorithm, so
+ * that long lines do not overflow the stack. Tarjan's algorithm completes the
+ * components in reverse topological order, which is the order in which their
+ * rows are filled.
+ *
+ * The rows take a number of bits quadratic in the number of components, which
+ * is only large with many one way lines. Their size is limited to MAX_WORDS
+ * longs. Beyond that limit no rows are kept, and the index is no longer exact:
+ * it only denies a station that lies in another weakly connected part of the
+ * network, or outside the interval of components that the origin reaches in
+ * topological order. Every reachable station is still allowed, so planners
+ * that prune with the index stay correct, but pruning is partial for such
+ * large condensations: a query to an unreachable station inside the interval
+ * runs the full search.
+ *
+ * @author sanderjurgens
+ */
+public class ComponentIndex {
+
+    /** The default maximum number of longs in the rows of reachable components */
+    public static final long MAX_WORDS = 1L << 24;
+
+    /** The shared index of each network, for its current version and edits */
+    private static final Map<Network, ComponentIndex> INDICES = new WeakHashMap<>();
+
+    /** The version of the network the index was built for */
+    private final long version;
+    /** The number of edits of the network the index was built for */
+    private final long edits;
+    /** The number of components */
+    private final int componentCount;
+    /** The component of each station, numbered in reverse topological order */
+    private final int[] components;
+    /** The number of longs per row of reachable components */
+    private final int words;
+    /** The reachable components of each component, as rows of bits, or null if they are too large */
+    private final long[] reach;
+    /** The weakly connected part of each component */
+    private final int[] parts;
+    /** The lowest component reachable from each component */
+    private final int[] lowest;
+
+    /**
+     * Returns the component index of the network as it is now, shared by all
+     * planners of the network and rebuilt after the network has changed.
+     *
+     * @param network a given network
+     * @return the component index of the network
+     */
+    public static ComponentIndex of(Network network) {
+        synchronized (INDICES) {
+            ComponentIndex index = INDICES.get(network);
+            if (index == null || !index.isCurrent(network)) {
+                index = new ComponentIndex(network);
+                INDICES.put(network, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Constructs the component index of a given network, with the default
+     * limit on the size of its rows.
+     *
+     * @param network a given network
+     */
+    public ComponentIndex(Network network) {
+        this(network, MAX_WORDS);
+    }
+
+    /**
+     * Constructs the component index of a given network, with a given limit
+     * on the size of its rows.
+     *
+     * @param network a given network
+     * @param maxWords the maximum number of longs in the rows of reachable
+     * components
+     * @throws IllegalRequestException if the limit is negative or larger than
+     * the maximum length of an array
+     */
+    public ComponentIndex(Network network, long maxWords) throws IllegalRequestException {
+        if (maxWords < 0 || maxWords > Integer.MAX_VALUE - 8) {
+            throw new IllegalRequestException("ComponentIndex: limit is out of range");
+        }
+        version = network.getVersion();
+        edits = network.getEditCount();
+        StationGraph graph = new StationGraph(network);
+        int n = graph.getStationCount();
+        components = new int[n];
+        componentCount = tarjan(graph);
+
+        // Group the stations by component
+        int[][] members = new int[componentCount][];
+        int[] sizes = new int[componentCount];
+        for (int v = 0; v < n; v++) {
+            sizes[components[v]]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            members[c] = new int[sizes[c]];
+            sizes[c] = 0;
+        }
+        for (int v = 0; v < n; v++) {
+            members[components[v]][sizes[components[v]]++] = v;
+        }
+
+        // Label the weakly connected parts, and the lowest component each component reaches
+        parts = new int[componentCount];
+        lowest = new int[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            parts[c] = c;
+            lowest[c] = c;
+            for (int v : members[c]) {
+                for (int e = graph.getOutBegin(v); e < graph.getOutEnd(v); e++) {
+                    // Successors are completed earlier, so their labels are final
+                    int d = components[graph.getHead(e)];
+                    parts[find(c)] = find(d);
+                    lowest[c] = Math.min(lowest[c], lowest[d]);
+                }
+            }
+        }
+        for (int c = 0; c < componentCount; c++) {
+            parts[c] = find(c);
+        }
+
+        // Every component reaches itself and all that its successors reach
+        words = (componentCount + 63) >>> 6;
+        if ((long) componentCount * words > maxWords) {
+            reach = null;
+            return;
+        }
+        reach = new long[componentCount * words];
+        for (int c = 0; c < componentCount; c++) {
+            int row = c * words;
+            reach[row + (c >>> 6)] |= 1L << c;
+            for (int v : members[c]) {
+                for (int e = graph.getOutBegin(v); e < graph.getOutEnd(v); e++) {
+                    int d = components[graph.getHead(e)];
+                    if (d != c && (reach[row + (d >>> 6)] & (1L << d)) == 0) {
+                        // Successors are completed earlier, so their rows are final
+                        for (int w = 0; w < words; w++) {
+                            reach[row + w] |= reach[d * words + w];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the representative of the weakly connected part of a component,
+     * while the parts are being joined, and shortens the path to it.
+     *
+     * @param c a component
+     * @return the representative of its part
+     */
+    private int find(int c) {
+        while (parts[c] != c) {
+            parts[c] = parts[parts[c]];
+            c = parts[c];
+        }
+        return c;
+    }
+
+    /**
+     * Finds the strongly connected components of a graph with an iterative
+     * version of Tarjan's algorithm, and numbers them in order of completion.
+     *
+     * @param graph the station graph
+     * @return the number of components
+     */
+    private int tarjan(StationGraph graph) {
+        int n = graph.getStationCount();
+        int[] order = new int[n];
+        int[] low = new int[n];
+        int[] next = new int[n];
+        int[] stack = new int[n];
+        int[] calls = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(order, -1);
+        int counter = 0;
+        int count = 0;
+        int top = 0;
+        for (int root = 0; root < n; root++) {
+            if (order[root] != -1) {
+                continue;
+            }
+            int depth = 0;
+            calls[depth++] = root;
+            order[root] = counter;
+            low[root] = counter++;
+            next[root] = graph.getOutBegin(root);
+            stack[top++] = root;
+            onStack[root] = true;
+            while (depth > 0) {
+                int v = calls[depth - 1];
+                if (next[v] < graph.getOutEnd(v)) {
+                    int w = graph.getHead(next[v]++);
+                    if (order[w] == -1) {
+                        // Descend into an unvisited station
+                        order[w] = counter;
+                        low[w] = counter++;
+                        next[w] = graph.getOutBegin(w);
+                        stack[top++] = w;
+                        onStack[w] = true;
+                        calls[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+                // All edges are done: complete the component if v is its root
+                if (low[v] == order[v]) {
+                    int w;
+                    do {
+                        w = stack[--top];
+                        onStack[w] = false;
+                        components[w] = count;
+                    } while (w != v);
+                    count++;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = calls[depth - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether the index was built for a given network as it is now.
+     *
+     * @param network a given network
+     * @return whether the index is current
+     */
+    public boolean isCurrent(Network network) {
+        return network.getVersion() == version && network.getEditCount() == edits;
+    }
+
+    /**
+     * Returns whether the index keeps the reachable components of every
+     * component, so it answers exactly, rather than only denying stations of
+     * other parts and outside the reachable interval.
+     *
+     * @return whether the index is exact
+     */
+    public boolean isExact() {
+        return reach != null;
+    }
+
+    /**
+     * Returns the number of strongly connected components.
+     *
+     * @return the number of components
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Returns the component of a station.
+     *
+     * @param station the index of a station
+     * @return the component of the station
+     */
+    public int getComponent(int station) {
+        return components[station];
+    }
+
+    /**
+     * Returns whether one station can be reached from another. If the index is
+     * not exact, it may return true for a station that cannot be reached, but
+     * never false for a station that can.
+     *
+     * @param from the index of the origin
+     * @param to the index of the destination
+     * @return whether the destination can be reached
+     */
+    public boolean canReach(int from, int to) {
+        int c = components[from];
+        int d = components[to];
+        if (reach == null) {
+            return parts[c] == parts[d] && lowest[c] <= d && d <= c;
+        }
+        return (reach[c * words + (d >>> 6)] & (1L << d)) != 0;
+    }
+
+    /**
+     * Returns whether a station can lie on a route from an origin to a
+     * destination.
+     *
+     * @param station the index of a station
+     * @param from the index of the origin
+     * @param to the index of the destination
+     * @return whether the station is reachable from the origin and can reach
+     * the destination
+     */
+    public boolean isRelevant(int station, int from, int to) {
+        return canReach(from, station) && canReach(station, to);
+    }
+
+    /**
+     * Returns the memory used by the index.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        return (reach == null ? 0 : 8L * reach.length) + 4L * components.length + 8L * componentCount;
+    }
+}
@@ -0,0 +1,295 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import com.sanderjurgens.metroplanner.model.Timetable;
+
+/**
+ * Returns the route from origin to destination with the earliest arrival,
+ * when departing at a given time, using the Connection Scan Algorithm (CSA)
+ * over a timetable.
+ *
+ * The connections of the timetable are scanned once, in order of departure,
+ * from the first one after the departure time until one departs after the
+ * earliest arrival at the destination found so far. A connection can be used
+ * if its trip was boarded before, or if its station is reached in time to
+ * board it. Staying on a trip is free, but boarding another trip at a station
+ * other than the origin takes the transfer time of the station. Every station
+ * keeps the connection where its trip was boarded and the connection that
+ * arrived, from which the route is found back.
+ *
+ * The planner answers {@link #findCompactRoute(Station, Station, CompactRoute)}
+ * for a departure time that can be set, and {@link #findTimedRoute(Station,
+ * Station, int)} with the times of every segment. A query fails once the
+ * network has changed since the timetable was read.
+ *
+ * @author sanderjurgens
+ */
+public class ConnectionScanPlanner extends Planner {
+
+    /** A time later than any arrival */
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    /** The timetable that is scanned */
+    private final Timetable timetable;
+    /** The transfer time of each station, in seconds */
+    private final int[] transferTimes;
+
+    /** The earliest arrival at each station */
+    private final int[] arrivals;
+    /** The connection where the trip to each station was boarded */
+    private final int[] enters;
+    /** The connection that arrived at each station */
+    private final int[] exits;
+    /** The query in which each station was reached */
+    private final int[] reached;
+    /** The connection where each trip was boarded */
+    private final int[] boarded;
+    /** The query in which each trip was boarded */
+    private final int[] onTrip;
+    /** The number of the current query */
+    private int query;
+    /** The connections where the legs of a route were boarded, from destination to origin */
+    private final int[] legEnters;
+    /** The connections where the legs of a route arrived, from destination to origin */
+    private final int[] legExits;
+
+    /** The departure time used for routes without time */
+    private int departureTime;
+    /** The arrival of the route found by the last query */
+    private int arrivalTime;
+    /** The number of connections scanned by the last query */
+    private int scannedCount;
+
+    /**
+     * Constructs a connection scan planner for a given timetable.
+     *
+     * @param network a given network
+     * @param timetable the timetable of the network
+     * @throws IllegalRequestException if the timetable is not of the network
+     */
+    public ConnectionScanPlanner(Network network, Timetable timetable) throws IllegalRequestException {
+        super(network);
+        if (timetable.getNetwork() != network) {
+            throw new IllegalRequestException("ConnectionScanPlanner: timetable is not of the network");
+        }
+        this.timetable = timetable;
+        int n = network.getStationSet().getCount();
+        transferTimes = new int[n];
+        for (int v = 0; v < n; v++) {
+            transferTimes[v] = network.getStationSet().get(v).getTransferTime();
+        }
+        arrivals = new int[n];
+        enters = new int[n];
+        exits = new int[n];
+        reached = new int[n];
+        boarded = new int[timetable.getTripCount()];
+        onTrip = new int[timetable.getTripCount()];
+        query = 0;
+        legEnters = new int[n];
+        legExits = new int[n];
+        arrivalTime = -1;
+    }
+
+    /**
+     * Sets the departure time used for routes without time.
+     *
+     * @param time the departure time in seconds since midnight
+     */
+    public void setDepartureTime(int time) {
+        departureTime = time;
+    }
+
+    /**
+     * Returns the departure time used for routes without time.
+     *
+     * @return the departure time in seconds since midnight
+     */
+    public int getDepartureTime() {
+        return departureTime;
+    }
+
+    /**
+     * Finds a route from origin to destination with the earliest arrival when
+     * departing at the departure time that is set, and stores it in a given
+     * compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the timetable was read
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        route.clear();
+        int legs = scan(from, to, departureTime);
+        for (int i = legs - 1; i >= 0; i--) {
+            int enter = legEnters[i];
+            int trip = timetable.getTrip(enter);
+            route.add(timetable.getTripLine(trip), timetable.getDeparturePosition(enter),
+                    timetable.getArrivalPosition(legExits[i]), timetable.isTripForward(trip));
+        }
+    }
+
+    /**
+     * Finds a route from origin to destination with the earliest arrival when
+     * departing at a given time, of which every segment is timed.
+     *
+     * @param from origin
+     * @param to destination
+     * @param departure the departure time in seconds since midnight
+     * @return a route of {@link TimedRouteSegment}s, which is empty if the
+     * destination cannot be reached
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the timetable was read
+     */
+    public Route findTimedRoute(Station from, Station to, int departure) throws IllegalRequestException {
+        Route route = new Route();
+        int legs = scan(from, to, departure);
+        for (int i = legs - 1; i >= 0; i--) {
+            route.append(toSegment(network, timetable, legEnters[i], legExits[i]));
+        }
+        return route;
+    }
+
+    /**
+     * Scans the connections from a departure time, and collects the legs of
+     * the route with the earliest arrival.
+     *
+     * @param from origin
+     * @param to destination
+     * @param departure the departure time
+     * @return the number of legs, stored from destination to origin
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the timetable was read
+     */
+    private int scan(Station from, Station to, int departure) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("ConnectionScanPlanner.findCompactRoute: stop is null");
+        }
+        if (!timetable.isCurrent(network)) {
+            throw new IllegalRequestException("ConnectionScanPlanner.findCompactRoute: timetable is out of date");
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        scannedCount = 0;
+        arrivalTime = origin != -1 && origin == destination ? departure : -1;
+        if (origin == -1 || destination == -1 || origin == destination) {
+            return 0;
+        }
+
+        query = query + 1;
+        reached[origin] = query;
+        arrivals[origin] = departure;
+        int best = NEVER;
+        int count = timetable.getConnectionCount();
+        for (int c = timetable.getFirstConnection(departure); c < count; c++) {
+            if (timetable.getDepartureTime(c) >= best) {
+                break;
+            }
+            scannedCount++;
+            int trip = timetable.getTrip(c);
+            if (onTrip[trip] != query) {
+                // Board the trip if its station is reached in time
+                int v = timetable.getDepartureStation(c);
+                if (reached[v] != query) {
+                    continue;
+                }
+                int ready = v == origin ? arrivals[v] : arrivals[v] + transferTimes[v];
+                if (timetable.getDepartureTime(c) < ready) {
+                    continue;
+                }
+                onTrip[trip] = query;
+                boarded[trip] = c;
+            }
+            int w = timetable.getArrivalStation(c);
+            int arrival = timetable.getArrivalTime(c);
+            if (reached[w] != query || arrival < arrivals[w]) {
+                reached[w] = query;
+                arrivals[w] = arrival;
+                enters[w] = boarded[trip];
+                exits[w] = c;
+                if (w == destination) {
+                    best = arrival;
+                }
+            }
+        }
+        if (best == NEVER) {
+            return 0;
+        }
+
+        // Follow the legs back from the destination to the origin
+        arrivalTime = best;
+        int legs = 0;
+        for (int v = destination; v != origin; v = timetable.getDepartureStation(enters[v])) {
+            legEnters[legs] = enters[v];
+            legExits[legs] = exits[v];
+            legs++;
+        }
+        return legs;
+    }
+
+    /**
+     * Returns the timed segment of a leg, from the connection where its trip
+     * is boarded to the connection that arrives.
+     *
+     * @param network the network of the timetable
+     * @param timetable a timetable
+     * @param enter the connection where the trip is boarded
+     * @param exit the connection that arrives
+     * @return the timed segment of the leg
+     * @throws IllegalRequestException if the leg does not fit its line
+     */
+    static TimedRouteSegment toSegment(Network network, Timetable timetable, int enter, int exit)
+            throws IllegalRequestException {
+        int trip = timetable.getTrip(enter);
+        Line line = network.getLineSet().get(timetable.getTripLine(trip));
+        boolean forward = timetable.isTripForward(trip);
+        int f = timetable.getDeparturePosition(enter);
+        int t = timetable.getArrivalPosition(exit);
+        TimedRouteSegment segment = new TimedRouteSegment(line, line.getStop(f), line.getStop(t),
+                forward ? line.getTerminalB() : line.getTerminalA(),
+                timetable.getDepartureTime(enter), timetable.getArrivalTime(exit));
+        // Passing the terminal means using the circular nature of the line
+        segment.setCircular(forward ? t < f : f < t);
+        return segment;
+    }
+
+    /**
+     * Returns the timetable that is scanned.
+     *
+     * @return the timetable
+     */
+    public Timetable getTimetable() {
+        return timetable;
+    }
+
+    /**
+     * Returns the arrival at the destination of the route found by the last
+     * query.
+     *
+     * @return the arrival time in seconds since midnight, or -1 if no route
+     * was found
+     */
+    public int getArrivalTime() {
+        return arrivalTime;
+    }
+
+    /**
+     * Returns the number of connections scanned by the last query.
+     *
+     * @return the number of connections scanned
+     */
+    public int getScannedCount() {
+        return scannedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionScanPlanner[" + timetable + ", departing " + Timetable.formatTime(departureTime) + "]";
+    }
+}
@@ -0,0 +1,739 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A contraction hierarchy of a station graph, for minimum stops queries that
+ * only search a small part of the graph.
+ *
+ * The stations are contracted one by one, from the least to the most
+ * important. Contracting a station removes it from the remaining graph, and
+ * adds a shortcut between every pair of its neighbours whose shortest path
+ * runs through it, unless a witness search finds another path that is at
+ * least as short. A shortcut remembers the station it bypasses, so that it can
+ * be unpacked again. The importance of a station is the number of shortcuts
+ * its contraction would add minus the number of edges it removes, plus the
+ * number of its neighbours that are already contracted.
+ *
+ * Contraction runs in rounds. In every round, each remaining station that is
+ * less important than all its remaining neighbours is contracted; no two of
+ * them are adjacent, so their shortcuts are computed in parallel. The
+ * importance of their neighbours is then updated in parallel as well.
+ *
+ * The result is stored as two graphs in compressed adjacency arrays: for every
+ * station the edges to more important stations, and the edges from more
+ * important stations. A query searches upward from both ends in these graphs.
+ * The hierarchy can be written to and read from a stream. It keeps the
+ * checksum of the edges of its graph, such that a hierarchy of another
+ * network with the same number of stations and edges is not taken for it.
+ *
+ * @author sanderjurgens
+ */
+public class ContractionHierarchy {
+
+    /** The first bytes of a stored hierarchy, which has a checksum of its graph */
+    private static final int MAGIC = 0x4d504349;
+    /** The maximum number of stations settled by a witness search */
+    private static final int WITNESS_LIMIT = 500;
+
+    /** The number of stations in the hierarchy */
+    private final int stationCount;
+    /** The number of edges of the graph of the hierarchy */
+    private final int edgeCount;
+    /** The number of shortcuts in the hierarchy */
+    private final int shortcutCount;
+    /** The checksum of the edges of the graph of the hierarchy */
+    private final long checksum;
+    /** The rank of each station in the order of contraction */
+    private final int[] rank;
+
+    /** The first upward edge of each station, and the number of edges at the end */
+    private final int[] upStart;
+    /** The more important station at the end of each upward edge */
+    private final int[] upHead;
+    /** The number of stops of each upward edge */
+    private final int[] upWeight;
+    /** The station bypassed by each upward edge, or -1 */
+    private final int[] upMiddle;
+
+    /** The first downward edge of each station, and the number of edges at the end */
+    private final int[] downStart;
+    /** The more important station at the begin of each downward edge */
+    private final int[] downTail;
+    /** The number of stops of each downward edge */
+    private final int[] downWeight;
+    /** The station bypassed by each downward edge, or -1 */
+    private final int[] downMiddle;
+
+    /**
+     * Constructs the contraction hierarchy of a given station graph.
+     *
+     * @param graph a given station graph
+     */
+    public ContractionHierarchy(StationGraph graph) {
+        stationCount = graph.getStationCount();
+        edgeCount = graph.getEdgeCount();
+        checksum = graph.getChecksum();
+        int n = stationCount;
+        Remaining remaining = new Remaining(graph);
+        rank = new int[n];
+
+        // The edges of every station at the time it is contracted
+        int[][] finalOut = new int[n][];
+        int[][] finalIn = new int[n][];
+        boolean[] contracted = new boolean[n];
+        boolean[] selecting = new boolean[n];
+        int[] deleted = new int[n];
+        int[] priority = new int[n];
+        ThreadLocal<Witness> witnesses = ThreadLocal.withInitial(() -> new Witness(n));
+        IntStream.range(0, n).parallel()
+                .forEach(v -> priority[v] = priority(remaining, v, deleted, witnesses.get()));
+
+        int next = 0;
+        int shortcuts = 0;
+        boolean[] touched = new boolean[n];
+        while (next < n) {
+            // Select the stations that are less important than all their neighbours
+            int[] selected = IntStream.range(0, n).parallel()
+                    .filter(v -> !contracted[v] && isMinimal(remaining, v, priority))
+                    .toArray();
+            // Witnesses avoid all stations of the round, as they disappear together
+            for (int v : selected) {
+                selecting[v] = true;
+            }
+            int[][] added = Arrays.stream(selected).parallel()
+                    .mapToObj(v -> remaining.shortcuts(v, selecting, witnesses.get(), true))
+                    .toArray(int[][]::new);
+
+            // Apply the contractions one after another
+            for (int v : selected) {
+                rank[v] = next++;
+                finalOut[v] = remaining.copyOut(v);
+                finalIn[v] = remaining.copyIn(v);
+                for (int i = 0; i < finalOut[v].length; i += 3) {
+                    deleted[finalOut[v][i]]++;
+                    touched[finalOut[v][i]] = true;
+                }
+                for (int i = 0; i < finalIn[v].length; i += 3) {
+                    deleted[finalIn[v][i]]++;
+                    touched[finalIn[v][i]] = true;
+                }
+                remaining.remove(v);
+                contracted[v] = true;
+                selecting[v] = false;
+            }
+            for (int s = 0; s < selected.length; s++) {
+                for (int i = 0; i < added[s].length; i += 3) {
+                    remaining.add(added[s][i], added[s][i + 1], added[s][i + 2], selected[s]);
+                }
+                shortcuts = shortcuts + added[s].length / 3;
+            }
+
+            // Update the importance of the neighbours
+            int[] neighbours = IntStream.range(0, n).filter(v -> touched[v] && !contracted[v]).toArray();
+            Arrays.fill(touched, false);
+            Arrays.stream(neighbours).parallel()
+                    .forEach(v -> priority[v] = priority(remaining, v, deleted, witnesses.get()));
+        }
+
+        // Store the upward and downward edges in compressed arrays
+        upStart = new int[n + 1];
+        downStart = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            upStart[v + 1] = upStart[v] + finalOut[v].length / 3;
+            downStart[v + 1] = downStart[v] + finalIn[v].length / 3;
+        }
+        upHead = new int[upStart[n]];
+        upWeight = new int[upStart[n]];
+        upMiddle = new int[upStart[n]];
+        downTail = new int[downStart[n]];
+        downWeight = new int[downStart[n]];
+        downMiddle = new int[downStart[n]];
+        for (int v = 0; v < n; v++) {
+            for (int i = 0; i < finalOut[v].length / 3; i++) {
+                upHead[upStart[v] + i] = finalOut[v][3 * i];
+                upWeight[upStart[v] + i] = finalOut[v][3 * i + 1];
+                upMiddle[upStart[v] + i] = finalOut[v][3 * i + 2];
+            }
+            for (int i = 0; i < finalIn[v].length / 3; i++) {
+                downTail[downStart[v] + i] = finalIn[v][3 * i];
+                downWeight[downStart[v] + i] = finalIn[v][3 * i + 1];
+                downMiddle[downStart[v] + i] = finalIn[v][3 * i + 2];
+            }
+        }
+        shortcutCount = shortcuts;
+    }
+
+    /**
+     * Constructs a contraction hierarchy from its stored arrays.
+     *
+     * @param counts the number of stations, edges and shortcuts
+     * @param checksum the checksum of the edges of the graph
+     * @param rank the rank of each station
+     * @param up the start, head, weight and middle arrays of the upward edges
+     * @param down the start, tail, weight and middle arrays of the downward
+     * edges
+     */
+    private ContractionHierarchy(int[] counts, long checksum, int[] rank, int[][] up, int[][] down) {
+        stationCount = counts[0];
+        edgeCount = counts[1];
+        shortcutCount = counts[2];
+        this.checksum = checksum;
+        this.rank = rank;
+        upStart = up[0];
+        upHead = up[1];
+        upWeight = up[2];
+        upMiddle = up[3];
+        downStart = down[0];
+        downTail = down[1];
+        downWeight = down[2];
+        downMiddle = down[3];
+    }
+
+    /**
+     * Returns the importance of a station in the remaining graph.
+     *
+     * @param remaining the remaining graph
+     * @param v the index of a station
+     * @param deleted the number of contracted neighbours of each station
+     * @param witness the witness search to use
+     * @return the importance of the station
+     */
+    private static int priority(Remaining remaining, int v, int[] deleted, Witness witness) {
+        int shortcuts = remaining.shortcuts(v, null, witness, false)[0];
+        return shortcuts - remaining.outSize[v] - remaining.inSize[v] + deleted[v];
+    }
+
+    /**
+     * Returns whether a station is less important than all its remaining
+     * neighbours, with ties broken by index.
+     *
+     * @param remaining the remaining graph
+     * @param v the index of a station
+     * @param priority the importance of each station
+     * @return whether the station is a local minimum
+     */
+    private static boolean isMinimal(Remaining remaining, int v, int[] priority) {
+        for (int i = 0; i < remaining.outSize[v]; i++) {
+            int w = remaining.outEdges[v][3 * i];
+            if (priority[w] < priority[v] || (priority[w] == priority[v] && w < v)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < remaining.inSize[v]; i++) {
+            int w = remaining.inEdges[v][3 * i];
+            if (priority[w] < priority[v] || (priority[w] == priority[v] && w < v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of stations in the hierarchy.
+     *
+     * @return the number of stations in the hierarchy
+     */
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * Returns the number of shortcuts in the hierarchy.
+     *
+     * @return the number of shortcuts in the hierarchy
+     */
+    public int getShortcutCount() {
+        return shortcutCount;
+    }
+
+    /**
+     * Returns the rank of a given station in the order of contraction.
+     *
+     * @param station the index of a station
+     * @return the rank of the station
+     */
+    public int getRank(int station) {
+        return rank[station];
+    }
+
+    /**
+     * Returns the first upward edge of a given station.
+     *
+     * @param station the index of a station
+     * @return the index of the first upward edge
+     */
+    public int getUpBegin(int station) {
+        return upStart[station];
+    }
+
+    /**
+     * Returns the edge after the last upward edge of a given station.
+     *
+     * @param station the index of a station
+     * @return the index after the last upward edge
+     */
+    public int getUpEnd(int station) {
+        return upStart[station + 1];
+    }
+
+    /**
+     * Returns the more important station at the end of an upward edge.
+     *
+     * @param edge the index of an upward edge
+     * @return the index of the station
+     */
+    public int getUpHead(int edge) {
+        return upHead[edge];
+    }
+
+    /**
+     * Returns the number of stops of an upward edge.
+     *
+     * @param edge the index of an upward edge
+     * @return the number of stops
+     */
+    public int getUpWeight(int edge) {
+        return upWeight[edge];
+    }
+
+    /**
+     * Returns the station bypassed by an upward edge.
+     *
+     * @param edge the index of an upward edge
+     * @return the index of the station, or -1 if the edge is not a shortcut
+     */
+    public int getUpMiddle(int edge) {
+        return upMiddle[edge];
+    }
+
+    /**
+     * Returns the first downward edge of a given station.
+     *
+     * @param station the index of a station
+     * @return the index of the first downward edge
+     */
+    public int getDownBegin(int station) {
+        return downStart[station];
+    }
+
+    /**
+     * Returns the edge after the last downward edge of a given station.
+     *
+     * @param station the index of a station
+     * @return the index after the last downward edge
+     */
+    public int getDownEnd(int station) {
+        return downStart[station + 1];
+    }
+
+    /**
+     * Returns the more important station at the begin of a downward edge.
+     *
+     * @param edge the index of a downward edge
+     * @return the index of the station
+     */
+    public int getDownTail(int edge) {
+        return downTail[edge];
+    }
+
+    /**
+     * Returns the number of stops of a downward edge.
+     *
+     * @param edge the index of a downward edge
+     * @return the number of stops
+     */
+    public int getDownWeight(int edge) {
+        return downWeight[edge];
+    }
+
+    /**
+     * Returns the station bypassed by a downward edge.
+     *
+     * @param edge the index of a downward edge
+     * @return the index of the station, or -1 if the edge is not a shortcut
+     */
+    public int getDownMiddle(int edge) {
+        return downMiddle[edge];
+    }
+
+    /**
+     * Returns the station bypassed by the edge from one station to another,
+     * where at least one of them is less important than the other.
+     *
+     * @param tail the index of the station where the edge begins
+     * @param head the index of the station where the edge ends
+     * @return the index of the bypassed station, -1 if the edge is not a
+     * shortcut, or -2 if there is no such edge
+     */
+    public int findMiddle(int tail, int head) {
+        if (rank[tail] < rank[head]) {
+            for (int e = upStart[tail]; e < upStart[tail + 1]; e++) {
+                if (upHead[e] == head) {
+                    return upMiddle[e];
+                }
+            }
+        } else {
+            for (int e = downStart[head]; e < downStart[head + 1]; e++) {
+                if (downTail[e] == tail) {
+                    return downMiddle[e];
+                }
+            }
+        }
+        return -2;
+    }
+
+    /**
+     * Returns whether the hierarchy was built for a given station graph, as
+     * far as can be seen from the number of stations and edges and the
+     * checksum of the edges.
+     *
+     * @param graph a given station graph
+     * @return whether the hierarchy fits the graph
+     */
+    public boolean fits(StationGraph graph) {
+        return graph.getStationCount() == stationCount && graph.getEdgeCount() == edgeCount
+                && graph.getChecksum() == checksum;
+    }
+
+    /**
+     * Writes this hierarchy to a given stream.
+     *
+     * @param out a given stream
+     * @throws IOException if writing to the stream fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(stationCount);
+        data.writeInt(edgeCount);
+        data.writeInt(shortcutCount);
+        data.writeLong(checksum);
+        writeArray(data, rank);
+        for (int[] array : new int[][]{upStart, upHead, upWeight, upMiddle, downStart, downTail, downWeight,
+            downMiddle}) {
+            writeArray(data, array);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a hierarchy from a given stream, as written by
+     * {@link #write(OutputStream)}.
+     *
+     * @param in a given stream
+     * @return the hierarchy read from the stream
+     * @throws IOException if reading from the stream fails, or if the stream
+     * does not contain a hierarchy
+     */
+    public static ContractionHierarchy read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("ContractionHierarchy.read: not a contraction hierarchy");
+        }
+        int[] counts = {data.readInt(), data.readInt(), data.readInt()};
+        long checksum = data.readLong();
+        int[] rank = readArray(data);
+        int[][] up = {readArray(data), readArray(data), readArray(data), readArray(data)};
+        int[][] down = {readArray(data), readArray(data), readArray(data), readArray(data)};
+        if (rank.length != counts[0] || up[0].length != counts[0] + 1 || down[0].length != counts[0] + 1) {
+            throw new IOException("ContractionHierarchy.read: corrupt contraction hierarchy");
+        }
+        return new ContractionHierarchy(counts, checksum, rank, up, down);
+    }
+
+    /**
+     * Writes an array, preceded by its length, to a given stream.
+     *
+     * @param data a given stream
+     * @param array a given array
+     * @throws IOException if writing to the stream fails
+     */
+    private static void writeArray(DataOutputStream data, int[] array) throws IOException {
+        data.writeInt(array.length);
+        for (int value : array) {
+            data.writeInt(value);
+        }
+    }
+
+    /**
+     * Reads an array, preceded by its length, from a given stream.
+     *
+     * @param data a given stream
+     * @return the array read from the stream
+     * @throws IOException if reading from the stream fails
+     */
+    private static int[] readArray(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length < 0) {
+            throw new IOException("ContractionHierarchy.read: corrupt contraction hierarchy");
+        }
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = data.readInt();
+        }
+        return array;
+    }
+
+    /**
+     * The graph of the stations that are not contracted yet, including the
+     * shortcuts between them. Every edge is stored as a triple of the other
+     * station, the number of stops and the bypassed station, at both of its
+     * ends. There is at most one edge from one station to another.
+     */
+    private static final class Remaining {
+
+        /** The outgoing edges of each station */
+        private final int[][] outEdges;
+        /** The number of outgoing edges of each station */
+        private final int[] outSize;
+        /** The incoming edges of each station */
+        private final int[][] inEdges;
+        /** The number of incoming edges of each station */
+        private final int[] inSize;
+
+        /**
+         * Constructs the remaining graph of a station graph before any
+         * station is contracted.
+         *
+         * @param graph a given station graph
+         */
+        private Remaining(StationGraph graph) {
+            int n = graph.getStationCount();
+            outEdges = new int[n][];
+            outSize = new int[n];
+            inEdges = new int[n][];
+            inSize = new int[n];
+            for (int v = 0; v < n; v++) {
+                outEdges[v] = new int[3 * Math.max(graph.getOutEnd(v) - graph.getOutBegin(v), 1)];
+                inEdges[v] = new int[3 * Math.max(graph.getInEnd(v) - graph.getInBegin(v), 1)];
+            }
+            for (int e = 0; e < graph.getEdgeCount(); e++) {
+                if (graph.getTail(e) != graph.getHead(e)) {
+                    add(graph.getTail(e), graph.getHead(e), 1, -1);
+                }
+            }
+        }
+
+        /**
+         * Adds an edge, or lowers the number of stops of an existing edge
+         * between the same stations.
+         *
+         * @param u the index of the station where the edge begins
+         * @param w the index of the station where the edge ends
+         * @param weight the number of stops of the edge
+         * @param middle the station bypassed by the edge, or -1
+         */
+        private void add(int u, int w, int weight, int middle) {
+            for (int i = 0; i < outSize[u]; i++) {
+                if (outEdges[u][3 * i] == w) {
+                    if (weight < outEdges[u][3 * i + 1]) {
+                        outEdges[u][3 * i + 1] = weight;
+                        outEdges[u][3 * i + 2] = middle;
+                        for (int j = 0; j < inSize[w]; j++) {
+                            if (inEdges[w][3 * j] == u) {
+                                inEdges[w][3 * j + 1] = weight;
+                                inEdges[w][3 * j + 2] = middle;
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            if (3 * outSize[u] == outEdges[u].length) {
+                outEdges[u] = Arrays.copyOf(outEdges[u], 2 * outEdges[u].length);
+            }
+            if (3 * inSize[w] == inEdges[w].length) {
+                inEdges[w] = Arrays.copyOf(inEdges[w], 2 * inEdges[w].length);
+            }
+            int i = 3 * outSize[u]++;
+            outEdges[u][i] = w;
+            outEdges[u][i + 1] = weight;
+            outEdges[u][i + 2] = middle;
+            int j = 3 * inSize[w]++;
+            inEdges[w][j] = u;
+            inEdges[w][j + 1] = weight;
+            inEdges[w][j + 2] = middle;
+        }
+
+        /**
+         * Removes a station and all its edges from the graph.
+         *
+         * @param v the index of a station
+         */
+        private void remove(int v) {
+            for (int i = 0; i < outSize[v]; i++) {
+                int w = outEdges[v][3 * i];
+                inSize[w] = removeEntry(inEdges[w], inSize[w], v);
+            }
+            for (int i = 0; i < inSize[v]; i++) {
+                int u = inEdges[v][3 * i];
+                outSize[u] = removeEntry(outEdges[u], outSize[u], v);
+            }
+            outSize[v] = 0;
+            inSize[v] = 0;
+        }
+
+        /**
+         * Removes the entry of a given station from a list of edges, by
+         * moving the last entry in its place.
+         *
+         * @param edges a list of edges
+         * @param size the number of edges in the list
+         * @param v the index of the station to remove
+         * @return the new number of edges in the list
+         */
+        private static int removeEntry(int[] edges, int size, int v) {
+            for (int i = 0; i < size; i++) {
+                if (edges[3 * i] == v) {
+                    System.arraycopy(edges, 3 * (size - 1), edges, 3 * i, 3);
+                    return size - 1;
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Returns a copy of the outgoing edges of a station.
+         *
+         * @param v the index of a station
+         * @return the outgoing edges as triples
+         */
+        private int[] copyOut(int v) {
+            return Arrays.copyOf(outEdges[v], 3 * outSize[v]);
+        }
+
+        /**
+         * Returns a copy of the incoming edges of a station.
+         *
+         * @param v the index of a station
+         * @return the incoming edges as triples
+         */
+        private int[] copyIn(int v) {
+            return Arrays.copyOf(inEdges[v], 3 * inSize[v]);
+        }
+
+        /**
+         * Returns the shortcuts needed to contract a station, or only their
+         * number. The graph is not changed.
+         *
+         * @param v the index of a station
+         * @param avoid the other stations that witnesses must avoid, or null
+         * @param witness the witness search to use
+         * @param collect whether to return the shortcuts themselves
+         * @return the shortcuts as triples of begin, end and number of stops,
+         * or an array holding only their number
+         */
+        private int[] shortcuts(int v, boolean[] avoid, Witness witness, boolean collect) {
+            int count = 0;
+            int[] shortcuts = collect ? new int[3 * Math.max(inSize[v] * outSize[v], 1)] : null;
+            for (int i = 0; i < inSize[v]; i++) {
+                int u = inEdges[v][3 * i];
+                int a = inEdges[v][3 * i + 1];
+                int maxB = 0;
+                for (int j = 0; j < outSize[v]; j++) {
+                    if (outEdges[v][3 * j] != u) {
+                        maxB = Math.max(maxB, outEdges[v][3 * j + 1]);
+                    }
+                }
+                if (maxB == 0) {
+                    continue;
+                }
+                witness.search(this, u, v, avoid, a + maxB);
+                for (int j = 0; j < outSize[v]; j++) {
+                    int w = outEdges[v][3 * j];
+                    int b = outEdges[v][3 * j + 1];
+                    if (w != u && witness.distance(w) > a + b) {
+                        if (collect) {
+                            shortcuts[3 * count] = u;
+                            shortcuts[3 * count + 1] = w;
+                            shortcuts[3 * count + 2] = a + b;
+                        }
+                        count++;
+                    }
+                }
+            }
+            return collect ? Arrays.copyOf(shortcuts, 3 * count) : new int[]{count};
+        }
+    }
+
+    /**
+     * A bounded Dijkstra search in the remaining graph that avoids the stations
+     * being contracted, with its own search data for use by a single thread.
+     */
+    private static final class Witness {
+
+        /** The distance of each station, if it was reached in this search */
+        private final int[] distances;
+        /** The search in which each station was reached */
+        private final int[] reached;
+        /** The number of the current search */
+        private int search;
+        /** The queue of the search */
+        private final IntHeap heap;
+
+        /**
+         * Constructs the search data for a given number of stations.
+         *
+         * @param n the number of stations
+         */
+        private Witness(int n) {
+            distances = new int[n];
+            reached = new int[n];
+            heap = new IntHeap(n);
+        }
+
+        /**
+         * Searches from a station without passing another, until all
+         * stations within a given distance are settled or the settled
+         * stations exceed the limit.
+         *
+         * @param graph the remaining graph
+         * @param source the index of the station to search from
+         * @param skip the index of the station to avoid
+         * @param avoid the other stations to avoid, or null
+         * @param limit the maximum distance of interest
+         */
+        private void search(Remaining graph, int source, int skip, boolean[] avoid, int limit) {
+            search = search + 1;
+            heap.clear();
+            distances[source] = 0;
+            reached[source] = search;
+            heap.offer(source, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && heap.peekKey() <= limit && settled < WITNESS_LIMIT) {
+                int u = heap.poll();
+                settled++;
+                int[] edges = graph.outEdges[u];
+                for (int i = 0; i < graph.outSize[u]; i++) {
+                    int w = edges[3 * i];
+                    int d = distances[u] + edges[3 * i + 1];
+                    if (w != skip && (avoid == null || !avoid[w]) && (reached[w] != search || d < distances[w])) {
+                        distances[w] = d;
+                        reached[w] = search;
+                        heap.offer(w, d);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the distance of a station found by the last search.
+         *
+         * @param v the index of a station
+         * @return the distance found, or {@link Integer#MAX_VALUE} if the
+         * station was not reached
+         */
+        private int distance(int v) {
+            return reached[v] == search ? distances[v] : Integer.MAX_VALUE;
+        }
+    }
+}
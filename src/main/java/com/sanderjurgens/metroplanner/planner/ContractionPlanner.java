@@ -0,0 +1,233 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * stops, using a contraction hierarchy.
+ *
+ * A query runs two Dijkstra searches that only move to more important
+ * stations: one forward from the origin along the upward edges, and one
+ * backward from the destination along the downward edges. The shortest route
+ * passes the most important station on it, where both searches meet. Each
+ * search stops as soon as it cannot improve the best meeting found. The
+ * shortcuts on the route are then unpacked into the stations they bypass, and
+ * the stations into rides, preferring to stay on the same line.
+ *
+ * @author sanderjurgens
+ */
+public class ContractionPlanner extends Planner {
+
+    /** The graph of all stations in the network */
+    private final StationGraph graph;
+    /** The contraction hierarchy of the graph */
+    private final ContractionHierarchy hierarchy;
+
+    /** The queues of the forward and backward search */
+    private final IntHeap[] heaps;
+    /** The distance of each station in the forward and backward search */
+    private final int[][] distances;
+    /** The previous station of each station in the forward and backward search */
+    private final int[][] parents;
+    /** The query in which each station was reached by either search */
+    private final int[][] reached;
+    /** The number of the current query */
+    private int query;
+
+    /** The stack of edges left to unpack, as pairs of stations */
+    private final int[] stack;
+    /** The stations of a route */
+    private final int[] path;
+
+    /**
+     * Constructs a contraction planner for a given network.
+     *
+     * @param network a given network
+     * @param graph the station graph of the network
+     * @param hierarchy the contraction hierarchy of the graph
+     * @throws IllegalRequestException if the hierarchy does not fit the graph
+     */
+    public ContractionPlanner(Network network, StationGraph graph, ContractionHierarchy hierarchy)
+            throws IllegalRequestException {
+        super(network);
+        if (!hierarchy.fits(graph)) {
+            throw new IllegalRequestException("ContractionPlanner: hierarchy does not fit the graph");
+        }
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+        int n = graph.getStationCount();
+        heaps = new IntHeap[]{new IntHeap(n), new IntHeap(n)};
+        distances = new int[2][n];
+        parents = new int[2][n];
+        reached = new int[2][n];
+        stack = new int[2 * n + 2];
+        path = new int[n + 1];
+    }
+
+    /**
+     * Returns the contraction hierarchy of this planner.
+     *
+     * @return the contraction hierarchy of this planner
+     */
+    public ContractionHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * Returns the minimum number of stops from one station to another.
+     *
+     * @param from origin
+     * @param to destination
+     * @return the number of stops, or -1 if the destination cannot be reached
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the graph was built
+     */
+    public int getDistance(Station from, Station to) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("ContractionPlanner.getDistance: stop is null");
+        }
+        if (!graph.isCurrent(network)) {
+            throw new IllegalRequestException("ContractionPlanner.getDistance: graph is out of date");
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (origin == -1 || destination == -1) {
+            return -1;
+        }
+        int meeting = search(origin, destination);
+        return meeting == -1 ? -1 : distances[0][meeting] + distances[1][meeting];
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of stops,
+     * and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the graph was built
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("ContractionPlanner.findCompactRoute: stop is null");
+        }
+        if (!graph.isCurrent(network)) {
+            throw new IllegalRequestException("ContractionPlanner.findCompactRoute: graph is out of date");
+        }
+        route.clear();
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (origin == -1 || destination == -1 || origin == destination) {
+            return;
+        }
+        int meeting = search(origin, destination);
+        if (meeting == -1) {
+            return;
+        }
+
+        // Push the edges of the route on the stack, the first edge on top
+        int top = 0;
+        for (int v = meeting; v != destination; v = parents[1][v]) {
+            top++;
+        }
+        for (int i = top - 1, v = meeting; i >= 0; i--, v = parents[1][v]) {
+            stack[2 * i] = v;
+            stack[2 * i + 1] = parents[1][v];
+        }
+        for (int v = meeting; v != origin; v = parents[0][v]) {
+            stack[2 * top] = parents[0][v];
+            stack[2 * top + 1] = v;
+            top++;
+        }
+
+        // Unpack the shortcuts into the stations they bypass
+        int length = 0;
+        path[length++] = origin;
+        while (top > 0) {
+            top--;
+            int a = stack[2 * top];
+            int b = stack[2 * top + 1];
+            int m = hierarchy.findMiddle(a, b);
+            if (m >= 0) {
+                stack[2 * top] = m;
+                stack[2 * top + 1] = b;
+                stack[2 * top + 2] = a;
+                stack[2 * top + 3] = m;
+                top = top + 2;
+            } else {
+                path[length++] = b;
+            }
+        }
+
+        // Ride between the stations, staying on the same line where possible
+        int edge = -1;
+        for (int i = 1; i < length; i++) {
+            edge = graph.findEdge(path[i - 1], path[i], edge);
+            graph.addHop(route, edge);
+        }
+    }
+
+    /**
+     * Runs the forward and backward search between two stations.
+     *
+     * @param origin the index of the origin
+     * @param destination the index of the destination
+     * @return the index of the station where the searches meet on a shortest
+     * route, or -1 if the destination cannot be reached
+     */
+    private int search(int origin, int destination) {
+        query = query + 1;
+        heaps[0].clear();
+        heaps[1].clear();
+        reach(0, origin, 0, -1);
+        reach(1, destination, 0, -1);
+        int best = Integer.MAX_VALUE;
+        int meeting = -1;
+        while (heaps[0].peekKey() < best || heaps[1].peekKey() < best) {
+            // Alternate between the searches, taking the one with the smallest key
+            int side = heaps[0].peekKey() <= heaps[1].peekKey() ? 0 : 1;
+            int u = heaps[side].poll();
+            int d = distances[side][u];
+            if (reached[1 - side][u] == query && d + distances[1 - side][u] < best) {
+                best = d + distances[1 - side][u];
+                meeting = u;
+            }
+            if (side == 0) {
+                for (int e = hierarchy.getUpBegin(u); e < hierarchy.getUpEnd(u); e++) {
+                    reach(0, hierarchy.getUpHead(e), d + hierarchy.getUpWeight(e), u);
+                }
+            } else {
+                for (int e = hierarchy.getDownBegin(u); e < hierarchy.getDownEnd(u); e++) {
+                    reach(1, hierarchy.getDownTail(e), d + hierarchy.getDownWeight(e), u);
+                }
+            }
+        }
+        return meeting;
+    }
+
+    /**
+     * Reaches a station in one of the searches, unless it was already reached
+     * at a smaller distance.
+     *
+     * @param side 0 for the forward search, 1 for the backward search
+     * @param v the index of the station
+     * @param distance the distance at which the station is reached
+     * @param parent the index of the previous station, or -1
+     */
+    private void reach(int side, int v, int distance, int parent) {
+        if (reached[side][v] != query || distance < distances[side][v]) {
+            if (reached[side][v] == query && !heaps[side].contains(v)) {
+                return;
+            }
+            reached[side][v] = query;
+            distances[side][v] = distance;
+            parents[side][v] = parent;
+            heaps[side].offer(v, distance);
+        }
+    }
+}
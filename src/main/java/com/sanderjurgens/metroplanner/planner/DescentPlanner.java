@@ -0,0 +1,114 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * stops, using a distance oracle instead of a search.
+ *
+ * The route is found by greedy descent: from the origin, it repeatedly rides
+ * to a neighbouring station that is one stop closer to the destination. If
+ * there is a choice, it stays on the same line in the same direction, to avoid
+ * needless transfers.
+ *
+ * @author sanderjurgens
+ */
+public class DescentPlanner extends Planner {
+
+    /** The graph of all stations in the network */
+    private final StationGraph graph;
+    /** The distances between the stations of the graph */
+    private final DistanceOracle oracle;
+
+    /**
+     * Constructs a descent planner for a given network.
+     *
+     * @param network a given network
+     * @param graph the station graph of the network
+     * @param oracle the distances between the stations of the graph
+     */
+    public DescentPlanner(Network network, StationGraph graph, DistanceOracle oracle) {
+        super(network);
+        this.graph = graph;
+        this.oracle = oracle;
+    }
+
+    /**
+     * Returns the distance oracle of this planner.
+     *
+     * @return the distance oracle of this planner
+     */
+    public DistanceOracle getOracle() {
+        return oracle;
+    }
+
+    /**
+     * Returns the minimum number of stops from origin to destination.
+     *
+     * @param from origin
+     * @param to destination
+     * @return the minimum number of stops, or -1 if the destination cannot be
+     * reached
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the graph was built
+     */
+    public int getDistance(Station from, Station to) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("DescentPlanner.getDistance: stop is null");
+        }
+        if (!graph.isCurrent(network)) {
+            throw new IllegalRequestException("DescentPlanner.getDistance: graph is out of date");
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (origin == -1 || destination == -1) {
+            return -1;
+        }
+        return oracle.getDistance(origin, destination);
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of stops,
+     * and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, if the network has changed since the graph was built, or if the
+     * oracle is not consistent with the graph
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        route.clear();
+        int distance = getDistance(from, to);
+        if (distance <= 0) {
+            return;
+        }
+        int destination = network.getStationSet().getIndex(to);
+        int u = network.getStationSet().getIndex(from);
+        int previous = -1;
+        while (distance > 0) {
+            // Ride to a neighbour one stop closer, preferably without transferring
+            int chosen = -1;
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                if (oracle.getDistance(graph.getHead(e), destination) == distance - 1) {
+                    if (chosen == -1 || graph.continues(previous, e)) {
+                        chosen = e;
+                    }
+                }
+            }
+            if (chosen == -1) {
+                route.clear();
+                throw new IllegalRequestException("DescentPlanner.findCompactRoute: no descent");
+            }
+            graph.addHop(route, chosen);
+            previous = chosen;
+            u = graph.getHead(chosen);
+            distance = distance - 1;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.sanderjurgens.metroplanner.planner;
+
+/**
+ * Answers queries for the minimum number of stops between two stations of a
+ * {@link StationGraph}, without searching the graph.
+ *
+ * @author sanderjurgens
+ */
+public interface DistanceOracle {
+
+    /**
+     * Returns the minimum number of stops from one station to another.
+     *
+     * @param from the index of the origin
+     * @param to the index of the destination
+     * @return the minimum number of stops, or -1 if the destination cannot be
+     * reached
+     */
+    int getDistance(int from, int to);
+}
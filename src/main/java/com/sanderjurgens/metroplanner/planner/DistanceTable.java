@@ -0,0 +1,197 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import java.util.stream.IntStream;
+
+/**
+ * A precomputed table of the minimum number of stops between all pairs of
+ * stations, built with one Breadth-First Search per station.
+ *
+ * The distances are stored in a matrix of bytes if all of them fit, and of
+ * shorts otherwise, with the largest value of a cell meaning unreachable. If no
+ * line is one way, the distances are symmetric and only the lower half of the
+ * matrix is stored. The table is meant for networks of up to a few thousand
+ * stations; the memory used grows quadratically with the number of stations.
+ *
+ * @author sanderjurgens
+ */
+public class DistanceTable implements DistanceOracle {
+
+    /** The value of an unreachable cell in a matrix of bytes */
+    private static final int BYTE_UNREACHABLE = 0xFF;
+    /** The value of an unreachable cell in a matrix of shorts */
+    private static final int SHORT_UNREACHABLE = 0xFFFF;
+
+    /** The number of stations in the table */
+    private final int stationCount;
+    /** Whether only the lower half of the matrix is stored */
+    private final boolean half;
+    /** The cells of the matrix if they are bytes, or null */
+    private final byte[] byteCells;
+    /** The cells of the matrix if they are shorts, or null */
+    private final short[] shortCells;
+    /** The time it took to build the table, in nanoseconds */
+    private final long buildTime;
+
+    /**
+     * Constructs the distance table of a given station graph. The searches
+     * from the stations run in parallel.
+     *
+     * @param graph a given station graph
+     * @throws IllegalRequestException if the graph has too many stations for
+     * the matrix
+     */
+    public DistanceTable(StationGraph graph) throws IllegalRequestException {
+        long start = System.nanoTime();
+        stationCount = graph.getStationCount();
+        half = graph.isSymmetric();
+        long size = half ? (long) stationCount * (stationCount + 1) / 2 : (long) stationCount * stationCount;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalRequestException("DistanceTable: too many stations");
+        }
+
+        // Every search writes only its own row, so they can run in parallel
+        short[] cells = new short[(int) size];
+        ThreadLocal<int[]> buffers = ThreadLocal.withInitial(() -> new int[2 * stationCount]);
+        int max = IntStream.range(0, stationCount).parallel()
+                .map(s -> search(graph, s, buffers.get(), cells))
+                .max().orElse(0);
+
+        // Use a matrix of bytes if all distances fit
+        if (max < BYTE_UNREACHABLE) {
+            byteCells = new byte[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                byteCells[i] = (byte) cells[i];
+            }
+            shortCells = null;
+        } else {
+            byteCells = null;
+            shortCells = cells;
+        }
+        buildTime = System.nanoTime() - start;
+    }
+
+    /**
+     * Performs a Breadth-First Search from a given station, and stores the
+     * distances in its row of the matrix.
+     *
+     * @param graph the station graph
+     * @param source the index of the station to search from
+     * @param buffer the distances and queue of the search, of twice the
+     * number of stations
+     * @param cells the cells of the matrix
+     * @return the largest distance found
+     */
+    private int search(StationGraph graph, int source, int[] buffer, short[] cells) {
+        int n = stationCount;
+        for (int s = 0; s < n; s++) {
+            buffer[s] = -1;
+        }
+        int head = n;
+        int tail = n;
+        buffer[source] = 0;
+        buffer[tail++] = source;
+        int max = 0;
+        while (head < tail) {
+            int u = buffer[head++];
+            max = buffer[u];
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                int v = graph.getHead(e);
+                if (buffer[v] == -1) {
+                    buffer[v] = buffer[u] + 1;
+                    buffer[tail++] = v;
+                }
+            }
+        }
+        int end = half ? source + 1 : n;
+        for (int t = 0; t < end; t++) {
+            cells[index(source, t)] = (short) (buffer[t] == -1 ? SHORT_UNREACHABLE : buffer[t]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the index of the cell of a pair of stations.
+     *
+     * @param from the index of the origin
+     * @param to the index of the destination
+     * @return the index of the cell
+     */
+    private int index(int from, int to) {
+        if (half) {
+            int i = Math.max(from, to);
+            return (int) ((long) i * (i + 1) / 2) + Math.min(from, to);
+        }
+        return from * stationCount + to;
+    }
+
+    /**
+     * Returns the minimum number of stops from one station to another.
+     *
+     * @param from the index of the origin
+     * @param to the index of the destination
+     * @return the minimum number of stops, or -1 if the destination cannot be
+     * reached
+     */
+    @Override
+    public int getDistance(int from, int to) {
+        if (byteCells != null) {
+            int d = byteCells[index(from, to)] & BYTE_UNREACHABLE;
+            return d == BYTE_UNREACHABLE ? -1 : d;
+        }
+        int d = shortCells[index(from, to)] & SHORT_UNREACHABLE;
+        return d == SHORT_UNREACHABLE ? -1 : d;
+    }
+
+    /**
+     * Returns the number of stations in the table.
+     *
+     * @return the number of stations in the table
+     */
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * Returns whether only the lower half of the matrix is stored, which is
+     * the case if no line is one way.
+     *
+     * @return whether only half of the matrix is stored
+     */
+    public boolean isHalf() {
+        return half;
+    }
+
+    /**
+     * Returns the number of bytes per cell of the matrix.
+     *
+     * @return 1 for a matrix of bytes, 2 for a matrix of shorts
+     */
+    public int getCellSize() {
+        return byteCells != null ? 1 : 2;
+    }
+
+    /**
+     * Returns the memory used by the cells of the matrix.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        return byteCells != null ? byteCells.length : 2L * shortCells.length;
+    }
+
+    /**
+     * Returns the time it took to build the table.
+     *
+     * @return the build time in nanoseconds
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    @Override
+    public String toString() {
+        return "DistanceTable[" + stationCount + " stations, " + getMemoryUsage() + " bytes, "
+                + (buildTime / 1000000) + " ms]";
+    }
+}
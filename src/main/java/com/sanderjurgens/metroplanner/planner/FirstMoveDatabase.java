@@ -0,0 +1,327 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A compressed path database, which stores for every pair of stations the
+ * first edge of a route with the minimum number of stops between them.
+ *
+ * The first moves from a station towards all other stations are stored in
+ * run-length encoded form: a list of runs, each beginning at the rank of a
+ * destination and holding the move for all destinations up to the next run.
+ * The stations are ranked in Depth-First Search order, such that nearby
+ * stations tend to have nearby ranks and share the same first move, which
+ * makes the runs few and long. A move is the offset of the edge among the
+ * outgoing edges of the station, or -1 if the destination cannot be reached.
+ *
+ * A route is recovered hop by hop, by looking up the first move from each
+ * station on the way with a binary search over its runs. The database can be
+ * written to and read from a stream. It keeps a checksum of the edges of its
+ * graph, such that a database of another network of the same size does not
+ * fit.
+ *
+ * @author sanderjurgens
+ */
+public class FirstMoveDatabase {
+
+    /** The first bytes of a stored database, which has a checksum of its graph */
+    private static final int MAGIC = 0x4d504645;
+
+    /** The number of stations in the database */
+    private final int stationCount;
+    /** The number of edges of the graph of the database */
+    private final int edgeCount;
+    /** The checksum of the edges of the graph of the database */
+    private final long checksum;
+    /** The rank of each station in the ordering of destinations */
+    private final int[] rank;
+    /** The first run of each station, and the number of runs at the end */
+    private final int[] runStart;
+    /** The rank of the first destination of each run */
+    private final int[] runRank;
+    /** The move of each run */
+    private final short[] runMove;
+
+    /**
+     * Constructs the path database of a given station graph. The searches from
+     * the stations run in parallel.
+     *
+     * @param graph a given station graph
+     */
+    public FirstMoveDatabase(StationGraph graph) {
+        stationCount = graph.getStationCount();
+        edgeCount = graph.getEdgeCount();
+        checksum = graph.getChecksum();
+        rank = order(graph);
+        int[] station = new int[stationCount];
+        for (int s = 0; s < stationCount; s++) {
+            station[rank[s]] = s;
+        }
+
+        // Encode the first moves of every station, as rank and move pairs
+        ThreadLocal<int[]> buffers = ThreadLocal.withInitial(() -> new int[2 * stationCount]);
+        int[][] runs = IntStream.range(0, stationCount).parallel()
+                .mapToObj(s -> encode(graph, s, station, buffers.get()))
+                .toArray(int[][]::new);
+        runStart = new int[stationCount + 1];
+        for (int s = 0; s < stationCount; s++) {
+            runStart[s + 1] = runStart[s] + runs[s].length / 2;
+        }
+        runRank = new int[runStart[stationCount]];
+        runMove = new short[runStart[stationCount]];
+        for (int s = 0; s < stationCount; s++) {
+            for (int i = 0; i < runs[s].length / 2; i++) {
+                runRank[runStart[s] + i] = runs[s][2 * i];
+                runMove[runStart[s] + i] = (short) runs[s][2 * i + 1];
+            }
+        }
+    }
+
+    /**
+     * Constructs a path database from its stored arrays.
+     *
+     * @param stationCount the number of stations
+     * @param edgeCount the number of edges
+     * @param checksum the checksum of the edges of the graph
+     * @param rank the rank of each station
+     * @param runStart the first run of each station
+     * @param runRank the rank of the first destination of each run
+     * @param runMove the move of each run
+     */
+    private FirstMoveDatabase(int stationCount, int edgeCount, long checksum, int[] rank, int[] runStart,
+            int[] runRank, short[] runMove) {
+        this.stationCount = stationCount;
+        this.edgeCount = edgeCount;
+        this.checksum = checksum;
+        this.rank = rank;
+        this.runStart = runStart;
+        this.runRank = runRank;
+        this.runMove = runMove;
+    }
+
+    /**
+     * Returns the rank of every station in Depth-First Search order, ignoring
+     * the direction of the edges.
+     *
+     * @param graph a given station graph
+     * @return the rank of each station
+     */
+    private static int[] order(StationGraph graph) {
+        int n = graph.getStationCount();
+        int[] rank = new int[n];
+        Arrays.fill(rank, -1);
+        int[] stack = new int[graph.getEdgeCount() * 2 + n];
+        int next = 0;
+        for (int root = 0; root < n; root++) {
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int u = stack[--top];
+                if (rank[u] != -1) {
+                    continue;
+                }
+                rank[u] = next++;
+                // Push in reverse, such that the first neighbour is visited first
+                for (int i = graph.getInEnd(u) - 1; i >= graph.getInBegin(u); i--) {
+                    int v = graph.getTail(graph.getInEdge(i));
+                    if (rank[v] == -1) {
+                        stack[top++] = v;
+                    }
+                }
+                for (int e = graph.getOutEnd(u) - 1; e >= graph.getOutBegin(u); e--) {
+                    int v = graph.getHead(e);
+                    if (rank[v] == -1) {
+                        stack[top++] = v;
+                    }
+                }
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Performs a Breadth-First Search from a given station, and encodes its
+     * first moves towards all stations in runs.
+     *
+     * @param graph the station graph
+     * @param source the index of the station to search from
+     * @param station the station of each rank
+     * @param buffer the moves and queue of the search, of twice the
+     * number of stations
+     * @return the rank and move of every run, in pairs
+     */
+    private int[] encode(StationGraph graph, int source, int[] station, int[] buffer) {
+        int n = stationCount;
+        for (int s = 0; s < n; s++) {
+            buffer[s] = -2;
+        }
+        int head = n;
+        int tail = n;
+        buffer[source] = -1;
+        buffer[tail++] = source;
+        while (head < tail) {
+            int u = buffer[head++];
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                int v = graph.getHead(e);
+                if (buffer[v] == -2) {
+                    // Inherit the first move, or take the edge itself from the source
+                    buffer[v] = u == source ? e - graph.getOutBegin(source) : buffer[u];
+                    buffer[tail++] = v;
+                }
+            }
+        }
+
+        // The move towards the source itself is never used, so it joins any run
+        int runs = 0;
+        int[] pairs = new int[2 * n];
+        for (int r = 0; r < n; r++) {
+            int s = station[r];
+            if (s == source) {
+                continue;
+            }
+            int move = buffer[s] == -2 ? -1 : buffer[s];
+            if (runs == 0 || pairs[2 * runs - 1] != move) {
+                pairs[2 * runs] = runs == 0 ? 0 : r;
+                pairs[2 * runs + 1] = move;
+                runs++;
+            }
+        }
+        return Arrays.copyOf(pairs, 2 * runs);
+    }
+
+    /**
+     * Returns the first move from one station towards another.
+     *
+     * @param from the index of the origin
+     * @param to the index of the destination, different from the origin
+     * @return the offset of the first edge among the outgoing edges of the
+     * origin, or -1 if the destination cannot be reached
+     */
+    public int getMove(int from, int to) {
+        // Binary search for the last run that begins at or before the destination
+        int r = rank[to];
+        int low = runStart[from];
+        int high = runStart[from + 1] - 1;
+        if (high < low) {
+            return -1;
+        }
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (runRank[mid] <= r) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return runMove[low];
+    }
+
+    /**
+     * Returns the number of stations in the database.
+     *
+     * @return the number of stations in the database
+     */
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * Returns the number of runs over all stations.
+     *
+     * @return the number of runs in the database
+     */
+    public int getRunCount() {
+        return runRank.length;
+    }
+
+    /**
+     * Returns the memory used by the arrays of the database.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        return 4L * rank.length + 4L * runStart.length + 4L * runRank.length + 2L * runMove.length;
+    }
+
+    /**
+     * Returns whether the database was built for a given station graph, as far
+     * as can be seen from the number of stations and edges and the checksum of
+     * the edges.
+     *
+     * @param graph a given station graph
+     * @return whether the database fits the graph
+     */
+    public boolean fits(StationGraph graph) {
+        return graph.getStationCount() == stationCount && graph.getEdgeCount() == edgeCount
+                && graph.getChecksum() == checksum;
+    }
+
+    /**
+     * Writes this database to a given stream.
+     *
+     * @param out a given stream
+     * @throws IOException if writing to the stream fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(stationCount);
+        data.writeInt(edgeCount);
+        data.writeInt(runRank.length);
+        data.writeLong(checksum);
+        for (int s = 0; s < stationCount; s++) {
+            data.writeInt(rank[s]);
+            data.writeInt(runStart[s]);
+        }
+        for (int i = 0; i < runRank.length; i++) {
+            data.writeInt(runRank[i]);
+            data.writeShort(runMove[i]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a database from a given stream, as written by
+     * {@link #write(OutputStream)}.
+     *
+     * @param in a given stream
+     * @return the database read from the stream
+     * @throws IOException if reading from the stream fails, or if the stream
+     * does not contain a database
+     */
+    public static FirstMoveDatabase read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("FirstMoveDatabase.read: not a path database");
+        }
+        int stationCount = data.readInt();
+        int edgeCount = data.readInt();
+        int runCount = data.readInt();
+        long checksum = data.readLong();
+        if (stationCount < 0 || edgeCount < 0 || runCount < 0) {
+            throw new IOException("FirstMoveDatabase.read: corrupt path database");
+        }
+        int[] rank = new int[stationCount];
+        int[] runStart = new int[stationCount + 1];
+        for (int s = 0; s < stationCount; s++) {
+            rank[s] = data.readInt();
+            runStart[s] = data.readInt();
+        }
+        runStart[stationCount] = runCount;
+        int[] runRank = new int[runCount];
+        short[] runMove = new short[runCount];
+        for (int i = 0; i < runCount; i++) {
+            runRank[i] = data.readInt();
+            runMove[i] = data.readShort();
+        }
+        return new FirstMoveDatabase(stationCount, edgeCount, checksum, rank, runStart, runRank, runMove);
+    }
+}
@@ -0,0 +1,92 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * stops, using a compressed path database instead of a search.
+ *
+ * The route is unpacked hop by hop, by taking the stored first move from each
+ * station on the way towards the destination.
+ *
+ * @author sanderjurgens
+ */
+public class FirstMovePlanner extends Planner {
+
+    /** The graph of all stations in the network */
+    private final StationGraph graph;
+    /** The first moves between the stations of the graph */
+    private final FirstMoveDatabase database;
+
+    /**
+     * Constructs a first move planner for a given network.
+     *
+     * @param network a given network
+     * @param graph the station graph of the network
+     * @param database the path database of the graph
+     * @throws IllegalRequestException if the database does not fit the graph
+     */
+    public FirstMovePlanner(Network network, StationGraph graph, FirstMoveDatabase database)
+            throws IllegalRequestException {
+        super(network);
+        if (!database.fits(graph)) {
+            throw new IllegalRequestException("FirstMovePlanner: database does not fit the graph");
+        }
+        this.graph = graph;
+        this.database = database;
+    }
+
+    /**
+     * Returns the path database of this planner.
+     *
+     * @return the path database of this planner
+     */
+    public FirstMoveDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of stops,
+     * and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, if the network has changed since the graph was built, or if the
+     * database does not lead to the destination
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("FirstMovePlanner.findCompactRoute: stop is null");
+        }
+        if (!graph.isCurrent(network)) {
+            throw new IllegalRequestException("FirstMovePlanner.findCompactRoute: graph is out of date");
+        }
+        route.clear();
+        int u = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (u == -1 || destination == -1) {
+            return;
+        }
+
+        // A shortest route visits every station at most once
+        for (int hops = 0; u != destination; hops++) {
+            int move = database.getMove(u, destination);
+            if (move == -1 || hops == graph.getStationCount()) {
+                route.clear();
+                if (hops == 0) {
+                    return;
+                }
+                throw new IllegalRequestException("FirstMovePlanner.findCompactRoute: no route");
+            }
+            int edge = graph.getOutBegin(u) + move;
+            graph.addHop(route, edge);
+            u = graph.getHead(edge);
+        }
+    }
+}
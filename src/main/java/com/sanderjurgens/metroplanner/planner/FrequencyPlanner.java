@@ -0,0 +1,64 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Network;
+
+/**
+ * Returns the route from origin to destination with the minimum expected
+ * travel time on lines that run at a headway rather than to a timetable: the
+ * sum of the run times of its rides, the transfer times at the stations where
+ * it changes lines, and the expected wait of half the headway of every line
+ * it boards.
+ *
+ * The search is that of the {@link MinTimePlanner}, with the expected wait for
+ * a line as the time added whenever it is boarded.
+ *
+ * @author sanderjurgens
+ */
+public class FrequencyPlanner extends MinTimePlanner {
+
+    /** The expected wait for each line, half its headway in seconds */
+    private int[] waits;
+
+    /**
+     * Constructs a frequency-based planner for a given network.
+     *
+     * @param network a given network
+     */
+    public FrequencyPlanner(Network network) {
+        super(network);
+    }
+
+    /**
+     * Computes the expected wait for every line of the network as it is now.
+     *
+     * @param graph the station graph of the network as it is now
+     */
+    @Override
+    protected void prepare(StationGraph graph) {
+        waits = new int[network.getLineSet().getCount()];
+        for (int l = 0; l < waits.length; l++) {
+            waits[l] = network.getLineSet().get(l).getHeadway() / 2;
+        }
+    }
+
+    /**
+     * Returns the expected wait for a line, half its headway.
+     *
+     * @param line the index of a line
+     * @return the expected wait in seconds
+     */
+    @Override
+    protected int getWait(int line) {
+        return waits[line];
+    }
+
+    /**
+     * Returns the expected travel time of the route found by the last query.
+     *
+     * @return the expected travel time in seconds, or -1 if no route was
+     * found
+     */
+    public int getExpectedTime() {
+        return getTime();
+    }
+}
@@ -0,0 +1,124 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import com.sanderjurgens.metroplanner.model.StationSet;
+
+/**
+ * Returns the route from origin to destination with the minimum travel time,
+ * using an A* search guided by the locations of the stations on the map.
+ *
+ * The maximum speed of the network is the largest distance on the map covered
+ * per second by any ride. No route can be faster, so the straight line
+ * distance to the destination divided by the maximum speed is a lower bound on
+ * the remaining travel time. The bound is rounded down to whole seconds and
+ * never drops by more than the time of a ride, so the keys taken from the
+ * {@link RadixHeap} still never decrease. On long queries the search expands
+ * only a corridor of the network towards the destination, rather than a disc
+ * around the origin.
+ *
+ * If a station has no location, or a ride takes no time, there is no bound
+ * and the search is that of the {@link MinTimePlanner}. The maximum speed is
+ * computed again whenever the station graph is rebuilt.
+ *
+ * @author sanderjurgens
+ */
+public class GeographicPlanner extends MinTimePlanner {
+
+    /** The horizontal coordinate of each station */
+    private int[] xs;
+    /** The vertical coordinate of each station */
+    private int[] ys;
+    /** Whether the travel time can be bounded from the locations */
+    private boolean geographic;
+    /** The largest distance on the map covered per second by any ride */
+    private double maxSpeed;
+
+    /**
+     * Constructs a geographic planner for a given network.
+     *
+     * @param network a given network
+     */
+    public GeographicPlanner(Network network) {
+        super(network);
+    }
+
+    /**
+     * Computes the locations of the stations and the maximum speed of the
+     * network as it is now.
+     *
+     * @param graph the station graph of the network as it is now
+     */
+    @Override
+    protected void prepare(StationGraph graph) {
+        StationSet staSet = network.getStationSet();
+        int n = graph.getStationCount();
+        xs = new int[n];
+        ys = new int[n];
+        geographic = true;
+        for (int v = 0; v < n; v++) {
+            Station station = staSet.get(v);
+            xs[v] = station.getX();
+            ys[v] = station.getY();
+            geographic = geographic && station.hasLocation();
+        }
+
+        // The fastest ride bounds the speed of every route
+        maxSpeed = 0;
+        for (int e = 0; e < graph.getEdgeCount() && geographic; e++) {
+            double distance = distance(graph.getTail(e), graph.getHead(e));
+            if (graph.getTime(e) > 0) {
+                maxSpeed = Math.max(maxSpeed, distance / graph.getTime(e));
+            } else if (distance > 0) {
+                geographic = false;
+            }
+        }
+        // A margin against rounding, such that the bound never exceeds the time of a ride
+        maxSpeed = maxSpeed * (1 + 1e-9);
+        geographic = geographic && maxSpeed > 0;
+    }
+
+    /**
+     * Returns the straight line distance from a station to the destination,
+     * divided by the maximum speed.
+     *
+     * @param station the index of a station
+     * @param destination the index of the destination
+     * @return the lower bound in seconds
+     */
+    @Override
+    protected int getBound(int station, int destination) {
+        return geographic ? (int) (distance(station, destination) / maxSpeed) : 0;
+    }
+
+    /**
+     * Returns the straight line distance between two stations on the map.
+     *
+     * @param u the index of a station
+     * @param v the index of another station
+     * @return the distance between the stations
+     */
+    private double distance(int u, int v) {
+        return Math.hypot(xs[u] - xs[v], ys[u] - ys[v]);
+    }
+
+    /**
+     * Returns whether the search is guided by the locations of the stations,
+     * which requires all stations to have a location.
+     *
+     * @return whether the travel time is bounded from the locations
+     */
+    public boolean isGeographic() {
+        return geographic;
+    }
+
+    /**
+     * Returns the largest distance on the map covered per second by any ride.
+     *
+     * @return the maximum speed of the network, or 0 if the search is not
+     * guided by the locations
+     */
+    public double getMaxSpeed() {
+        return geographic ? maxSpeed : 0;
+    }
+}
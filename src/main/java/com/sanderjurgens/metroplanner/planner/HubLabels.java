@@ -0,0 +1,378 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * A hub labeling of a station graph, built by pruned landmark labeling, that
+ * answers minimum stops queries without searching the graph.
+ *
+ * Every station has an outgoing label, holding hubs it can reach with their
+ * distance, and an incoming label, holding hubs that can reach it with their
+ * distance. For every pair of stations, some hub on a shortest route between
+ * them is in the outgoing label of the origin and the incoming label of the
+ * destination. A query therefore merges the two labels, which are sorted by
+ * hub, and returns the smallest sum of distances of a common hub.
+ *
+ * The labels are built by a Breadth-First Search forward and backward from
+ * every station, in order of importance. A search does not expand a station
+ * whose distance is already covered by the labels found so far, so that the
+ * searches of less important stations stay small. The labels of all stations
+ * are stored in flat arrays.
+ *
+ * @author sanderjurgens
+ */
+public class HubLabels implements DistanceOracle {
+
+    /** The number of stations in the labeling */
+    private final int stationCount;
+    /** The number of edges of the graph of the labeling */
+    private final int edgeCount;
+    /** The station of each hub, in order of importance */
+    private final int[] hubs;
+
+    /** The first entry of the outgoing label of each station, and the number of entries at the end */
+    private final int[] outStart;
+    /** The hub of each entry of the outgoing labels, in increasing order per label */
+    private final int[] outHub;
+    /** The distance to the hub of each entry of the outgoing labels */
+    private final int[] outDistance;
+
+    /** The first entry of the incoming label of each station, and the number of entries at the end */
+    private final int[] inStart;
+    /** The hub of each entry of the incoming labels, in increasing order per label */
+    private final int[] inHub;
+    /** The distance from the hub of each entry of the incoming labels */
+    private final int[] inDistance;
+
+    /** The time it took to build the labeling, in nanoseconds */
+    private final long buildTime;
+
+    /**
+     * Constructs the hub labeling of a given station graph, taking stations
+     * with more edges as more important.
+     *
+     * @param graph a given station graph
+     */
+    public HubLabels(StationGraph graph) {
+        this(graph, IntStream.range(0, graph.getStationCount()).boxed()
+                .sorted(Comparator.comparingInt((Integer v) -> graph.getOutBegin(v) - graph.getOutEnd(v)
+                        + graph.getInBegin(v) - graph.getInEnd(v)))
+                .mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Constructs the hub labeling of a given station graph, taking the order
+     * of a contraction hierarchy, where the most important stations are
+     * contracted last.
+     *
+     * @param graph a given station graph
+     * @param hierarchy the contraction hierarchy of the graph
+     */
+    public HubLabels(StationGraph graph, ContractionHierarchy hierarchy) {
+        this(graph, IntStream.range(0, graph.getStationCount()).boxed()
+                .sorted(Comparator.comparingInt((Integer v) -> -hierarchy.getRank(v)))
+                .mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Constructs the hub labeling of a given station graph, for a given order
+     * of importance.
+     *
+     * @param graph a given station graph
+     * @param order the stations from the most to the least important
+     */
+    private HubLabels(StationGraph graph, int[] order) {
+        long start = System.nanoTime();
+        stationCount = graph.getStationCount();
+        edgeCount = graph.getEdgeCount();
+        hubs = order;
+        int n = stationCount;
+        Labels out = new Labels(n);
+        Labels in = new Labels(n);
+
+        int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        int[] hubDistances = new int[n];
+        Arrays.fill(hubDistances, Integer.MAX_VALUE);
+        int[] queue = new int[n];
+        for (int h = 0; h < n; h++) {
+            int v = order[h];
+            // Forward: the hub reaches other stations, and joins their incoming labels
+            prune(graph, v, h, out, in, true, distances, hubDistances, queue);
+            // Backward: other stations reach the hub, and it joins their outgoing labels
+            prune(graph, v, h, in, out, false, distances, hubDistances, queue);
+        }
+
+        outStart = new int[n + 1];
+        inStart = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            outStart[v + 1] = outStart[v] + out.sizes[v];
+            inStart[v + 1] = inStart[v] + in.sizes[v];
+        }
+        outHub = new int[outStart[n]];
+        outDistance = new int[outStart[n]];
+        inHub = new int[inStart[n]];
+        inDistance = new int[inStart[n]];
+        for (int v = 0; v < n; v++) {
+            for (int i = 0; i < out.sizes[v]; i++) {
+                outHub[outStart[v] + i] = out.entries[v][2 * i];
+                outDistance[outStart[v] + i] = out.entries[v][2 * i + 1];
+            }
+            for (int i = 0; i < in.sizes[v]; i++) {
+                inHub[inStart[v] + i] = in.entries[v][2 * i];
+                inDistance[inStart[v] + i] = in.entries[v][2 * i + 1];
+            }
+        }
+        buildTime = System.nanoTime() - start;
+    }
+
+    /**
+     * Runs a pruned Breadth-First Search from a hub, in one direction, and
+     * adds the hub to the labels of the stations whose distance is not yet
+     * covered.
+     *
+     * @param graph the station graph
+     * @param v the index of the station of the hub
+     * @param h the number of the hub
+     * @param own the labels of the hub station used for pruning
+     * @param reached the labels to which the hub is added
+     * @param forward whether to search along or against the edges
+     * @param distances the distance of each station, -1 for all stations
+     * @param hubDistances the distance of each hub in the own label of the
+     * hub station, {@link Integer#MAX_VALUE} for all hubs
+     * @param queue the queue of the search
+     */
+    private static void prune(StationGraph graph, int v, int h, Labels own, Labels reached, boolean forward,
+            int[] distances, int[] hubDistances, int[] queue) {
+        for (int i = 0; i < own.sizes[v]; i++) {
+            hubDistances[own.entries[v][2 * i]] = own.entries[v][2 * i + 1];
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = v;
+        distances[v] = 0;
+        while (head < tail) {
+            int u = queue[head++];
+            int d = distances[u];
+            // Skip stations whose distance is covered by more important hubs
+            if (covered(reached, u, hubDistances, d)) {
+                continue;
+            }
+            reached.add(u, h, d);
+            int begin = forward ? graph.getOutBegin(u) : graph.getInBegin(u);
+            int end = forward ? graph.getOutEnd(u) : graph.getInEnd(u);
+            for (int i = begin; i < end; i++) {
+                int w = forward ? graph.getHead(i) : graph.getTail(graph.getInEdge(i));
+                if (distances[w] == -1) {
+                    distances[w] = d + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++) {
+            distances[queue[i]] = -1;
+        }
+        for (int i = 0; i < own.sizes[v]; i++) {
+            hubDistances[own.entries[v][2 * i]] = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns whether the distance of a station to or from the current hub
+     * is covered by the hubs already in its label.
+     *
+     * @param labels the labels of the stations
+     * @param u the index of a station
+     * @param hubDistances the distance of each hub in the label of the
+     * current hub station
+     * @param d the distance found by the search
+     * @return whether a common hub gives a distance of at most d
+     */
+    private static boolean covered(Labels labels, int u, int[] hubDistances, int d) {
+        int[] entries = labels.entries[u];
+        for (int i = 0; i < labels.sizes[u]; i++) {
+            int other = hubDistances[entries[2 * i]];
+            if (other != Integer.MAX_VALUE && other + entries[2 * i + 1] <= d) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the minimum number of stops from one station to another, by
+     * merging the outgoing label of the origin with the incoming label of the
+     * destination.
+     *
+     * @param from the index of the origin
+     * @param to the index of the destination
+     * @return the minimum number of stops, or -1 if the destination cannot be
+     * reached
+     */
+    @Override
+    public int getDistance(int from, int to) {
+        int best = Integer.MAX_VALUE;
+        int i = outStart[from];
+        int j = inStart[to];
+        int iEnd = outStart[from + 1];
+        int jEnd = inStart[to + 1];
+        while (i < iEnd && j < jEnd) {
+            int a = outHub[i];
+            int b = inHub[j];
+            if (a == b) {
+                best = Math.min(best, outDistance[i++] + inDistance[j++]);
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return best == Integer.MAX_VALUE ? -1 : best;
+    }
+
+    /**
+     * Returns the number of stations in the labeling.
+     *
+     * @return the number of stations in the labeling
+     */
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * Returns the station of a hub.
+     *
+     * @param hub the number of a hub, where 0 is the most important
+     * @return the index of the station
+     */
+    public int getHub(int hub) {
+        return hubs[hub];
+    }
+
+    /**
+     * Returns the size of the outgoing label of a given station.
+     *
+     * @param station the index of a station
+     * @return the number of hubs in the outgoing label
+     */
+    public int getOutLabelSize(int station) {
+        return outStart[station + 1] - outStart[station];
+    }
+
+    /**
+     * Returns the size of the incoming label of a given station.
+     *
+     * @param station the index of a station
+     * @return the number of hubs in the incoming label
+     */
+    public int getInLabelSize(int station) {
+        return inStart[station + 1] - inStart[station];
+    }
+
+    /**
+     * Returns the total size of all labels.
+     *
+     * @return the number of entries in all labels
+     */
+    public long getLabelCount() {
+        return (long) outHub.length + inHub.length;
+    }
+
+    /**
+     * Returns the average size of a label.
+     *
+     * @return the average number of hubs in a label, or 0 if there are no
+     * stations
+     */
+    public double getAverageLabelSize() {
+        return stationCount == 0 ? 0 : (double) getLabelCount() / (2 * stationCount);
+    }
+
+    /**
+     * Returns the size of the largest label.
+     *
+     * @return the largest number of hubs in a label
+     */
+    public int getMaxLabelSize() {
+        int max = 0;
+        for (int v = 0; v < stationCount; v++) {
+            max = Math.max(max, Math.max(getOutLabelSize(v), getInLabelSize(v)));
+        }
+        return max;
+    }
+
+    /**
+     * Returns whether the labeling was built for a given station graph, as far
+     * as can be seen from the number of stations and edges.
+     *
+     * @param graph a given station graph
+     * @return whether the labeling fits the graph
+     */
+    public boolean fits(StationGraph graph) {
+        return graph.getStationCount() == stationCount && graph.getEdgeCount() == edgeCount;
+    }
+
+    /**
+     * Returns the memory used by the labels.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        return 4L * (outStart.length + inStart.length + hubs.length) + 8L * getLabelCount();
+    }
+
+    /**
+     * Returns the time it took to build the labeling.
+     *
+     * @return the build time in nanoseconds
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    @Override
+    public String toString() {
+        return "HubLabels[" + stationCount + " stations, " + getLabelCount() + " entries, " + getMemoryUsage()
+                + " bytes, " + (buildTime / 1000000) + " ms]";
+    }
+
+    /**
+     * The labels of all stations while they are built, as growing lists of
+     * pairs of hub and distance.
+     */
+    private static final class Labels {
+
+        /** The entries of the label of each station */
+        private final int[][] entries;
+        /** The number of entries in the label of each station */
+        private final int[] sizes;
+
+        /**
+         * Constructs empty labels for a given number of stations.
+         *
+         * @param n the number of stations
+         */
+        private Labels(int n) {
+            entries = new int[n][4];
+            sizes = new int[n];
+        }
+
+        /**
+         * Adds a hub to the label of a station.
+         *
+         * @param v the index of a station
+         * @param h the number of the hub
+         * @param d the distance of the hub
+         */
+        private void add(int v, int h, int d) {
+            if (2 * sizes[v] == entries[v].length) {
+                entries[v] = Arrays.copyOf(entries[v], 2 * entries[v].length);
+            }
+            entries[v][2 * sizes[v]] = h;
+            entries[v][2 * sizes[v] + 1] = d;
+            sizes[v]++;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import java.util.Arrays;
+
+/**
+ * An indexed binary min-heap of nodes with integer keys, for searches that
+ * need to lower the key of a node already in the heap.
+ *
+ * The nodes are numbered from zero up to the capacity of the heap, and every
+ * node is in the heap at most once. No memory is allocated after the heap is
+ * constructed.
+ *
+ * @author sanderjurgens
+ */
+public class IntHeap {
+
+    /** The nodes in the heap, in heap order */
+    private final int[] nodes;
+    /** The key of each node */
+    private final int[] keys;
+    /** The position of each node in the heap, or -1 if it is not in the heap */
+    private final int[] positions;
+    /** The number of nodes in the heap */
+    private int size;
+
+    /**
+     * Constructs an empty heap for a given number of nodes.
+     *
+     * @param capacity the number of nodes
+     */
+    public IntHeap(int capacity) {
+        nodes = new int[capacity];
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+        size = 0;
+    }
+
+    /**
+     * Returns whether the heap is empty.
+     *
+     * @return whether the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of nodes in the heap.
+     *
+     * @return the number of nodes in the heap
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns whether a given node is in the heap.
+     *
+     * @param node a given node
+     * @return whether the node is in the heap
+     */
+    public boolean contains(int node) {
+        return positions[node] != -1;
+    }
+
+    /**
+     * Returns the key of a given node in the heap.
+     *
+     * @param node a node in the heap
+     * @return the key of the node
+     */
+    public int getKey(int node) {
+        return keys[node];
+    }
+
+    /**
+     * Returns the smallest key in the heap.
+     *
+     * @return the smallest key, or {@link Integer#MAX_VALUE} if the heap is
+     * empty
+     */
+    public int peekKey() {
+        return size == 0 ? Integer.MAX_VALUE : keys[nodes[0]];
+    }
+
+    /**
+     * Adds a node to the heap, or lowers its key if it is already in the heap
+     * with a larger key.
+     *
+     * @param node a given node
+     * @param key the key of the node
+     * @return whether the node was added or its key was lowered
+     */
+    public boolean offer(int node, int key) {
+        int i = positions[node];
+        if (i == -1) {
+            i = size;
+            size = size + 1;
+        } else if (key >= keys[node]) {
+            return false;
+        }
+        keys[node] = key;
+        // Move the node up until its parent has a smaller key
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[nodes[parent]] <= key) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            positions[nodes[i]] = i;
+            i = parent;
+        }
+        nodes[i] = node;
+        positions[node] = i;
+        return true;
+    }
+
+    /**
+     * Removes the node with the smallest key from the heap.
+     *
+     * @return the node with the smallest key
+     */
+    public int poll() {
+        int top = nodes[0];
+        positions[top] = -1;
+        size = size - 1;
+        if (size > 0) {
+            // Move the last node down from the top until its children have larger keys
+            int node = nodes[size];
+            int key = keys[node];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[nodes[child + 1]] < keys[nodes[child]]) {
+                    child = child + 1;
+                }
+                if (key <= keys[nodes[child]]) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                positions[nodes[i]] = i;
+                i = child;
+            }
+            nodes[i] = node;
+            positions[node] = i;
+        }
+        return top;
+    }
+
+    /**
+     * Removes all nodes from the heap, in time proportional to their number.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[nodes[i]] = -1;
+        }
+        size = 0;
+    }
+}
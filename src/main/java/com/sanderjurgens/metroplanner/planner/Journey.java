@@ -0,0 +1,189 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Timetable;
+
+/**
+ * A journey through a timetable: a sequence of legs, each ridden by a single
+ * trip, with the times at which they depart and arrive.
+ *
+ * The legs are stored in a single array of integers, such that long lists of
+ * journeys, as found by profile queries, stay small. A journey can be turned
+ * into a {@link Route} of {@link TimedRouteSegment}s, or into a
+ * {@link CompactRoute}.
+ *
+ * @author sanderjurgens
+ */
+public class Journey {
+
+    /** The number of integers per leg */
+    private static final int LEG = 6;
+
+    /** The line, begin, end, direction, departure and arrival of each leg */
+    private final int[] legs;
+
+    /**
+     * Constructs a journey from its legs.
+     *
+     * @param legs the line, position where it begins, position where it ends,
+     * direction (1 for forward), departure and arrival of each leg
+     * @throws IllegalRequestException if the legs are not given as six
+     * integers each
+     */
+    public Journey(int[] legs) throws IllegalRequestException {
+        if (legs.length % LEG != 0) {
+            throw new IllegalRequestException("Journey: legs are not complete");
+        }
+        this.legs = legs;
+    }
+
+    /**
+     * Returns the number of legs.
+     *
+     * @return the number of legs
+     */
+    public int getLegCount() {
+        return legs.length / LEG;
+    }
+
+    /**
+     * Returns whether the journey has no legs.
+     *
+     * @return whether the journey is empty
+     */
+    public boolean isEmpty() {
+        return legs.length == 0;
+    }
+
+    /**
+     * Returns the number of transfers between the legs.
+     *
+     * @return the number of transfers
+     */
+    public int getTransfers() {
+        return Math.max(0, getLegCount() - 1);
+    }
+
+    /**
+     * Returns the line of a leg.
+     *
+     * @param i the index of a leg
+     * @return the index of the line
+     */
+    public int getLine(int i) {
+        return legs[LEG * i];
+    }
+
+    /**
+     * Returns the position on the line where a leg begins.
+     *
+     * @param i the index of a leg
+     * @return the position of the stop on the line
+     */
+    public int getFrom(int i) {
+        return legs[LEG * i + 1];
+    }
+
+    /**
+     * Returns the position on the line where a leg ends.
+     *
+     * @param i the index of a leg
+     * @return the position of the stop on the line
+     */
+    public int getTo(int i) {
+        return legs[LEG * i + 2];
+    }
+
+    /**
+     * Returns whether a leg is ridden towards the last stop of its line.
+     *
+     * @param i the index of a leg
+     * @return whether the leg is ridden forward
+     */
+    public boolean isForward(int i) {
+        return legs[LEG * i + 3] != 0;
+    }
+
+    /**
+     * Returns the departure of a leg.
+     *
+     * @param i the index of a leg
+     * @return the departure time in seconds since midnight
+     */
+    public int getDeparture(int i) {
+        return legs[LEG * i + 4];
+    }
+
+    /**
+     * Returns the arrival of a leg.
+     *
+     * @param i the index of a leg
+     * @return the arrival time in seconds since midnight
+     */
+    public int getArrival(int i) {
+        return legs[LEG * i + 5];
+    }
+
+    /**
+     * Returns the departure of the journey, which is that of its first leg.
+     *
+     * @return the departure time, or -1 if the journey is empty
+     */
+    public int getDeparture() {
+        return isEmpty() ? -1 : getDeparture(0);
+    }
+
+    /**
+     * Returns the arrival of the journey, which is that of its last leg.
+     *
+     * @return the arrival time, or -1 if the journey is empty
+     */
+    public int getArrival() {
+        return isEmpty() ? -1 : getArrival(getLegCount() - 1);
+    }
+
+    /**
+     * Returns the equivalent route, of which every segment is timed.
+     *
+     * @param network the network of the journey
+     * @return a route of {@link TimedRouteSegment}s
+     * @throws IllegalRequestException if a leg does not fit its line
+     */
+    public Route toRoute(Network network) throws IllegalRequestException {
+        Route route = new Route();
+        for (int i = 0; i < getLegCount(); i++) {
+            Line line = network.getLineSet().get(getLine(i));
+            boolean forward = isForward(i);
+            TimedRouteSegment segment = new TimedRouteSegment(line, line.getStop(getFrom(i)), line.getStop(getTo(i)),
+                    forward ? line.getTerminalB() : line.getTerminalA(), getDeparture(i), getArrival(i));
+            // Passing the terminal means using the circular nature of the line
+            segment.setCircular(forward ? getTo(i) < getFrom(i) : getFrom(i) < getTo(i));
+            route.append(segment);
+        }
+        return route;
+    }
+
+    /**
+     * Stores the segments of the journey, without times, in a given compact
+     * route.
+     *
+     * @param route the compact route in which to store the journey
+     */
+    public void toCompactRoute(CompactRoute route) {
+        route.clear();
+        for (int i = 0; i < getLegCount(); i++) {
+            route.add(getLine(i), getFrom(i), getTo(i), isForward(i));
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "Journey[]";
+        }
+        return "Journey[" + Timetable.formatTime(getDeparture()) + "-" + Timetable.formatTime(getArrival())
+                + ", " + getTransfers() + " transfers]";
+    }
+}
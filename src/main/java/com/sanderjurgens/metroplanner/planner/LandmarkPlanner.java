@@ -0,0 +1,302 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * stops, using an A* search guided by landmarks (ALT).
+ *
+ * A few landmark stations are chosen far apart, and the distance to and from
+ * every landmark is precomputed for all stations. By the triangle inequality,
+ * these distances give a lower bound on the number of stops from any station
+ * to the destination, which steers the search towards it without losing
+ * optimality.
+ *
+ * The preprocessing is only a Breadth-First Search forward and backward per
+ * landmark, run in parallel. It is redone automatically when the network has
+ * changed since it was last built, or on request by {@link #rebuild()}.
+ *
+ * @author sanderjurgens
+ */
+public class LandmarkPlanner extends Planner {
+
+    /** The number of landmarks to choose */
+    private final int landmarkCount;
+
+    /** The graph of all stations in the network */
+    private StationGraph graph;
+    /** The version of the network when the landmarks were built */
+    private long version;
+    /** The number of edits of the network when the landmarks were built */
+    private long edits;
+    /** The index of each landmark station */
+    private int[] landmarks;
+    /** The distance from each station to each landmark, per landmark, or -1 */
+    private int[] toLandmark;
+    /** The distance from each landmark to each station, per landmark, or -1 */
+    private int[] fromLandmark;
+
+    /** The queue of the search */
+    private IntHeap heap;
+    /** The distance of each station from the origin */
+    private int[] distances;
+    /** The previous station of each station */
+    private int[] parents;
+    /** The query in which each station was reached */
+    private int[] reached;
+    /** The number of the current query */
+    private int query;
+    /** The stations of a route, from destination to origin */
+    private int[] path;
+    /** The number of stations settled by the last query */
+    private int settled;
+
+    /**
+     * Constructs a landmark planner for a given network.
+     *
+     * @param network a given network
+     * @param landmarkCount the number of landmarks to choose
+     * @throws IllegalRequestException if the number of landmarks is not
+     * positive
+     */
+    public LandmarkPlanner(Network network, int landmarkCount) throws IllegalRequestException {
+        super(network);
+        if (landmarkCount <= 0) {
+            throw new IllegalRequestException("LandmarkPlanner: landmark count is not positive");
+        }
+        this.landmarkCount = landmarkCount;
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the station graph and landmarks for the network as it is now.
+     */
+    public final void rebuild() {
+        version = network.getVersion();
+        edits = network.getEditCount();
+        graph = new StationGraph(network);
+        int n = graph.getStationCount();
+        landmarks = chooseLandmarks(Math.min(landmarkCount, n));
+        toLandmark = new int[landmarks.length * n];
+        fromLandmark = new int[landmarks.length * n];
+        ThreadLocal<int[]> queues = ThreadLocal.withInitial(() -> new int[n]);
+        IntStream.range(0, 2 * landmarks.length).parallel().forEach(i -> {
+            int[] target = i % 2 == 0 ? fromLandmark : toLandmark;
+            search(landmarks[i / 2], i % 2 == 0, target, (i / 2) * n, queues.get());
+        });
+
+        heap = new IntHeap(n);
+        distances = new int[n];
+        parents = new int[n];
+        reached = new int[n];
+        query = 0;
+        path = new int[n];
+    }
+
+    /**
+     * Chooses landmarks far apart: each next landmark is the station farthest
+     * from the landmarks chosen so far, where stations not reached count as
+     * farthest away.
+     *
+     * @param count the number of landmarks to choose
+     * @return the indices of the landmark stations
+     */
+    private int[] chooseLandmarks(int count) {
+        int n = graph.getStationCount();
+        int[] chosen = new int[count];
+        int[] nearest = new int[n];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        int[] reach = new int[n];
+        int[] queue = new int[n];
+        // Start from the station with the most edges
+        int next = 0;
+        for (int v = 1; v < n; v++) {
+            if (graph.getOutEnd(v) - graph.getOutBegin(v) > graph.getOutEnd(next) - graph.getOutBegin(next)) {
+                next = v;
+            }
+        }
+        for (int l = 0; l < count; l++) {
+            chosen[l] = next;
+            search(next, false, reach, 0, queue);
+            for (int v = 0; v < n; v++) {
+                if (reach[v] != -1) {
+                    nearest[v] = Math.min(nearest[v], reach[v]);
+                }
+            }
+            nearest[next] = -1;
+            for (int v = 0; v < n; v++) {
+                if (nearest[v] > nearest[next]) {
+                    next = v;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Runs a Breadth-First Search from or towards a station, and stores the
+     * distances of all stations.
+     *
+     * @param source the index of the station
+     * @param forward whether to search along or against the edges
+     * @param target the array in which to store the distances, or -1
+     * @param offset the position of the first distance in the array
+     * @param queue the queue of the search
+     */
+    private void search(int source, boolean forward, int[] target, int offset, int[] queue) {
+        int n = graph.getStationCount();
+        Arrays.fill(target, offset, offset + n, -1);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        target[offset + source] = 0;
+        while (head < tail) {
+            int u = queue[head++];
+            int begin = forward ? graph.getOutBegin(u) : graph.getInBegin(u);
+            int end = forward ? graph.getOutEnd(u) : graph.getInEnd(u);
+            for (int i = begin; i < end; i++) {
+                int w = forward ? graph.getHead(i) : graph.getTail(graph.getInEdge(i));
+                if (target[offset + w] == -1) {
+                    target[offset + w] = target[offset + u] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a lower bound on the number of stops from one station to
+     * another, by the triangle inequality over all landmarks.
+     *
+     * @param v the index of a station
+     * @param t the index of the destination
+     * @return a lower bound on the distance
+     */
+    private int bound(int v, int t) {
+        int n = graph.getStationCount();
+        int best = 0;
+        for (int l = 0; l < landmarks.length; l++) {
+            // d(v, t) >= d(v, L) - d(t, L)
+            int vl = toLandmark[l * n + v];
+            int tl = toLandmark[l * n + t];
+            if (vl != -1 && tl != -1) {
+                best = Math.max(best, vl - tl);
+            }
+            // d(v, t) >= d(L, t) - d(L, v)
+            int lv = fromLandmark[l * n + v];
+            int lt = fromLandmark[l * n + t];
+            if (lv != -1 && lt != -1) {
+                best = Math.max(best, lt - lv);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of stops,
+     * and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("LandmarkPlanner.findCompactRoute: stop is null");
+        }
+        route.clear();
+        if (version != network.getVersion() || edits != network.getEditCount()) {
+            rebuild();
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        settled = 0;
+        if (origin == -1 || destination == -1 || origin == destination) {
+            return;
+        }
+
+        // A* search, where the key of a station is its distance plus the lower bound
+        query = query + 1;
+        heap.clear();
+        distances[origin] = 0;
+        parents[origin] = -1;
+        reached[origin] = query;
+        heap.offer(origin, bound(origin, destination));
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled++;
+            if (u == destination) {
+                break;
+            }
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                int w = graph.getHead(e);
+                int d = distances[u] + 1;
+                if (reached[w] != query || (d < distances[w] && heap.contains(w))) {
+                    reached[w] = query;
+                    distances[w] = d;
+                    parents[w] = u;
+                    heap.offer(w, d + bound(w, destination));
+                }
+            }
+        }
+        if (reached[destination] != query) {
+            return;
+        }
+
+        // Follow the stations back to the origin, then ride between them in order
+        int length = 0;
+        for (int v = destination; v != -1; v = parents[v]) {
+            path[length++] = v;
+        }
+        int edge = -1;
+        for (int i = length - 1; i > 0; i--) {
+            edge = graph.findEdge(path[i], path[i - 1], edge);
+            graph.addHop(route, edge);
+        }
+    }
+
+    /**
+     * Returns the number of landmarks chosen.
+     *
+     * @return the number of landmarks
+     */
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * Returns the station of a landmark.
+     *
+     * @param landmark the number of a landmark
+     * @return the landmark station
+     */
+    public Station getLandmark(int landmark) {
+        return network.getStationSet().get(landmarks[landmark]);
+    }
+
+    /**
+     * Returns the number of stations settled by the last query.
+     *
+     * @return the number of stations settled
+     */
+    public int getSettledCount() {
+        return settled;
+    }
+
+    /**
+     * Returns the memory used by the landmark distances.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        return 4L * (toLandmark.length + fromLandmark.length);
+    }
+}
@@ -8,7 +8,6 @@ import java.awt.Color;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Queue;
-import java.util.Stack;
 
 /**
  * Returns the route from origin to destination with the minimum number of
@@ -20,6 +19,8 @@ public class MinStopsPlanner extends Planner {
 
     /** Additional network data needed to perform the algorithm */
     private HashMap<Station, StationData> dataMap;
+    /** The strongly connected components of the network */
+    private ComponentIndex components;
 
     /**
      * Constructs a minimum stops planner for a given network.
@@ -29,23 +30,37 @@ public class MinStopsPlanner extends Planner {
     public MinStopsPlanner(Network network) {
         super(network);
         dataMap = new HashMap<>();
+        components = ComponentIndex.of(network);
     }
 
     /**
-     * Finds a route from origin to destination with a minimum number of stops.
+     * Finds a route from origin to destination with a minimum number of stops,
+     * and stores it in a given compact route.
      *
      * @param from origin
      * @param to destination
-     * @return a route from origin to destination with a minimum number of stops
+     * @param route the compact route in which to store the route found
      * @throws IllegalRequestException if the origin or destination is equal to
      * null
      */
     @Override
-    public Route findRoute(Station from, Station to) throws IllegalRequestException {
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
         if (from == null || to == null) {
             throw new IllegalRequestException("Line.getIndex: stop is null");
         }
 
+        // A destination outside the reach of the origin is answered at once
+        if (!components.isCurrent(network)) {
+            components = ComponentIndex.of(network);
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (origin != -1 && destination != -1 && !components.canReach(origin, destination)) {
+            route.clear();
+            return;
+        }
+
         // Initialization of Breadth-First Search data
         Queue<Station> queue = new LinkedList<>();
         for (Station station : network.getStationSet()) {
@@ -81,7 +96,8 @@ public class MinStopsPlanner extends Planner {
                     // Update data of unvisited reachable neighbors and add to queue
                     if (prevStation != null
                             && dataMap.get(prevStation).getColor() == Color.WHITE
-                            && !line.isOneWay()) {
+                            && !line.isOneWay()
+                            && isRelevant(prevStation, origin, destination)) {
                         dataMap.get(prevStation).setColor(Color.GRAY);
                         dataMap.get(prevStation).setParent(stop);
                         dataMap.get(prevStation).setDistance(dataMap.get(stop).getDistance() + 1);
@@ -89,7 +105,8 @@ public class MinStopsPlanner extends Planner {
                         queue.offer(prevStation);
                     }
                     if (nextStation != null
-                            && dataMap.get(nextStation).getColor() == Color.WHITE) {
+                            && dataMap.get(nextStation).getColor() == Color.WHITE
+                            && isRelevant(nextStation, origin, destination)) {
                         dataMap.get(nextStation).setColor(Color.GRAY);
                         dataMap.get(nextStation).setParent(stop);
                         dataMap.get(nextStation).setDistance(dataMap.get(stop).getDistance() + 1);
@@ -103,52 +120,40 @@ public class MinStopsPlanner extends Planner {
         }
 
         // Path reconstruction if a route is found
-        Route route = new Route();
+        route.clear();
         if (dataMap.get(to).getColor() == Color.GRAY && from != to) {
-            // Reconstruct path in reverse by following parent pointers
-            Stack<Station> stack = new Stack<>();
+            // Collect the path in reverse by following parent pointers
+            int distance = dataMap.get(to).getDistance();
+            Station[] path = new Station[distance + 1];
             Station stop = to;
-            while (stop != null) {
-                stack.push(stop);
-                // If the next parent is the origin, set its departing line
-                if (dataMap.get(stop).getParent() == from) {
-                    dataMap.get(from).setLine(dataMap.get(stop).getLine());
-                }
+            for (int i = distance; i >= 0; i--) {
+                path[i] = stop;
                 stop = dataMap.get(stop).getParent();
             }
-            // Reverse the path by using the stack            
-            stop = stack.pop();
-            RouteSegment segment = new RouteSegment(dataMap.get(stop).getLine(),
-                    from, stop, stop);            
-            while (!stack.isEmpty()) {
-                stop = stack.pop();
-                Station segmentEnd = segment.getToStation();
-                Line line = dataMap.get(stop).getLine();
-                // Determine terminal
-                int f = line.getIndex(segmentEnd);
-                int t = line.getIndex(stop);                
-                Station terminal = line.getTerminalA();
+            // Add the rides in order, extending the segment while on the same line
+            for (int i = 1; i <= distance; i++) {
+                Line line = dataMap.get(path[i]).getLine();
+                int f = line.getIndex(path[i - 1]);
+                int t = line.getIndex(path[i]);
                 // Complex logic due to circular lines
-                if ((f + 1) == t || (t == 0 && f == (line.getCount()-1))) {
-                    terminal = line.getTerminalB();
-                }
-                // Expand current segment if stop is on the same line as the segment
-                if (line == segment.getLine()) {
-                    segment.setDirection(terminal);
-                    segment.setToStation(stop);
-                } else {
-                    // Add previous segment to route and start a new one if stop is on another line
-                    route.add(segment);
-                    segment = new RouteSegment(line, segmentEnd, stop, terminal);
-                }
-                // Check for usage of circular lines
-                if (Math.abs(t - f) > 1) {
-                    segment.setCircular(true);
-                }
+                boolean forward = (f + 1) == t || (t == 0 && f == (line.getCount() - 1));
+                route.addHop(network.getLineSet().getIndex(line), f, t, forward);
             }
-            route.add(segment);
         }
+    }
 
-        return route;
+    /**
+     * Returns whether a station can lie on a route from origin to destination,
+     * such that the search need not expand it otherwise.
+     *
+     * @param station a given station
+     * @param origin the index of the origin, or -1 if unknown
+     * @param destination the index of the destination, or -1 if unknown
+     * @return whether the station can lie on a route
+     */
+    private boolean isRelevant(Station station, int origin, int destination) {
+        int index = network.getStationSet().getIndex(station);
+        return origin == -1 || destination == -1 || index == -1
+                || components.isRelevant(index, origin, destination);
     }
 }
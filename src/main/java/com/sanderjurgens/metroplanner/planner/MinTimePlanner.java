@@ -0,0 +1,240 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+
+/**
+ * Returns the route from origin to destination with the minimum travel time,
+ * the sum of the run times of its rides and the transfer times at the
+ * stations where it changes lines.
+ *
+ * Since the cost of continuing from a station depends on the line on which it
+ * was reached, Dijkstra's algorithm runs over the edges of the station graph
+ * rather than its stations: the time of an edge is the earliest arrival at its
+ * head by riding it. The keys are whole seconds, so the queue is a
+ * {@link RadixHeap} of plain integers.
+ *
+ * The station graph is rebuilt automatically when the network has changed
+ * since it was last built.
+ *
+ * Subclasses change the search through two hooks: the wait for a line, added
+ * whenever it is boarded, and a lower bound on the remaining travel time, added
+ * to the key of an edge to turn the search into an A* search.
+ *
+ * @author sanderjurgens
+ */
+public class MinTimePlanner extends Planner {
+
+    /** The graph of all stations in the network */
+    private StationGraph graph;
+    /** The version of the network when the graph was built */
+    private long version;
+    /** The number of edits of the network when the graph was built */
+    private long edits;
+    /** The transfer time of each station, in seconds */
+    private int[] transferTimes;
+
+    /** The queue of the search */
+    private final RadixHeap heap;
+    /** The earliest arrival over each edge */
+    private int[] times;
+    /** The previous edge of each edge, or -1 for the first ride */
+    private int[] parents;
+    /** The query in which each edge was reached */
+    private int[] reached;
+    /** The query in which each edge was settled */
+    private int[] settled;
+    /** The number of the current query */
+    private int query;
+    /** The edges of a route, from destination to origin */
+    private int[] path;
+    /** The travel time of the route found by the last query */
+    private int time;
+    /** The number of edges settled by the last query */
+    private int settledCount;
+
+    /**
+     * Constructs a minimum time planner for a given network.
+     *
+     * @param network a given network
+     */
+    public MinTimePlanner(Network network) {
+        super(network);
+        heap = new RadixHeap();
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the station graph for the network as it is now.
+     */
+    private void rebuild() {
+        version = network.getVersion();
+        edits = network.getEditCount();
+        graph = new StationGraph(network);
+        int n = graph.getStationCount();
+        int m = graph.getEdgeCount();
+        transferTimes = new int[n];
+        for (int v = 0; v < n; v++) {
+            transferTimes[v] = network.getStationSet().get(v).getTransferTime();
+        }
+        times = new int[m];
+        parents = new int[m];
+        reached = new int[m];
+        settled = new int[m];
+        query = 0;
+        path = new int[m];
+        prepare(graph);
+    }
+
+    /**
+     * Prepares the data of a subclass for a station graph that was just built.
+     * This is called from the constructor as well, before the constructor of
+     * the subclass runs, so the fields it sets must not have initializers.
+     *
+     * @param graph the station graph of the network as it is now
+     */
+    protected void prepare(StationGraph graph) {
+    }
+
+    /**
+     * Returns the time added whenever a line is boarded, at the origin or at a
+     * transfer.
+     *
+     * @param line the index of a line
+     * @return the wait for the line in seconds
+     */
+    protected int getWait(int line) {
+        return 0;
+    }
+
+    /**
+     * Returns a lower bound on the travel time from a station to the
+     * destination. The bound must never exceed the travel time, and never
+     * drop by more than the time of a ride, such that the keys taken from the
+     * heap never decrease.
+     *
+     * @param station the index of a station
+     * @param destination the index of the destination
+     * @return the lower bound in seconds
+     */
+    protected int getBound(int station, int destination) {
+        return 0;
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum travel time,
+     * and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("MinTimePlanner.findCompactRoute: stop is null");
+        }
+        route.clear();
+        if (version != network.getVersion() || edits != network.getEditCount()) {
+            rebuild();
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        time = origin != -1 && origin == destination ? 0 : -1;
+        settledCount = 0;
+        if (origin == -1 || destination == -1 || origin == destination) {
+            return;
+        }
+
+        // Dijkstra's algorithm over the edges, starting with boarding every line at the origin
+        query = query + 1;
+        heap.clear();
+        for (int e = graph.getOutBegin(origin); e < graph.getOutEnd(origin); e++) {
+            reach(e, getWait(graph.getLine(e)) + graph.getTime(e), -1, destination);
+        }
+        int last = -1;
+        while (!heap.isEmpty()) {
+            int e = heap.poll();
+            if (settled[e] == query) {
+                continue;
+            }
+            settled[e] = query;
+            settledCount++;
+            int v = graph.getHead(e);
+            if (v == destination) {
+                last = e;
+                break;
+            }
+            for (int f = graph.getOutBegin(v); f < graph.getOutEnd(v); f++) {
+                int arrival = times[e] + graph.getTime(f);
+                if (!graph.continues(e, f)) {
+                    arrival = arrival + transferTimes[v] + getWait(graph.getLine(f));
+                }
+                reach(f, arrival, e, destination);
+            }
+        }
+        if (last == -1) {
+            return;
+        }
+
+        // Follow the previous edges back to the origin, then add the rides in order
+        time = times[last];
+        int length = 0;
+        for (int e = last; e != -1; e = parents[e]) {
+            path[length++] = e;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            graph.addHop(route, path[i]);
+        }
+    }
+
+    /**
+     * Reaches an edge at a given time, if that is earlier than before.
+     *
+     * @param edge the index of an edge
+     * @param arrival the arrival at the head of the edge
+     * @param parent the previous edge, or -1
+     * @param destination the index of the destination
+     */
+    private void reach(int edge, int arrival, int parent, int destination) {
+        if (reached[edge] != query || arrival < times[edge]) {
+            reached[edge] = query;
+            times[edge] = arrival;
+            parents[edge] = parent;
+            heap.offer(edge, arrival + getBound(graph.getHead(edge), destination));
+        }
+    }
+
+    /**
+     * Returns the travel time of the route found by the last query.
+     *
+     * @return the travel time in seconds, or -1 if no route was found
+     */
+    public int getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the number of edges settled by the last query.
+     *
+     * @return the number of edges settled
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Returns false, since removing a stop from a line adds up the run times
+     * on both sides of it, so no travel time drops.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isImprovedByRemovedStops() {
+        return false;
+    }
+}
@@ -4,11 +4,12 @@ import com.sanderjurgens.metroplanner.model.IllegalRequestException;
 import com.sanderjurgens.metroplanner.model.Line;
 import com.sanderjurgens.metroplanner.model.Network;
 import com.sanderjurgens.metroplanner.model.Station;
+import com.sanderjurgens.metroplanner.model.TransferPoint;
 import java.awt.Color;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
-import java.util.Stack;
 
 /**
  * Returns the route from origin to destination with the minimum number of
@@ -20,6 +21,8 @@ public class MinTransfersPlanner extends Planner {
 
     /** Additional network data needed to perform the algorithm */
     private HashMap<Line, LineData> dataMap;
+    /** The strongly connected components of the network */
+    private ComponentIndex components;
 
     /**
      * Constructs a minimum transfer planner for a given network.
@@ -29,25 +32,38 @@ public class MinTransfersPlanner extends Planner {
     public MinTransfersPlanner(Network network) {
         super(network);
         dataMap = new HashMap<>();
+        components = ComponentIndex.of(network);
     }
 
     /**
      * Finds a route from origin to destination with a minimum number of
-     * transfers.
+     * transfers, and stores it in a given compact route.
      *
      * @param from origin
      * @param to destination
-     * @return a route from origin to destination with a minimum number of
-     * transfers
+     * @param route the compact route in which to store the route found
      * @throws IllegalRequestException if the origin or destination is equal to
      * null
      */
     @Override
-    public Route findRoute(Station from, Station to) throws IllegalRequestException {
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
         if (from == null || to == null) {
             throw new IllegalRequestException("Line.getIndex: stop is null");
         }
 
+        // A destination outside the reach of the origin is answered at once
+        if (!components.isCurrent(network)) {
+            components = ComponentIndex.of(network);
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        boolean indexed = origin != -1 && destination != -1;
+        if (indexed && !components.canReach(origin, destination)) {
+            route.clear();
+            return;
+        }
+
         // Initialization of Breadth-First Search data
         Queue<Line> queue = new LinkedList<>();
         Line targetLine = null;
@@ -70,48 +86,71 @@ public class MinTransfersPlanner extends Planner {
 
         // While a line containing the destination is not reached, keep expanding
         while (!queue.isEmpty() && targetLine == null) {
-            // Take the next line from the queue and expand along all its connected lines
+            // Take the next line from the queue and expand along its transfer points
             Line line = queue.poll();
-            boolean belowRange = false;
-            boolean aboveRange = false;            
-            for (int i = 1; i < line.getCount(); i++) { 
-                // Only expand from stations that are reachable, in outward pattern
-                int entryIndex = line.getIndex(dataMap.get(line).getEntry());
-                int checkIndex;
+            List<TransferPoint> points = line.getTransferPoints();
+            int entryIndex = line.getIndex(dataMap.get(line).getEntry());
+            // Find the transfer points directly after and before the entry point
+            int up = 0;
+            while (up < points.size() && points.get(up).getIndex() <= entryIndex) {
+                up++;
+            }
+            int down = up - 1;
+            int remaining = points.size();
+            if (down >= 0 && points.get(down).getIndex() == entryIndex) {
+                // The lines at the entry point itself are already discovered
+                down--;
+                remaining--;
+            }
+            // Only visit transfer points that are reachable, in outward pattern
+            while (remaining > 0 && targetLine == null) {
+                if (line.isCircular()) {
+                    // For circular, continue at the other end of the line
+                    up = Math.floorMod(up, points.size());
+                    down = Math.floorMod(down, points.size());
+                }
+                TransferPoint point;
                 if (line.isOneWay()) {
-                    // For oneway in a line
-                    checkIndex = Math.floorMod((entryIndex + i), line.getCount());
-                    // Skip if station is unreachable
-                    if (!line.isCircular() && (checkIndex < entryIndex)) {
-                        continue;
+                    // For oneway in a line, until the end of the line is reached
+                    if (up >= points.size()) {
+                        break;
                     }
+                    point = points.get(up++);
                 } else {
-                    // For circular in both direction simultaneously
-                    int checkModifier = (int)(Math.pow(-1, i) * Math.ceil((double)i/2));
-                    checkIndex = Math.floorMod(entryIndex + checkModifier, line.getCount());
-                    // For non-circular, once edge is reached, continue in a line the other way
-                    if ((!line.isCircular() && (entryIndex + checkModifier) < 0)
-                            || belowRange) {
-                        checkIndex = i;
-                        belowRange = true;
-                    } else if ((!line.isCircular() && (entryIndex + checkModifier) >= line.getCount())
-                            || aboveRange) {
-                        checkIndex = (line.getCount()-1) - i;
-                        aboveRange = true;
+                    // For both directions simultaneously, the closest transfer point first
+                    int upDistance = Integer.MAX_VALUE;
+                    int downDistance = Integer.MAX_VALUE;
+                    if (up < points.size()) {
+                        upDistance = Math.floorMod(points.get(up).getIndex() - entryIndex, line.getCount());
+                    }
+                    if (down >= 0) {
+                        downDistance = Math.floorMod(entryIndex - points.get(down).getIndex(), line.getCount());
+                    }
+                    if (downDistance <= upDistance) {
+                        point = points.get(down--);
+                    } else {
+                        point = points.get(up++);
                     }
-                }   
-                // Explore all lines connecting to the station
-                Station station = line.get(checkIndex);
-                for (Line l : network.getLineSet()) {
+                }
+                remaining--;
+
+                // Explore all lines connecting to the station, if it can still lead to the destination
+                Station station = point.getStation();
+                int index = network.getStationSet().getIndex(station);
+                if (indexed && index != -1 && !components.canReach(index, destination)) {
+                    continue;
+                }
+                for (int i = 0; i < point.getLines().size(); i++) {
                     // Update data of unvisited connected lines and add to queue
-                    int stationIndex = l.getIndex(station);
-                    if ((stationIndex != -1) && dataMap.get(l).getColor() == Color.WHITE) {
+                    Line l = point.getLines().get(i);
+                    if (dataMap.get(l).getColor() == Color.WHITE) {
                         dataMap.get(l).setColor(Color.GRAY);
                         dataMap.get(l).setParent(line);
                         dataMap.get(l).setEntry(station);
                         queue.offer(l);
-                         
+
                         // Also store line if it contains the destination (within reach)
+                        int stationIndex = point.getIndexOn(i);
                         int toIndex = l.getIndex(to);
                         if (toIndex != -1 && !(l.isOneWay() && !l.isCircular() && toIndex < stationIndex)) {
                             targetLine = l;
@@ -119,101 +158,35 @@ public class MinTransfersPlanner extends Planner {
                         }
                     }
                 }
-                // Stop once the target is found
-                if (targetLine != null) {
-                    break;
-                }
             }
             // The current line is now explored and therefore set to black
             dataMap.get(line).setColor(Color.BLACK);
         }
 
         // Path reconstruction if a route is found
-        Route route = new Route();
+        route.clear();
         if (targetLine != null && from != to) {
-            // Reconstruct path in reverse by following parent pointers
-            Stack<Line> stack = new Stack<>();
-            Line line = targetLine;
-            while (line != null) {
-                stack.push(line);
-                line = dataMap.get(line).getParent();
-            }
-            // Reverse the path by using the stack
-            RouteSegment segment = null;
-            while (!stack.isEmpty()) {
-                line = stack.pop();
-                if (segment == null) {
-                    // Create first segment if none exists yet
-                    segment = new RouteSegment(line, from, from, from);
-                } else {
-                    // Add direction to previous segment using entry point of new line                    
-                    Line l = segment.getLine();
-                    Station entry = dataMap.get(line).getEntry();
-                    // Determine terminal
-                    int f = l.getIndex(segment.getFromStation());
-                    int t = l.getIndex(entry);
-                    // Complex logic due to circular lines
-                    Station terminal = l.getTerminalA();
-                    if (l.isOneWay()) {
-                        terminal = l.getTerminalB();
-                        if (t < f) {
-                            segment.setCircular(true);
-                        }
-                    } else if (l.isCircular()) {
-                        if ((l.getCount() - Math.abs(t - f)) < Math.abs(t - f)) {
-                           segment.setCircular(true);
-                           if (t < f) {
-                               terminal = l.getTerminalB();
-                           }
-                        } else {
-                            if (f < t) {
-                                terminal = l.getTerminalB();
-                            }
-                        }
-                    } else if (f < t) {
-                        terminal = l.getTerminalB();
-                    }
-                    // Update segment with information from new line
-                    segment.setToStation(entry);
-                    segment.setDirection(terminal);
-                    // Add finished segment to route and create new segment from entry point
-                    route.add(segment);
-                    segment = new RouteSegment(line, entry, entry, entry);
-                }
-                // If no new line is on the stack then complete the last segment
-                if (stack.isEmpty()) {
-                    Line l = segment.getLine();
-                    // Determine terminal
-                    int f = l.getIndex(segment.getFromStation());
-                    int t = l.getIndex(to);
-                    // Complex logic due to circular lines
-                    Station terminal = l.getTerminalA();
-                    if (l.isOneWay()) {
-                        terminal = l.getTerminalB();
-                        if (t < f) {
-                            segment.setCircular(true);
-                        }
-                    } else if (l.isCircular()) {
-                        if ((l.getCount() - Math.abs(t - f)) < Math.abs(t - f)) {
-                           segment.setCircular(true);
-                           if (t < f) {
-                               terminal = l.getTerminalB();
-                           }
-                        } else {
-                            if (f < t) {
-                                terminal = l.getTerminalB();
-                            }
-                        }
-                    } else if (f < t) {
-                        terminal = l.getTerminalB();
-                    }
-                    // Add finished segment to route
-                    segment.setToStation(to);
-                    segment.setDirection(terminal);
-                    route.add(segment);
-                }
+            // Follow parent pointers, adding a segment per line in reverse
+            Station exit = to;
+            for (Line line = targetLine; line != null; line = dataMap.get(line).getParent()) {
+                Station entry = dataMap.get(line).getEntry();
+                int f = line.getIndex(entry);
+                int t = line.getIndex(exit);
+                route.add(network.getLineSet().getIndex(line), f, t, isForward(line, f, t));
+                exit = entry;
             }
+            route.reverseOrder();
         }
-        return route;
+    }
+
+    /**
+     * Returns false, since removing a stop from a line leaves the lines of
+     * every other station, and the stops they connect, as they were.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isImprovedByRemovedStops() {
+        return false;
     }
 }
@@ -0,0 +1,224 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.util.Arrays;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * transfers and, among those, the minimum number of stops.
+ *
+ * The search runs on an expanded graph with a node for every stop in every
+ * direction of travel, and a node for every station. Riding to the next stop
+ * costs one stop, getting off at a station costs one transfer and boarding a
+ * line at a station is free. Since costs are compared lexicographically, the
+ * nodes are processed level by level in the number of transfers, and within a
+ * level in buckets by the number of stops. This is a bucketed variant of 0-1
+ * Breadth-First Search and runs in time linear in the size of the network.
+ *
+ * The expanded graph is rebuilt automatically when the network has changed
+ * since it was last built.
+ *
+ * @author sanderjurgens
+ */
+public class MinTransfersStopsPlanner extends Planner {
+
+    /** The graph of all stops in the network */
+    private StopGraph graph;
+
+    /** The number of transfers needed to reach each node */
+    private int[] transfers;
+    /** The number of stops needed to reach each node */
+    private int[] stops;
+    /** The node from which each node was reached, or -1 */
+    private int[] parent;
+    /** Whether each node is explored */
+    private boolean[] settled;
+
+    /** The first entry in each bucket of the current level, or -1 */
+    private int[] current;
+    /** The first entry in each bucket of the next level, or -1 */
+    private int[] next;
+    /** The node of each entry in the buckets */
+    private int[] entryNode;
+    /** The next entry in the same bucket, or -1 */
+    private int[] entryNext;
+    /** The number of entries used */
+    private int entries;
+
+    /**
+     * Constructs a minimum transfers and stops planner for a given network.
+     *
+     * @param network a given network
+     */
+    public MinTransfersStopsPlanner(Network network) {
+        super(network);
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the expanded graph for the network as it is now.
+     */
+    private void rebuild() {
+        graph = new StopGraph(network);
+        int nodes = 2 * graph.getStopCount() + graph.getStationCount();
+        transfers = new int[nodes];
+        stops = new int[nodes];
+        parent = new int[nodes];
+        settled = new boolean[nodes];
+        // A route rides at most once between every pair of consecutive stops
+        current = new int[2 * graph.getStopCount() + 2];
+        next = new int[2 * graph.getStopCount() + 2];
+        // Every node is added at most once per incoming edge
+        entryNode = new int[8 * graph.getStopCount() + 1];
+        entryNext = new int[8 * graph.getStopCount() + 1];
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of
+     * transfers and, among those, a minimum number of stops, and stores it in a
+     * given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("MinTransfersStopsPlanner.findCompactRoute: stop is null");
+        }
+        route.clear();
+        if (!graph.isCurrent(network)) {
+            rebuild();
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (from == to || origin == -1 || destination == -1) {
+            return;
+        }
+
+        // Initialization of the search data
+        Arrays.fill(transfers, Integer.MAX_VALUE);
+        Arrays.fill(stops, Integer.MAX_VALUE);
+        Arrays.fill(parent, -1);
+        Arrays.fill(settled, false);
+        Arrays.fill(current, -1);
+        Arrays.fill(next, -1);
+        entries = 0;
+        int stationNodes = 2 * graph.getStopCount();
+        int start = stationNodes + origin;
+        transfers[start] = 0;
+        stops[start] = 0;
+        push(current, 0, start);
+
+        // Process the levels of transfers, each in order of stops
+        int target = -1;
+        int level = 0;
+        int max = 0;
+        int nextMax = -1;
+        while (max >= 0 && target == -1) {
+            for (int s = 0; s <= max && target == -1; s++) {
+                while (current[s] != -1 && target == -1) {
+                    int node = entryNode[current[s]];
+                    current[s] = entryNext[current[s]];
+                    if (settled[node] || transfers[node] != level || stops[node] != s) {
+                        continue;
+                    }
+                    settled[node] = true;
+                    if (node < stationNodes) {
+                        int stop = node >> 1;
+                        boolean forward = (node & 1) == 0;
+                        if (graph.getStation(stop) == destination) {
+                            target = node;
+                            break;
+                        }
+                        // Ride to the next stop along the line
+                        int nextStop = graph.next(stop, forward);
+                        if (nextStop != -1 && relax(2 * nextStop + (node & 1), level, s + 1, node)) {
+                            push(current, s + 1, 2 * nextStop + (node & 1));
+                            max = Math.max(max, s + 1);
+                        }
+                        // Get off at the station, to transfer on the next level
+                        int station = stationNodes + graph.getStation(stop);
+                        if (relax(station, level + 1, s, node)) {
+                            push(next, s, station);
+                            nextMax = Math.max(nextMax, s);
+                        }
+                    } else {
+                        // Board every line at the station, in every allowed direction
+                        int station = node - stationNodes;
+                        for (int e = graph.getStationBegin(station); e < graph.getStationEnd(station); e++) {
+                            int stop = graph.getStationStop(e);
+                            for (int d = 0; d < 2; d++) {
+                                if (graph.canTravel(graph.getLine(stop), d == 0)
+                                        && relax(2 * stop + d, level, s, node)) {
+                                    push(current, s, 2 * stop + d);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            // Continue with the next level
+            int[] swap = current;
+            current = next;
+            next = swap;
+            max = nextMax;
+            nextMax = -1;
+            level = level + 1;
+        }
+
+        // Path reconstruction if a route is found
+        if (target != -1) {
+            // Collect the path in reverse by following parent pointers
+            int length = 0;
+            for (int node = target; node != -1; node = parent[node]) {
+                length = length + 1;
+            }
+            int[] path = new int[length];
+            for (int node = target, i = length - 1; node != -1; node = parent[node], i--) {
+                path[i] = node;
+            }
+            graph.fillRoute(path, length, route);
+        }
+    }
+
+    /**
+     * Improves the label of a node if the given costs are lexicographically
+     * smaller.
+     *
+     * @param node a given node
+     * @param t the number of transfers
+     * @param s the number of stops
+     * @param from the node from which the node is reached
+     * @return whether the label of the node is improved
+     */
+    private boolean relax(int node, int t, int s, int from) {
+        if (settled[node] || t > transfers[node] || (t == transfers[node] && s >= stops[node])) {
+            return false;
+        }
+        transfers[node] = t;
+        stops[node] = s;
+        parent[node] = from;
+        return true;
+    }
+
+    /**
+     * Adds a node to a bucket.
+     *
+     * @param buckets the buckets of a level
+     * @param bucket the number of stops of the bucket
+     * @param node a given node
+     */
+    private void push(int[] buckets, int bucket, int node) {
+        entryNode[entries] = node;
+        entryNext[entries] = buckets[bucket];
+        buckets[bucket] = entries;
+        entries = entries + 1;
+    }
+}
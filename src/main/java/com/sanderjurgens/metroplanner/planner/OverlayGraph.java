@@ -0,0 +1,480 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A multi-level overlay of a station graph with edge weights, for route
+ * planning where the weights change often (customizable route planning).
+ *
+ * The stations are partitioned into cells on several levels, where every cell
+ * lies inside a single cell of the next level. A station of a cell is an entry
+ * if an edge from another cell of the same level ends at it, and an exit if an
+ * edge to another cell begins at it. For every cell, the overlay keeps the
+ * cost of the cheapest route inside the cell from each of its entries to each
+ * of its exits: a clique of shortcuts that replaces the inside of the cell.
+ *
+ * The partition depends only on the shape of the graph and is computed once.
+ * Changing the weights of edges only requires {@link #customize()}, which
+ * recomputes the cliques level by level, starting from the finest. Every
+ * clique is computed with Dijkstra searches inside its cell over the cliques
+ * of the level below, and the cells of a level are customized in parallel.
+ *
+ * All weights are one at first, such that the cheapest route has the minimum
+ * number of stops. A negative weight closes an edge.
+ *
+ * @author sanderjurgens
+ */
+public class OverlayGraph {
+
+    /** The cost of an entry and exit of a cell that are not connected inside it */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /** The station graph of the overlay */
+    private final StationGraph graph;
+    /** The number of cells on each level, from the finest level */
+    private final int[] cellCounts;
+    /** The weight of each edge, or a negative number if it is closed */
+    private final int[] weights;
+    /** The cell of each station on each level */
+    private final int[][] cells;
+
+    /** The first entry of each cell on each level, and the number of entries at the end */
+    private final int[][] entryStart;
+    /** The entries of all cells on each level, grouped by cell */
+    private final int[][] entries;
+    /** The position of each station among the entries of its cell on each level, or -1 */
+    private final int[][] entryIndex;
+    /** The first exit of each cell on each level, and the number of exits at the end */
+    private final int[][] exitStart;
+    /** The exits of all cells on each level, grouped by cell */
+    private final int[][] exits;
+    /** The position of each station among the exits of its cell on each level, or -1 */
+    private final int[][] exitIndex;
+    /** The first cost of the clique of each cell on each level */
+    private final int[][] cliqueStart;
+    /** The costs of the cliques on each level, per entry in rows over the exits */
+    private final int[][] cliques;
+
+    /** Whether a weight changed since the last customization */
+    private boolean dirty;
+    /** The time it took to customize the cliques the last time, in nanoseconds */
+    private long customizationTime;
+
+    /**
+     * Constructs the overlay of a given station graph, with the cells of each
+     * level cut from a given partition order, and customizes it for unit
+     * weights.
+     *
+     * @param graph a given station graph
+     * @param partition the partition order of the graph
+     * @param cellCounts the number of cells on each level, from the finest
+     * level, each a multiple of the next
+     * @throws IllegalRequestException if there are no levels, or if the
+     * number of cells is not positive or the cells are not nested
+     */
+    public OverlayGraph(StationGraph graph, Partition partition, int... cellCounts)
+            throws IllegalRequestException {
+        if (cellCounts.length == 0) {
+            throw new IllegalRequestException("OverlayGraph: no levels");
+        }
+        for (int level = 0; level < cellCounts.length; level++) {
+            if (cellCounts[level] <= 0) {
+                throw new IllegalRequestException("OverlayGraph: cell count is not positive");
+            }
+            if (level > 0 && (cellCounts[level] >= cellCounts[level - 1]
+                    || cellCounts[level - 1] % cellCounts[level] != 0)) {
+                throw new IllegalRequestException("OverlayGraph: cells are not nested");
+            }
+        }
+        this.graph = graph;
+        this.cellCounts = cellCounts.clone();
+        int n = graph.getStationCount();
+        int levels = cellCounts.length;
+        weights = new int[graph.getEdgeCount()];
+        Arrays.fill(weights, 1);
+        cells = new int[levels][n];
+        entryStart = new int[levels][];
+        entries = new int[levels][];
+        entryIndex = new int[levels][n];
+        exitStart = new int[levels][];
+        exits = new int[levels][];
+        exitIndex = new int[levels][n];
+        cliqueStart = new int[levels][];
+        cliques = new int[levels][];
+        for (int level = 0; level < levels; level++) {
+            for (int v = 0; v < n; v++) {
+                cells[level][v] = partition.getCell(v, cellCounts[level]);
+            }
+            buildBoundary(level);
+        }
+        customize();
+    }
+
+    /**
+     * Finds the entries and exits of all cells on a level, and allocates the
+     * cliques.
+     *
+     * @param level the level
+     */
+    private void buildBoundary(int level) {
+        int n = graph.getStationCount();
+        int count = cellCounts[level];
+        int[] cell = cells[level];
+        boolean[] entry = new boolean[n];
+        boolean[] exit = new boolean[n];
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            if (cell[graph.getTail(e)] != cell[graph.getHead(e)]) {
+                exit[graph.getTail(e)] = true;
+                entry[graph.getHead(e)] = true;
+            }
+        }
+        entryStart[level] = new int[count + 1];
+        exitStart[level] = new int[count + 1];
+        for (int v = 0; v < n; v++) {
+            entryStart[level][cell[v] + 1] += entry[v] ? 1 : 0;
+            exitStart[level][cell[v] + 1] += exit[v] ? 1 : 0;
+        }
+        cliqueStart[level] = new int[count + 1];
+        for (int c = 0; c < count; c++) {
+            long size = (long) entryStart[level][c + 1] * exitStart[level][c + 1];
+            entryStart[level][c + 1] += entryStart[level][c];
+            exitStart[level][c + 1] += exitStart[level][c];
+            if (cliqueStart[level][c] + size > Integer.MAX_VALUE - 8) {
+                throw new IllegalRequestException("OverlayGraph: cells are too large");
+            }
+            cliqueStart[level][c + 1] = cliqueStart[level][c] + (int) size;
+        }
+        entries[level] = new int[entryStart[level][count]];
+        exits[level] = new int[exitStart[level][count]];
+        int[] entryFill = Arrays.copyOf(entryStart[level], count);
+        int[] exitFill = Arrays.copyOf(exitStart[level], count);
+        for (int v = 0; v < n; v++) {
+            int c = cell[v];
+            entryIndex[level][v] = entry[v] ? entryFill[c] - entryStart[level][c] : -1;
+            exitIndex[level][v] = exit[v] ? exitFill[c] - exitStart[level][c] : -1;
+            if (entry[v]) {
+                entries[level][entryFill[c]++] = v;
+            }
+            if (exit[v]) {
+                exits[level][exitFill[c]++] = v;
+            }
+        }
+        cliques[level] = new int[cliqueStart[level][count]];
+    }
+
+    /**
+     * Recomputes the cliques of all cells for the current weights, level by
+     * level from the finest. The cells of a level are customized in parallel.
+     */
+    public void customize() {
+        long start = System.nanoTime();
+        int n = graph.getStationCount();
+        ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(n));
+        for (int level = 0; level < cellCounts.length; level++) {
+            int current = level;
+            IntStream.range(0, cellCounts[level]).parallel()
+                    .forEach(c -> customizeCell(current, c, searches.get()));
+        }
+        dirty = false;
+        customizationTime = System.nanoTime() - start;
+    }
+
+    /**
+     * Recomputes the clique of a cell, with a Dijkstra search inside the cell
+     * from each of its entries.
+     *
+     * @param level the level of the cell
+     * @param c the cell
+     * @param search the search data to use
+     */
+    private void customizeCell(int level, int c, Search search) {
+        int exitBegin = exitStart[level][c];
+        int exitCount = exitStart[level][c + 1] - exitBegin;
+        int row = cliqueStart[level][c];
+        for (int i = entryStart[level][c]; i < entryStart[level][c + 1]; i++) {
+            search.start(entries[level][i]);
+            while (!search.heap.isEmpty()) {
+                int u = search.heap.poll();
+                expandInside(level, c, u, search);
+            }
+            for (int j = 0; j < exitCount; j++) {
+                cliques[level][row + j] = search.distance(exits[level][exitBegin + j]);
+            }
+            row = row + exitCount;
+        }
+    }
+
+    /**
+     * Relaxes the arcs of a station inside a cell, over the cliques of the
+     * level below, or the edges of the graph on the finest level.
+     *
+     * @param level the level of the cell
+     * @param c the cell
+     * @param u the index of a station in the cell
+     * @param search the search data
+     */
+    private void expandInside(int level, int c, int u, Search search) {
+        int d = search.distance(u);
+        if (level == 0) {
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                if (weights[e] >= 0 && cells[0][graph.getHead(e)] == c) {
+                    search.reach(graph.getHead(e), d + weights[e]);
+                }
+            }
+            return;
+        }
+        int below = level - 1;
+        int sub = cells[below][u];
+        int i = entryIndex[below][u];
+        if (i != -1) {
+            int exitBegin = exitStart[below][sub];
+            int exitCount = exitStart[below][sub + 1] - exitBegin;
+            int row = cliqueStart[below][sub] + i * exitCount;
+            for (int j = 0; j < exitCount; j++) {
+                int cost = cliques[below][row + j];
+                if (cost != UNREACHABLE) {
+                    search.reach(exits[below][exitBegin + j], d + cost);
+                }
+            }
+        }
+        if (exitIndex[below][u] != -1) {
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                int w = graph.getHead(e);
+                if (weights[e] >= 0 && cells[below][w] != sub && cells[level][w] == c) {
+                    search.reach(w, d + weights[e]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the station graph of the overlay.
+     *
+     * @return the station graph of the overlay
+     */
+    public StationGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the weight of an edge.
+     *
+     * @param edge the index of an edge
+     * @return the weight of the edge, or a negative number if it is closed
+     */
+    public int getWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Sets the weight of an edge. The overlay must be customized before it is
+     * used again.
+     *
+     * @param edge the index of an edge
+     * @param weight the weight of the edge, or a negative number to close it
+     */
+    public void setWeight(int edge, int weight) {
+        weights[edge] = weight;
+        dirty = true;
+    }
+
+    /**
+     * Returns whether a weight changed since the last customization.
+     *
+     * @return whether the overlay needs to be customized
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns the time it took to customize the cliques the last time.
+     *
+     * @return the customization time in nanoseconds
+     */
+    public long getCustomizationTime() {
+        return customizationTime;
+    }
+
+    /**
+     * Returns the number of levels of the overlay.
+     *
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return cellCounts.length;
+    }
+
+    /**
+     * Returns the cell of a station on a level.
+     *
+     * @param level a level, where 0 is the finest
+     * @param station the index of a station
+     * @return the cell of the station
+     */
+    public int getCell(int level, int station) {
+        return cells[level][station];
+    }
+
+    /**
+     * Returns the position of a station among the entries of its cell.
+     *
+     * @param level a level, where 0 is the finest
+     * @param station the index of a station
+     * @return the position among the entries, or -1 if it is not an entry
+     */
+    public int getEntryIndex(int level, int station) {
+        return entryIndex[level][station];
+    }
+
+    /**
+     * Returns the position of a station among the exits of its cell.
+     *
+     * @param level a level, where 0 is the finest
+     * @param station the index of a station
+     * @return the position among the exits, or -1 if it is not an exit
+     */
+    public int getExitIndex(int level, int station) {
+        return exitIndex[level][station];
+    }
+
+    /**
+     * Returns the number of entries of a cell.
+     *
+     * @param level a level, where 0 is the finest
+     * @param cell a cell of the level
+     * @return the number of entries
+     */
+    public int getEntryCount(int level, int cell) {
+        return entryStart[level][cell + 1] - entryStart[level][cell];
+    }
+
+    /**
+     * Returns an entry of a cell.
+     *
+     * @param level a level, where 0 is the finest
+     * @param cell a cell of the level
+     * @param i the position among the entries
+     * @return the index of the station
+     */
+    public int getEntry(int level, int cell, int i) {
+        return entries[level][entryStart[level][cell] + i];
+    }
+
+    /**
+     * Returns the number of exits of a cell.
+     *
+     * @param level a level, where 0 is the finest
+     * @param cell a cell of the level
+     * @return the number of exits
+     */
+    public int getExitCount(int level, int cell) {
+        return exitStart[level][cell + 1] - exitStart[level][cell];
+    }
+
+    /**
+     * Returns an exit of a cell.
+     *
+     * @param level a level, where 0 is the finest
+     * @param cell a cell of the level
+     * @param j the position among the exits
+     * @return the index of the station
+     */
+    public int getExit(int level, int cell, int j) {
+        return exits[level][exitStart[level][cell] + j];
+    }
+
+    /**
+     * Returns the cost of the cheapest route inside a cell from one of its
+     * entries to one of its exits.
+     *
+     * @param level a level, where 0 is the finest
+     * @param cell a cell of the level
+     * @param i the position among the entries
+     * @param j the position among the exits
+     * @return the cost, or {@link #UNREACHABLE}
+     */
+    public int getCost(int level, int cell, int i, int j) {
+        return cliques[level][cliqueStart[level][cell] + i * getExitCount(level, cell) + j];
+    }
+
+    /**
+     * Returns the memory used by the cliques.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        long size = 0;
+        for (int level = 0; level < cellCounts.length; level++) {
+            size = size + 4L * cliques[level].length;
+        }
+        return size;
+    }
+
+    /**
+     * The data of a Dijkstra search, for use by a single thread.
+     */
+    private static final class Search {
+
+        /** The distance of each station, if it was reached in this search */
+        private final int[] distances;
+        /** The search in which each station was reached */
+        private final int[] reached;
+        /** The number of the current search */
+        private int search;
+        /** The queue of the search */
+        private final IntHeap heap;
+
+        /**
+         * Constructs the search data for a given number of stations.
+         *
+         * @param n the number of stations
+         */
+        private Search(int n) {
+            distances = new int[n];
+            reached = new int[n];
+            heap = new IntHeap(n);
+        }
+
+        /**
+         * Starts a new search from a station.
+         *
+         * @param source the index of the station
+         */
+        private void start(int source) {
+            search = search + 1;
+            heap.clear();
+            reach(source, 0);
+        }
+
+        /**
+         * Reaches a station, unless it was already reached at a smaller
+         * distance.
+         *
+         * @param v the index of the station
+         * @param d the distance at which it is reached
+         */
+        private void reach(int v, int d) {
+            if (reached[v] != search) {
+                reached[v] = search;
+                distances[v] = d;
+                heap.offer(v, d);
+            } else if (d < distances[v] && heap.contains(v)) {
+                distances[v] = d;
+                heap.offer(v, d);
+            }
+        }
+
+        /**
+         * Returns the distance of a station found by the current search.
+         *
+         * @param v the index of a station
+         * @return the distance, or {@link #UNREACHABLE}
+         */
+        private int distance(int v) {
+            return reached[v] == search ? distances[v] : UNREACHABLE;
+        }
+    }
+}
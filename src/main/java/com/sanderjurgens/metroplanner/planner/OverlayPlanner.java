@@ -0,0 +1,383 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+
+/**
+ * Returns the cheapest route from origin to destination for the weights of a
+ * multi-level overlay graph.
+ *
+ * A query runs a Dijkstra search forward from the origin and one backward
+ * from the destination. At a station that lies in neither the cell of the
+ * origin nor the cell of the destination on some level, the searches skip
+ * the inside of the coarsest such cell by its clique, and only leave it along
+ * edges to other cells. Near the origin and destination, the edges of the
+ * graph are used. The searches stop once they cannot improve the best route
+ * where they meet, after which every clique on the route is unpacked by a
+ * search inside its cell.
+ *
+ * The overlay is customized first if its weights changed since it was last
+ * customized.
+ *
+ * @author sanderjurgens
+ */
+public class OverlayPlanner extends Planner {
+
+    /** The graph of all stations in the network */
+    private final StationGraph graph;
+    /** The overlay of the graph */
+    private final OverlayGraph overlay;
+
+    /** The queues of the forward and backward search */
+    private final IntHeap[] heaps;
+    /** The distance of each station in the forward and backward search */
+    private final int[][] distances;
+    /** The neighbouring station towards the origin or destination in either search */
+    private final int[][] parents;
+    /** The edge to the parent in either search, or -1 minus the level of a clique */
+    private final int[][] vias;
+    /** The query in which each station was reached by either search */
+    private final int[][] reached;
+    /** The number of the current query */
+    private int query;
+    /** The origin and destination of the current query */
+    private int origin, destination;
+    /** The cost of the cheapest route found by the current query */
+    private long best;
+    /** The station where the searches meet on the cheapest route found */
+    private int meeting;
+
+    /** The tail, head and edge or clique of each arc of a route */
+    private final int[] arcs;
+    /** The edges of an unpacked clique, from its end to its begin */
+    private final int[] path;
+    /** The distance of each station in the search that unpacks a clique */
+    private final int[] unpackDistances;
+    /** The edge along which each station was reached in the search that unpacks a clique */
+    private final int[] unpackEdges;
+    /** The search in which each station was reached while unpacking */
+    private final int[] unpackReached;
+    /** The number of the current unpacking search */
+    private int unpacking;
+    /** The queue of the search that unpacks a clique */
+    private final IntHeap unpackHeap;
+
+    /**
+     * Constructs an overlay planner for a given network.
+     *
+     * @param network a given network
+     * @param overlay the overlay of the station graph of the network
+     */
+    public OverlayPlanner(Network network, OverlayGraph overlay) {
+        super(network);
+        this.overlay = overlay;
+        graph = overlay.getGraph();
+        int n = graph.getStationCount();
+        heaps = new IntHeap[]{new IntHeap(n), new IntHeap(n)};
+        distances = new int[2][n];
+        parents = new int[2][n];
+        vias = new int[2][n];
+        reached = new int[2][n];
+        arcs = new int[3 * (n + 1)];
+        path = new int[n];
+        unpackDistances = new int[n];
+        unpackEdges = new int[n];
+        unpackReached = new int[n];
+        unpackHeap = new IntHeap(n);
+    }
+
+    /**
+     * Returns the overlay of this planner.
+     *
+     * @return the overlay of this planner
+     */
+    public OverlayGraph getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Returns the cost of the cheapest route from one station to another.
+     *
+     * @param from origin
+     * @param to destination
+     * @return the cost, or -1 if the destination cannot be reached
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the graph was built
+     */
+    public int getDistance(Station from, Station to) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("OverlayPlanner.getDistance: stop is null");
+        }
+        if (!graph.isCurrent(network)) {
+            throw new IllegalRequestException("OverlayPlanner.getDistance: graph is out of date");
+        }
+        int s = network.getStationSet().getIndex(from);
+        int t = network.getStationSet().getIndex(to);
+        if (s == -1 || t == -1) {
+            return -1;
+        }
+        int meeting = search(s, t);
+        return meeting == -1 ? -1 : distances[0][meeting] + distances[1][meeting];
+    }
+
+    /**
+     * Finds the cheapest route from origin to destination, and stores it in a
+     * given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the graph was built
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("OverlayPlanner.findCompactRoute: stop is null");
+        }
+        if (!graph.isCurrent(network)) {
+            throw new IllegalRequestException("OverlayPlanner.findCompactRoute: graph is out of date");
+        }
+        route.clear();
+        int s = network.getStationSet().getIndex(from);
+        int t = network.getStationSet().getIndex(to);
+        if (s == -1 || t == -1 || s == t) {
+            return;
+        }
+        int meeting = search(s, t);
+        if (meeting == -1) {
+            return;
+        }
+
+        // Collect the arcs of the route in order: first back to the origin, then on to the destination
+        int count = 0;
+        for (int v = meeting; v != s; v = parents[0][v]) {
+            count++;
+        }
+        for (int i = count - 1, v = meeting; i >= 0; i--, v = parents[0][v]) {
+            arcs[3 * i] = parents[0][v];
+            arcs[3 * i + 1] = v;
+            arcs[3 * i + 2] = vias[0][v];
+        }
+        for (int v = meeting; v != t; v = parents[1][v]) {
+            arcs[3 * count] = v;
+            arcs[3 * count + 1] = parents[1][v];
+            arcs[3 * count + 2] = vias[1][v];
+            count++;
+        }
+
+        // Ride the edges, unpacking the cliques into the edges inside their cell
+        for (int i = 0; i < count; i++) {
+            int via = arcs[3 * i + 2];
+            if (via >= 0) {
+                graph.addHop(route, via);
+            } else {
+                int length = unpack(arcs[3 * i], arcs[3 * i + 1], -1 - via);
+                for (int j = length - 1; j >= 0; j--) {
+                    graph.addHop(route, path[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the level of the coarsest cell of a station that contains
+     * neither the origin nor the destination.
+     *
+     * @param v the index of a station
+     * @return the level plus one, or 0 if every cell of the station contains
+     * the origin or destination
+     */
+    private int queryLevel(int v) {
+        for (int level = overlay.getLevelCount() - 1; level >= 0; level--) {
+            int c = overlay.getCell(level, v);
+            if (c != overlay.getCell(level, origin) && c != overlay.getCell(level, destination)) {
+                return level + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Runs the forward and backward search between two stations.
+     *
+     * @param s the index of the origin
+     * @param t the index of the destination
+     * @return the index of the station where the searches meet on a cheapest
+     * route, or -1 if the destination cannot be reached
+     */
+    private int search(int s, int t) {
+        if (overlay.isDirty()) {
+            overlay.customize();
+        }
+        origin = s;
+        destination = t;
+        query = query + 1;
+        heaps[0].clear();
+        heaps[1].clear();
+        best = Long.MAX_VALUE;
+        meeting = -1;
+        reach(0, s, 0, -1, -1);
+        reach(1, t, 0, -1, -1);
+        // Once either search is done, every meeting has been seen
+        while (!heaps[0].isEmpty() && !heaps[1].isEmpty()
+                && (long) heaps[0].peekKey() + heaps[1].peekKey() < best) {
+            int side = heaps[0].peekKey() <= heaps[1].peekKey() ? 0 : 1;
+            int u = heaps[side].poll();
+            if (side == 0) {
+                expandForward(u);
+            } else {
+                expandBackward(u);
+            }
+        }
+        return meeting;
+    }
+
+    /**
+     * Relaxes the arcs of a station in the forward search.
+     *
+     * @param u the index of a station
+     */
+    private void expandForward(int u) {
+        int d = distances[0][u];
+        int q = queryLevel(u);
+        if (q == 0) {
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                if (overlay.getWeight(e) >= 0) {
+                    reach(0, graph.getHead(e), d + overlay.getWeight(e), u, e);
+                }
+            }
+            return;
+        }
+        int level = q - 1;
+        int c = overlay.getCell(level, u);
+        int i = overlay.getEntryIndex(level, u);
+        if (i != -1) {
+            for (int j = 0; j < overlay.getExitCount(level, c); j++) {
+                int cost = overlay.getCost(level, c, i, j);
+                if (cost != OverlayGraph.UNREACHABLE) {
+                    reach(0, overlay.getExit(level, c, j), d + cost, u, -1 - level);
+                }
+            }
+        }
+        if (overlay.getExitIndex(level, u) != -1) {
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                int w = graph.getHead(e);
+                if (overlay.getWeight(e) >= 0 && overlay.getCell(level, w) != c) {
+                    reach(0, w, d + overlay.getWeight(e), u, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Relaxes the arcs into a station in the backward search.
+     *
+     * @param u the index of a station
+     */
+    private void expandBackward(int u) {
+        int d = distances[1][u];
+        int q = queryLevel(u);
+        if (q == 0) {
+            for (int k = graph.getInBegin(u); k < graph.getInEnd(u); k++) {
+                int e = graph.getInEdge(k);
+                if (overlay.getWeight(e) >= 0) {
+                    reach(1, graph.getTail(e), d + overlay.getWeight(e), u, e);
+                }
+            }
+            return;
+        }
+        int level = q - 1;
+        int c = overlay.getCell(level, u);
+        int j = overlay.getExitIndex(level, u);
+        if (j != -1) {
+            for (int i = 0; i < overlay.getEntryCount(level, c); i++) {
+                int cost = overlay.getCost(level, c, i, j);
+                if (cost != OverlayGraph.UNREACHABLE) {
+                    reach(1, overlay.getEntry(level, c, i), d + cost, u, -1 - level);
+                }
+            }
+        }
+        if (overlay.getEntryIndex(level, u) != -1) {
+            for (int k = graph.getInBegin(u); k < graph.getInEnd(u); k++) {
+                int e = graph.getInEdge(k);
+                int w = graph.getTail(e);
+                if (overlay.getWeight(e) >= 0 && overlay.getCell(level, w) != c) {
+                    reach(1, w, d + overlay.getWeight(e), u, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reaches a station in one of the searches, unless it was already reached
+     * at a smaller distance, and checks whether the searches meet there.
+     *
+     * @param side 0 for the forward search, 1 for the backward search
+     * @param v the index of the station
+     * @param distance the distance at which the station is reached
+     * @param parent the index of the station it is reached from, or -1
+     * @param via the edge or clique along which it is reached
+     */
+    private void reach(int side, int v, int distance, int parent, int via) {
+        if (reached[side][v] == query && (distance >= distances[side][v] || !heaps[side].contains(v))) {
+            return;
+        }
+        reached[side][v] = query;
+        distances[side][v] = distance;
+        parents[side][v] = parent;
+        vias[side][v] = via;
+        heaps[side].offer(v, distance);
+        if (reached[1 - side][v] == query && (long) distance + distances[1 - side][v] < best) {
+            best = (long) distance + distances[1 - side][v];
+            meeting = v;
+        }
+    }
+
+    /**
+     * Unpacks a clique into the edges of a cheapest route inside its cell.
+     *
+     * @param u the index of the entry of the cell
+     * @param w the index of the exit of the cell
+     * @param level the level of the cell
+     * @return the number of edges, stored from last to first
+     */
+    private int unpack(int u, int w, int level) {
+        int c = overlay.getCell(level, u);
+        unpacking = unpacking + 1;
+        unpackHeap.clear();
+        unpackReached[u] = unpacking;
+        unpackDistances[u] = 0;
+        unpackEdges[u] = -1;
+        unpackHeap.offer(u, 0);
+        while (!unpackHeap.isEmpty()) {
+            int v = unpackHeap.poll();
+            if (v == w) {
+                break;
+            }
+            for (int e = graph.getOutBegin(v); e < graph.getOutEnd(v); e++) {
+                int x = graph.getHead(e);
+                int d = unpackDistances[v] + overlay.getWeight(e);
+                if (overlay.getWeight(e) < 0 || overlay.getCell(level, x) != c) {
+                    continue;
+                }
+                if (unpackReached[x] != unpacking || (d < unpackDistances[x] && unpackHeap.contains(x))) {
+                    unpackReached[x] = unpacking;
+                    unpackDistances[x] = d;
+                    unpackEdges[x] = e;
+                    unpackHeap.offer(x, d);
+                } else if (d == unpackDistances[x] && unpackHeap.contains(x) && graph.continues(unpackEdges[v], e)) {
+                    // Prefer to stay on the same line
+                    unpackEdges[x] = e;
+                }
+            }
+        }
+        int length = 0;
+        for (int v = w; v != u; v = graph.getTail(unpackEdges[v])) {
+            path[length++] = unpackEdges[v];
+        }
+        return length;
+    }
+}
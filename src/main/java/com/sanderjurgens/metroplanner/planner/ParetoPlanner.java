@@ -0,0 +1,280 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Returns all routes from origin to destination that are Pareto-optimal in the
+ * number of stops and the number of transfers; no other route has fewer stops
+ * without having more transfers, or fewer transfers without having more stops.
+ *
+ * The search is a label-setting search on the same expanded graph as the
+ * {@link MinTransfersStopsPlanner}. Every node keeps a bag of labels that are
+ * not dominated by each other. Labels are settled in lexicographic order of
+ * transfers and stops, so every label in a bag has at most as many transfers
+ * as a new label, and a new label is dominated exactly if it has at least as
+ * many stops as the best label in the bag. Labels are also pruned if they are
+ * dominated by a route that was already found to the destination.
+ *
+ * Labels are processed level by level in the number of transfers, and on each
+ * level every node also keeps a tentative label: the queued label with the
+ * fewest stops. A new label with the same number of transfers is
+ * dropped unless it has fewer stops than the tentative label, in which case it
+ * replaces it. The replaced label stays queued, but it is skipped when its
+ * bucket is reached, since the bag of its node holds fewer stops by then. So
+ * every node settles at most one label per number of transfers, and a search
+ * costs about one Breadth-First Search per level, up to the number of
+ * transfers of the last Pareto-optimal route.
+ *
+ * The expanded graph is rebuilt automatically when the network has changed
+ * since it was last built.
+ *
+ * @author sanderjurgens
+ */
+public class ParetoPlanner extends Planner {
+
+    /** The graph of all stops in the network */
+    private StopGraph graph;
+
+    /** The fewest stops of all labels in the bag of each node */
+    private int[] bestStops;
+    /** The level of the tentative label of each node */
+    private int[] tentativeLevel;
+    /** The stops of the tentative label of each node */
+    private int[] tentativeStops;
+
+    /** The node of each label */
+    private int[] labelNode;
+    /** The label from which each label was reached, or -1 */
+    private int[] labelParent;
+    /** The next label in the same bucket, or -1 */
+    private int[] labelNext;
+    /** The number of labels used */
+    private int labels;
+
+    /** The first label in each bucket of the current level, or -1 */
+    private int[] current;
+    /** The first label in each bucket of the next level, or -1 */
+    private int[] next;
+
+    /**
+     * Constructs a Pareto-optimal planner for a given network.
+     *
+     * @param network a given network
+     */
+    public ParetoPlanner(Network network) {
+        super(network);
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the expanded graph for the network as it is now.
+     */
+    private void rebuild() {
+        graph = new StopGraph(network);
+        int nodes = 2 * graph.getStopCount() + graph.getStationCount();
+        bestStops = new int[nodes];
+        tentativeLevel = new int[nodes];
+        tentativeStops = new int[nodes];
+        labelNode = new int[nodes + 1];
+        labelParent = new int[nodes + 1];
+        labelNext = new int[nodes + 1];
+        // A route rides at most once between every pair of consecutive stops
+        current = new int[2 * graph.getStopCount() + 2];
+        next = new int[2 * graph.getStopCount() + 2];
+    }
+
+    /**
+     * Finds the route from origin to destination with the minimum number of
+     * transfers and, among those, the minimum number of stops, and stores it
+     * in a given compact route. This is the first route of the Pareto-optimal
+     * routes.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        List<CompactRoute> routes = findCompactRoutes(from, to);
+        route.clear();
+        if (!routes.isEmpty()) {
+            CompactRoute first = routes.get(0);
+            for (int i = 0; i < first.getCount(); i++) {
+                route.add(first.getLine(i), first.getFrom(i), first.getTo(i),
+                        first.getDirection(i) == CompactRoute.FORWARD);
+            }
+        }
+    }
+
+    /**
+     * Finds all Pareto-optimal routes from origin to destination, in order of
+     * increasing transfers and decreasing stops.
+     *
+     * @param from origin
+     * @param to destination
+     * @return the Pareto-optimal routes from origin to destination, or an empty
+     * list if there are none
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    public List<Route> findRoutes(Station from, Station to) throws IllegalRequestException {
+        List<Route> routes = new ArrayList<>();
+        for (CompactRoute route : findCompactRoutes(from, to)) {
+            routes.add(route.toRoute());
+        }
+        return routes;
+    }
+
+    /**
+     * Finds all Pareto-optimal routes from origin to destination in compact
+     * form, in order of increasing transfers and decreasing stops.
+     *
+     * @param from origin
+     * @param to destination
+     * @return the Pareto-optimal routes from origin to destination, or an empty
+     * list if there are none
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    public List<CompactRoute> findCompactRoutes(Station from, Station to) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("ParetoPlanner.findCompactRoutes: stop is null");
+        }
+        List<CompactRoute> routes = new ArrayList<>();
+        if (!graph.isCurrent(network)) {
+            rebuild();
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (from == to || origin == -1 || destination == -1) {
+            return routes;
+        }
+
+        // Initialization of the search data
+        Arrays.fill(bestStops, Integer.MAX_VALUE);
+        Arrays.fill(tentativeLevel, -1);
+        Arrays.fill(current, -1);
+        Arrays.fill(next, -1);
+        labels = 0;
+        int stationNodes = 2 * graph.getStopCount();
+        addLabel(current, 0, stationNodes + origin, 0, -1);
+
+        // Process the levels of transfers, each in order of stops
+        List<Integer> targets = new ArrayList<>();
+        int targetStops = Integer.MAX_VALUE;
+        int level = 0;
+        int max = 0;
+        int nextMax = -1;
+        while (max >= 0) {
+            // Labels with at least as many stops as a found route are dominated
+            for (int s = 0; s <= max && s < targetStops; s++) {
+                while (current[s] != -1 && s < targetStops) {
+                    int label = current[s];
+                    int node = labelNode[label];
+                    current[s] = labelNext[label];
+                    // Skip the label if it is dominated by the bag of the node
+                    if (s >= bestStops[node]) {
+                        continue;
+                    }
+                    bestStops[node] = s;
+                    if (node < stationNodes) {
+                        int stop = node >> 1;
+                        boolean forward = (node & 1) == 0;
+                        if (graph.getStation(stop) == destination) {
+                            // A route that is not dominated by any route found before
+                            targets.add(label);
+                            targetStops = s;
+                            break;
+                        }
+                        // Ride to the next stop along the line
+                        int nextStop = graph.next(stop, forward);
+                        if (nextStop != -1 && addLabel(current, level, 2 * nextStop + (node & 1), s + 1, label)) {
+                            max = Math.max(max, s + 1);
+                        }
+                        // Get off at the station, to transfer on the next level
+                        if (addLabel(next, level + 1, stationNodes + graph.getStation(stop), s, label)) {
+                            nextMax = Math.max(nextMax, s);
+                        }
+                    } else {
+                        // Board every line at the station, in every allowed direction
+                        int station = node - stationNodes;
+                        for (int e = graph.getStationBegin(station); e < graph.getStationEnd(station); e++) {
+                            int stop = graph.getStationStop(e);
+                            for (int d = 0; d < 2; d++) {
+                                if (graph.canTravel(graph.getLine(stop), d == 0)) {
+                                    addLabel(current, level, 2 * stop + d, s, label);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            // Continue with the next level, discarding the remaining dominated labels
+            int[] swap = current;
+            current = next;
+            next = swap;
+            Arrays.fill(next, -1);
+            max = nextMax;
+            nextMax = -1;
+            level = level + 1;
+        }
+
+        // Path reconstruction for every route found
+        int[] path = new int[0];
+        for (int target : targets) {
+            int length = 0;
+            for (int label = target; label != -1; label = labelParent[label]) {
+                length = length + 1;
+            }
+            if (path.length < length) {
+                path = new int[length];
+            }
+            for (int label = target, i = length - 1; label != -1; label = labelParent[label], i--) {
+                path[i] = labelNode[label];
+            }
+            CompactRoute route = new CompactRoute(network);
+            graph.fillRoute(path, length, route);
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    /**
+     * Adds a label to a bucket, unless it is dominated by the bag of its node
+     * or by another label of the node on the same level.
+     *
+     * @param buckets the buckets of the level of the label
+     * @param level the number of transfers of the label
+     * @param node the node of the label
+     * @param stops the number of stops of the label
+     * @param parent the label from which the label is reached
+     * @return whether the label is added
+     */
+    private boolean addLabel(int[] buckets, int level, int node, int stops, int parent) {
+        if (stops >= bestStops[node] || (tentativeLevel[node] == level && stops >= tentativeStops[node])) {
+            return false;
+        }
+        tentativeLevel[node] = level;
+        tentativeStops[node] = stops;
+        if (labels == labelNode.length) {
+            int capacity = 2 * labelNode.length;
+            labelNode = Arrays.copyOf(labelNode, capacity);
+            labelParent = Arrays.copyOf(labelParent, capacity);
+            labelNext = Arrays.copyOf(labelNext, capacity);
+        }
+        labelNode[labels] = node;
+        labelParent[labels] = parent;
+        labelNext[labels] = buckets[stops];
+        buckets[stops] = labels;
+        labels = labels + 1;
+        return true;
+    }
+}
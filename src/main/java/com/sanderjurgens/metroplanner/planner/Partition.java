@@ -0,0 +1,171 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * An order of the stations of a station graph, in which stations close to each
+ * other come close together, for partitioning the graph into cells.
+ *
+ * If every station of the network has a location on the map, the order is
+ * found by splitting the map recursively along its widest side. Otherwise it
+ * is a Breadth-First Search order over the edges in both directions. Cutting
+ * the order into a number of consecutive runs of about equal length gives the
+ * cells; the cells for a number of runs lie nested in the cells for any
+ * divisor of that number.
+ *
+ * @author sanderjurgens
+ */
+public class Partition {
+
+    /** The number of stations in the partition */
+    private final int stationCount;
+    /** The position of each station in the order */
+    private final int[] positions;
+    /** Whether the order was found from the locations of the stations */
+    private final boolean geographic;
+
+    /**
+     * Constructs the partition order of a given station graph.
+     *
+     * @param network the network of the graph
+     * @param graph a given station graph
+     */
+    public Partition(Network network, StationGraph graph) {
+        stationCount = graph.getStationCount();
+        boolean located = true;
+        for (Station station : network.getStationSet()) {
+            located = located && station.hasLocation();
+        }
+        geographic = located;
+        int[] order;
+        if (geographic) {
+            Station[] stations = network.getStationSet().toArray(new Station[0]);
+            Integer[] boxed = IntStream.range(0, stationCount).boxed().toArray(Integer[]::new);
+            split(stations, boxed, 0, stationCount);
+            order = Arrays.stream(boxed).mapToInt(Integer::intValue).toArray();
+        } else {
+            order = bfsOrder(graph);
+        }
+        positions = new int[stationCount];
+        for (int i = 0; i < stationCount; i++) {
+            positions[order[i]] = i;
+        }
+    }
+
+    /**
+     * Orders a range of stations by splitting it in half along the widest
+     * side of their bounding box, and ordering both halves.
+     *
+     * @param stations the stations by index
+     * @param order the indices of the stations, reordered while splitting
+     * @param begin the first position of the range
+     * @param end the position after the range
+     */
+    private static void split(Station[] stations, Integer[] order, int begin, int end) {
+        if (end - begin <= 1) {
+            return;
+        }
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = begin; i < end; i++) {
+            Station station = stations[order[i]];
+            minX = Math.min(minX, station.getX());
+            maxX = Math.max(maxX, station.getX());
+            minY = Math.min(minY, station.getY());
+            maxY = Math.max(maxY, station.getY());
+        }
+        Comparator<Integer> axis = maxX - minX >= maxY - minY
+                ? Comparator.comparingInt(v -> stations[v].getX())
+                : Comparator.comparingInt(v -> stations[v].getY());
+        Arrays.sort(order, begin, end, axis);
+        int middle = (begin + end) >>> 1;
+        split(stations, order, begin, middle);
+        split(stations, order, middle, end);
+    }
+
+    /**
+     * Returns the stations in Breadth-First Search order over the edges in
+     * both directions, starting a new search at every station not yet reached.
+     *
+     * @param graph the station graph
+     * @return the indices of the stations in search order
+     */
+    private static int[] bfsOrder(StationGraph graph) {
+        int n = graph.getStationCount();
+        int[] order = new int[n];
+        boolean[] seen = new boolean[n];
+        int tail = 0;
+        for (int s = 0; s < n; s++) {
+            if (seen[s]) {
+                continue;
+            }
+            int head = tail;
+            order[tail++] = s;
+            seen[s] = true;
+            while (head < tail) {
+                int u = order[head++];
+                for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                    int v = graph.getHead(e);
+                    if (!seen[v]) {
+                        seen[v] = true;
+                        order[tail++] = v;
+                    }
+                }
+                for (int i = graph.getInBegin(u); i < graph.getInEnd(u); i++) {
+                    int v = graph.getTail(graph.getInEdge(i));
+                    if (!seen[v]) {
+                        seen[v] = true;
+                        order[tail++] = v;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Returns the number of stations in the partition.
+     *
+     * @return the number of stations in the partition
+     */
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * Returns the position of a station in the order.
+     *
+     * @param station the index of a station
+     * @return the position of the station
+     */
+    public int getPosition(int station) {
+        return positions[station];
+    }
+
+    /**
+     * Returns the cell of a station, when the order is cut into a given number
+     * of cells.
+     *
+     * @param station the index of a station
+     * @param cellCount the number of cells
+     * @return the cell of the station, from 0 up to the number of cells
+     */
+    public int getCell(int station, int cellCount) {
+        return (int) ((long) positions[station] * cellCount / stationCount);
+    }
+
+    /**
+     * Returns whether the order was found from the locations of the stations.
+     *
+     * @return whether the partition is geographic
+     */
+    public boolean isGeographic() {
+        return geographic;
+    }
+}
@@ -1,5 +1,6 @@
 package com.sanderjurgens.metroplanner.planner;
 
+import com.sanderjurgens.metroplanner.model.Line;
 import com.sanderjurgens.metroplanner.model.Network;
 import com.sanderjurgens.metroplanner.model.Station;
 
@@ -28,5 +29,61 @@ public abstract class Planner {
      * @param to destination
      * @return a route from origin to destination
      */
-    public abstract Route findRoute(Station from, Station to);
+    public Route findRoute(Station from, Station to) {
+        return findCompactRoute(from, to).toRoute();
+    }
+
+    /**
+     * Finds a route from origin to destination, in compact form.
+     *
+     * @param from origin
+     * @param to destination
+     * @return a route from origin to destination
+     */
+    public CompactRoute findCompactRoute(Station from, Station to) {
+        CompactRoute route = new CompactRoute(network);
+        findCompactRoute(from, to, route);
+        return route;
+    }
+
+    /**
+     * Finds a route from origin to destination, and stores it in a given
+     * compact route. Any segments already in the compact route are removed.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     */
+    public abstract void findCompactRoute(Station from, Station to, CompactRoute route);
+
+    /**
+     * Returns whether removing a stop from a line, which makes its neighbours
+     * consecutive stops, can improve the routes of this planner, also those
+     * that do not ride along the edited line. Caches then have to plan every
+     * route of this planner again after such an edit.
+     *
+     * @return whether a route can improve when a stop is removed
+     */
+    public boolean isImprovedByRemovedStops() {
+        return true;
+    }
+
+    /**
+     * Returns the direction of the shortest way along a line from one of its
+     * stops to another, that is allowed to be traveled.
+     *
+     * @param line a given line
+     * @param f the position of the beginning stop
+     * @param t the position of the ending stop
+     * @return whether the direction is towards the last stop of the line
+     */
+    protected static boolean isForward(Line line, int f, int t) {
+        // Complex logic due to circular lines
+        if (line.isOneWay()) {
+            return true;
+        } else if (line.isCircular() && (line.getCount() - Math.abs(t - f)) < Math.abs(t - f)) {
+            return t < f;
+        }
+        return f < t;
+    }
 }
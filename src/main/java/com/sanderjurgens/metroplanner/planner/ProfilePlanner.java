@@ -0,0 +1,356 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import com.sanderjurgens.metroplanner.model.Timetable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Returns the profile from origin to destination: for every departure in a
+ * time window, the journey with the earliest arrival, such that no journey
+ * that departs later arrives as early. The profile is found in a single
+ * backward scan over the connections of a timetable (profile CSA).
+ *
+ * The connections are scanned in order of decreasing departure, from the last
+ * one of the day to the first one at the beginning of the window. Every trip
+ * keeps the earliest arrival at the destination when staying on it, and every
+ * station keeps its profile: the departures of trips boarded there, each with
+ * an earlier arrival at the destination than all later departures. As the
+ * scan goes back in time, the profile of a station grows at its early end,
+ * so evaluating it at the arrival of a connection plus the transfer time
+ * looks only at the few departures added since. Staying on a trip is free,
+ * but boarding another trip at a station other than the origin takes the
+ * transfer time of the station.
+ *
+ * The entries of all profiles are kept in flat arrays, allocated once, and
+ * the profile of the origin is returned as a list of {@link Journey}s. A
+ * query fails once the network has changed since the timetable was read.
+ *
+ * @author sanderjurgens
+ */
+public class ProfilePlanner extends Planner {
+
+    /** A time later than any arrival */
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    /** The timetable that is scanned */
+    private final Timetable timetable;
+    /** The transfer time of each station, in seconds */
+    private final int[] transferTimes;
+
+    /** The earliest arrival at the destination when staying on each trip */
+    private final int[] tripArrivals;
+    /** The connection where each trip is left for the earliest arrival */
+    private final int[] tripExits;
+    /** The query in which each trip reached the destination */
+    private final int[] onTrip;
+    /** The latest entry added to the profile of each station */
+    private final int[] heads;
+    /** The query in which each station got a profile */
+    private final int[] reached;
+    /** The number of the current query */
+    private int query;
+
+    /** The departure of each profile entry */
+    private final int[] entryDepartures;
+    /** The arrival at the destination of each profile entry */
+    private final int[] entryArrivals;
+    /** The connection where the trip of each profile entry is boarded */
+    private final int[] entryEnters;
+    /** The connection where the trip of each profile entry is left */
+    private final int[] entryExits;
+    /** The entry of the same station that departs later than each profile entry, or -1 */
+    private final int[] entryNext;
+    /** The number of profile entries of the current query */
+    private int entryCount;
+    /** The legs of a journey, six integers each, while it is followed */
+    private int[] legs;
+
+    /** The departure time used for routes without time */
+    private int departureTime;
+    /** The index of the origin of the last query */
+    private int origin;
+    /** The index of the destination of the last query */
+    private int destination;
+    /** The number of connections scanned by the last query */
+    private int scannedCount;
+
+    /**
+     * Constructs a profile planner for a given timetable.
+     *
+     * @param network a given network
+     * @param timetable the timetable of the network
+     * @throws IllegalRequestException if the timetable is not of the network
+     */
+    public ProfilePlanner(Network network, Timetable timetable) throws IllegalRequestException {
+        super(network);
+        if (timetable.getNetwork() != network) {
+            throw new IllegalRequestException("ProfilePlanner: timetable is not of the network");
+        }
+        this.timetable = timetable;
+        int n = network.getStationSet().getCount();
+        transferTimes = new int[n];
+        for (int v = 0; v < n; v++) {
+            transferTimes[v] = network.getStationSet().get(v).getTransferTime();
+        }
+        tripArrivals = new int[timetable.getTripCount()];
+        tripExits = new int[timetable.getTripCount()];
+        onTrip = new int[timetable.getTripCount()];
+        heads = new int[n];
+        reached = new int[n];
+        query = 0;
+
+        // Every connection adds at most one entry to the profile of its station
+        int m = timetable.getConnectionCount();
+        entryDepartures = new int[m];
+        entryArrivals = new int[m];
+        entryEnters = new int[m];
+        entryExits = new int[m];
+        entryNext = new int[m];
+        legs = new int[6 * 8];
+        origin = -1;
+        destination = -1;
+    }
+
+    /**
+     * Sets the departure time used for routes without time.
+     *
+     * @param time the departure time in seconds since midnight
+     */
+    public void setDepartureTime(int time) {
+        departureTime = time;
+    }
+
+    /**
+     * Returns the departure time used for routes without time.
+     *
+     * @return the departure time in seconds since midnight
+     */
+    public int getDepartureTime() {
+        return departureTime;
+    }
+
+    /**
+     * Finds a route from origin to destination with the earliest arrival when
+     * departing at the departure time that is set, and stores it in a given
+     * compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the timetable was read
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        route.clear();
+        if (scan(from, to, departureTime)) {
+            int entry = evaluate(origin, departureTime);
+            if (entry != -1) {
+                int count = follow(entry);
+                for (int l = 0; l < count; l++) {
+                    route.add(legs[6 * l], legs[6 * l + 1], legs[6 * l + 2], legs[6 * l + 3] != 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the profile from origin to destination over a time window: for
+     * every departure in the window, the journey with the earliest arrival,
+     * if no journey departing later, also after the window, arrives as early.
+     *
+     * @param from origin
+     * @param to destination
+     * @param begin the beginning of the window, in seconds since midnight
+     * @param end the end of the window, in seconds since midnight
+     * @return the journeys, in order of departure and arrival
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the timetable was read
+     */
+    public List<Journey> findProfile(Station from, Station to, int begin, int end) throws IllegalRequestException {
+        List<Journey> journeys = new ArrayList<>();
+        if (scan(from, to, begin)) {
+            for (int entry = evaluate(origin, begin); entry != -1; entry = entryNext[entry]) {
+                if (entryDepartures[entry] > end) {
+                    break;
+                }
+                int count = follow(entry);
+                journeys.add(new Journey(Arrays.copyOf(legs, 6 * count)));
+            }
+        }
+        return journeys;
+    }
+
+    /**
+     * Scans the connections backward, from the last one to the first one that
+     * departs at a given time, and builds the profiles of the stations.
+     *
+     * @param from origin
+     * @param to destination
+     * @param begin the earliest departure of interest
+     * @return whether the origin and destination are different stations of
+     * the network
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the timetable was read
+     */
+    private boolean scan(Station from, Station to, int begin) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("ProfilePlanner.findProfile: stop is null");
+        }
+        if (!timetable.isCurrent(network)) {
+            throw new IllegalRequestException("ProfilePlanner.findProfile: timetable is out of date");
+        }
+        origin = network.getStationSet().getIndex(from);
+        destination = network.getStationSet().getIndex(to);
+        scannedCount = 0;
+        entryCount = 0;
+        if (origin == -1 || destination == -1 || origin == destination) {
+            return false;
+        }
+
+        query = query + 1;
+        int first = timetable.getFirstConnection(begin);
+        for (int c = timetable.getConnectionCount() - 1; c >= first; c--) {
+            scannedCount++;
+            int trip = timetable.getTrip(c);
+            int v = timetable.getArrivalStation(c);
+            int arrival = timetable.getArrivalTime(c);
+
+            // Leave the trip at the destination, stay on it, or transfer to the best trip in time
+            int best = onTrip[trip] == query ? tripArrivals[trip] : NEVER;
+            int exit = -1;
+            if (v == destination) {
+                if (arrival < best) {
+                    best = arrival;
+                    exit = c;
+                }
+            } else {
+                int entry = evaluate(v, arrival + transferTimes[v]);
+                if (entry != -1 && entryArrivals[entry] < best) {
+                    best = entryArrivals[entry];
+                    exit = c;
+                }
+            }
+            if (best == NEVER) {
+                continue;
+            }
+            if (exit != -1) {
+                onTrip[trip] = query;
+                tripArrivals[trip] = best;
+                tripExits[trip] = exit;
+            }
+
+            // Add the departure to the profile of its station, if it arrives earlier than all later ones
+            int u = timetable.getDepartureStation(c);
+            if (u == destination) {
+                continue;
+            }
+            int head = reached[u] == query ? heads[u] : -1;
+            if (head != -1 && entryArrivals[head] <= best) {
+                continue;
+            }
+            int departure = timetable.getDepartureTime(c);
+            if (head != -1 && entryDepartures[head] == departure) {
+                // Replace the entry, which departs at the same time but arrives later
+                head = entryNext[head];
+            }
+            entryDepartures[entryCount] = departure;
+            entryArrivals[entryCount] = best;
+            entryEnters[entryCount] = c;
+            entryExits[entryCount] = tripExits[trip];
+            entryNext[entryCount] = head;
+            reached[u] = query;
+            heads[u] = entryCount;
+            entryCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the entry of the profile of a station that departs at or after a
+     * given time with the earliest arrival.
+     *
+     * @param v the index of a station
+     * @param time the earliest departure
+     * @return the entry, or -1 if no entry departs late enough
+     */
+    private int evaluate(int v, int time) {
+        if (reached[v] != query) {
+            return -1;
+        }
+        int entry = heads[v];
+        while (entry != -1 && entryDepartures[entry] < time) {
+            entry = entryNext[entry];
+        }
+        return entry;
+    }
+
+    /**
+     * Follows the journey of a profile entry to the destination, and stores
+     * its legs.
+     *
+     * @param entry a profile entry
+     * @return the number of legs
+     */
+    private int follow(int entry) {
+        int count = 0;
+        while (true) {
+            if (legs.length < 6 * (count + 1)) {
+                legs = Arrays.copyOf(legs, 2 * legs.length);
+            }
+            int enter = entryEnters[entry];
+            int exit = entryExits[entry];
+            int trip = timetable.getTrip(enter);
+            legs[6 * count] = timetable.getTripLine(trip);
+            legs[6 * count + 1] = timetable.getDeparturePosition(enter);
+            legs[6 * count + 2] = timetable.getArrivalPosition(exit);
+            legs[6 * count + 3] = timetable.isTripForward(trip) ? 1 : 0;
+            legs[6 * count + 4] = timetable.getDepartureTime(enter);
+            legs[6 * count + 5] = timetable.getArrivalTime(exit);
+            count++;
+            int v = timetable.getArrivalStation(exit);
+            if (v == destination) {
+                return count;
+            }
+            entry = evaluate(v, timetable.getArrivalTime(exit) + transferTimes[v]);
+        }
+    }
+
+    /**
+     * Returns the timetable that is scanned.
+     *
+     * @return the timetable
+     */
+    public Timetable getTimetable() {
+        return timetable;
+    }
+
+    /**
+     * Returns the number of entries in the profiles of all stations built by
+     * the last query.
+     *
+     * @return the number of profile entries
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of connections scanned by the last query.
+     *
+     * @return the number of connections scanned
+     */
+    public int getScannedCount() {
+        return scannedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ProfilePlanner[" + timetable + ", departing " + Timetable.formatTime(departureTime) + "]";
+    }
+}
@@ -0,0 +1,161 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import java.util.Arrays;
+
+/**
+ * A radix heap of nodes with non-negative integer keys, for searches in which
+ * the keys taken from the heap never decrease, such as Dijkstra's algorithm.
+ *
+ * The entries are kept in buckets by the highest bit in which their key
+ * differs from the last key taken. Only when the bucket of equal keys is empty
+ * is the next bucket emptied into the lower ones, so that every entry moves
+ * down at most once per bit. A node may be offered more than once; the search
+ * skips the entries whose key is no longer the best of their node. Nodes and
+ * keys are stored in plain arrays, which grow as needed and are kept between
+ * searches.
+ *
+ * @author sanderjurgens
+ */
+public class RadixHeap {
+
+    /** The number of buckets, one for equal keys and one per bit of a key */
+    private static final int BUCKETS = 32;
+
+    /** The nodes in each bucket */
+    private final int[][] nodes;
+    /** The keys in each bucket */
+    private final int[][] keys;
+    /** The number of entries in each bucket */
+    private final int[] sizes;
+    /** The number of entries in the heap */
+    private int size;
+    /** The key that was taken last */
+    private int last;
+
+    /**
+     * Constructs an empty heap.
+     */
+    public RadixHeap() {
+        nodes = new int[BUCKETS][16];
+        keys = new int[BUCKETS][16];
+        sizes = new int[BUCKETS];
+        size = 0;
+        last = 0;
+    }
+
+    /**
+     * Returns whether the heap is empty.
+     *
+     * @return whether the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of entries in the heap.
+     *
+     * @return the number of entries in the heap
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the key that was taken last, which is the key of the node
+     * returned by the last call to {@link #poll()}.
+     *
+     * @return the last key taken, or 0 if none was taken since the heap was
+     * cleared
+     */
+    public int getLastKey() {
+        return last;
+    }
+
+    /**
+     * Adds a node with a given key to the heap.
+     *
+     * @param node a given node
+     * @param key the key of the node
+     * @throws IllegalRequestException if the key is below the last key taken
+     */
+    public void offer(int node, int key) throws IllegalRequestException {
+        if (key < last) {
+            throw new IllegalRequestException("RadixHeap.offer: key is below the last key");
+        }
+        push(bucket(key), node, key);
+        size++;
+    }
+
+    /**
+     * Removes and returns a node with the smallest key.
+     *
+     * @return the node with the smallest key
+     * @throws IllegalRequestException if the heap is empty
+     */
+    public int poll() throws IllegalRequestException {
+        if (size == 0) {
+            throw new IllegalRequestException("RadixHeap.poll: heap is empty");
+        }
+        if (sizes[0] == 0) {
+            // Find the lowest bucket in use and move its entries down around its smallest key
+            int b = 1;
+            while (sizes[b] == 0) {
+                b++;
+            }
+            int[] bucketNodes = nodes[b];
+            int[] bucketKeys = keys[b];
+            int count = sizes[b];
+            int min = bucketKeys[0];
+            for (int i = 1; i < count; i++) {
+                min = Math.min(min, bucketKeys[i]);
+            }
+            last = min;
+            sizes[b] = 0;
+            for (int i = 0; i < count; i++) {
+                push(bucket(bucketKeys[i]), bucketNodes[i], bucketKeys[i]);
+            }
+        }
+        size--;
+        return nodes[0][--sizes[0]];
+    }
+
+    /**
+     * Removes all entries from the heap, and resets the last key taken.
+     */
+    public void clear() {
+        for (int b = 0; b < BUCKETS; b++) {
+            sizes[b] = 0;
+        }
+        size = 0;
+        last = 0;
+    }
+
+    /**
+     * Returns the bucket of a given key, relative to the last key taken.
+     *
+     * @param key a given key
+     * @return the bucket of the key
+     */
+    private int bucket(int key) {
+        return key == last ? 0 : 32 - Integer.numberOfLeadingZeros(key ^ last);
+    }
+
+    /**
+     * Adds an entry to a bucket, growing it if it is full.
+     *
+     * @param b the bucket
+     * @param node the node of the entry
+     * @param key the key of the entry
+     */
+    private void push(int b, int node, int key) {
+        if (sizes[b] == nodes[b].length) {
+            nodes[b] = Arrays.copyOf(nodes[b], 2 * sizes[b]);
+            keys[b] = Arrays.copyOf(keys[b], 2 * sizes[b]);
+        }
+        nodes[b][sizes[b]] = node;
+        keys[b][sizes[b]] = key;
+        sizes[b]++;
+    }
+}
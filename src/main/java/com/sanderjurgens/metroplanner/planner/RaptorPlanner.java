@@ -0,0 +1,572 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.PatternTimetable;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Returns the route from origin to destination with the earliest arrival,
+ * when departing at a given time, using the Round-bAsed Public Transit
+ * Optimized Router (RAPTOR) over a pattern timetable.
+ *
+ * Round k rides every pattern that serves a station improved in round k - 1,
+ * from the first such station onward, boarding the earliest trip that can be
+ * caught and switching to an earlier trip wherever possible. Round k thereby
+ * finds the earliest arrivals with at most k trips, and the rounds in which
+ * the arrival at the destination improves form the Pareto front of arrival
+ * time and number of transfers. Staying on a trip is free, but boarding a
+ * trip at a station other than the origin takes its transfer time.
+ *
+ * The labels of all rounds are kept in flat arrays, allocated once, such that
+ * a query for a compact route allocates no objects. A range query (rRAPTOR)
+ * runs the query for every departure from the origin in a time window, from
+ * the latest to the earliest, reusing the labels of later departures as upper
+ * bounds. The window is split into parts that are searched in parallel.
+ *
+ * The stop indexes are built for the network as it is when the planner is
+ * constructed, and a query fails once the network has changed since.
+ *
+ * @author sanderjurgens
+ */
+public class RaptorPlanner extends Planner {
+
+    /** A time later than any arrival */
+    private static final int NEVER = Integer.MAX_VALUE;
+    /** The number of departures per part of a range query searched in parallel */
+    private static final int RANGE_PART = 16;
+
+    /** The pattern timetable that is searched */
+    private final PatternTimetable patterns;
+    /** The largest number of trips in a route, which is the number of rounds */
+    private final int maxTrips;
+    /** The version of the network when the stop indexes were built */
+    private final long version;
+    /** The number of edits of the network when the stop indexes were built */
+    private final long edits;
+    /** The number of stations */
+    private final int stationCount;
+    /** The transfer time of each station, in seconds */
+    private final int[] transferTimes;
+    /** The first pattern stop of each station, and the number of pattern stops at the end */
+    private final int[] stationStart;
+    /** The pattern of each pattern stop, grouped by station */
+    private final int[] stationPattern;
+    /** The index of each pattern stop in its pattern, grouped by station */
+    private final int[] stationStop;
+
+    /** The labels of point queries */
+    private final Search search;
+    /** The labels of the parts of range queries, per thread */
+    private final ThreadLocal<Search> searches;
+    /** The departure time used for routes without time */
+    private int departureTime;
+
+    /**
+     * Constructs a RAPTOR planner for a given pattern timetable.
+     *
+     * @param network a given network
+     * @param patterns the pattern timetable of the network
+     * @param maxTrips the largest number of trips in a route
+     * @throws IllegalRequestException if the largest number of trips is not
+     * positive, or if the timetable does not fit the network
+     */
+    public RaptorPlanner(Network network, PatternTimetable patterns, int maxTrips) throws IllegalRequestException {
+        super(network);
+        if (maxTrips <= 0) {
+            throw new IllegalRequestException("RaptorPlanner: trip count is not positive");
+        }
+        this.patterns = patterns;
+        this.maxTrips = maxTrips;
+        version = network.getVersion();
+        edits = network.getEditCount();
+        stationCount = network.getStationSet().getCount();
+        transferTimes = new int[stationCount];
+        for (int v = 0; v < stationCount; v++) {
+            transferTimes[v] = network.getStationSet().get(v).getTransferTime();
+        }
+
+        // Index the stops of all patterns by station
+        stationStart = new int[stationCount + 1];
+        for (int p = 0; p < patterns.getPatternCount(); p++) {
+            if (patterns.getLine(p) >= network.getLineSet().getCount()) {
+                throw new IllegalRequestException("RaptorPlanner: timetable does not fit the network");
+            }
+            for (int i = 0; i < patterns.getStopCount(p); i++) {
+                int v = patterns.getStation(p, i);
+                if (v < 0 || v >= stationCount) {
+                    throw new IllegalRequestException("RaptorPlanner: timetable does not fit the network");
+                }
+                stationStart[v + 1]++;
+            }
+        }
+        for (int v = 0; v < stationCount; v++) {
+            stationStart[v + 1] = stationStart[v + 1] + stationStart[v];
+        }
+        stationPattern = new int[stationStart[stationCount]];
+        stationStop = new int[stationStart[stationCount]];
+        int[] fill = Arrays.copyOf(stationStart, stationCount);
+        for (int p = 0; p < patterns.getPatternCount(); p++) {
+            for (int i = 0; i < patterns.getStopCount(p); i++) {
+                int v = patterns.getStation(p, i);
+                stationPattern[fill[v]] = p;
+                stationStop[fill[v]] = i;
+                fill[v]++;
+            }
+        }
+
+        search = new Search();
+        searches = ThreadLocal.withInitial(Search::new);
+    }
+
+    /**
+     * Sets the departure time used for routes without time.
+     *
+     * @param time the departure time in seconds since midnight
+     */
+    public void setDepartureTime(int time) {
+        departureTime = time;
+    }
+
+    /**
+     * Returns the departure time used for routes without time.
+     *
+     * @return the departure time in seconds since midnight
+     */
+    public int getDepartureTime() {
+        return departureTime;
+    }
+
+    /**
+     * Finds a route from origin to destination with the earliest arrival when
+     * departing at the departure time that is set, and stores it in a given
+     * compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the planner was built
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        route.clear();
+        if (query(from, to, departureTime)) {
+            int k = search.getBestRound();
+            int v = search.destination;
+            while (v != search.origin) {
+                while (search.boardPattern[k * stationCount + v] == -1) {
+                    k--;
+                }
+                int i = k * stationCount + v;
+                int p = search.boardPattern[i];
+                route.add(patterns.getLine(p), patterns.getPosition(p, search.boardStop[i]),
+                        patterns.getPosition(p, search.alightStop[i]), patterns.isForward(p));
+                v = patterns.getStation(p, search.boardStop[i]);
+                k--;
+            }
+            route.reverseOrder();
+        }
+    }
+
+    /**
+     * Finds the journeys from origin to destination when departing at a given
+     * time that form the Pareto front of arrival time and number of trips.
+     *
+     * @param from origin
+     * @param to destination
+     * @param departure the departure time in seconds since midnight
+     * @return the journeys, with fewer trips and a later arrival first, or an
+     * empty list if the destination cannot be reached
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the planner was built
+     */
+    public List<Journey> findJourneys(Station from, Station to, int departure) throws IllegalRequestException {
+        List<Journey> journeys = new ArrayList<>();
+        if (query(from, to, departure)) {
+            int best = NEVER;
+            for (int k = 1; k <= maxTrips; k++) {
+                int arrival = search.arrivals[k * stationCount + search.destination];
+                if (arrival < best) {
+                    best = arrival;
+                    journeys.add(search.toJourney(k));
+                }
+            }
+        }
+        return journeys;
+    }
+
+    /**
+     * Finds the journey from origin to destination with the earliest arrival
+     * when departing at a given time, of which every segment is timed.
+     *
+     * @param from origin
+     * @param to destination
+     * @param departure the departure time in seconds since midnight
+     * @return a route of {@link TimedRouteSegment}s, which is empty if the
+     * destination cannot be reached
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the planner was built
+     */
+    public Route findTimedRoute(Station from, Station to, int departure) throws IllegalRequestException {
+        if (!query(from, to, departure)) {
+            return new Route();
+        }
+        return search.toJourney(search.getBestRound()).toRoute(network);
+    }
+
+    /**
+     * Finds, for every departure from the origin in a time window, the
+     * journey with the earliest arrival at the destination, and keeps those
+     * that no later departure arrives as early as.
+     *
+     * @param from origin
+     * @param to destination
+     * @param begin the beginning of the window, in seconds since midnight
+     * @param end the end of the window, in seconds since midnight
+     * @return the journeys, in order of departure
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the planner was built
+     */
+    public List<Journey> findRange(Station from, Station to, int begin, int end) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("RaptorPlanner.findRange: stop is null");
+        }
+        if (version != network.getVersion() || edits != network.getEditCount()) {
+            throw new IllegalRequestException("RaptorPlanner.findRange: timetable is out of date");
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        List<Journey> journeys = new ArrayList<>();
+        if (origin == -1 || destination == -1 || origin == destination) {
+            return journeys;
+        }
+
+        // Collect the departures of all trips from the origin in the window, latest first
+        int count = 0;
+        int[] departures = new int[16];
+        for (int s = stationStart[origin]; s < stationStart[origin + 1]; s++) {
+            int p = stationPattern[s];
+            int i = stationStop[s];
+            for (int t = patterns.getNextTrip(p, i, begin); t < patterns.getTripCount(p); t++) {
+                int time = patterns.getDeparture(p, t) + patterns.getOffset(p, i);
+                if (time > end) {
+                    break;
+                }
+                if (count == departures.length) {
+                    departures = Arrays.copyOf(departures, 2 * count);
+                }
+                departures[count++] = time;
+            }
+        }
+        int[] times = IntStream.of(Arrays.copyOf(departures, count)).distinct().sorted().toArray();
+
+        // Search the parts of the window in parallel, each from its latest departure
+        int parts = (times.length + RANGE_PART - 1) / RANGE_PART;
+        List<List<Journey>> found = IntStream.range(0, parts).parallel().mapToObj(part -> {
+            Search s = searches.get();
+            List<Journey> list = new ArrayList<>();
+            int best = NEVER;
+            s.reset();
+            for (int j = Math.min(times.length, (part + 1) * RANGE_PART) - 1; j >= part * RANGE_PART; j--) {
+                s.run(origin, destination, times[j]);
+                int arrival = s.best[destination];
+                if (arrival < best) {
+                    best = arrival;
+                    list.add(s.toJourney(s.getBestRound()));
+                }
+            }
+            return list;
+        }).toList();
+
+        // Keep the journeys that no later departure arrives as early as
+        List<Journey> all = new ArrayList<>();
+        found.forEach(all::addAll);
+        all.sort(Comparator.comparingInt((Journey journey) -> journey.getDeparture()).reversed()
+                .thenComparingInt(journey -> journey.getArrival()));
+        int best = NEVER;
+        for (Journey journey : all) {
+            if (journey.getArrival() < best) {
+                best = journey.getArrival();
+                journeys.add(0, journey);
+            }
+        }
+        return journeys;
+    }
+
+    /**
+     * Runs a point query with fresh labels.
+     *
+     * @param from origin
+     * @param to destination
+     * @param departure the departure time
+     * @return whether the destination was reached
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null, or if the network has changed since the planner was built
+     */
+    private boolean query(Station from, Station to, int departure) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("RaptorPlanner.findCompactRoute: stop is null");
+        }
+        if (version != network.getVersion() || edits != network.getEditCount()) {
+            throw new IllegalRequestException("RaptorPlanner.findCompactRoute: timetable is out of date");
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        search.reset();
+        search.origin = origin;
+        search.destination = destination;
+        if (origin == -1 || destination == -1 || origin == destination) {
+            return false;
+        }
+        search.run(origin, destination, departure);
+        return search.best[destination] != NEVER;
+    }
+
+    /**
+     * Returns the arrival at the destination of the last point query, with at
+     * most a given number of trips.
+     *
+     * @param trips the largest number of trips
+     * @return the arrival time in seconds since midnight, or -1 if the
+     * destination was not reached
+     */
+    public int getArrivalTime(int trips) {
+        if (search.origin == -1 || search.destination == -1 || search.origin == search.destination) {
+            return -1;
+        }
+        int arrival = NEVER;
+        for (int k = 1; k <= Math.min(trips, maxTrips); k++) {
+            arrival = Math.min(arrival, search.arrivals[k * stationCount + search.destination]);
+        }
+        return arrival == NEVER ? -1 : arrival;
+    }
+
+    /**
+     * Returns the arrival at the destination of the last point query.
+     *
+     * @return the arrival time in seconds since midnight, or -1 if the
+     * destination was not reached
+     */
+    public int getArrivalTime() {
+        return getArrivalTime(maxTrips);
+    }
+
+    /**
+     * Returns the largest number of trips in a route.
+     *
+     * @return the number of rounds
+     */
+    public int getMaxTrips() {
+        return maxTrips;
+    }
+
+    /**
+     * The labels of a search, in flat arrays per round and station.
+     */
+    private final class Search {
+
+        /** The earliest arrival at each station per round */
+        private final int[] arrivals;
+        /** The earliest arrival at each station over all rounds */
+        private final int[] best;
+        /** The pattern ridden to each station per round, or -1 if not improved in the round */
+        private final int[] boardPattern;
+        /** The stop where the pattern to each station was boarded per round */
+        private final int[] boardStop;
+        /** The stop where the pattern to each station was left per round */
+        private final int[] alightStop;
+        /** The departure from the first stop of the trip to each station per round */
+        private final int[] boardTrip;
+        /** The stations improved in the previous round */
+        private final boolean[] marked;
+        /** The stations improved in the current round */
+        private final boolean[] improved;
+        /** The first stop of each pattern from which it is ridden in a round, or -1 */
+        private final int[] queued;
+        /** The patterns that are ridden in a round */
+        private final int[] queue;
+        /** The index of the origin */
+        private int origin;
+        /** The index of the destination */
+        private int destination;
+
+        /**
+         * Constructs the labels of a search.
+         */
+        private Search() {
+            int size = (maxTrips + 1) * stationCount;
+            arrivals = new int[size];
+            best = new int[stationCount];
+            boardPattern = new int[size];
+            boardStop = new int[size];
+            alightStop = new int[size];
+            boardTrip = new int[size];
+            marked = new boolean[stationCount];
+            improved = new boolean[stationCount];
+            queued = new int[patterns.getPatternCount()];
+            queue = new int[patterns.getPatternCount()];
+            Arrays.fill(queued, -1);
+            origin = -1;
+            destination = -1;
+        }
+
+        /**
+         * Clears all labels.
+         */
+        private void reset() {
+            Arrays.fill(arrivals, NEVER);
+            Arrays.fill(best, NEVER);
+            Arrays.fill(boardPattern, -1);
+        }
+
+        /**
+         * Runs the rounds from a departure, keeping the labels that are
+         * already known as upper bounds.
+         *
+         * @param from the index of the origin
+         * @param to the index of the destination
+         * @param departure the departure time
+         */
+        private void run(int from, int to, int departure) {
+            origin = from;
+            destination = to;
+            int n = stationCount;
+            Arrays.fill(marked, false);
+            arrivals[from] = departure;
+            best[from] = Math.min(best[from], departure);
+            marked[from] = true;
+            for (int k = 1; k <= maxTrips; k++) {
+                // The arrivals of the previous round are upper bounds of this round
+                int row = k * n;
+                for (int v = 0; v < n; v++) {
+                    if (arrivals[row - n + v] < arrivals[row + v]) {
+                        arrivals[row + v] = arrivals[row - n + v];
+                        boardPattern[row + v] = -1;
+                    }
+                }
+
+                // Queue every pattern at its first stop improved in the previous round
+                int count = 0;
+                for (int v = 0; v < n; v++) {
+                    if (marked[v]) {
+                        for (int s = stationStart[v]; s < stationStart[v + 1]; s++) {
+                            int p = stationPattern[s];
+                            if (queued[p] == -1) {
+                                queue[count++] = p;
+                                queued[p] = stationStop[s];
+                            } else {
+                                queued[p] = Math.min(queued[p], stationStop[s]);
+                            }
+                        }
+                    }
+                }
+                if (count == 0) {
+                    break;
+                }
+
+                // Ride every queued pattern from its first improved stop
+                Arrays.fill(improved, false);
+                for (int q = 0; q < count; q++) {
+                    int p = queue[q];
+                    int first = queued[p];
+                    queued[p] = -1;
+                    int trips = patterns.getTripCount(p);
+                    int trip = -1;
+                    int tripDeparture = 0;
+                    int board = -1;
+                    for (int i = first; i < patterns.getStopCount(p); i++) {
+                        int v = patterns.getStation(p, i);
+                        int offset = patterns.getOffset(p, i);
+                        if (trip != -1) {
+                            int arrival = tripDeparture + offset;
+                            if (arrival < best[v] && arrival < best[to]) {
+                                arrivals[row + v] = arrival;
+                                best[v] = arrival;
+                                boardPattern[row + v] = p;
+                                boardStop[row + v] = board;
+                                alightStop[row + v] = i;
+                                boardTrip[row + v] = tripDeparture;
+                                improved[v] = true;
+                            }
+                        }
+                        int previous = arrivals[row - n + v];
+                        if (previous != NEVER) {
+                            int ready = v == from ? previous : previous + transferTimes[v];
+                            if (trip == -1 || ready <= tripDeparture + offset) {
+                                int t = patterns.getNextTrip(p, i, ready);
+                                if (t < trips && (trip == -1 || t < trip)) {
+                                    trip = t;
+                                    tripDeparture = patterns.getDeparture(p, t);
+                                    board = i;
+                                }
+                            }
+                        }
+                    }
+                }
+                System.arraycopy(improved, 0, marked, 0, n);
+            }
+        }
+
+        /**
+         * Returns the round with the earliest arrival at the destination.
+         *
+         * @return the round, or -1 if the destination was not reached
+         */
+        private int getBestRound() {
+            int round = -1;
+            int arrival = NEVER;
+            for (int k = 1; k <= maxTrips; k++) {
+                if (arrivals[k * stationCount + destination] < arrival) {
+                    arrival = arrivals[k * stationCount + destination];
+                    round = k;
+                }
+            }
+            return round;
+        }
+
+        /**
+         * Returns the journey to the destination found in a given round.
+         *
+         * @param round a round in which the destination was reached
+         * @return the journey
+         */
+        private Journey toJourney(int round) {
+            // Count the legs, then fill them from the last to the first
+            int legs = 0;
+            int k = round;
+            for (int v = destination; v != origin; k--) {
+                while (boardPattern[k * stationCount + v] == -1) {
+                    k--;
+                }
+                int i = k * stationCount + v;
+                v = patterns.getStation(boardPattern[i], boardStop[i]);
+                legs++;
+            }
+            int[] data = new int[6 * legs];
+            k = round;
+            int l = legs - 1;
+            for (int v = destination; v != origin; k--, l--) {
+                while (boardPattern[k * stationCount + v] == -1) {
+                    k--;
+                }
+                int i = k * stationCount + v;
+                int p = boardPattern[i];
+                data[6 * l] = patterns.getLine(p);
+                data[6 * l + 1] = patterns.getPosition(p, boardStop[i]);
+                data[6 * l + 2] = patterns.getPosition(p, alightStop[i]);
+                data[6 * l + 3] = patterns.isForward(p) ? 1 : 0;
+                data[6 * l + 4] = boardTrip[i] + patterns.getOffset(p, boardStop[i]);
+                data[6 * l + 5] = boardTrip[i] + patterns.getOffset(p, alightStop[i]);
+                v = patterns.getStation(p, boardStop[i]);
+            }
+            return new Journey(data);
+        }
+    }
+}
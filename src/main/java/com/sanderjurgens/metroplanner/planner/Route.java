@@ -73,4 +73,15 @@ public class Route extends ArrayList<RouteSegment> {
         count = count + 1;
         return true;
     }
+
+    /**
+     * Adds a segment to the end of this route, without checking whether it is
+     * unique. Only to be used for segments that were created for this route.
+     *
+     * @param segment a given segment
+     */
+    void append(RouteSegment segment) {
+        super.add(segment);
+        count = count + 1;
+    }
 }
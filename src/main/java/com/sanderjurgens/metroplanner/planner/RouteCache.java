@@ -0,0 +1,752 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.NetworkListener;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of planned routes, which can be shared by many planners and
+ * used by many threads at once.
+ *
+ * An entry is keyed by the version of the network, the planner, and the
+ * indices of origin and destination, all stored as primitives. Once a network
+ * is modified its version changes, so that entries for the earlier version are
+ * never found again; they are evicted like any entry that is not used.
+ *
+ * The cache is split into segments, each guarded by its own lock, that hold
+ * their entries in open addressing tables with linear probing. Looking up an
+ * entry allocates no memory. Every segment is bounded by a number of entries
+ * and a total weight, where the weight of a route is one, plus one for every
+ * segment, plus one for every connection it rides along and thus for every
+ * reference to it in the reverse index below. When a bound is exceeded, entries are evicted in CLOCK order: an
+ * entry that was used since the hand last passed gets a second chance.
+ *
+ * Edits of a network that are announced to its listeners are handled
+ * precisely. For every connection between consecutive stops of a line, the
+ * cache keeps a reverse index of the entries whose route rides along it. When
+ * a connection is removed, only those entries are invalidated, at a cost
+ * proportional to their number. Every entry has a unique stamp, and references
+ * in the index to entries that were evicted or replaced since are recognized
+ * by their stamp and skipped. Once there are more than twice as many
+ * references as the maximum total weight, the index is swept: stale
+ * references are dropped, together with connections that have no references
+ * left, such as those of earlier versions of the network. The references kept
+ * are at most the maximum total weight, so the index stays within a constant
+ * factor of the bound, and a sweep costs constant time per added reference.
+ *
+ * A removed stop also connects its neighbours, which can make routes better
+ * that never ride along the edited line. All entries of the planners whose
+ * routes can improve this way are invalidated when a connection is added.
+ *
+ * The cached routes are shared between all callers, and must not be modified.
+ *
+ * @author sanderjurgens
+ */
+public class RouteCache implements NetworkListener {
+
+    /** The number of bits of a hash that select the segment */
+    private static final int SEGMENT_BITS = 4;
+    /** The number of segments */
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    /** The maximum total weight of the entries */
+    private final long maxWeight;
+    /** The segments of the cache */
+    private final Segment[] segments;
+    /** The source of planner identifiers */
+    private final AtomicInteger plannerIds;
+    /** The planners whose routes can improve when a connection is added */
+    private final Set<Integer> improvable;
+    /** The source of entry stamps */
+    private final AtomicLong stamps;
+
+    /** The references to the entries that ride along each connection */
+    private final ConcurrentHashMap<Long, References> index;
+    /** The number of references in the reverse index, including stale ones */
+    private final AtomicLong referenceCount;
+    /** Whether the reverse index is being swept */
+    private final AtomicBoolean sweeping;
+    /** The number of entries invalidated by edits */
+    private final AtomicLong invalidations;
+
+    /**
+     * Constructs an empty route cache with given bounds.
+     *
+     * @param maxEntries the maximum number of entries
+     * @param maxWeight the maximum total weight of the entries
+     * @throws IllegalRequestException if a bound is less than the number of
+     * segments of the cache
+     */
+    public RouteCache(int maxEntries, long maxWeight) throws IllegalRequestException {
+        if (maxEntries < SEGMENTS || maxWeight < SEGMENTS) {
+            throw new IllegalRequestException("RouteCache: bounds are too small");
+        }
+        this.maxWeight = maxWeight;
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxEntries / SEGMENTS, maxWeight / SEGMENTS);
+        }
+        plannerIds = new AtomicInteger();
+        improvable = ConcurrentHashMap.newKeySet();
+        stamps = new AtomicLong();
+        index = new ConcurrentHashMap<>();
+        referenceCount = new AtomicLong();
+        sweeping = new AtomicBoolean();
+        invalidations = new AtomicLong();
+    }
+
+    /**
+     * Returns a new identifier for a planner that uses this cache, of which
+     * the routes can improve when a connection is added.
+     *
+     * @return a new planner identifier
+     * @throws IllegalRequestException if all identifiers are used
+     */
+    public int newPlannerId() throws IllegalRequestException {
+        return newPlannerId(true);
+    }
+
+    /**
+     * Returns a new identifier for a planner that uses this cache.
+     *
+     * @param improvedByAdded whether the routes of the planner can improve
+     * when a connection is added
+     * @return a new planner identifier
+     * @throws IllegalRequestException if all identifiers are used
+     */
+    public int newPlannerId(boolean improvedByAdded) throws IllegalRequestException {
+        int id = plannerIds.getAndIncrement();
+        if (id >= 1 << 15) {
+            throw new IllegalRequestException("RouteCache.newPlannerId: too many planners");
+        }
+        if (improvedByAdded) {
+            improvable.add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the weight of a given route in the cache.
+     *
+     * @param route a given route
+     * @return the weight of the route
+     */
+    public static int weigh(Route route) {
+        int weight = 1;
+        for (RouteSegment segment : route) {
+            Line line = segment.getLine();
+            int step = segment.getDirection() == line.getTerminalB() ? 1 : -1;
+            int rides = step * (line.getIndex(segment.getToStation()) - line.getIndex(segment.getFromStation()));
+            weight = weight + 1 + Math.floorMod(rides, line.getCount());
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the cached route for a given query.
+     *
+     * @param version the version of the network
+     * @param planner the identifier of the planner
+     * @param from the index of the origin
+     * @param to the index of the destination
+     * @return the cached route, or null if there is none
+     */
+    public Route get(long version, int planner, int from, int to) {
+        long key = pack(planner, from, to);
+        long hash = hash(version, key);
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))].get(version, key, hash);
+    }
+
+    /**
+     * Stores the route for a given query, evicting other entries if needed,
+     * and adds it to the reverse index. Routes that are heavier than a segment
+     * can hold are not stored, nor are routes that were found before an edit
+     * of the network.
+     *
+     * @param network the network of the route
+     * @param version the version of the network before the route was found
+     * @param edits the number of edits of the network before the route was
+     * found
+     * @param planner the identifier of the planner
+     * @param from the index of the origin
+     * @param to the index of the destination
+     * @param route the route found
+     */
+    public void put(Network network, long version, long edits, int planner, int from, int to, Route route) {
+        long key = pack(planner, from, to);
+        long hash = hash(version, key);
+        // Edits hold the lock of the network, so they wait for the entry to be indexed
+        synchronized (network) {
+            if (network.getEditCount() != edits) {
+                return;
+            }
+            long stamp = stamps.incrementAndGet();
+            if (!segments[(int) (hash >>> (64 - SEGMENT_BITS))].put(version, key, hash, route, weigh(route), stamp)) {
+                return;
+            }
+            for (RouteSegment segment : route) {
+                // Walk along the line from the begin to the end of the segment
+                Line line = segment.getLine();
+                int l = network.getLineSet().getIndex(line);
+                int n = line.getCount();
+                int step = segment.getDirection() == line.getTerminalB() ? 1 : -1;
+                int p = line.getIndex(segment.getFromStation());
+                int t = line.getIndex(segment.getToStation());
+                for (int i = 0; p != t && i < n; i++) {
+                    int q = Math.floorMod(p + step, n);
+                    long connection = connection(version, l, network.getStationSet().getIndex(line.getStop(p)),
+                            network.getStationSet().getIndex(line.getStop(q)));
+                    index.compute(connection, (c, references) -> {
+                        References list = references == null ? new References() : references;
+                        list.add(version, key, stamp);
+                        return list;
+                    });
+                    referenceCount.incrementAndGet();
+                    p = q;
+                }
+            }
+        }
+        if (referenceCount.get() > 2 * maxWeight) {
+            sweep();
+        }
+    }
+
+    /**
+     * Drops the references to entries that were evicted, replaced or
+     * invalidated since, and the connections that have no references left.
+     * Only one thread sweeps at a time; others skip the sweep.
+     */
+    private void sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (Long connection : index.keySet()) {
+                index.computeIfPresent(connection, (c, references) -> {
+                    referenceCount.addAndGet(-references.compact(this));
+                    return references.size == 0 ? null : references;
+                });
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * Invalidates the entries whose route rides along a removed connection.
+     *
+     * @param network the network that is edited
+     * @param line the line that is edited
+     * @param from a station of the connection
+     * @param to the other station of the connection
+     */
+    @Override
+    public void connectionRemoved(Network network, Line line, Station from, Station to) {
+        long connection = connection(network.getVersion(), network.getLineSet().getIndex(line),
+                network.getStationSet().getIndex(from), network.getStationSet().getIndex(to));
+        References references = index.remove(connection);
+        if (references != null) {
+            synchronized (references) {
+                for (int i = 0; i < references.size; i++) {
+                    long version = references.data[3 * i];
+                    long key = references.data[3 * i + 1];
+                    if (segmentOf(version, key).invalidate(version, key, references.data[3 * i + 2])) {
+                        invalidations.incrementAndGet();
+                    }
+                }
+                referenceCount.addAndGet(-references.size);
+            }
+        }
+    }
+
+    /**
+     * Invalidates all entries of the planners whose routes can improve by an
+     * added connection.
+     *
+     * @param network the network that is edited
+     * @param line the line that is edited
+     * @param from a station of the connection
+     * @param to the other station of the connection
+     */
+    @Override
+    public void connectionAdded(Network network, Line line, Station from, Station to) {
+        if (improvable.isEmpty()) {
+            return;
+        }
+        for (Segment segment : segments) {
+            invalidations.addAndGet(segment.invalidatePlanners(improvable));
+        }
+    }
+
+    /**
+     * Removes all entries from the cache. The statistics are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        index.clear();
+        referenceCount.set(0);
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return the number of entries in the cache
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size = size + segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the total weight of the entries in the cache.
+     *
+     * @return the total weight of the entries in the cache
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                weight = weight + segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the number of lookups that found a route.
+     *
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits = hits + segment.hits;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that found no route.
+     *
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                misses = misses + segment.misses;
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the bounds.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                evictions = evictions + segment.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries invalidated by edits of a network.
+     *
+     * @return the number of invalidations
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Returns the number of connections in the reverse index.
+     *
+     * @return the number of indexed connections
+     */
+    public int getIndexSize() {
+        return index.size();
+    }
+
+    /**
+     * Returns the number of references in the reverse index, including
+     * references to entries that are no longer cached.
+     *
+     * @return the number of references
+     */
+    public long getReferenceCount() {
+        return referenceCount.get();
+    }
+
+    /**
+     * Returns the segment of a given version and key.
+     *
+     * @param version the version of the network
+     * @param key the key of the query
+     * @return the segment of the entry
+     */
+    private Segment segmentOf(long version, long key) {
+        return segments[(int) (hash(version, key) >>> (64 - SEGMENT_BITS))];
+    }
+
+    /**
+     * Returns the key of a connection between two stations along a line, in
+     * either direction. Different connections may share a key, in which case
+     * both are invalidated together.
+     *
+     * @param version the version of the network
+     * @param line the index of the line
+     * @param from the index of a station of the connection
+     * @param to the index of the other station of the connection
+     * @return the key of the connection
+     */
+    private static long connection(long version, int line, int from, int to) {
+        return hash(version, ((long) line << 48) | ((long) Math.min(from, to) << 24) | Math.max(from, to));
+    }
+
+    /**
+     * Returns the planner, origin and destination of a query packed into a
+     * single key.
+     *
+     * @param planner the identifier of the planner
+     * @param from the index of the origin
+     * @param to the index of the destination
+     * @return the key of the query
+     */
+    private static long pack(int planner, int from, int to) {
+        return ((long) planner << 48) | ((long) from << 24) | to;
+    }
+
+    /**
+     * Returns a well mixed hash of a version and a key.
+     *
+     * @param version the version of the network
+     * @param key the key of the query
+     * @return the hash of the version and key
+     */
+    private static long hash(long version, long key) {
+        long h = key * 0x9e3779b97f4a7c15L + version;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * A segment of the cache, with its own table and lock.
+     */
+    private static final class Segment {
+
+        /** The maximum number of entries */
+        private final int maxEntries;
+        /** The maximum total weight of the entries */
+        private final long maxWeight;
+        /** The number of slots minus one, for masking */
+        private final int mask;
+
+        /** The version of each slot */
+        private final long[] versions;
+        /** The key of each slot */
+        private final long[] keys;
+        /** The route of each slot, or null if the slot is empty */
+        private final Route[] routes;
+        /** The weight of each slot */
+        private final int[] weights;
+        /** The stamp of each slot */
+        private final long[] stamps;
+        /** Whether each slot was used since the hand last passed */
+        private final boolean[] referenced;
+
+        /** The number of entries */
+        private int size;
+        /** The total weight of the entries */
+        private long weight;
+        /** The slot where the hand of the clock points */
+        private int hand;
+
+        /** The number of lookups that found a route */
+        private long hits;
+        /** The number of lookups that found no route */
+        private long misses;
+        /** The number of evicted entries */
+        private long evictions;
+
+        /**
+         * Constructs an empty segment with given bounds.
+         *
+         * @param maxEntries the maximum number of entries
+         * @param maxWeight the maximum total weight of the entries
+         */
+        private Segment(int maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+            // At most half of the slots are used, to keep probing short
+            int slots = Integer.highestOneBit(Math.max(2 * maxEntries - 1, 1)) << 1;
+            mask = slots - 1;
+            versions = new long[slots];
+            keys = new long[slots];
+            routes = new Route[slots];
+            weights = new int[slots];
+            stamps = new long[slots];
+            referenced = new boolean[slots];
+        }
+
+        /**
+         * Returns the slot of a given version and key, or the empty slot where
+         * it would be stored.
+         *
+         * @param version the version of the network
+         * @param key the key of the query
+         * @param hash the hash of the version and key
+         * @return the index of the slot
+         */
+        private int find(long version, long key, long hash) {
+            int slot = (int) hash & mask;
+            while (routes[slot] != null && (keys[slot] != key || versions[slot] != version)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Returns the cached route for a given version and key.
+         *
+         * @param version the version of the network
+         * @param key the key of the query
+         * @param hash the hash of the version and key
+         * @return the cached route, or null if there is none
+         */
+        private synchronized Route get(long version, long key, long hash) {
+            int slot = find(version, key, hash);
+            if (routes[slot] == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            referenced[slot] = true;
+            return routes[slot];
+        }
+
+        /**
+         * Stores the route for a given version and key, evicting other entries
+         * if needed.
+         *
+         * @param version the version of the network
+         * @param key the key of the query
+         * @param hash the hash of the version and key
+         * @param route the route found
+         * @param w the weight of the route
+         * @param stamp the unique stamp of the entry
+         * @return whether the route is stored
+         */
+        private synchronized boolean put(long version, long key, long hash, Route route, int w, long stamp) {
+            if (w > maxWeight) {
+                return false;
+            }
+            int slot = find(version, key, hash);
+            if (routes[slot] != null) {
+                // Another thread already stored a route for the same query
+                weight = weight - weights[slot];
+                remove(slot);
+            }
+            while (size + 1 > maxEntries || weight + w > maxWeight) {
+                evict();
+            }
+            slot = find(version, key, hash);
+            versions[slot] = version;
+            keys[slot] = key;
+            routes[slot] = route;
+            weights[slot] = w;
+            stamps[slot] = stamp;
+            referenced[slot] = false;
+            size = size + 1;
+            weight = weight + w;
+            return true;
+        }
+
+        /**
+         * Returns the stamp of the entry for a given version and key.
+         *
+         * @param version the version of the network
+         * @param key the key of the query
+         * @return the stamp of the entry, or 0 if there is none
+         */
+        private synchronized long stampOf(long version, long key) {
+            int slot = find(version, key, hash(version, key));
+            return routes[slot] == null ? 0 : stamps[slot];
+        }
+
+        /**
+         * Removes the entry for a given version and key, if it has a given
+         * stamp.
+         *
+         * @param version the version of the network
+         * @param key the key of the query
+         * @param stamp the stamp of the entry
+         * @return whether the entry is removed
+         */
+        private synchronized boolean invalidate(long version, long key, long stamp) {
+            int slot = find(version, key, hash(version, key));
+            if (routes[slot] == null || stamps[slot] != stamp) {
+                return false;
+            }
+            weight = weight - weights[slot];
+            remove(slot);
+            return true;
+        }
+
+        /**
+         * Removes all entries of a given set of planners.
+         *
+         * @param planners the identifiers of the planners
+         * @return the number of entries removed
+         */
+        private synchronized int invalidatePlanners(Set<Integer> planners) {
+            int removed = 0;
+            int slot = 0;
+            while (slot <= mask) {
+                // Removing moves a later entry into the slot, so check it again
+                if (routes[slot] != null && planners.contains((int) (keys[slot] >>> 48))) {
+                    weight = weight - weights[slot];
+                    remove(slot);
+                    removed++;
+                } else {
+                    slot++;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Evicts the first entry at or after the hand that was not used since
+         * the hand last passed, clearing the use of the entries on the way.
+         */
+        private void evict() {
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) & mask;
+                if (routes[slot] != null) {
+                    if (referenced[slot]) {
+                        referenced[slot] = false;
+                    } else {
+                        weight = weight - weights[slot];
+                        remove(slot);
+                        evictions++;
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Removes the entry in a given slot, and moves later entries of the
+         * same probe sequence back, such that no entry becomes unreachable.
+         *
+         * @param slot the index of a used slot
+         */
+        private void remove(int slot) {
+            int empty = slot;
+            int i = (slot + 1) & mask;
+            while (routes[i] != null) {
+                int home = (int) hash(versions[i], keys[i]) & mask;
+                // Move the entry if its home is not between the empty slot and itself
+                if (((i - home) & mask) >= ((i - empty) & mask)) {
+                    versions[empty] = versions[i];
+                    keys[empty] = keys[i];
+                    routes[empty] = routes[i];
+                    weights[empty] = weights[i];
+                    stamps[empty] = stamps[i];
+                    referenced[empty] = referenced[i];
+                    empty = i;
+                }
+                i = (i + 1) & mask;
+            }
+            routes[empty] = null;
+            size = size - 1;
+        }
+
+        /**
+         * Removes all entries from the segment.
+         */
+        private synchronized void clear() {
+            Arrays.fill(routes, null);
+            size = 0;
+            weight = 0;
+            hand = 0;
+        }
+    }
+
+    /**
+     * A list of references to entries, as triples of version, key and stamp.
+     */
+    private static final class References {
+
+        /** The version, key and stamp of each reference */
+        private long[] data = new long[12];
+        /** The number of references */
+        private int size;
+
+        /**
+         * Adds a reference to an entry.
+         *
+         * @param version the version of the network
+         * @param key the key of the query
+         * @param stamp the stamp of the entry
+         */
+        private synchronized void add(long version, long key, long stamp) {
+            if (3 * size == data.length) {
+                data = Arrays.copyOf(data, 2 * data.length);
+            }
+            data[3 * size] = version;
+            data[3 * size + 1] = key;
+            data[3 * size + 2] = stamp;
+            size = size + 1;
+        }
+
+        /**
+         * Drops the references to entries that are no longer in the cache
+         * with the same stamp, and shrinks the list if it is mostly empty.
+         *
+         * @param cache the cache of the entries
+         * @return the number of references dropped
+         */
+        private synchronized int compact(RouteCache cache) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                long v = data[3 * i];
+                long k = data[3 * i + 1];
+                if (cache.segmentOf(v, k).stampOf(v, k) == data[3 * i + 2]) {
+                    System.arraycopy(data, 3 * i, data, 3 * kept, 3);
+                    kept++;
+                }
+            }
+            int dropped = size - kept;
+            size = kept;
+            if (data.length > 12 && 4 * 3 * size < data.length) {
+                data = Arrays.copyOf(data, Math.max(12, 2 * 3 * size));
+            }
+            return dropped;
+        }
+    }
+}
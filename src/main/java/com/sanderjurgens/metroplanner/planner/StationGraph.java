@@ -0,0 +1,364 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.LineSet;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.StationSet;
+
+/**
+ * An indexed, directed graph of all stations in a network. Every ride between
+ * two consecutive stops of a line, in a direction the line may be traveled, is
+ * an edge.
+ *
+ * Stations are numbered by their index in the station set of the network. The
+ * edges are stored in compressed adjacency arrays, both by their tail (outgoing
+ * edges) and by their head (incoming edges), and every edge keeps the line and
+ * positions on the line that it represents, and its run time. Stations
+ * connected by more than one line are connected by an edge per line.
+ *
+ * The graph is computed for the network as it is when the graph is
+ * constructed. It keeps the version and number of edits of the network at
+ * that time, such that planners can tell when it is out of date.
+ *
+ * @author sanderjurgens
+ */
+public class StationGraph {
+
+    /** The version of the network when the graph was built */
+    private final long version;
+    /** The number of edits of the network when the graph was built */
+    private final long edits;
+    /** The number of stations in the graph */
+    private final int stationCount;
+    /** The number of edges in the graph */
+    private final int edgeCount;
+    /** Whether every edge has a reverse edge on the same line */
+    private final boolean symmetric;
+    /** The hash of the tail and head of every edge, in order */
+    private final long checksum;
+
+    /** The first outgoing edge of each station, and the number of edges at the end */
+    private final int[] outStart;
+    /** The tail station of each edge */
+    private final int[] edgeTail;
+    /** The head station of each edge */
+    private final int[] edgeHead;
+    /** The line of each edge */
+    private final int[] edgeLine;
+    /** The position on the line of the tail of each edge */
+    private final int[] edgeFrom;
+    /** The position on the line of the head of each edge */
+    private final int[] edgeTo;
+    /** Whether each edge is traveled towards the last stop of its line */
+    private final boolean[] edgeForward;
+    /** The run time of each edge, in seconds */
+    private final int[] edgeTime;
+
+    /** The first incoming edge of each station, and the number of edges at the end */
+    private final int[] inStart;
+    /** The incoming edges of all stations, grouped by head */
+    private final int[] inEdges;
+
+    /**
+     * Constructs the graph of all stations in a given network.
+     *
+     * @param network a given network
+     */
+    public StationGraph(Network network) {
+        version = network.getVersion();
+        edits = network.getEditCount();
+        StationSet staSet = network.getStationSet();
+        LineSet lineSet = network.getLineSet();
+        stationCount = staSet.getCount();
+
+        // Count the edges per tail
+        outStart = new int[stationCount + 1];
+        inStart = new int[stationCount + 1];
+        boolean allTwoWay = true;
+        int count = 0;
+        for (Line line : lineSet) {
+            for (int p = 0; p < line.getCount(); p++) {
+                for (int d = 0; d < 2; d++) {
+                    int q = neighbour(line, p, d == 0);
+                    if (q != -1) {
+                        outStart[staSet.getIndex(line.getStop(p)) + 1]++;
+                        inStart[staSet.getIndex(line.getStop(q)) + 1]++;
+                        count++;
+                    }
+                }
+            }
+            allTwoWay = allTwoWay && !line.isOneWay();
+        }
+        edgeCount = count;
+        symmetric = allTwoWay;
+        for (int s = 0; s < stationCount; s++) {
+            outStart[s + 1] = outStart[s + 1] + outStart[s];
+            inStart[s + 1] = inStart[s + 1] + inStart[s];
+        }
+
+        // Fill the edges grouped by tail, and the incoming edges grouped by head
+        edgeTail = new int[edgeCount];
+        edgeHead = new int[edgeCount];
+        edgeLine = new int[edgeCount];
+        edgeFrom = new int[edgeCount];
+        edgeTo = new int[edgeCount];
+        edgeForward = new boolean[edgeCount];
+        edgeTime = new int[edgeCount];
+        inEdges = new int[edgeCount];
+        int[] outFill = new int[stationCount];
+        int[] inFill = new int[stationCount];
+        for (int l = 0; l < lineSet.getCount(); l++) {
+            Line line = lineSet.get(l);
+            for (int p = 0; p < line.getCount(); p++) {
+                for (int d = 0; d < 2; d++) {
+                    int q = neighbour(line, p, d == 0);
+                    if (q != -1) {
+                        int tail = staSet.getIndex(line.getStop(p));
+                        int head = staSet.getIndex(line.getStop(q));
+                        int e = outStart[tail] + outFill[tail];
+                        outFill[tail]++;
+                        edgeTail[e] = tail;
+                        edgeHead[e] = head;
+                        edgeLine[e] = l;
+                        edgeFrom[e] = p;
+                        edgeTo[e] = q;
+                        edgeForward[e] = d == 0;
+                        edgeTime[e] = line.getRunTime(d == 0 ? p : q);
+                        inEdges[inStart[head] + inFill[head]] = e;
+                        inFill[head]++;
+                    }
+                }
+            }
+        }
+        long hash = stationCount;
+        for (int e = 0; e < edgeCount; e++) {
+            hash = (hash * 31 + edgeTail[e]) * 0x9e3779b97f4a7c15L + edgeHead[e];
+        }
+        checksum = hash;
+    }
+
+    /**
+     * Returns the position of the next stop along a line in a given direction,
+     * if the line may be traveled in that direction.
+     *
+     * @param line a given line
+     * @param p the position of a stop on the line
+     * @param forward whether the direction is towards the last stop of the line
+     * @return the position of the next stop, or -1 if there is none
+     */
+    private static int neighbour(Line line, int p, boolean forward) {
+        int n = line.getCount();
+        if (n < 2) {
+            return -1;
+        }
+        if (forward) {
+            if (p + 1 < n) {
+                return p + 1;
+            }
+            return line.isCircular() ? 0 : -1;
+        } else if (!line.isOneWay()) {
+            if (p > 0) {
+                return p - 1;
+            }
+            return line.isCircular() ? n - 1 : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the graph is built for a given network as it is now,
+     * so neither modified nor edited since.
+     *
+     * @param network a given network
+     * @return whether the graph is current
+     */
+    public boolean isCurrent(Network network) {
+        return network.getVersion() == version && network.getEditCount() == edits;
+    }
+
+    /**
+     * Returns the number of stations in the graph.
+     *
+     * @return the number of stations in the graph
+     */
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return the number of edges in the graph
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns a checksum of the stations connected by the edges of the graph,
+     * in order. Graphs of different networks with the same number of
+     * stations and edges almost always have different checksums, which is
+     * also the case when the same network is read again in another session.
+     *
+     * @return the checksum of the edges
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Returns whether every edge has a reverse edge, which is the case if no
+     * line is one way.
+     *
+     * @return whether the graph is symmetric
+     */
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    /**
+     * Returns the first outgoing edge of a given station.
+     *
+     * @param station the index of a station
+     * @return the index of the first outgoing edge
+     */
+    public int getOutBegin(int station) {
+        return outStart[station];
+    }
+
+    /**
+     * Returns the edge after the last outgoing edge of a given station.
+     *
+     * @param station the index of a station
+     * @return the index after the last outgoing edge
+     */
+    public int getOutEnd(int station) {
+        return outStart[station + 1];
+    }
+
+    /**
+     * Returns the first entry of a given station in the incoming edges.
+     *
+     * @param station the index of a station
+     * @return the first entry of the station
+     */
+    public int getInBegin(int station) {
+        return inStart[station];
+    }
+
+    /**
+     * Returns the entry after the last entry of a given station in the
+     * incoming edges.
+     *
+     * @param station the index of a station
+     * @return the entry after the last entry of the station
+     */
+    public int getInEnd(int station) {
+        return inStart[station + 1];
+    }
+
+    /**
+     * Returns the edge of a given entry in the incoming edges.
+     *
+     * @param entry an entry between the begin and end of a station
+     * @return the index of the edge
+     */
+    public int getInEdge(int entry) {
+        return inEdges[entry];
+    }
+
+    /**
+     * Returns the tail station of a given edge.
+     *
+     * @param edge the index of an edge
+     * @return the index of the station where the edge begins
+     */
+    public int getTail(int edge) {
+        return edgeTail[edge];
+    }
+
+    /**
+     * Returns the head station of a given edge.
+     *
+     * @param edge the index of an edge
+     * @return the index of the station where the edge ends
+     */
+    public int getHead(int edge) {
+        return edgeHead[edge];
+    }
+
+    /**
+     * Returns the line of a given edge.
+     *
+     * @param edge the index of an edge
+     * @return the index of the line of the edge
+     */
+    public int getLine(int edge) {
+        return edgeLine[edge];
+    }
+
+    /**
+     * Returns whether a given edge is traveled towards the last stop of its
+     * line.
+     *
+     * @param edge the index of an edge
+     * @return whether the edge is traveled forward
+     */
+    public boolean isForward(int edge) {
+        return edgeForward[edge];
+    }
+
+    /**
+     * Returns the run time of a given edge.
+     *
+     * @param edge the index of an edge
+     * @return the run time in seconds
+     */
+    public int getTime(int edge) {
+        return edgeTime[edge];
+    }
+
+    /**
+     * Returns an edge from one station to another, preferably on the same line
+     * and in the same direction as a given edge.
+     *
+     * @param tail the index of the station where the edge begins
+     * @param head the index of the station where the edge ends
+     * @param previous the edge to continue on, or -1
+     * @return the index of an edge from tail to head, or -1 if there is none
+     */
+    public int findEdge(int tail, int head, int previous) {
+        int found = -1;
+        for (int e = outStart[tail]; e < outStart[tail + 1]; e++) {
+            if (edgeHead[e] == head) {
+                if (found == -1 || continues(previous, e)) {
+                    found = e;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns whether an edge continues on the same line and in the same
+     * direction as another edge.
+     *
+     * @param previous the index of an edge, or -1
+     * @param edge the index of another edge
+     * @return whether the edge continues the previous edge
+     */
+    public boolean continues(int previous, int edge) {
+        return previous != -1 && edgeLine[previous] == edgeLine[edge]
+                && edgeForward[previous] == edgeForward[edge] && edgeTo[previous] == edgeFrom[edge];
+    }
+
+    /**
+     * Adds the ride along a given edge to the end of a compact route.
+     *
+     * @param route a given compact route
+     * @param edge the index of an edge
+     */
+    public void addHop(CompactRoute route, int edge) {
+        route.addHop(edgeLine[edge], edgeFrom[edge], edgeTo[edge], edgeForward[edge]);
+    }
+}
@@ -0,0 +1,290 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.LineSet;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.StationSet;
+
+/**
+ * An indexed graph of all stops in a network, where a stop is a station at a
+ * given position on a given line.
+ *
+ * The stops of all lines are numbered consecutively, line by line, so that the
+ * neighbours of a stop along its line are found by index arithmetic. For every
+ * station the stops at that station are stored in a compact array, such that
+ * it is possible to transfer between lines without any lookups.
+ *
+ * Planners that distinguish the direction of travel use an expanded graph,
+ * in which node 2 * stop + 0 is a stop traveling forward, node 2 * stop + 1 is
+ * a stop traveling backward, and node 2 * stopCount + station is a station.
+ *
+ * The graph is computed for the network as it is when the graph is
+ * constructed. It keeps the version and number of edits of the network at
+ * that time, such that planners can tell when it is out of date.
+ *
+ * @author sanderjurgens
+ */
+public class StopGraph {
+
+    /** The version of the network when the graph was built */
+    private final long version;
+    /** The number of edits of the network when the graph was built */
+    private final long edits;
+    /** The number of stations in the network */
+    private final int stationCount;
+    /** The number of lines in the network */
+    private final int lineCount;
+    /** The number of stops on all lines together */
+    private final int stopCount;
+
+    /** The first stop of each line, and the total number of stops at the end */
+    private final int[] lineStart;
+    /** Whether each line is circular */
+    private final boolean[] circular;
+    /** Whether each line is one way */
+    private final boolean[] oneWay;
+
+    /** The line of each stop */
+    private final int[] stopLine;
+    /** The station of each stop */
+    private final int[] stopStation;
+
+    /** The first entry of each station in the stops per station */
+    private final int[] stationStart;
+    /** The stops of all stations, grouped by station */
+    private final int[] stationStops;
+
+    /**
+     * Constructs the graph of all stops in a given network.
+     *
+     * @param network a given network
+     */
+    public StopGraph(Network network) {
+        version = network.getVersion();
+        edits = network.getEditCount();
+        StationSet staSet = network.getStationSet();
+        LineSet lineSet = network.getLineSet();
+        stationCount = staSet.getCount();
+        lineCount = lineSet.getCount();
+
+        // Number the stops line by line
+        lineStart = new int[lineCount + 1];
+        circular = new boolean[lineCount];
+        oneWay = new boolean[lineCount];
+        for (int l = 0; l < lineCount; l++) {
+            Line line = lineSet.get(l);
+            lineStart[l + 1] = lineStart[l] + line.getCount();
+            circular[l] = line.isCircular();
+            oneWay[l] = line.isOneWay();
+        }
+        stopCount = lineStart[lineCount];
+        stopLine = new int[stopCount];
+        stopStation = new int[stopCount];
+        stationStart = new int[stationCount + 1];
+        for (int l = 0; l < lineCount; l++) {
+            Line line = lineSet.get(l);
+            for (int p = 0; p < line.getCount(); p++) {
+                int station = staSet.getIndex(line.getStop(p));
+                stopLine[lineStart[l] + p] = l;
+                stopStation[lineStart[l] + p] = station;
+                stationStart[station + 1]++;
+            }
+        }
+
+        // Group the stops by station
+        for (int s = 0; s < stationCount; s++) {
+            stationStart[s + 1] = stationStart[s + 1] + stationStart[s];
+        }
+        stationStops = new int[stopCount];
+        int[] fill = new int[stationCount];
+        for (int stop = 0; stop < stopCount; stop++) {
+            int station = stopStation[stop];
+            stationStops[stationStart[station] + fill[station]] = stop;
+            fill[station]++;
+        }
+    }
+
+    /**
+     * Returns whether the graph is built for a given network as it is now,
+     * so neither modified nor edited since.
+     *
+     * @param network a given network
+     * @return whether the graph is current
+     */
+    public boolean isCurrent(Network network) {
+        return network.getVersion() == version && network.getEditCount() == edits;
+    }
+
+    /**
+     * Returns the number of stations in the graph.
+     *
+     * @return the number of stations in the graph
+     */
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * Returns the number of lines in the graph.
+     *
+     * @return the number of lines in the graph
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the number of stops on all lines together.
+     *
+     * @return the number of stops in the graph
+     */
+    public int getStopCount() {
+        return stopCount;
+    }
+
+    /**
+     * Returns the stop at a given position on a given line.
+     *
+     * @param line the index of a line
+     * @param position the position of the stop on the line
+     * @return the index of the stop
+     */
+    public int getStop(int line, int position) {
+        return lineStart[line] + position;
+    }
+
+    /**
+     * Returns the number of stops on a given line.
+     *
+     * @param line the index of a line
+     * @return the number of stops on the line
+     */
+    public int getLineLength(int line) {
+        return lineStart[line + 1] - lineStart[line];
+    }
+
+    /**
+     * Returns the line of a given stop.
+     *
+     * @param stop the index of a stop
+     * @return the index of the line of the stop
+     */
+    public int getLine(int stop) {
+        return stopLine[stop];
+    }
+
+    /**
+     * Returns the position of a given stop on its line.
+     *
+     * @param stop the index of a stop
+     * @return the position of the stop on its line
+     */
+    public int getPosition(int stop) {
+        return stop - lineStart[stopLine[stop]];
+    }
+
+    /**
+     * Returns the station of a given stop.
+     *
+     * @param stop the index of a stop
+     * @return the index of the station of the stop
+     */
+    public int getStation(int stop) {
+        return stopStation[stop];
+    }
+
+    /**
+     * Returns whether a line may be traveled in a given direction.
+     *
+     * @param line the index of a line
+     * @param forward whether the direction is towards the end of the line
+     * @return whether the line may be traveled in the direction
+     */
+    public boolean canTravel(int line, boolean forward) {
+        return forward || !oneWay[line];
+    }
+
+    /**
+     * Returns the next stop along the line of a given stop, in a given
+     * direction. Whether the line may be traveled in that direction is not
+     * taken into account.
+     *
+     * @param stop the index of a stop
+     * @param forward whether the direction is towards the end of the line
+     * @return the index of the next stop, or -1 if the end of the line is
+     * reached
+     */
+    public int next(int stop, boolean forward) {
+        int line = stopLine[stop];
+        if (forward) {
+            if (stop + 1 < lineStart[line + 1]) {
+                return stop + 1;
+            }
+            return circular[line] && stop != lineStart[line] ? lineStart[line] : -1;
+        } else {
+            if (stop > lineStart[line]) {
+                return stop - 1;
+            }
+            return circular[line] && stop + 1 != lineStart[line + 1] ? lineStart[line + 1] - 1 : -1;
+        }
+    }
+
+    /**
+     * Returns the first entry of a given station in the stops per station.
+     *
+     * @param station the index of a station
+     * @return the first entry of the station
+     */
+    public int getStationBegin(int station) {
+        return stationStart[station];
+    }
+
+    /**
+     * Returns the entry after the last entry of a given station in the stops
+     * per station.
+     *
+     * @param station the index of a station
+     * @return the entry after the last entry of the station
+     */
+    public int getStationEnd(int station) {
+        return stationStart[station + 1];
+    }
+
+    /**
+     * Returns the stop of a given entry in the stops per station.
+     *
+     * @param entry an entry between the begin and end of a station
+     * @return the index of the stop
+     */
+    public int getStationStop(int entry) {
+        return stationStops[entry];
+    }
+
+    /**
+     * Stores the route along a path in the expanded graph in a given compact
+     * route. Every consecutive series of stops on the path is a ride along a
+     * line in one direction, and becomes a segment of the route.
+     *
+     * @param path the nodes of the path in the expanded graph, in order
+     * @param length the number of nodes on the path
+     * @param route the compact route in which to store the route
+     */
+    public void fillRoute(int[] path, int length, CompactRoute route) {
+        route.clear();
+        int stationNodes = 2 * stopCount;
+        int board = -1;
+        for (int i = 0; i < length; i++) {
+            if (path[i] < stationNodes) {
+                if (board == -1) {
+                    board = path[i];
+                }
+                // The ride ends when getting off or at the end of the path
+                if (i + 1 == length || path[i + 1] >= stationNodes) {
+                    int line = stopLine[board >> 1];
+                    route.add(line, getPosition(board >> 1), getPosition(path[i] >> 1), (board & 1) == 0);
+                    board = -1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.Station;
+
+/**
+ * A segment of a Route that is ridden by a trip of a timetable, with the times
+ * at which it departs and arrives.
+ *
+ * @author sanderjurgens
+ */
+public class TimedRouteSegment extends RouteSegment {
+
+    /** The departure from the beginning station, in seconds since midnight */
+    private final int departure;
+    /** The arrival at the ending station, in seconds since midnight */
+    private final int arrival;
+
+    /**
+     * Constructs a timed segment of a line with a beginning, end, direction,
+     * departure and arrival.
+     *
+     * @param line a given line
+     * @param from a given beginning station of a segment
+     * @param to a given ending station of a segment
+     * @param direction a given terminal station
+     * @param departure the departure from the beginning station
+     * @param arrival the arrival at the ending station
+     * @throws IllegalRequestException if a given parameter is null, or if the
+     * arrival is before the departure
+     */
+    public TimedRouteSegment(Line line, Station from, Station to, Station direction, int departure, int arrival)
+            throws IllegalRequestException {
+        super(line, from, to, direction);
+        if (arrival < departure) {
+            throw new IllegalRequestException("TimedRouteSegment: arrival is before departure");
+        }
+        this.departure = departure;
+        this.arrival = arrival;
+    }
+
+    /**
+     * Returns the departure from the station where the segment begins.
+     *
+     * @return the departure time in seconds since midnight
+     */
+    public int getDeparture() {
+        return departure;
+    }
+
+    /**
+     * Returns the arrival at the station where the segment ends.
+     *
+     * @return the arrival time in seconds since midnight
+     */
+    public int getArrival() {
+        return arrival;
+    }
+}
@@ -0,0 +1,357 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.LineSet;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import com.sanderjurgens.metroplanner.model.StationSet;
+import com.sanderjurgens.metroplanner.model.TransferPoint;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * transfers, using a precomputed matrix of transfers between lines.
+ *
+ * Every line that can be traveled from any of its stops to any other is a
+ * single node of the matrix. One way lines that are not circular are split into
+ * a node per transfer point, since only the stops after the entry point can be
+ * reached; the node of a transfer point leads to the node of the next one
+ * without a transfer. For every pair of nodes the matrix holds the minimum
+ * number of transfers, together with the node and station via which the
+ * second node is entered, so that the lines of a route can be recovered.
+ *
+ * The minimum number of transfers between two stations is then the minimum
+ * over the few nodes of the lines at both stations, found without any search.
+ * The matrix is rebuilt automatically when the network has changed since it
+ * was last built.
+ *
+ * @author sanderjurgens
+ */
+public class TransferMatrixPlanner extends Planner {
+
+    /** The graph of all stops in the network */
+    private StopGraph graph;
+    /** Whether each line can only be traveled from its entry point onwards */
+    private boolean[] directional;
+
+    /** The number of nodes of the matrix */
+    private int nodeCount;
+    /** The line of each node */
+    private int[] nodeLine;
+    /** The node reached from each node without a transfer, or -1 */
+    private int[] nodeNext;
+    /** The node entered when boarding at each stop, or -1 */
+    private int[] entryNode;
+    /** The node from which each stop can be reached, or -1 */
+    private int[] exitNode;
+
+    /** The minimum number of transfers between each pair of nodes, or -1 */
+    private int[] transfers;
+    /** The node before the second node of each pair on a minimum route, or -1 */
+    private int[] viaNode;
+    /** The station where the second node of each pair is entered, or -1 */
+    private int[] viaStation;
+
+    /**
+     * Constructs a transfer matrix based minimum transfer planner for a given
+     * network.
+     *
+     * @param network a given network
+     */
+    public TransferMatrixPlanner(Network network) {
+        super(network);
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the matrix for the network as it is now.
+     */
+    private void rebuild() {
+        StationSet staSet = network.getStationSet();
+        LineSet lineSet = network.getLineSet();
+        graph = new StopGraph(network);
+        int lineCount = lineSet.getCount();
+
+        // Create the nodes of every line
+        directional = new boolean[lineCount];
+        int count = 0;
+        for (int l = 0; l < lineCount; l++) {
+            Line line = lineSet.get(l);
+            directional[l] = line.isOneWay() && !line.isCircular();
+            count = count + (directional[l] ? line.getTransferPoints().size() : 1);
+        }
+        nodeCount = count;
+        nodeLine = new int[nodeCount];
+        nodeNext = new int[nodeCount];
+        entryNode = new int[graph.getStopCount()];
+        exitNode = new int[graph.getStopCount()];
+        int first = 0;
+        for (int l = 0; l < lineCount; l++) {
+            Line line = lineSet.get(l);
+            List<TransferPoint> points = line.getTransferPoints();
+            if (!directional[l]) {
+                nodeLine[first] = l;
+                nodeNext[first] = -1;
+                for (int p = 0; p < line.getCount(); p++) {
+                    entryNode[graph.getStop(l, p)] = first;
+                    exitNode[graph.getStop(l, p)] = first;
+                }
+                first = first + 1;
+            } else {
+                for (int i = 0; i < points.size(); i++) {
+                    nodeLine[first + i] = l;
+                    nodeNext[first + i] = i + 1 < points.size() ? first + i + 1 : -1;
+                }
+                // Board towards the next transfer point, alight after the previous one
+                int up = 0;
+                int down = -1;
+                for (int p = 0; p < line.getCount(); p++) {
+                    while (up < points.size() && points.get(up).getIndex() < p) {
+                        up++;
+                    }
+                    while (down + 1 < points.size() && points.get(down + 1).getIndex() <= p) {
+                        down++;
+                    }
+                    entryNode[graph.getStop(l, p)] = up < points.size() ? first + up : -1;
+                    exitNode[graph.getStop(l, p)] = down >= 0 ? first + down : -1;
+                }
+                first = first + points.size();
+            }
+        }
+
+        // Create the transfers between the nodes, grouped by the node they leave
+        int[] edgeStart = new int[nodeCount + 1];
+        for (int l = 0; l < lineCount; l++) {
+            List<TransferPoint> points = lineSet.get(l).getTransferPoints();
+            for (int i = 0; i < points.size(); i++) {
+                int source = exitNode[graph.getStop(l, points.get(i).getIndex())];
+                edgeStart[source + 1] = edgeStart[source + 1] + points.get(i).getLines().size();
+            }
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            edgeStart[n + 1] = edgeStart[n + 1] + edgeStart[n];
+        }
+        int[] edgeTarget = new int[edgeStart[nodeCount]];
+        int[] edgeStation = new int[edgeStart[nodeCount]];
+        int[] fill = Arrays.copyOf(edgeStart, nodeCount);
+        for (int l = 0; l < lineCount; l++) {
+            for (TransferPoint point : lineSet.get(l).getTransferPoints()) {
+                int source = exitNode[graph.getStop(l, point.getIndex())];
+                for (int k = 0; k < point.getLines().size(); k++) {
+                    int m = lineSet.getIndex(point.getLines().get(k));
+                    edgeTarget[fill[source]] = entryNode[graph.getStop(m, point.getIndexOn(k))];
+                    edgeStation[fill[source]] = staSet.getIndex(point.getStation());
+                    fill[source]++;
+                }
+            }
+        }
+
+        // One Breadth-First Search per node fills a row of the matrix
+        transfers = new int[nodeCount * nodeCount];
+        viaNode = new int[nodeCount * nodeCount];
+        viaStation = new int[nodeCount * nodeCount];
+        Arrays.fill(transfers, -1);
+        int[] queue = new int[nodeCount];
+        for (int o = 0; o < nodeCount; o++) {
+            int row = o * nodeCount;
+            int head = 0;
+            int tail = reach(row, o, 0, -1, -1, queue, 0);
+            while (head < tail) {
+                int u = queue[head++];
+                for (int e = edgeStart[u]; e < edgeStart[u + 1]; e++) {
+                    tail = reach(row, edgeTarget[e], transfers[row + u] + 1, u, edgeStation[e], queue, tail);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks a node, and the nodes reached from it without a transfer, as
+     * reached by the search of a given row, if they are not reached yet.
+     *
+     * @param row the index of the first cell of the row
+     * @param node the node that is reached
+     * @param level the number of transfers to the node
+     * @param parent the node before the node, or -1
+     * @param station the station where the node is entered, or -1
+     * @param queue the queue of the search
+     * @param tail the end of the queue
+     * @return the new end of the queue
+     */
+    private int reach(int row, int node, int level, int parent, int station, int[] queue, int tail) {
+        while (node != -1 && transfers[row + node] == -1) {
+            transfers[row + node] = level;
+            viaNode[row + node] = parent;
+            viaStation[row + node] = station;
+            queue[tail++] = node;
+            parent = node;
+            station = -1;
+            node = nodeNext[node];
+        }
+        return tail;
+    }
+
+    /**
+     * Returns the number of nodes of the matrix.
+     *
+     * @return the number of nodes of the matrix
+     */
+    public int getNodeCount() {
+        if (!graph.isCurrent(network)) {
+            rebuild();
+        }
+        return nodeCount;
+    }
+
+    /**
+     * Returns the minimum number of transfers from origin to destination.
+     *
+     * @param from origin
+     * @param to destination
+     * @return the minimum number of transfers, or -1 if the destination cannot
+     * be reached
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    public int getTransfers(Station from, Station to) throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("TransferMatrixPlanner.getTransfers: stop is null");
+        }
+        if (!graph.isCurrent(network)) {
+            rebuild();
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (origin == -1 || destination == -1) {
+            return -1;
+        } else if (from == to || findDirect(origin, destination) != -1) {
+            return 0;
+        }
+        int best = findBest(origin, destination);
+        return best == -1 ? -1 : transfers[best];
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of
+     * transfers, and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("TransferMatrixPlanner.findCompactRoute: stop is null");
+        }
+        route.clear();
+        if (!graph.isCurrent(network)) {
+            rebuild();
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (from == to || origin == -1 || destination == -1) {
+            return;
+        }
+
+        // A single line from origin to destination
+        int direct = findDirect(origin, destination);
+        if (direct != -1) {
+            Line line = network.getLineSet().get(direct);
+            int f = line.getIndex(from);
+            int t = line.getIndex(to);
+            route.add(direct, f, t, isForward(line, f, t));
+            return;
+        }
+
+        // Follow the via nodes, adding a segment per line in reverse
+        int best = findBest(origin, destination);
+        if (best == -1) {
+            return;
+        }
+        int row = best - best % nodeCount;
+        int o = row / nodeCount;
+        int v = best - row;
+        Station exit = to;
+        while (true) {
+            while (v != o && viaStation[row + v] == -1) {
+                v = viaNode[row + v];
+            }
+            Station entry = v == o ? from : network.getStationSet().get(viaStation[row + v]);
+            Line line = network.getLineSet().get(nodeLine[v]);
+            int f = line.getIndex(entry);
+            int t = line.getIndex(exit);
+            route.add(nodeLine[v], f, t, isForward(line, f, t));
+            if (v == o) {
+                break;
+            }
+            exit = entry;
+            v = viaNode[row + v];
+        }
+        route.reverseOrder();
+    }
+
+    /**
+     * Returns a line that can be traveled from one station to another without
+     * a transfer.
+     *
+     * @param origin the index of the origin
+     * @param destination the index of the destination
+     * @return the index of the line, or -1 if there is none
+     */
+    private int findDirect(int origin, int destination) {
+        for (int i = graph.getStationBegin(origin); i < graph.getStationEnd(origin); i++) {
+            int s = graph.getStationStop(i);
+            for (int j = graph.getStationBegin(destination); j < graph.getStationEnd(destination); j++) {
+                int t = graph.getStationStop(j);
+                int l = graph.getLine(s);
+                if (graph.getLine(t) == l && (!directional[l] || graph.getPosition(s) < graph.getPosition(t))) {
+                    return l;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the cell of the matrix with the minimum number of transfers,
+     * over all nodes entered at one station and all nodes left at another.
+     *
+     * @param origin the index of the origin
+     * @param destination the index of the destination
+     * @return the index of the cell, or -1 if the destination cannot be
+     * reached
+     */
+    private int findBest(int origin, int destination) {
+        int best = -1;
+        for (int i = graph.getStationBegin(origin); i < graph.getStationEnd(origin); i++) {
+            int o = entryNode[graph.getStationStop(i)];
+            for (int j = graph.getStationBegin(destination); j < graph.getStationEnd(destination); j++) {
+                int d = exitNode[graph.getStationStop(j)];
+                if (o != -1 && d != -1) {
+                    int cell = o * nodeCount + d;
+                    if (transfers[cell] != -1 && (best == -1 || transfers[cell] < transfers[best])) {
+                        best = cell;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns false, since removing a stop from a line leaves the lines of
+     * every other station, and the stops they connect, as they were.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isImprovedByRemovedStops() {
+        return false;
+    }
+}
@@ -0,0 +1,218 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Returns the route from origin to destination with the minimum number of
+ * stops, caching the complete search tree of recent origins.
+ *
+ * A query from an origin that is not cached runs a Breadth-First Search over
+ * the whole station graph, and stores for every station the edge along which
+ * it was reached. This single array holds both the parent station and the line
+ * of every station in the tree. Any later query from the same origin skips the
+ * search and goes straight to reconstruction. The number of cached trees is
+ * bounded, and the least recently used tree is evicted first.
+ *
+ * When the network has changed since the station graph was built, the graph
+ * is rebuilt and all cached trees are dropped before the next query.
+ *
+ * @author sanderjurgens
+ */
+public class TreeCachePlanner extends Planner {
+
+    /** The graph of all stations in the network */
+    private StationGraph graph;
+    /** The maximum number of cached trees */
+    private final int capacity;
+    /** The cached trees by origin, in order of least recent use */
+    private final LinkedHashMap<Integer, int[]> trees;
+
+    /** The queue of the search */
+    private int[] queue;
+    /** The edges of a route, from destination to origin */
+    private int[] path;
+
+    /** The number of queries from a cached origin */
+    private long hits;
+    /** The number of queries from an origin that was not cached */
+    private long misses;
+
+    /**
+     * Constructs a tree caching planner for a given network.
+     *
+     * @param network a given network
+     * @param graph the station graph of the network
+     * @param capacity the maximum number of cached trees
+     * @throws IllegalRequestException if the capacity is not positive
+     */
+    public TreeCachePlanner(Network network, StationGraph graph, int capacity) throws IllegalRequestException {
+        super(network);
+        if (capacity <= 0) {
+            throw new IllegalRequestException("TreeCachePlanner: capacity is not positive");
+        }
+        this.graph = graph;
+        this.capacity = capacity;
+        trees = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                return size() > TreeCachePlanner.this.capacity;
+            }
+        };
+        queue = new int[graph.getStationCount()];
+        path = new int[graph.getStationCount()];
+    }
+
+    /**
+     * Finds a route from origin to destination with a minimum number of stops,
+     * and stores it in a given compact route.
+     *
+     * @param from origin
+     * @param to destination
+     * @param route the compact route in which to store the route found
+     * @throws IllegalRequestException if the origin or destination is equal to
+     * null
+     */
+    @Override
+    public void findCompactRoute(Station from, Station to, CompactRoute route)
+            throws IllegalRequestException {
+        if (from == null || to == null) {
+            throw new IllegalRequestException("TreeCachePlanner.findCompactRoute: stop is null");
+        }
+        route.clear();
+        if (!graph.isCurrent(network)) {
+            rebuild();
+        }
+        int origin = network.getStationSet().getIndex(from);
+        int destination = network.getStationSet().getIndex(to);
+        if (origin == -1 || destination == -1 || origin == destination) {
+            return;
+        }
+        int[] tree = getTree(origin);
+        if (tree[destination] == -1) {
+            return;
+        }
+
+        // Follow the edges back to the origin, then add them in order
+        int length = 0;
+        for (int v = destination; v != origin; v = graph.getTail(tree[v])) {
+            path[length++] = tree[v];
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            graph.addHop(route, path[i]);
+        }
+    }
+
+    /**
+     * Rebuilds the station graph for the network as it is now, and drops all
+     * cached trees.
+     */
+    private void rebuild() {
+        graph = new StationGraph(network);
+        trees.clear();
+        queue = new int[graph.getStationCount()];
+        path = new int[graph.getStationCount()];
+    }
+
+    /**
+     * Returns the search tree of a given origin, from the cache or by a
+     * Breadth-First Search.
+     *
+     * @param origin the index of the origin
+     * @return the edge along which each station is reached, or -1 for the
+     * origin and unreachable stations
+     */
+    private int[] getTree(int origin) {
+        int[] tree = trees.get(origin);
+        if (tree != null) {
+            hits++;
+            return tree;
+        }
+        misses++;
+        tree = new int[graph.getStationCount()];
+        Arrays.fill(tree, -1);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = origin;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                int v = graph.getHead(e);
+                if (tree[v] == -1 && v != origin) {
+                    // Prefer to reach the next station without changing line
+                    tree[v] = graph.findEdge(u, v, tree[u]);
+                    queue[tail++] = v;
+                }
+            }
+        }
+        trees.put(origin, tree);
+        return tree;
+    }
+
+    /**
+     * Removes all trees from the cache, and resets the statistics.
+     */
+    public void clear() {
+        trees.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Returns the maximum number of cached trees.
+     *
+     * @return the maximum number of cached trees
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of cached trees.
+     *
+     * @return the number of cached trees
+     */
+    public int getSize() {
+        return trees.size();
+    }
+
+    /**
+     * Returns the number of queries from a cached origin.
+     *
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of queries from an origin that was not cached.
+     *
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the share of queries from a cached origin.
+     *
+     * @return the hit rate between 0 and 1, or 0 if there were no queries
+     */
+    public double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * Returns the memory used by the cached trees.
+     *
+     * @return the memory used in bytes
+     */
+    public long getMemoryUsage() {
+        return 4L * graph.getStationCount() * trees.size();
+    }
+}
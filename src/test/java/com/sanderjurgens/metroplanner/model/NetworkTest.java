@@ -1,6 +1,8 @@
 package com.sanderjurgens.metroplanner.model;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -47,6 +49,8 @@ public class NetworkTest {
                     "Line is one way");           
             Assertions.assertEquals(1, network.getLineSet().getLine("Green").getCount(),
                     "Station was not added to the line");            
+            Assertions.assertFalse(network.getStation("VBA").hasLocation(),
+                    "A location was set");
         } catch (IOException e) {
             Assertions.fail("Exception " + e + " should not be thrown");
         }
@@ -65,6 +69,10 @@ public class NetworkTest {
                         "Not enough stations on line " + line.getCode());
                 i = i + 1;
             }
+            Station station = network.getStation("ABB");
+            Assertions.assertTrue(station.hasLocation(), "The location was not read");
+            Assertions.assertEquals(659, station.getX(), "The location is not correct");
+            Assertions.assertEquals(369, station.getY(), "The location is not correct");
         } catch (IOException e) {
             Assertions.fail("Exception " + e + " should not be thrown");
         }        
@@ -129,4 +137,122 @@ public class NetworkTest {
             Assertions.fail("Exception " + e + " should not be thrown");
         }
     }
+
+    /**
+     * Unit test of the transfer points of the lines, of class Network.
+     */
+    @Test
+    public void testTransferPoints() {
+        // Minimal network
+        try {
+            Network network = new Network(getClass().getResource("minimal.network"));
+            Assertions.assertTrue(network.getLine("Green").getTransferPoints().isEmpty(),
+                    "A transfer point was found on the only line");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+
+        // Paris network
+        try {
+            Network network = new Network(getClass().getResource("paris.network"));
+            Line line = network.getLine("3bis");
+            Assertions.assertEquals(1, line.getTransferPoints().size(),
+                    "Not the right number of transfer points on line 3bis");
+            TransferPoint point = line.getTransferPoints().get(0);
+            Assertions.assertEquals(0, point.getIndex(), "The index was not correct");
+            Assertions.assertEquals(network.getStation("GAM"), point.getStation(),
+                    "The station was not correct");
+            Assertions.assertEquals(network.getLine("3"), point.getLines().get(0),
+                    "The connecting line was not correct");
+            Assertions.assertEquals(22, point.getIndexOn(0),
+                    "The index on the connecting line was not correct");
+
+            // Every stop shared with another line is a transfer point, in order
+            for (Line l : network.getLineSet()) {
+                int previous = -1;
+                int count = 0;
+                for (TransferPoint p : l.getTransferPoints()) {
+                    Assertions.assertTrue(previous < p.getIndex(), "The transfer points are not ordered");
+                    Assertions.assertEquals(l.getStop(p.getIndex()), p.getStation(),
+                            "The station is not at the index of the transfer point");
+                    for (int i = 0; i < p.getLines().size(); i++) {
+                        Assertions.assertEquals(p.getStation(), p.getLines().get(i).getStop(p.getIndexOn(i)),
+                                "The station is not on the connecting line");
+                    }
+                    previous = p.getIndex();
+                }
+                for (Station stop : l) {
+                    for (Line other : network.getLineSet()) {
+                        if (other != l && other.getIndex(stop) != -1) {
+                            count = count + 1;
+                            break;
+                        }
+                    }
+                }
+                Assertions.assertEquals(count, l.getTransferPoints().size(),
+                        "Not all transfer points were found on line " + l.getCode());
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of removeStop and closeStation, of class Network.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("paris.network"));
+            List<String> removed = new ArrayList<>();
+            List<String> added = new ArrayList<>();
+            network.addListener(new NetworkListener() {
+                @Override
+                public void connectionRemoved(Network n, Line line, Station from, Station to) {
+                    removed.add(line.getCode() + ":" + from.getCode() + "-" + to.getCode());
+                }
+
+                @Override
+                public void connectionAdded(Network n, Line line, Station from, Station to) {
+                    added.add(line.getCode() + ":" + from.getCode() + "-" + to.getCode());
+                }
+            });
+            long version = network.getVersion();
+
+            // Remove the first stop of a line
+            Line line = network.getLine("3bis");
+            Station next = line.getStop(1);
+            int count = line.getCount();
+            network.removeStop(line, network.getStation("GAM"));
+            Assertions.assertEquals(count - 1, line.getCount(), "The stop was not removed");
+            Assertions.assertEquals(0, line.getIndex(next), "The index of the next stop was not updated");
+            Assertions.assertEquals(-1, line.getIndex(network.getStation("GAM")), "The stop is still on the line");
+            Assertions.assertTrue(line.getTransferPoints().isEmpty(), "The transfer points were not updated");
+            Assertions.assertEquals(List.of("3bis:GAM-" + next.getCode()), removed,
+                    "The listener was not notified of the removed connection");
+            Assertions.assertTrue(added.isEmpty(), "A connection was added at the end of a line");
+            Assertions.assertEquals(1, network.getEditCount(), "The edit was not counted");
+            Assertions.assertEquals(version, network.getVersion(), "The version was changed by an edit");
+
+            // Close a station in the middle of a line
+            removed.clear();
+            network.closeStation(network.getStation("CHA"));
+            Assertions.assertTrue(removed.containsAll(List.of("1:LOR-CHA", "1:CHA-HOT")),
+                    "The listener was not notified of all removed connections");
+            Assertions.assertTrue(added.contains("1:LOR-HOT"), "The listener was not notified of the added connection");
+            for (Line l : network.getLineSet()) {
+                Assertions.assertEquals(-1, l.getIndex(network.getStation("CHA")), "The station is still served");
+            }
+            Assertions.assertEquals(network.getStation("HOT"),
+                    network.getLine("1").getStop(network.getLine("1").getIndex(network.getStation("LOR")) + 1),
+                    "The neighbours of the station are not consecutive");
+
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> network.removeStop(network.getLine("1"), network.getStation("CHA")));
+            network.markModified();
+            Assertions.assertNotEquals(version, network.getVersion(), "The version was not changed");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
 }
@@ -0,0 +1,144 @@
+package com.sanderjurgens.metroplanner.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A set of unit tests for the PatternTimetable class.
+ *
+ * @author sanderjurgens
+ */
+public class PatternTimetableTest {
+
+    /**
+     * Unit test for a PatternTimetable of the Paris network, against the
+     * connections of the timetable.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("paris.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("paris.timetable"));
+            PatternTimetable patterns = new PatternTimetable(timetable);
+            Assertions.assertEquals(2 * network.getLineSet().getCount(), patterns.getPatternCount(),
+                    "Not a pattern per line and direction");
+            Assertions.assertEquals(timetable.getTripCount(), patterns.getTripCount(), "Not all trips were stored");
+            Assertions.assertTrue(patterns.getMemoryUsage() < timetable.getMemoryUsage() / 10,
+                    "The patterns are not compact");
+            assertPatterns(timetable, patterns);
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of write and map, of class PatternTimetable.
+     *
+     * @param directory a temporary directory
+     */
+    @Test
+    public void testWriteRead(@TempDir Path directory) {
+        try {
+            Network network = new Network(getClass().getResource("paris.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("paris.timetable"));
+            Path file = directory.resolve("paris.patterns");
+            new PatternTimetable(timetable).write(file);
+            PatternTimetable mapped = PatternTimetable.map(file);
+            Assertions.assertEquals(Files.size(file), mapped.getMemoryUsage(), "Not the whole file was mapped");
+            assertPatterns(timetable, mapped);
+
+            Path corrupt = directory.resolve("corrupt.patterns");
+            Files.write(corrupt, new byte[8]);
+            Assertions.assertThrows(IOException.class, () -> PatternTimetable.map(corrupt));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test for a PatternTimetable of a network with circular and one way
+     * lines, where a trip runs in a single direction only.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/planner/loop.network"));
+            Timetable timetable = new Timetable(network,
+                    getClass().getResource("/com/sanderjurgens/metroplanner/planner/loop.timetable"));
+            PatternTimetable patterns = new PatternTimetable(timetable);
+            Assertions.assertEquals(network.getLineSet().getCount() + 1, patterns.getPatternCount(),
+                    "Not a pattern per direction that is run");
+            Assertions.assertEquals(timetable.getTripCount(), patterns.getTripCount(), "Not all trips were stored");
+            int loop = pattern(patterns, network.getLineSet().getIndex(network.getLine("Loop")), true);
+            Assertions.assertEquals(3, patterns.getTripCount(loop), "Not all trips of the loop were stored");
+            Assertions.assertEquals(-1, pattern(patterns, network.getLineSet().getIndex(network.getLine("Loop")), false),
+                    "A pattern against the direction was made");
+            assertPatterns(timetable, patterns);
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Asserts that every connection of a timetable is a ride of a trip in its
+     * pattern, and that the next trips are found.
+     *
+     * @param timetable the timetable
+     * @param patterns the pattern form of the timetable
+     */
+    private void assertPatterns(Timetable timetable, PatternTimetable patterns) {
+        Network network = timetable.getNetwork();
+        for (int c = 0; c < timetable.getConnectionCount(); c++) {
+            int trip = timetable.getTrip(c);
+            int p = pattern(patterns, timetable.getTripLine(trip), timetable.isTripForward(trip));
+            Assertions.assertNotEquals(-1, p, "The pattern of a trip is missing");
+            int i = 0;
+            while (patterns.getPosition(p, i) != timetable.getDeparturePosition(c)) {
+                i++;
+            }
+            Assertions.assertEquals(timetable.getDepartureStation(c), patterns.getStation(p, i),
+                    "The station of a stop is not correct");
+            Assertions.assertEquals(timetable.getTripDeparture(trip) + patterns.getOffset(p, i),
+                    timetable.getDepartureTime(c), "The time at a stop is not correct");
+            int k = patterns.getNextTrip(p, i, timetable.getDepartureTime(c));
+            Assertions.assertEquals(timetable.getTripDeparture(trip), patterns.getDeparture(p, k),
+                    "Not the next trip");
+            if (k > 0) {
+                Assertions.assertTrue(patterns.getDeparture(p, k - 1) < patterns.getDeparture(p, k),
+                        "The trips are not sorted");
+            }
+        }
+        for (int p = 0; p < patterns.getPatternCount(); p++) {
+            Line line = network.getLineSet().get(patterns.getLine(p));
+            // A trip of a circular line goes once around, back to its first stop
+            Assertions.assertEquals(line.getCount() + (line.isCircular() ? 1 : 0), patterns.getStopCount(p),
+                    "Not all stops are in the pattern");
+            int last = patterns.getStopCount(p) - 1;
+            Assertions.assertEquals(patterns.getTripCount(p),
+                    patterns.getNextTrip(p, last, Integer.MAX_VALUE - patterns.getOffset(p, last)),
+                    "A trip departs after the last trip");
+            Assertions.assertEquals(0, patterns.getNextTrip(p, 0, 0), "Not the first trip");
+        }
+    }
+
+    /**
+     * Returns the pattern of a line and direction.
+     *
+     * @param patterns the pattern timetable
+     * @param line the index of a line
+     * @param forward whether the direction is towards the last stop
+     * @return the index of the pattern, or -1 if there is none
+     */
+    private int pattern(PatternTimetable patterns, int line, boolean forward) {
+        for (int p = 0; p < patterns.getPatternCount(); p++) {
+            if (patterns.getLine(p) == line && patterns.isForward(p) == forward) {
+                return p;
+            }
+        }
+        return -1;
+    }
+}
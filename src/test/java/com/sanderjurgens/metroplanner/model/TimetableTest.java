@@ -0,0 +1,73 @@
+package com.sanderjurgens.metroplanner.model;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the Timetable class.
+ *
+ * @author sanderjurgens
+ */
+public class TimetableTest {
+
+    /**
+     * Unit test for a Timetable of the Paris network.
+     */
+    @Test
+    public void testTimetable() {
+        try {
+            Network network = new Network(getClass().getResource("paris.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("paris.timetable"));
+            int perService = (Timetable.parseTime("24.30") - Timetable.parseTime("05.30")) / 240 + 1;
+            Assertions.assertEquals(2 * network.getLineSet().getCount() * perService, timetable.getTripCount(),
+                    "The trips of the services were not added");
+
+            // The connections are sorted, and every trip runs at the run times of its line
+            for (int c = 1; c < timetable.getConnectionCount(); c++) {
+                Assertions.assertTrue(timetable.getDepartureTime(c - 1) <= timetable.getDepartureTime(c),
+                        "The connections are not sorted");
+                Assertions.assertTrue(timetable.getDepartureTime(c - 1) < timetable.getDepartureTime(c)
+                        || timetable.getArrivalTime(c - 1) <= timetable.getArrivalTime(c),
+                        "The connections of equal departure are not sorted by arrival");
+            }
+            for (int c = 0; c < timetable.getConnectionCount(); c++) {
+                Line line = network.getLineSet().get(timetable.getTripLine(timetable.getTrip(c)));
+                Assertions.assertEquals(Line.DEFAULT_RUN_TIME, timetable.getArrivalTime(c) - timetable.getDepartureTime(c),
+                        "The run time is not correct");
+                Assertions.assertEquals(line.getStop(timetable.getDeparturePosition(c)),
+                        network.getStationSet().get(timetable.getDepartureStation(c)),
+                        "The departure station is not on the line");
+            }
+
+            // The first connection at or after a time
+            int c = timetable.getFirstConnection(Timetable.parseTime("08.00"));
+            Assertions.assertEquals(Timetable.parseTime("08.00"), timetable.getDepartureTime(c),
+                    "Not the first departure");
+            Assertions.assertTrue(timetable.getDepartureTime(c - 1) < Timetable.parseTime("08.00"),
+                    "Not the first departure");
+            Assertions.assertEquals(timetable.getConnectionCount(), timetable.getFirstConnection(Integer.MAX_VALUE),
+                    "A departure after the last one was found");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of parseTime and formatTime, of class Timetable.
+     */
+    @Test
+    public void testTime() {
+        Assertions.assertEquals(8 * 3600 + 5 * 60, Timetable.parseTime("08.05"), "The time was not parsed");
+        Assertions.assertEquals(25 * 3600 + 7, Timetable.parseTime("25.00.07"), "The time was not parsed");
+        Assertions.assertEquals("08.05.00", Timetable.formatTime(Timetable.parseTime("8.05")),
+                "The time was not formatted");
+        Assertions.assertThrows(IllegalRequestException.class, () -> Timetable.parseTime("08"));
+        Assertions.assertThrows(IllegalRequestException.class, () -> Timetable.parseTime("08.x"));
+        Assertions.assertThrows(IllegalRequestException.class, () -> Timetable.parseTime("08.60"));
+        Assertions.assertThrows(IllegalRequestException.class, () -> Timetable.parseTime("08.05.60"));
+        Assertions.assertThrows(IllegalRequestException.class, () -> Timetable.parseTime("-1.00"));
+        Assertions.assertThrows(IllegalRequestException.class, () -> Timetable.parseTime("08.-5"));
+        Assertions.assertThrows(IllegalRequestException.class, () -> Timetable.parseTime("08..05"));
+    }
+}
@@ -0,0 +1,122 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the ArcFlags and ArcFlagsPlanner classes.
+ *
+ * @author sanderjurgens
+ */
+public class ArcFlagsTest {
+
+    /**
+     * Unit test of findRoute, of class ArcFlagsPlanner, against the
+     * MinStopsPlanner on the Paris network, partitioned by location.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            StationGraph graph = new StationGraph(network);
+            ArcFlags flags = new ArcFlags(network, graph, 16);
+            Assertions.assertTrue(flags.isGeographic(), "The locations of the stations were not used");
+            Assertions.assertTrue(flags.getFlagRatio() < 0.75, "The flags do not prune the search");
+
+            Planner stops = new MinStopsPlanner(network);
+            ArcFlagsPlanner planner = new ArcFlagsPlanner(network, graph, flags);
+            long visited = 0;
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    visited = visited + planner.getVisitedCount();
+                    Route route = planner.findRoute(from, to);
+                    for (int i = 1; i < route.getCount(); i++) {
+                        Assertions.assertEquals(route.get(i - 1).getToStation(), route.get(i).getFromStation(),
+                                "The segments of the route are not connected");
+                    }
+                }
+            }
+            int n = network.getStationSet().getCount();
+            Assertions.assertTrue(visited < (long) n * n * n / 4, "The search was not pruned by the flags");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class ArcFlagsPlanner, on a network with
+     * circular and one way lines and without locations.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            ArcFlags flags = new ArcFlags(network, graph, 3);
+            Assertions.assertFalse(flags.isGeographic(), "Missing locations were used");
+            Assertions.assertEquals(3, flags.getRegionCount(), "Not all regions were made");
+
+            Planner stops = new MinStopsPlanner(network);
+            Planner planner = new ArcFlagsPlanner(network, graph, flags);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+
+            // Ride the one way line to its end, then take the circular one way line
+            CompactRoute route = planner.findCompactRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(2, route.getCount(), "The rides were not combined into segments");
+
+            Assertions.assertThrows(IllegalRequestException.class, () -> new ArcFlags(network, graph, 0));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class ArcFlagsPlanner, after a station on a
+     * circular and a one way line is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            ArcFlags flags = new ArcFlags(network, graph, 3);
+            Planner planner = new ArcFlagsPlanner(network, graph, flags);
+            Assertions.assertEquals(2, planner.findCompactRoute(network.getStation("B"), network.getStation("D")).getStops(),
+                    "Not the minimum number of stops");
+
+            // The flags were computed for the old graph
+            network.closeStation(network.getStation("C"));
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.findCompactRoute(network.getStation("B"), network.getStation("D")));
+
+            // Flags computed after the edit follow the shortened lines
+            StationGraph edited = new StationGraph(network);
+            Planner stops = new MinStopsPlanner(network);
+            Planner rebuilt = new ArcFlagsPlanner(network, edited, new ArcFlags(network, edited, 3));
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            rebuilt.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+            Assertions.assertEquals(1, rebuilt.findCompactRoute(network.getStation("B"), network.getStation("D")).getStops(),
+                    "The closed station was still passed");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
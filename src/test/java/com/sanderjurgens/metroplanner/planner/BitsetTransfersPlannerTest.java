@@ -0,0 +1,122 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the BitsetTransfersPlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class BitsetTransfersPlannerTest {
+
+    /**
+     * Unit test of findRoute, of class BitsetTransfersPlanner, against the
+     * MinTransfersPlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Planner expected = new MinTransfersPlanner(network);
+            Planner planner = new BitsetTransfersPlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Route route = planner.findRoute(from, to);
+                    Assertions.assertEquals(expected.findRoute(from, to).getCount(), route.getCount(),
+                            "Not the minimum number of transfers from " + from + " to " + to);
+                    if (from != to) {
+                        Assertions.assertEquals(from, route.get(0).getFromStation(),
+                                "The route does not start at the origin");
+                        Assertions.assertEquals(to, route.get(route.getCount() - 1).getToStation(),
+                                "The route does not end at the destination");
+                    }
+                    for (int i = 1; i < route.getCount(); i++) {
+                        Assertions.assertEquals(route.get(i - 1).getToStation(), route.get(i).getFromStation(),
+                                "The segments of the route are not connected");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class BitsetTransfersPlanner, on a network
+     * with circular and one way lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            Planner planner = new BitsetTransfersPlanner(network);
+
+            // Ride the one way line to its end, then take the circular one way line
+            Route route = planner.findRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(2, route.getCount(), "Not the minimum number of transfers");
+            Assertions.assertEquals(network.getLine("Up"), route.get(0).getLine(), "The first line is not correct");
+            Assertions.assertEquals(network.getStation("H"), route.get(0).getToStation(),
+                    "The transfer station is not correct");
+            Assertions.assertEquals(network.getLine("Loop"), route.get(1).getLine(), "The second line is not correct");
+            Assertions.assertTrue(route.get(1).usesCircular(), "The circular nature of the line is not used");
+
+            // A direct connection
+            route = planner.findRoute(network.getStation("C"), network.getStation("H"));
+            Assertions.assertEquals(1, route.getCount(), "Not the minimum number of transfers");
+            Assertions.assertEquals(network.getStation("H"), route.get(0).getDirection(),
+                    "The direction is not correct");
+
+            // Against the direction of a one way line
+            route = planner.findRoute(network.getStation("D"), network.getStation("I"));
+            Assertions.assertTrue(route.isEmpty(), "A route against the direction was found");
+
+            // Same origin and destination
+            route = planner.findRoute(network.getStation("A"), network.getStation("A"));
+            Assertions.assertTrue(route.isEmpty(), "A route to the origin was found");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class BitsetTransfersPlanner, on a planner that was built
+     * before a station of the network was closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("edit.network"));
+            Planner planner = new BitsetTransfersPlanner(network);
+            Assertions.assertEquals(1, planner.findRoute(network.getStation("A"), network.getStation("U")).getCount(),
+                    "Not a single ride");
+
+            // The closed station is no longer reached, and the stops after it have moved
+            network.closeStation(network.getStation("U"));
+            Assertions.assertTrue(planner.findRoute(network.getStation("A"), network.getStation("U")).isEmpty(),
+                    "A closed station was reached");
+            Route route = planner.findRoute(network.getStation("T"), network.getStation("B"));
+            Assertions.assertEquals(1, route.getCount(), "Not a single ride");
+            Assertions.assertEquals(network.getStation("B"), route.get(0).getToStation(),
+                    "The route does not end at the destination");
+
+            // The planner answers like a planner built after the edit
+            Planner fresh = new BitsetTransfersPlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    CompactRoute expected = fresh.findCompactRoute(from, to);
+                    CompactRoute actual = planner.findCompactRoute(from, to);
+                    Assertions.assertEquals(expected.getCount(), actual.getCount(),
+                            "Not the same number of rides from " + from + " to " + to);
+                    Assertions.assertEquals(expected.getStops(), actual.getStops(),
+                            "Not the same number of stops from " + from + " to " + to);
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the CachingPlanner and RouteCache classes.
+ *
+ * @author sanderjurgens
+ */
+public class CachingPlannerTest {
+
+    /**
+     * Unit test of findRoute, of class CachingPlanner, with a modified network.
+     */
+    @Test
+    public void testVersion() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            RouteCache cache = new RouteCache(64, 1024);
+            CachingPlanner stops = new CachingPlanner(new MinStopsPlanner(network), cache);
+            CachingPlanner transfers = new CachingPlanner(new MinTransfersPlanner(network), cache);
+            Station g = network.getStation("G");
+            Station f = network.getStation("F");
+
+            // A second query is answered by the cache
+            Route route = stops.findRoute(g, f);
+            Assertions.assertSame(route, stops.findRoute(g, f), "The route was not cached");
+            Assertions.assertEquals(1, cache.getHits(), "The hit was not counted");
+            Assertions.assertEquals(1, cache.getMisses(), "The miss was not counted");
+            Assertions.assertEquals(RouteCache.weigh(route), cache.getWeight(), "The weight is not correct");
+
+            // Planners do not share entries
+            Assertions.assertNotSame(route, transfers.findRoute(g, f), "The route of another planner was used");
+            Assertions.assertEquals(2, cache.getSize(), "Not every planner has its own entry");
+
+            // A modified network makes the entries unusable
+            network.markModified();
+            Assertions.assertNotSame(route, stops.findRoute(g, f), "A stale route was used");
+            Assertions.assertEquals(3, cache.getMisses(), "The stale entry was found");
+
+            cache.clear();
+            Assertions.assertEquals(0, cache.getSize(), "The cache was not cleared");
+            Assertions.assertEquals(0, cache.getWeight(), "The cache was not cleared");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class CachingPlanner, with an edited network
+     * and a planner of which only the routes along the edit can change.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            RouteCache cache = new RouteCache(64, 1024);
+            CachingPlanner planner = new CachingPlanner(new MinTransfersPlanner(network), cache);
+            Station a = network.getStation("A");
+            Station c = network.getStation("C");
+            Station d = network.getStation("D");
+            Station e = network.getStation("E");
+            Station f = network.getStation("F");
+            Station g = network.getStation("G");
+            Route ac = planner.findRoute(a, c);
+            Route de = planner.findRoute(d, e);
+            Route gf = planner.findRoute(g, f);
+            Assertions.assertEquals(2, ac.get(0).getLine().getIndex(c) - ac.get(0).getLine().getIndex(a),
+                    "The route does not pass the removed stop");
+
+            // Only the route along a removed connection is invalidated
+            network.removeStop(network.getLine("Ring"), network.getStation("B"));
+            Assertions.assertEquals(1, cache.getInvalidations(), "Not only the affected route was invalidated");
+            Assertions.assertSame(de, planner.findRoute(d, e), "An unaffected route was invalidated");
+            Assertions.assertSame(gf, planner.findRoute(g, f), "An unaffected route was invalidated");
+            Route route = planner.findRoute(a, c);
+            Assertions.assertNotSame(ac, route, "The affected route was not invalidated");
+            Assertions.assertEquals(1, route.get(0).getLine().getIndex(c) - route.get(0).getLine().getIndex(a),
+                    "The route was not planned again");
+        } catch (IOException ex) {
+            Assertions.fail("Exception " + ex + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class CachingPlanner, with an edited network
+     * and a planner of which the routes can improve by a removed stop.
+     */
+    @Test
+    public void testRemovedStop() {
+        try {
+            Network network = new Network(getClass().getResource("edit.network"));
+            RouteCache cache = new RouteCache(64, 1024);
+            CachingPlanner planner = new CachingPlanner(new MinStopsPlanner(network), cache);
+            CachingPlanner transfers = new CachingPlanner(new MinTransfersPlanner(network), cache);
+            Station a = network.getStation("A");
+            Station b = network.getStation("B");
+            Route ab = planner.findRoute(a, b);
+            Route xy = transfers.findRoute(network.getStation("X"), network.getStation("Y"));
+            Assertions.assertEquals(network.getLine("M"), ab.get(0).getLine(), "Not the shortest line");
+
+            // The cached route does not ride the edited line, but is no longer the shortest
+            network.removeStop(network.getLine("L"), network.getStation("S"));
+            network.removeStop(network.getLine("L"), network.getStation("T"));
+            Route route = planner.findRoute(a, b);
+            Assertions.assertNotSame(ab, route, "The cached route was not invalidated");
+            Assertions.assertEquals(network.getLine("L"), route.get(0).getLine(), "The route was not planned again");
+            Assertions.assertEquals(2, new MinStopsPlanner(network).findCompactRoute(a, b).getStops(),
+                    "Not the minimum number of stops");
+            Assertions.assertSame(xy, transfers.findRoute(network.getStation("X"), network.getStation("Y")),
+                    "A route that cannot improve was invalidated");
+        } catch (IOException ex) {
+            Assertions.fail("Exception " + ex + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of the reverse index, of class RouteCache, while the network
+     * is modified between queries on the Paris network.
+     */
+    @Test
+    public void testIndex() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            RouteCache cache = new RouteCache(64, 512);
+            CachingPlanner planner = new CachingPlanner(new MinStopsPlanner(network), cache);
+            List<Station> stations = network.getStationSet();
+            for (int i = 0; i < 5000; i++) {
+                if (i % 100 == 0) {
+                    network.markModified();
+                }
+                planner.findRoute(stations.get(i % stations.size()), stations.get((7 * i) % stations.size()));
+                Assertions.assertTrue(cache.getReferenceCount() <= 2 * 512,
+                        "The references of earlier versions were not dropped");
+                Assertions.assertTrue(cache.getIndexSize() <= cache.getReferenceCount(),
+                        "Connections without references were kept");
+            }
+            Assertions.assertTrue(cache.getWeight() <= 512, "The weight of the entries is not bounded");
+            cache.clear();
+            Assertions.assertEquals(0, cache.getReferenceCount(), "The references were not cleared");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of the bounds, of class RouteCache, and of findRoute, of class
+     * CachingPlanner, from many threads on the Paris network.
+     */
+    @Test
+    public void testConcurrent() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            RouteCache cache = new RouteCache(256, 1024);
+            CachingPlanner planner = new CachingPlanner(new MinStopsPlanner(network), cache);
+            List<Station> stations = network.getStationSet();
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int offset = t;
+                results.add(executor.submit(() -> {
+                    Planner expected = new MinStopsPlanner(network);
+                    int stops = 0;
+                    for (int i = 0; i < 2000; i++) {
+                        Station from = stations.get((i + offset) % 40);
+                        Station to = stations.get((i / 40) % 40);
+                        stops = stops + planner.findCompactRoute(from, to).getStops();
+                        Assertions.assertEquals(expected.findRoute(from, to).getCount(),
+                                planner.findRoute(from, to).getCount(), "The cached route is not correct");
+                    }
+                    return stops;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                result.get();
+            }
+            executor.shutdown();
+            Assertions.assertTrue(cache.getSize() <= 256, "The number of entries is not bounded");
+            Assertions.assertTrue(cache.getWeight() <= 1024, "The weight of the entries is not bounded");
+            Assertions.assertTrue(cache.getEvictions() > 0, "No entries were evicted");
+            Assertions.assertTrue(cache.getHits() > 0, "No routes were found in the cache");
+        } catch (Exception e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
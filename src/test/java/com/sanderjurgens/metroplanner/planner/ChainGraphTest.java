@@ -0,0 +1,127 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the ChainGraph and ChainPlanner classes.
+ *
+ * @author sanderjurgens
+ */
+public class ChainGraphTest {
+
+    /**
+     * Unit test of findRoute, of class ChainPlanner, against the
+     * MinStopsPlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            StationGraph graph = new StationGraph(network);
+            ChainGraph chains = new ChainGraph(graph);
+            Assertions.assertTrue(chains.getCoreCount() < graph.getStationCount() / 2,
+                    "The plain stops were not compressed");
+            Assertions.assertTrue(chains.isCore(network.getStationSet().getIndex(network.getStation("CHA"))),
+                    "A transfer station is not a core station");
+
+            Planner stops = new MinStopsPlanner(network);
+            Planner planner = new ChainPlanner(network, chains);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    CompactRoute expected = stops.findCompactRoute(from, to);
+                    CompactRoute route = planner.findCompactRoute(from, to);
+                    Assertions.assertEquals(expected.getStops(), route.getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    Route r = route.toRoute();
+                    for (int i = 1; i < r.getCount(); i++) {
+                        Assertions.assertEquals(r.get(i - 1).getToStation(), r.get(i).getFromStation(),
+                                "The segments of the route are not connected");
+                    }
+                    if (!r.isEmpty()) {
+                        Assertions.assertEquals(from, r.get(0).getFromStation(), "The route does not begin at the origin");
+                        Assertions.assertEquals(to, r.get(r.getCount() - 1).getToStation(),
+                                "The route does not end at the destination");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class ChainPlanner, on a network with circular
+     * and one way lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            ChainGraph chains = new ChainGraph(graph);
+            Assertions.assertFalse(chains.isCore(network.getStationSet().getIndex(network.getStation("A"))),
+                    "A plain stop is a core station");
+
+            Planner stops = new MinStopsPlanner(network);
+            Planner planner = new ChainPlanner(network, chains);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+
+            // Ride the one way line to its end, then take the circular one way line
+            CompactRoute route = planner.findCompactRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(2, route.getCount(), "The rides were not combined into segments");
+
+            // Against the direction of a one way line
+            route = planner.findCompactRoute(network.getStation("D"), network.getStation("I"));
+            Assertions.assertTrue(route.isEmpty(), "A route against the direction was found");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class ChainPlanner, after a core station of
+     * a circular and a one way line is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            int core = network.getStationSet().getIndex(network.getStation("F"));
+            Assertions.assertTrue(new ChainGraph(graph).isCore(core), "A transfer station is not a core station");
+            Planner planner = new ChainPlanner(network, new ChainGraph(graph));
+
+            // The chains were contracted from the old graph
+            network.closeStation(network.getStation("F"));
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.findCompactRoute(network.getStation("E"), network.getStation("H")));
+
+            // Chains contracted after the edit join the stops that were around the closed station
+            ChainGraph chains = new ChainGraph(new StationGraph(network));
+            Planner stops = new MinStopsPlanner(network);
+            Planner rebuilt = new ChainPlanner(network, chains);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            rebuilt.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+            CompactRoute route = rebuilt.findCompactRoute(network.getStation("E"), network.getStation("H"));
+            Assertions.assertEquals(1, route.getStops(), "The circular line was not closed over the removed stop");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
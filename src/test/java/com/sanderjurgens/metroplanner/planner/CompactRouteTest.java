@@ -0,0 +1,91 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Network;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the CompactRoute class.
+ *
+ * @author sanderjurgens
+ */
+public class CompactRouteTest {
+
+    /**
+     * Unit test of add, addHop and the summary queries, of class CompactRoute.
+     */
+    @Test
+    public void testAdd() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            int ring = network.getLineSet().getIndex(network.getLine("Ring"));
+            int up = network.getLineSet().getIndex(network.getLine("Up"));
+            CompactRoute route = new CompactRoute(network);
+            Assertions.assertTrue(route.isEmpty(), "The route was not empty");
+            Assertions.assertEquals(0, route.getTransfers(), "The transfers were not correct");
+
+            // Consecutive rides on the same line and direction form one segment
+            route.addHop(ring, 1, 0, false);
+            route.addHop(ring, 0, 4, false);
+            Assertions.assertEquals(1, route.getCount(), "The rides were not combined");
+            Assertions.assertEquals(4, route.getTo(0), "The segment was not extended");
+
+            // A ride on another line starts a new segment
+            route.addHop(ring, 4, 3, false);
+            route.add(up, 1, 3, true);
+            Assertions.assertEquals(2, route.getCount(), "The segment was not added");
+            Assertions.assertEquals(1, route.getTransfers(), "The transfers were not correct");
+            Assertions.assertEquals(5, route.getStops(), "The stops were not correct");
+
+            // Reverse the order of the segments
+            route.reverseOrder();
+            Assertions.assertEquals(up, route.getLine(0), "The order was not reversed");
+            Assertions.assertEquals(CompactRoute.BACKWARD, route.getDirection(1), "The segment was changed");
+            route.reverseOrder();
+
+            // Clear the route
+            CompactRoute copy = new CompactRoute(network);
+            copy.add(ring, 1, 0, false);
+            copy.clear();
+            Assertions.assertTrue(copy.isEmpty(), "The route was not cleared");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of toRoute, of class CompactRoute.
+     */
+    @Test
+    public void testToRoute() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            int ring = network.getLineSet().getIndex(network.getLine("Ring"));
+            int loop = network.getLineSet().getIndex(network.getLine("Loop"));
+            CompactRoute route = new CompactRoute(network);
+            route.add(ring, 1, 4, false);
+            route.add(loop, 2, 1, true);
+
+            Route r = route.toRoute();
+            Assertions.assertSame(r, route.toRoute(), "The route was created twice");
+            Assertions.assertEquals(2, r.getCount(), "Not all segments were created");
+            Assertions.assertEquals(network.getStation("B"), r.get(0).getFromStation(),
+                    "The begin station is not correct");
+            Assertions.assertEquals(network.getStation("E"), r.get(0).getToStation(),
+                    "The end station is not correct");
+            Assertions.assertEquals(network.getStation("A"), r.get(0).getDirection(),
+                    "The direction is not correct");
+            Assertions.assertTrue(r.get(0).usesCircular(), "The circular nature was not used");
+            Assertions.assertEquals(network.getStation("H"), r.get(1).getFromStation(),
+                    "The begin station is not correct");
+            Assertions.assertTrue(r.get(1).usesCircular(), "The circular nature was not used");
+
+            // Changing the route creates a new one
+            route.add(ring, 4, 3, false);
+            Assertions.assertEquals(3, route.toRoute().getCount(), "The route was not created again");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the ComponentIndex class.
+ *
+ * @author sanderjurgens
+ */
+public class ComponentIndexTest {
+
+    /**
+     * Unit test of canReach, of class ComponentIndex, on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            ComponentIndex index = ComponentIndex.of(network);
+            Assertions.assertEquals(1, index.getComponentCount(), "The metro is not strongly connected");
+            Assertions.assertSame(index, ComponentIndex.of(network), "The index is not shared");
+            assertReach(network, index);
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of canReach, of class ComponentIndex, and of the unreachable
+     * answers of the planners, on a network with circular and one way lines,
+     * before and after an edit.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            ComponentIndex index = ComponentIndex.of(network);
+            Assertions.assertEquals(2, index.getComponentCount(), "The components are not found");
+            assertReach(network, index);
+
+            // Against the direction of a one way line
+            int d = network.getStationSet().getIndex(network.getStation("D"));
+            int i = network.getStationSet().getIndex(network.getStation("I"));
+            Assertions.assertTrue(index.canReach(i, d), "A reachable station is not reached");
+            Assertions.assertFalse(index.canReach(d, i), "An unreachable station is reached");
+            Assertions.assertTrue(new MinStopsPlanner(network)
+                    .findCompactRoute(network.getStation("D"), network.getStation("I")).isEmpty(),
+                    "A route against the direction was found");
+            Assertions.assertTrue(new MinTransfersPlanner(network)
+                    .findCompactRoute(network.getStation("D"), network.getStation("I")).isEmpty(),
+                    "A route against the direction was found");
+
+            // The index is rebuilt after the network is edited
+            network.closeStation(network.getStation("H"));
+            ComponentIndex edited = ComponentIndex.of(network);
+            Assertions.assertNotSame(index, edited, "The index was not rebuilt");
+            assertReach(network, edited);
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of canReach, of class ComponentIndex, with rows that exceed
+     * the limit on their size, on a network with one way lines and on a
+     * network that falls apart after an edit.
+     */
+    @Test
+    public void testLimit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            Assertions.assertTrue(new ComponentIndex(network, 2).isExact(), "The rows do not fit the limit");
+            ComponentIndex index = new ComponentIndex(network, 1);
+            Assertions.assertFalse(index.isExact(), "The rows exceed the limit");
+            Assertions.assertEquals(2, index.getComponentCount(), "The components are not found");
+            assertReach(network, index);
+            int d = network.getStationSet().getIndex(network.getStation("D"));
+            int i = network.getStationSet().getIndex(network.getStation("I"));
+            Assertions.assertFalse(index.canReach(d, i), "A station before the origin in topological order is reached");
+            Assertions.assertThrows(IllegalRequestException.class, () -> new ComponentIndex(network, -1),
+                    "A negative limit was accepted");
+
+            // Without its end stations, the edit network consists of two separate lines
+            Network edited = new Network(getClass().getResource("edit.network"));
+            edited.closeStation(edited.getStation("A"));
+            edited.closeStation(edited.getStation("B"));
+            ComponentIndex parts = new ComponentIndex(edited, 0);
+            Assertions.assertFalse(parts.isExact(), "The rows exceed the limit");
+            assertReach(edited, parts);
+            int s = edited.getStationSet().getIndex(edited.getStation("S"));
+            int x = edited.getStationSet().getIndex(edited.getStation("X"));
+            Assertions.assertFalse(parts.canReach(s, x), "A station of another part is reached");
+            Assertions.assertFalse(parts.canReach(x, s), "A station of another part is reached");
+            Assertions.assertTrue(new MinStopsPlanner(edited)
+                    .findCompactRoute(edited.getStation("S"), edited.getStation("X")).isEmpty(),
+                    "A route to another part was found");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Asserts that the index answers like a Breadth-First Search from every
+     * station, or, if it is not exact, that it allows every station that the
+     * search reaches.
+     *
+     * @param network the network
+     * @param index the component index of the network
+     */
+    private void assertReach(Network network, ComponentIndex index) {
+        StationGraph graph = new StationGraph(network);
+        int n = graph.getStationCount();
+        int[] queue = new int[n];
+        for (int s = 0; s < n; s++) {
+            boolean[] reached = new boolean[n];
+            int head = 0;
+            int tail = 0;
+            reached[s] = true;
+            queue[tail++] = s;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int e = graph.getOutBegin(v); e < graph.getOutEnd(v); e++) {
+                    if (!reached[graph.getHead(e)]) {
+                        reached[graph.getHead(e)] = true;
+                        queue[tail++] = graph.getHead(e);
+                    }
+                }
+            }
+            for (int t = 0; t < n; t++) {
+                if (!index.isExact()) {
+                    Assertions.assertTrue(!reached[t] || index.canReach(s, t), "A reachable station is denied from "
+                            + network.getStationSet().get(s) + " to " + network.getStationSet().get(t));
+                    continue;
+                }
+                Assertions.assertEquals(reached[t], index.canReach(s, t),
+                        "Wrong reachability from " + network.getStationSet().get(s) + " to " + network.getStationSet().get(t));
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import com.sanderjurgens.metroplanner.model.Timetable;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the ConnectionScanPlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class ConnectionScanPlannerTest {
+
+    /**
+     * Unit test of findTimedRoute, of class ConnectionScanPlanner, against
+     * the MinTimePlanner on the Paris network, where a trip departs every four
+     * minutes.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Timetable timetable = new Timetable(network,
+                    getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.timetable"));
+            ConnectionScanPlanner planner = new ConnectionScanPlanner(network, timetable);
+            MinTimePlanner times = new MinTimePlanner(network);
+            int departure = Timetable.parseTime("08.00");
+            int i = 0;
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    if (i++ % 7 != 0 || from == to) {
+                        continue;
+                    }
+                    Route route = planner.findTimedRoute(from, to, departure);
+                    int segments = times.findCompactRoute(from, to).getCount();
+                    int arrival = planner.getArrivalTime();
+
+                    // Never faster than riding without waiting, never slower than waiting a headway per segment
+                    Assertions.assertTrue(arrival - departure >= times.getTime(),
+                            "Faster than the minimum travel time from " + from + " to " + to);
+                    Assertions.assertTrue(arrival - departure <= times.getTime() + 240 * segments,
+                            "Not the earliest arrival from " + from + " to " + to);
+
+                    Assertions.assertEquals(from, route.get(0).getFromStation(), "The route does not begin at the origin");
+                    Assertions.assertEquals(to, route.get(route.getCount() - 1).getToStation(),
+                            "The route does not end at the destination");
+                    int time = departure;
+                    for (int s = 0; s < route.getCount(); s++) {
+                        TimedRouteSegment segment = (TimedRouteSegment) route.get(s);
+                        if (s > 0) {
+                            Assertions.assertEquals(route.get(s - 1).getToStation(), segment.getFromStation(),
+                                    "The segments of the route are not connected");
+                        }
+                        Assertions.assertTrue(segment.getDeparture() >= time, "A trip departs before it is reached");
+                        time = segment.getArrival();
+                    }
+                    Assertions.assertEquals(arrival, time, "The route does not arrive at the arrival time");
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findTimedRoute, of class ConnectionScanPlanner, on a
+     * network with run times, transfer times and a few trips.
+     */
+    @Test
+    public void testTimes() {
+        try {
+            Network network = new Network(getClass().getResource("timed.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("timed.timetable"));
+            ConnectionScanPlanner planner = new ConnectionScanPlanner(network, timetable);
+            Station a = network.getStation("A");
+
+            // The express trip departs later, but arrives first
+            Route route = planner.findTimedRoute(a, network.getStation("D"), Timetable.parseTime("07.50"));
+            Assertions.assertEquals(1, route.getCount(), "Not a single trip");
+            Assertions.assertEquals(network.getLine("Express"), route.get(0).getLine(), "Not the express trip");
+            Assertions.assertEquals(Timetable.parseTime("08.06"), planner.getArrivalTime(), "Not the earliest arrival");
+
+            // The transfer at C takes too long for the branch trip
+            route = planner.findTimedRoute(a, network.getStation("F"), Timetable.parseTime("07.50"));
+            Assertions.assertEquals(2, route.getCount(), "Not a transfer");
+            Assertions.assertEquals(network.getStation("B"), route.get(0).getToStation(), "Not the transfer at B");
+            Assertions.assertEquals(Timetable.parseTime("08.06.40"), planner.getArrivalTime(),
+                    "Not the earliest arrival");
+            Assertions.assertEquals(Timetable.parseTime("08.05"), ((TimedRouteSegment) route.get(1)).getDeparture(),
+                    "Not the departure of the shuttle");
+
+            // A trip in the other direction, as a compact route at the departure time set
+            planner.setDepartureTime(Timetable.parseTime("08.30"));
+            CompactRoute compact = planner.findCompactRoute(network.getStation("D"), a);
+            Assertions.assertEquals(2, compact.getStops(), "Not the local trip");
+            Assertions.assertEquals(CompactRoute.BACKWARD, compact.getDirection(0), "Not the direction of the trip");
+
+            // No trip departs late enough
+            Assertions.assertTrue(planner.findTimedRoute(a, network.getStation("D"), Timetable.parseTime("08.01")).isEmpty(),
+                    "A trip departed before the departure time");
+            Assertions.assertEquals(-1, planner.getArrivalTime(), "An arrival was found");
+
+            Network other = new Network(getClass().getResource("timed.network"));
+            Assertions.assertThrows(IllegalRequestException.class, () -> new ConnectionScanPlanner(other, timetable));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findTimedRoute, of class ConnectionScanPlanner, with a
+     * connection without run time that leads to a trip departing at the same
+     * second.
+     */
+    @Test
+    public void testInstant() {
+        try {
+            Network network = new Network(getClass().getResource("instant.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("instant.timetable"));
+            ConnectionScanPlanner planner = new ConnectionScanPlanner(network, timetable);
+            Assertions.assertEquals(network.getLine("Walk"),
+                    network.getLineSet().get(timetable.getTripLine(timetable.getTrip(0))),
+                    "The connection without run time is not scanned first");
+
+            Route route = planner.findTimedRoute(network.getStation("A"), network.getStation("C"),
+                    Timetable.parseTime("08.00"));
+            Assertions.assertEquals(2, route.getCount(), "The transfer at B was missed");
+            Assertions.assertEquals(Timetable.parseTime("08.01"), planner.getArrivalTime(), "Not the earliest arrival");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findTimedRoute, of class ConnectionScanPlanner, on a
+     * network with circular and one way lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("loop.timetable"));
+            ConnectionScanPlanner planner = new ConnectionScanPlanner(network, timetable);
+            int departure = Timetable.parseTime("07.55");
+
+            // The backward trip of the circular line arrives before the forward one
+            Route route = planner.findTimedRoute(network.getStation("D"), network.getStation("A"), departure);
+            Assertions.assertEquals(1, route.getCount(), "Not a single trip");
+            Assertions.assertEquals(network.getLine("Ring").getTerminalA(), route.get(0).getDirection(), "Not the backward trip");
+            Assertions.assertEquals(Timetable.parseTime("08.09"), planner.getArrivalTime(), "Not the earliest arrival");
+
+            // Once the backward trip has left, the forward trip passes the terminal of the circular line
+            route = planner.findTimedRoute(network.getStation("E"), network.getStation("A"), Timetable.parseTime("08.02"));
+            Assertions.assertEquals(1, route.getCount(), "Not a single trip");
+            Assertions.assertTrue(route.get(0).usesCircular(), "The circular nature of the line is not used");
+            Assertions.assertEquals(Timetable.parseTime("08.10"), planner.getArrivalTime(), "Not the earliest arrival");
+
+            // Down the one way line, around the circle and on to the one way loop
+            route = planner.findTimedRoute(network.getStation("I"), network.getStation("F"), departure);
+            Assertions.assertEquals(3, route.getCount(), "Not two transfers");
+            Assertions.assertEquals(network.getLine("Loop"), route.get(2).getLine(), "Not the loop trip");
+            Assertions.assertEquals(Timetable.parseTime("08.10"), ((TimedRouteSegment) route.get(2)).getDeparture(),
+                    "Not the second loop trip");
+            Assertions.assertEquals(Timetable.parseTime("08.12"), planner.getArrivalTime(), "Not the earliest arrival");
+
+            // A trip of a circular line ends where it began, so going on means changing to the next trip
+            route = planner.findTimedRoute(network.getStation("G"), network.getStation("F"), departure);
+            Assertions.assertEquals(Timetable.parseTime("08.22"), planner.getArrivalTime(), "Not the earliest arrival");
+            Assertions.assertEquals(network.getStation("E"), route.get(route.getCount() - 1).getFromStation(),
+                    "Not the change at the terminal");
+
+            // Against the direction of a one way line
+            Assertions.assertTrue(planner.findTimedRoute(network.getStation("D"), network.getStation("I"), departure)
+                    .isEmpty(), "A trip against the direction was found");
+            Assertions.assertEquals(-1, planner.getArrivalTime(), "An arrival was found");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findTimedRoute, of class ConnectionScanPlanner, after a
+     * station of the timetable is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("loop.timetable"));
+            ConnectionScanPlanner planner = new ConnectionScanPlanner(network, timetable);
+            int departure = Timetable.parseTime("07.55");
+            planner.findTimedRoute(network.getStation("B"), network.getStation("D"), departure);
+            Assertions.assertEquals(Timetable.parseTime("08.06"), planner.getArrivalTime(), "Not the earliest arrival");
+
+            // The connections hold the positions of the stops before the edit
+            network.closeStation(network.getStation("C"));
+            Assertions.assertFalse(timetable.isCurrent(network), "The timetable is current");
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.findTimedRoute(network.getStation("B"), network.getStation("D"), departure));
+
+            // A timetable read after the edit runs past the closed station, at the run times added up
+            ConnectionScanPlanner reread = new ConnectionScanPlanner(network,
+                    new Timetable(network, getClass().getResource("loop.timetable")));
+            Route route = reread.findTimedRoute(network.getStation("B"), network.getStation("D"), departure);
+            Assertions.assertEquals(1, route.getCount(), "Not a single trip");
+            Assertions.assertEquals(Timetable.parseTime("08.06"), reread.getArrivalTime(), "Not the earliest arrival");
+            Assertions.assertEquals(1, reread.findCompactRoute(network.getStation("B"), network.getStation("D")).getStops(),
+                    "The closed station was passed");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the ContractionHierarchy and ContractionPlanner
+ * classes.
+ *
+ * @author sanderjurgens
+ */
+public class ContractionHierarchyTest {
+
+    /**
+     * Unit test of findRoute and getDistance, of class ContractionPlanner,
+     * against the MinStopsPlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            StationGraph graph = new StationGraph(network);
+            ContractionHierarchy hierarchy = new ContractionHierarchy(graph);
+            for (int v = 0; v < graph.getStationCount(); v++) {
+                for (int e = hierarchy.getUpBegin(v); e < hierarchy.getUpEnd(v); e++) {
+                    Assertions.assertTrue(hierarchy.getRank(v) < hierarchy.getRank(hierarchy.getUpHead(e)),
+                            "An upward edge does not lead to a more important station");
+                }
+            }
+
+            Planner stops = new MinStopsPlanner(network);
+            ContractionPlanner planner = new ContractionPlanner(network, graph, hierarchy);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    int expected = stops.findCompactRoute(from, to).getStops();
+                    Assertions.assertEquals(expected, planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    Assertions.assertEquals(expected, planner.getDistance(from, to),
+                            "Not the minimum distance from " + from + " to " + to);
+                    Route route = planner.findRoute(from, to);
+                    for (int i = 1; i < route.getCount(); i++) {
+                        Assertions.assertEquals(route.get(i - 1).getToStation(), route.get(i).getFromStation(),
+                                "The segments of the route are not connected");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of write and read, of class ContractionHierarchy, on a network
+     * with circular and one way lines.
+     */
+    @Test
+    public void testWriteRead() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            ContractionHierarchy hierarchy = new ContractionHierarchy(graph);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            hierarchy.write(out);
+            ContractionHierarchy copy = ContractionHierarchy.read(new ByteArrayInputStream(out.toByteArray()));
+            Assertions.assertTrue(copy.fits(graph), "The hierarchy read does not fit the graph");
+            Assertions.assertEquals(hierarchy.getShortcutCount(), copy.getShortcutCount(),
+                    "Not all shortcuts were read");
+
+            Planner stops = new MinStopsPlanner(network);
+            Planner planner = new ContractionPlanner(network, graph, copy);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+
+            // Ride the one way line to its end, then take the circular one way line
+            CompactRoute route = planner.findCompactRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(3, route.getStops(), "Not the minimum number of stops");
+            Assertions.assertEquals(2, route.getCount(), "The rides were not combined into segments");
+
+            // Against the direction of a one way line
+            route = planner.findCompactRoute(network.getStation("D"), network.getStation("I"));
+            Assertions.assertTrue(route.isEmpty(), "A route against the direction was found");
+
+            // Not a hierarchy
+            Assertions.assertThrows(IOException.class,
+                    () -> ContractionHierarchy.read(new ByteArrayInputStream(new byte[8])));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of fits, of class ContractionHierarchy, for a hierarchy read
+     * back for another network of the same size.
+     */
+    @Test
+    public void testFits() {
+        try {
+            Network network = new Network(getClass().getResource("edit.network"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new ContractionHierarchy(new StationGraph(network)).write(out);
+            ContractionHierarchy copy = ContractionHierarchy.read(new ByteArrayInputStream(out.toByteArray()));
+            Assertions.assertTrue(copy.fits(new StationGraph(new Network(getClass().getResource("edit.network")))),
+                    "The hierarchy does not fit the network read again");
+
+            // Two stops of a line are swapped, which keeps the number of stations and edges
+            Network swapped = new Network(getClass().getResource("swapped.network"));
+            StationGraph graph = new StationGraph(swapped);
+            Assertions.assertEquals(copy.getStationCount(), graph.getStationCount(), "Not the same number of stations");
+            Assertions.assertFalse(copy.fits(graph), "The hierarchy fits another network");
+            Assertions.assertThrows(IllegalRequestException.class, () -> new ContractionPlanner(swapped, graph, copy),
+                    "The hierarchy of another network was accepted");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute and getDistance, of class ContractionPlanner,
+     * after a station is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("edit.network"));
+            StationGraph graph = new StationGraph(network);
+            ContractionPlanner planner = new ContractionPlanner(network, graph, new ContractionHierarchy(graph));
+            Station a = network.getStation("A");
+            Station u = network.getStation("U");
+            Assertions.assertEquals(3, planner.getDistance(a, u), "Not the minimum distance");
+            Assertions.assertTrue(graph.isCurrent(network), "The graph is not current");
+
+            // The hierarchy no longer fits the network
+            network.closeStation(network.getStation("T"));
+            Assertions.assertFalse(graph.isCurrent(network), "The graph is still current");
+            Assertions.assertThrows(IllegalRequestException.class, () -> planner.findRoute(a, u));
+            Assertions.assertThrows(IllegalRequestException.class, () -> planner.getDistance(a, u));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the DistanceTable and DescentPlanner classes.
+ *
+ * @author sanderjurgens
+ */
+public class DistanceTableTest {
+
+    /**
+     * Unit test of getDistance and findRoute, of class DescentPlanner with a
+     * DistanceTable, against the MinStopsPlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            StationGraph graph = new StationGraph(network);
+            DistanceTable table = new DistanceTable(graph);
+            Assertions.assertTrue(table.isHalf(), "The symmetric matrix was stored in full");
+            Assertions.assertEquals(1, table.getCellSize(), "The distances were not stored as bytes");
+            int n = network.getStationSet().getCount();
+            Assertions.assertEquals((long) n * (n + 1) / 2, table.getMemoryUsage(), "The memory use is not correct");
+
+            Planner stops = new MinStopsPlanner(network);
+            DescentPlanner planner = new DescentPlanner(network, graph, table);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    CompactRoute expected = stops.findCompactRoute(from, to);
+                    CompactRoute route = planner.findCompactRoute(from, to);
+                    Assertions.assertEquals(expected.getStops(), planner.getDistance(from, to),
+                            "The distance from " + from + " to " + to + " is not correct");
+                    Assertions.assertEquals(expected.getStops(), route.getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    Route r = route.toRoute();
+                    for (int i = 1; i < r.getCount(); i++) {
+                        Assertions.assertEquals(r.get(i - 1).getToStation(), r.get(i).getFromStation(),
+                                "The segments of the route are not connected");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of getDistance and findRoute, of class DescentPlanner with a
+     * DistanceTable, on a network with circular and one way lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            DistanceTable table = new DistanceTable(graph);
+            Assertions.assertFalse(table.isHalf(), "The asymmetric matrix was stored in half");
+            DescentPlanner planner = new DescentPlanner(network, graph, table);
+
+            // Ride the one way line to its end, then take the circular one way line
+            Assertions.assertEquals(3, planner.getDistance(network.getStation("G"), network.getStation("F")),
+                    "The distance is not correct");
+            Route route = planner.findRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(2, route.getCount(), "The rides were not combined into segments");
+            Assertions.assertTrue(route.get(1).usesCircular(), "The circular nature of the line is not used");
+
+            // Against the direction of a one way line
+            Assertions.assertEquals(-1, planner.getDistance(network.getStation("D"), network.getStation("I")),
+                    "The distance is not correct");
+            Assertions.assertTrue(planner.findRoute(network.getStation("D"), network.getStation("I")).isEmpty(),
+                    "A route against the direction was found");
+            Assertions.assertEquals(0, planner.getDistance(network.getStation("A"), network.getStation("A")),
+                    "The distance is not correct");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of getDistance, of class DescentPlanner with a DistanceTable,
+     * after a station on a circular and a one way line is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            DescentPlanner planner = new DescentPlanner(network, graph, new DistanceTable(graph));
+            Assertions.assertEquals(1, planner.getDistance(network.getStation("D"), network.getStation("E")),
+                    "The distance is not correct");
+
+            // The table holds the distances of the old graph
+            network.closeStation(network.getStation("E"));
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.getDistance(network.getStation("D"), network.getStation("A")));
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.findRoute(network.getStation("D"), network.getStation("A")));
+
+            // A table built after the edit closes the circle over the removed stop
+            StationGraph edited = new StationGraph(network);
+            DescentPlanner rebuilt = new DescentPlanner(network, edited, new DistanceTable(edited));
+            Planner stops = new MinStopsPlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    CompactRoute route = stops.findCompactRoute(from, to);
+                    Assertions.assertEquals(route.isEmpty() && from != to ? -1 : route.getStops(),
+                            rebuilt.getDistance(from, to),
+                            "The distance from " + from + " to " + to + " is not correct");
+                }
+            }
+            Assertions.assertEquals(1, rebuilt.getDistance(network.getStation("D"), network.getStation("A")),
+                    "The distance is not correct");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the FirstMoveDatabase and FirstMovePlanner classes.
+ *
+ * @author sanderjurgens
+ */
+public class FirstMoveDatabaseTest {
+
+    /**
+     * Unit test of findRoute, of class FirstMovePlanner, against the
+     * MinStopsPlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            StationGraph graph = new StationGraph(network);
+            FirstMoveDatabase database = new FirstMoveDatabase(graph);
+            int n = network.getStationSet().getCount();
+            Assertions.assertTrue(database.getRunCount() < n * (n - 1) / 4, "The first moves were not compressed");
+
+            Planner stops = new MinStopsPlanner(network);
+            Planner planner = new FirstMovePlanner(network, graph, database);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    Route route = planner.findRoute(from, to);
+                    for (int i = 1; i < route.getCount(); i++) {
+                        Assertions.assertEquals(route.get(i - 1).getToStation(), route.get(i).getFromStation(),
+                                "The segments of the route are not connected");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of write and read, of class FirstMoveDatabase, on a network
+     * with circular and one way lines.
+     */
+    @Test
+    public void testWriteRead() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            FirstMoveDatabase database = new FirstMoveDatabase(graph);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            database.write(out);
+            FirstMoveDatabase copy = FirstMoveDatabase.read(new ByteArrayInputStream(out.toByteArray()));
+            Assertions.assertTrue(copy.fits(graph), "The database read does not fit the graph");
+            Assertions.assertEquals(database.getRunCount(), copy.getRunCount(), "Not all runs were read");
+            for (int from = 0; from < graph.getStationCount(); from++) {
+                for (int to = 0; to < graph.getStationCount(); to++) {
+                    if (from != to) {
+                        Assertions.assertEquals(database.getMove(from, to), copy.getMove(from, to),
+                                "The move read is not correct");
+                    }
+                }
+            }
+
+            // Ride the one way line to its end, then take the circular one way line
+            Planner planner = new FirstMovePlanner(network, graph, copy);
+            CompactRoute route = planner.findCompactRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(3, route.getStops(), "Not the minimum number of stops");
+            Assertions.assertEquals(2, route.getCount(), "The rides were not combined into segments");
+
+            // Against the direction of a one way line
+            route = planner.findCompactRoute(network.getStation("D"), network.getStation("I"));
+            Assertions.assertTrue(route.isEmpty(), "A route against the direction was found");
+
+            // Two stops of a line are swapped, which keeps the number of stations and edges
+            out = new ByteArrayOutputStream();
+            new FirstMoveDatabase(new StationGraph(new Network(getClass().getResource("edit.network")))).write(out);
+            copy = FirstMoveDatabase.read(new ByteArrayInputStream(out.toByteArray()));
+            Network swapped = new Network(getClass().getResource("swapped.network"));
+            StationGraph other = new StationGraph(swapped);
+            Assertions.assertEquals(copy.getStationCount(), other.getStationCount(), "Not the same number of stations");
+            Assertions.assertFalse(copy.fits(other), "The database fits another network");
+            FirstMoveDatabase stored = copy;
+            Assertions.assertThrows(IllegalRequestException.class, () -> new FirstMovePlanner(swapped, other, stored),
+                    "The database of another network was accepted");
+
+            // Not a database
+            Assertions.assertThrows(IOException.class,
+                    () -> FirstMoveDatabase.read(new ByteArrayInputStream(new byte[8])));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class FirstMovePlanner, after a station on a
+     * circular and a one way line is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            Planner planner = new FirstMovePlanner(network, graph, new FirstMoveDatabase(graph));
+            Assertions.assertEquals(3, planner.findCompactRoute(network.getStation("G"), network.getStation("F")).getStops(),
+                    "Not the minimum number of stops");
+
+            // The moves were computed for the old graph
+            network.closeStation(network.getStation("H"));
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.findCompactRoute(network.getStation("G"), network.getStation("F")));
+
+            // A database built after the edit goes around the closed station
+            StationGraph edited = new StationGraph(network);
+            Planner stops = new MinStopsPlanner(network);
+            Planner rebuilt = new FirstMovePlanner(network, edited, new FirstMoveDatabase(edited));
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            rebuilt.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+            Route route = rebuilt.findRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertFalse(route.isEmpty(), "No route around the closed station was found");
+            Assertions.assertEquals(network.getStation("F"), route.get(route.getCount() - 1).getToStation(),
+                    "The route does not end at the destination");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the FrequencyPlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class FrequencyPlannerTest {
+
+    /**
+     * Unit test of findRoute, of class FrequencyPlanner, against the
+     * MinStopsPlanner on the Paris network, which has no run times or
+     * headways.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Planner stops = new MinStopsPlanner(network);
+            FrequencyPlanner planner = new FrequencyPlanner(network);
+            int wait = Line.DEFAULT_HEADWAY / 2;
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    if (from == to) {
+                        continue;
+                    }
+                    CompactRoute expected = stops.findCompactRoute(from, to);
+                    CompactRoute route = planner.findCompactRoute(from, to);
+                    Assertions.assertEquals(Line.DEFAULT_RUN_TIME * route.getStops() + wait * route.getCount(),
+                            planner.getExpectedTime(), "Not the expected travel time from " + from + " to " + to);
+                    Assertions.assertTrue(planner.getExpectedTime() <= Line.DEFAULT_RUN_TIME * expected.getStops()
+                            + wait * expected.getCount(), "Not the minimum expected travel time from " + from + " to " + to);
+                    Route r = route.toRoute();
+                    Assertions.assertEquals(from, r.get(0).getFromStation(), "The route does not begin at the origin");
+                    Assertions.assertEquals(to, r.get(r.getCount() - 1).getToStation(),
+                            "The route does not end at the destination");
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class FrequencyPlanner, on a network with
+     * run times, transfer times and headways.
+     */
+    @Test
+    public void testHeadways() {
+        try {
+            Network network = new Network(getClass().getResource("timed.network"));
+            Assertions.assertEquals(1200, network.getLine("Express").getHeadway(), "The headway was not read");
+            Assertions.assertEquals(Line.DEFAULT_HEADWAY, network.getLine("Branch").getHeadway(),
+                    "The headway is not the default");
+
+            // The express line is faster, but the wait for it is too long
+            FrequencyPlanner planner = new FrequencyPlanner(network);
+            CompactRoute route = planner.findCompactRoute(network.getStation("A"), network.getStation("D"));
+            Assertions.assertEquals(60 + 800, planner.getExpectedTime(), "Not the minimum expected travel time");
+            Assertions.assertEquals(network.getLine("Local"), route.toRoute().get(0).getLine(), "Not the local line");
+
+            // A transfer waits for the next line as well
+            route = planner.findCompactRoute(network.getStation("A"), network.getStation("F"));
+            Assertions.assertEquals(60 + 400 + 30 + 100, planner.getExpectedTime(),
+                    "Not the minimum expected travel time");
+            Assertions.assertEquals(2, route.getCount(), "Not a transfer");
+
+            // A station on the express line only waits for it
+            route = planner.findCompactRoute(network.getStation("A"), network.getStation("E"));
+            Assertions.assertEquals(600 + 2 * Line.DEFAULT_RUN_TIME, planner.getExpectedTime(),
+                    "Not the minimum expected travel time");
+            Assertions.assertEquals(1, route.getCount(), "Not a single ride");
+
+            // Riding through a closed station takes the run times on both sides
+            network.closeStation(network.getStation("B"));
+            planner.findCompactRoute(network.getStation("A"), network.getStation("D"));
+            Assertions.assertEquals(60 + 800, planner.getExpectedTime(), "Not the minimum expected travel time");
+
+            // Unreachable and trivial queries
+            planner.findCompactRoute(network.getStation("B"), network.getStation("A"));
+            Assertions.assertEquals(-1, planner.getExpectedTime(), "A closed station was reached");
+            Assertions.assertTrue(planner.findCompactRoute(network.getStation("A"), network.getStation("A")).isEmpty(),
+                    "A route to the origin was found");
+            Assertions.assertEquals(0, planner.getExpectedTime(), "The origin is not reached at once");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class FrequencyPlanner, on a network with
+     * circular and one way lines, before and after a station is closed.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            FrequencyPlanner planner = new FrequencyPlanner(network);
+            int wait = Line.DEFAULT_HEADWAY / 2;
+
+            // Ride the one way line to its end, then take the circular one way line
+            Route route = planner.findRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(2, route.getCount(), "The rides were not combined into segments");
+            Assertions.assertTrue(route.get(1).usesCircular(), "The circular nature of the line is not used");
+            Assertions.assertEquals(3 * Line.DEFAULT_RUN_TIME + 2 * wait, planner.getExpectedTime(),
+                    "Not the expected travel time");
+            Assertions.assertTrue(planner.findRoute(network.getStation("D"), network.getStation("I")).isEmpty(),
+                    "A route against the direction was found");
+
+            // Without the end of the one way line, the circular line is reached over the other one, and the
+            // run times on both sides of the closed station add up
+            network.closeStation(network.getStation("H"));
+            Planner stops = new MinStopsPlanner(network);
+            FrequencyPlanner fresh = new FrequencyPlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).isEmpty(),
+                            planner.findCompactRoute(from, to).isEmpty(),
+                            "Not the same reachability from " + from + " to " + to);
+                    fresh.findCompactRoute(from, to);
+                    Assertions.assertEquals(fresh.getExpectedTime(), planner.getExpectedTime(),
+                            "Not the expected travel time from " + from + " to " + to);
+                }
+            }
+            planner.findCompactRoute(network.getStation("F"), network.getStation("E"));
+            Assertions.assertEquals(2 * Line.DEFAULT_RUN_TIME + wait, planner.getExpectedTime(),
+                    "The run times around the closed station were not added up");
+            route = planner.findRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(network.getStation("F"), route.get(route.getCount() - 1).getToStation(),
+                    "The route does not end at the destination");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the GeographicPlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class GeographicPlannerTest {
+
+    /**
+     * Unit test of findRoute, of class GeographicPlanner, against the
+     * MinTimePlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            MinTimePlanner times = new MinTimePlanner(network);
+            GeographicPlanner planner = new GeographicPlanner(network);
+            Assertions.assertTrue(planner.isGeographic(), "The locations of the stations were not used");
+            Assertions.assertTrue(planner.getMaxSpeed() > 0, "The maximum speed is not positive");
+            long expanded = 0;
+            long guided = 0;
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    times.findCompactRoute(from, to);
+                    CompactRoute route = planner.findCompactRoute(from, to);
+                    Assertions.assertEquals(times.getTime(), planner.getTime(),
+                            "Not the minimum travel time from " + from + " to " + to);
+                    Route r = route.toRoute();
+                    if (!r.isEmpty()) {
+                        Assertions.assertEquals(from, r.get(0).getFromStation(), "The route does not begin at the origin");
+                        Assertions.assertEquals(to, r.get(r.getCount() - 1).getToStation(),
+                                "The route does not end at the destination");
+                    }
+                    expanded = expanded + times.getSettledCount();
+                    guided = guided + planner.getSettledCount();
+                }
+            }
+            Assertions.assertTrue(guided < expanded, "The search was not guided towards the destination");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class GeographicPlanner, on a network without
+     * locations, where the search is not guided.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            MinTimePlanner times = new MinTimePlanner(network);
+            GeographicPlanner planner = new GeographicPlanner(network);
+            Assertions.assertFalse(planner.isGeographic(), "Stations without location were used");
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(times.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum travel time from " + from + " to " + to);
+                    Assertions.assertEquals(times.getTime(), planner.getTime(),
+                            "Not the minimum travel time from " + from + " to " + to);
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class GeographicPlanner, after a station is
+     * closed on the Paris network.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            GeographicPlanner planner = new GeographicPlanner(network);
+            Station from = network.getStation("LOR");
+            Station to = network.getStation("HOT");
+            Assertions.assertEquals(2, planner.findCompactRoute(from, to).getStops(), "Not the minimum number of stops");
+
+            // The planner is rebuilt for the network after the edit
+            network.closeStation(network.getStation("CHA"));
+            Assertions.assertTrue(planner.findCompactRoute(from, network.getStation("CHA")).isEmpty(),
+                    "A closed station was reached");
+            Assertions.assertEquals(1, planner.findCompactRoute(from, to).getStops(), "The closed station was passed");
+            Assertions.assertTrue(planner.isGeographic(), "The locations of the stations were not used");
+
+            MinTimePlanner times = new MinTimePlanner(network);
+            for (Station s : network.getStationSet()) {
+                times.findCompactRoute(from, s);
+                planner.findCompactRoute(from, s);
+                Assertions.assertEquals(times.getTime(), planner.getTime(),
+                        "Not the minimum travel time from " + from + " to " + s);
+                times.findCompactRoute(s, to);
+                planner.findCompactRoute(s, to);
+                Assertions.assertEquals(times.getTime(), planner.getTime(),
+                        "Not the minimum travel time from " + s + " to " + to);
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
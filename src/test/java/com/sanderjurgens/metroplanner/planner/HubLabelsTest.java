@@ -0,0 +1,119 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the HubLabels class.
+ *
+ * @author sanderjurgens
+ */
+public class HubLabelsTest {
+
+    /**
+     * Unit test of getDistance, of class HubLabels, against the DistanceTable
+     * on the Paris network, for both orders of importance.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            StationGraph graph = new StationGraph(network);
+            DistanceTable table = new DistanceTable(graph);
+            HubLabels degree = new HubLabels(graph);
+            HubLabels contraction = new HubLabels(graph, new ContractionHierarchy(graph));
+            int n = graph.getStationCount();
+            Assertions.assertTrue(degree.getAverageLabelSize() < n / 4, "The labels were not pruned");
+            Assertions.assertTrue(contraction.getMaxLabelSize() < n / 2, "The labels were not pruned");
+            for (int from = 0; from < n; from++) {
+                for (int to = 0; to < n; to++) {
+                    Assertions.assertEquals(table.getDistance(from, to), degree.getDistance(from, to),
+                            "The distance from " + from + " to " + to + " is not correct");
+                    Assertions.assertEquals(table.getDistance(from, to), contraction.getDistance(from, to),
+                            "The distance from " + from + " to " + to + " is not correct");
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of getDistance, of class HubLabels, and findRoute, of class
+     * DescentPlanner with HubLabels, on a network with circular and one way
+     * lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            DistanceTable table = new DistanceTable(graph);
+            HubLabels labels = new HubLabels(graph);
+            Assertions.assertTrue(labels.fits(graph), "The labels do not fit the graph");
+
+            Planner stops = new MinStopsPlanner(network);
+            DescentPlanner planner = new DescentPlanner(network, graph, labels);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    int f = network.getStationSet().getIndex(from);
+                    int t = network.getStationSet().getIndex(to);
+                    Assertions.assertEquals(table.getDistance(f, t), labels.getDistance(f, t),
+                            "The distance from " + from + " to " + to + " is not correct");
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+
+            // Against the direction of a one way line
+            Assertions.assertEquals(-1, planner.getDistance(network.getStation("D"), network.getStation("I")),
+                    "The distance is not correct");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of getDistance, of class HubLabels, after a station on a
+     * circular and a one way line is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            HubLabels labels = new HubLabels(graph);
+            DescentPlanner planner = new DescentPlanner(network, graph, labels);
+            Assertions.assertEquals(2, planner.getDistance(network.getStation("G"), network.getStation("C")),
+                    "The distance is not correct");
+
+            // The labels were computed for the old graph
+            network.closeStation(network.getStation("B"));
+            StationGraph edited = new StationGraph(network);
+            Assertions.assertFalse(labels.fits(edited), "The old labels fit the new graph");
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.getDistance(network.getStation("G"), network.getStation("C")));
+
+            // Labels computed after the edit agree with a table of the new graph
+            DistanceTable table = new DistanceTable(edited);
+            HubLabels relabeled = new HubLabels(edited);
+            for (int f = 0; f < edited.getStationCount(); f++) {
+                for (int t = 0; t < edited.getStationCount(); t++) {
+                    Assertions.assertEquals(table.getDistance(f, t), relabeled.getDistance(f, t),
+                            "The distance from " + f + " to " + t + " is not correct");
+                }
+            }
+            DescentPlanner rebuilt = new DescentPlanner(network, edited, relabeled);
+            Route route = rebuilt.findRoute(network.getStation("G"), network.getStation("C"));
+            Assertions.assertEquals(network.getStation("C"), route.get(route.getCount() - 1).getToStation(),
+                    "The route does not end at the destination");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
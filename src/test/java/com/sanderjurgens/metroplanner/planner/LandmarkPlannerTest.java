@@ -0,0 +1,91 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the LandmarkPlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class LandmarkPlannerTest {
+
+    /**
+     * Unit test of findRoute, of class LandmarkPlanner, against the
+     * MinStopsPlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Planner stops = new MinStopsPlanner(network);
+            LandmarkPlanner planner = new LandmarkPlanner(network, 8);
+            Assertions.assertEquals(8, planner.getLandmarkCount(), "Not all landmarks were chosen");
+            long settled = 0;
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    settled = settled + planner.getSettledCount();
+                    Route route = planner.findRoute(from, to);
+                    for (int i = 1; i < route.getCount(); i++) {
+                        Assertions.assertEquals(route.get(i - 1).getToStation(), route.get(i).getFromStation(),
+                                "The segments of the route are not connected");
+                    }
+                }
+            }
+            int n = network.getStationSet().getCount();
+            Assertions.assertTrue(settled < (long) n * n * n / 4, "The search was not guided by the landmarks");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class LandmarkPlanner, on a network with
+     * circular and one way lines, before and after an edit.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            Planner stops = new MinStopsPlanner(network);
+            LandmarkPlanner planner = new LandmarkPlanner(network, 3);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+
+            // Ride the one way line to its end, then take the circular one way line
+            CompactRoute route = planner.findCompactRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(3, route.getStops(), "Not the minimum number of stops");
+            Assertions.assertEquals(2, route.getCount(), "The rides were not combined into segments");
+
+            // Against the direction of a one way line
+            route = planner.findCompactRoute(network.getStation("D"), network.getStation("I"));
+            Assertions.assertTrue(route.isEmpty(), "A route against the direction was found");
+
+            // The landmarks are rebuilt after the network is edited
+            network.closeStation(network.getStation("H"));
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+
+            Assertions.assertThrows(IllegalRequestException.class, () -> new LandmarkPlanner(network, 0));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the MinTimePlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class MinTimePlannerTest {
+
+    /**
+     * Unit test of findRoute, of class MinTimePlanner, against the
+     * MinStopsPlanner on the Paris network, which has no run times.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Planner stops = new MinStopsPlanner(network);
+            MinTimePlanner planner = new MinTimePlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    CompactRoute expected = stops.findCompactRoute(from, to);
+                    CompactRoute route = planner.findCompactRoute(from, to);
+                    Assertions.assertEquals(expected.getStops(), route.getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    Assertions.assertEquals(Line.DEFAULT_RUN_TIME * route.getStops(), planner.getTime(),
+                            "Not the travel time from " + from + " to " + to);
+                    Route r = route.toRoute();
+                    if (!r.isEmpty()) {
+                        Assertions.assertEquals(from, r.get(0).getFromStation(), "The route does not begin at the origin");
+                        Assertions.assertEquals(to, r.get(r.getCount() - 1).getToStation(),
+                                "The route does not end at the destination");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class MinTimePlanner, on a network with run
+     * times and transfer times, before and after an edit.
+     */
+    @Test
+    public void testTimes() {
+        try {
+            Network network = new Network(getClass().getResource("timed.network"));
+            Assertions.assertEquals(400, network.getLine("Local").getRunTime(1), "The run time was not read");
+            Assertions.assertEquals(Line.DEFAULT_RUN_TIME, network.getLine("Express").getRunTime(0),
+                    "The run time is not the default");
+            Assertions.assertEquals(300, network.getStation("C").getTransferTime(), "The transfer time was not read");
+            Assertions.assertEquals(Station.DEFAULT_TRANSFER_TIME, network.getStation("B").getTransferTime(),
+                    "The transfer time is not the default");
+
+            // More stops on the express line are faster
+            MinTimePlanner planner = new MinTimePlanner(network);
+            CompactRoute route = planner.findCompactRoute(network.getStation("A"), network.getStation("D"));
+            Assertions.assertEquals(3 * Line.DEFAULT_RUN_TIME, planner.getTime(), "Not the minimum travel time");
+            Assertions.assertEquals(3, route.getStops(), "Not the express line");
+            Assertions.assertEquals(1, route.getCount(), "The rides were not combined into segments");
+
+            // The slow transfer at C makes the local line faster
+            route = planner.findCompactRoute(network.getStation("A"), network.getStation("F"));
+            Assertions.assertEquals(500, planner.getTime(), "Not the minimum travel time");
+            Assertions.assertEquals(network.getStation("B"), route.toRoute().get(0).getToStation(),
+                    "The transfer time was not counted");
+
+            // Riding through a closed station takes the run times on both sides
+            network.closeStation(network.getStation("C"));
+            route = planner.findCompactRoute(network.getStation("E"), network.getStation("A"));
+            Assertions.assertEquals(2 * Line.DEFAULT_RUN_TIME, planner.getTime(), "Not the minimum travel time");
+            Assertions.assertEquals(1, route.getStops(), "The closed station was not skipped");
+
+            // Unreachable and trivial queries
+            planner.findCompactRoute(network.getStation("C"), network.getStation("A"));
+            Assertions.assertEquals(-1, planner.getTime(), "A closed station was reached");
+            Assertions.assertTrue(planner.findCompactRoute(network.getStation("A"), network.getStation("A")).isEmpty(),
+                    "A route to the origin was found");
+            Assertions.assertEquals(0, planner.getTime(), "The origin is not reached at once");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class MinTimePlanner, against the
+     * MinStopsPlanner on a network with circular and one way lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            Planner stops = new MinStopsPlanner(network);
+            MinTimePlanner planner = new MinTimePlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    CompactRoute expected = stops.findCompactRoute(from, to);
+                    CompactRoute route = planner.findCompactRoute(from, to);
+                    Assertions.assertEquals(expected.isEmpty(), route.isEmpty(),
+                            "Not the same reachability from " + from + " to " + to);
+                    Assertions.assertEquals(expected.getStops(), route.getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    if (!route.isEmpty()) {
+                        Assertions.assertEquals(Line.DEFAULT_RUN_TIME * route.getStops(), planner.getTime(),
+                                "Not the travel time from " + from + " to " + to);
+                    }
+                }
+            }
+
+            // Ride the one way line to its end, then take the circular one way line
+            Route route = planner.findRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(2, route.getCount(), "The rides were not combined into segments");
+            Assertions.assertTrue(route.get(1).usesCircular(), "The circular nature of the line is not used");
+
+            // Against the direction of a one way line
+            Assertions.assertTrue(planner.findRoute(network.getStation("D"), network.getStation("I")).isEmpty(),
+                    "A route against the direction was found");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
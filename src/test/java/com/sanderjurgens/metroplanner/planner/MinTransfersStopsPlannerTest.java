@@ -0,0 +1,138 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the MinTransfersStopsPlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class MinTransfersStopsPlannerTest {
+
+    /**
+     * Returns the number of stops traveled along a route.
+     *
+     * @param route a given route
+     * @return the number of stops traveled along the route
+     */
+    private static int countStops(Route route) {
+        int count = 0;
+        for (RouteSegment segment : route) {
+            Line line = segment.getLine();
+            int f = line.getIndex(segment.getFromStation());
+            int t = line.getIndex(segment.getToStation());
+            if (segment.getDirection() == line.getTerminalB()) {
+                count = count + Math.floorMod(t - f, line.getCount());
+            } else {
+                count = count + Math.floorMod(f - t, line.getCount());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Unit test of findRoute, of class MinTransfersStopsPlanner, against the
+     * other planners on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Planner transfers = new MinTransfersPlanner(network);
+            Planner stops = new MinStopsPlanner(network);
+            Planner planner = new MinTransfersStopsPlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Route route = planner.findRoute(from, to);
+                    Route expected = transfers.findRoute(from, to);
+                    Assertions.assertEquals(expected.getCount(), route.getCount(),
+                            "Not the minimum number of transfers from " + from + " to " + to);
+                    Assertions.assertTrue(countStops(route) <= countStops(expected),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    Assertions.assertTrue(countStops(route) >= countStops(stops.findRoute(from, to)),
+                            "Less than the minimum number of stops from " + from + " to " + to);
+                    for (int i = 1; i < route.getCount(); i++) {
+                        Assertions.assertEquals(route.get(i - 1).getToStation(), route.get(i).getFromStation(),
+                                "The segments of the route are not connected");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class MinTransfersStopsPlanner, on a network
+     * with circular and one way lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            Planner planner = new MinTransfersStopsPlanner(network);
+
+            // Ride the one way line to its end, then take the circular one way line
+            Route route = planner.findRoute(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(2, route.getCount(), "Not the minimum number of transfers");
+            Assertions.assertEquals(3, countStops(route), "Not the minimum number of stops");
+            Assertions.assertTrue(route.get(1).usesCircular(), "The circular nature of the line is not used");
+
+            // The shorter way around the circular line
+            route = planner.findRoute(network.getStation("A"), network.getStation("E"));
+            Assertions.assertEquals(1, route.getCount(), "Not the minimum number of transfers");
+            Assertions.assertEquals(1, countStops(route), "Not the minimum number of stops");
+            Assertions.assertEquals(network.getStation("A"), route.get(0).getDirection(),
+                    "The direction is not correct");
+
+            // Against the direction of a one way line
+            route = planner.findRoute(network.getStation("D"), network.getStation("I"));
+            Assertions.assertTrue(route.isEmpty(), "A route against the direction was found");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class MinTransfersStopsPlanner, on a planner that was built
+     * before a station of the network was closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("edit.network"));
+            Planner planner = new MinTransfersStopsPlanner(network);
+            Assertions.assertEquals(1, planner.findRoute(network.getStation("A"), network.getStation("U")).getCount(),
+                    "Not a single ride");
+
+            // The closed station is no longer reached, and the stops after it have moved
+            network.closeStation(network.getStation("U"));
+            Assertions.assertTrue(planner.findRoute(network.getStation("A"), network.getStation("U")).isEmpty(),
+                    "A closed station was reached");
+            Route route = planner.findRoute(network.getStation("T"), network.getStation("B"));
+            Assertions.assertEquals(1, route.getCount(), "Not a single ride");
+            Assertions.assertEquals(network.getStation("B"), route.get(0).getToStation(),
+                    "The route does not end at the destination");
+
+            // The planner answers like a planner built after the edit
+            Planner fresh = new MinTransfersStopsPlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    CompactRoute expected = fresh.findCompactRoute(from, to);
+                    CompactRoute actual = planner.findCompactRoute(from, to);
+                    Assertions.assertEquals(expected.getCount(), actual.getCount(),
+                            "Not the same number of rides from " + from + " to " + to);
+                    Assertions.assertEquals(expected.getStops(), actual.getStops(),
+                            "Not the same number of stops from " + from + " to " + to);
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the OverlayGraph and OverlayPlanner classes.
+ *
+ * @author sanderjurgens
+ */
+public class OverlayGraphTest {
+
+    /**
+     * Returns the cost of the cheapest route between all stations of an
+     * overlay, by a plain Dijkstra search over the edges.
+     *
+     * @param overlay a given overlay
+     * @param from the index of the origin
+     * @return the cost of each station, or -1 if it cannot be reached
+     */
+    private static int[] dijkstra(OverlayGraph overlay, int from) {
+        StationGraph graph = overlay.getGraph();
+        int[] costs = new int[graph.getStationCount()];
+        Arrays.fill(costs, -1);
+        IntHeap heap = new IntHeap(graph.getStationCount());
+        heap.offer(from, 0);
+        while (!heap.isEmpty()) {
+            int d = heap.peekKey();
+            int u = heap.poll();
+            costs[u] = d;
+            for (int e = graph.getOutBegin(u); e < graph.getOutEnd(u); e++) {
+                if (overlay.getWeight(e) >= 0 && costs[graph.getHead(e)] == -1) {
+                    heap.offer(graph.getHead(e), d + overlay.getWeight(e));
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Unit test of findRoute and getDistance, of class OverlayPlanner, on the
+     * Paris network, for unit weights and after changing weights.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            StationGraph graph = new StationGraph(network);
+            OverlayGraph overlay = new OverlayGraph(graph, new Partition(network, graph), 32, 8, 2);
+            Assertions.assertEquals(3, overlay.getLevelCount(), "Not all levels were made");
+
+            Planner stops = new MinStopsPlanner(network);
+            OverlayPlanner planner = new OverlayPlanner(network, overlay);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    int expected = stops.findCompactRoute(from, to).getStops();
+                    Assertions.assertEquals(expected, planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    Assertions.assertEquals(expected, planner.getDistance(from, to),
+                            "Not the minimum cost from " + from + " to " + to);
+                    Route route = planner.findRoute(from, to);
+                    for (int i = 1; i < route.getCount(); i++) {
+                        Assertions.assertEquals(route.get(i - 1).getToStation(), route.get(i).getFromStation(),
+                                "The segments of the route are not connected");
+                    }
+                }
+            }
+
+            // Slow down every third edge and close every seventh, then customize again
+            for (int e = 0; e < graph.getEdgeCount(); e++) {
+                if (e % 7 == 0) {
+                    overlay.setWeight(e, -1);
+                } else if (e % 3 == 0) {
+                    overlay.setWeight(e, 4);
+                }
+            }
+            Assertions.assertTrue(overlay.isDirty(), "The changed weights were not noticed");
+            for (int from = 0; from < graph.getStationCount(); from++) {
+                int[] costs = dijkstra(overlay, from);
+                Station origin = network.getStationSet().get(from);
+                for (int to = 0; to < graph.getStationCount(); to++) {
+                    Station destination = network.getStationSet().get(to);
+                    Assertions.assertEquals(costs[to], planner.getDistance(origin, destination),
+                            "Not the minimum cost from " + origin + " to " + destination);
+                    Assertions.assertEquals(costs[to] == -1 || from == to,
+                            planner.findCompactRoute(origin, destination).isEmpty(),
+                            "Not the right route from " + origin + " to " + destination);
+                }
+            }
+            Assertions.assertFalse(overlay.isDirty(), "The overlay was not customized");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class OverlayPlanner, on a network with
+     * circular and one way lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            Partition partition = new Partition(network, graph);
+            OverlayGraph overlay = new OverlayGraph(graph, partition, 4, 2);
+            Planner stops = new MinStopsPlanner(network);
+            Planner planner = new OverlayPlanner(network, overlay);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+
+            // Against the direction of a one way line
+            CompactRoute route = planner.findCompactRoute(network.getStation("D"), network.getStation("I"));
+            Assertions.assertTrue(route.isEmpty(), "A route against the direction was found");
+
+            Assertions.assertThrows(IllegalRequestException.class, () -> new OverlayGraph(graph, partition));
+            Assertions.assertThrows(IllegalRequestException.class, () -> new OverlayGraph(graph, partition, 4, 3));
+            Assertions.assertThrows(IllegalRequestException.class, () -> new OverlayGraph(graph, partition, 0));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of getDistance and findRoute, of class OverlayPlanner, after
+     * the station between a circular and a one way line is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            StationGraph graph = new StationGraph(network);
+            OverlayPlanner planner = new OverlayPlanner(network, new OverlayGraph(graph, new Partition(network, graph), 4, 2));
+            Assertions.assertEquals(2, planner.getDistance(network.getStation("I"), network.getStation("E")),
+                    "The distance is not correct");
+
+            // The cells and their cliques belong to the old graph
+            network.closeStation(network.getStation("D"));
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.getDistance(network.getStation("C"), network.getStation("E")));
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.findCompactRoute(network.getStation("C"), network.getStation("E")));
+
+            // An overlay built after the edit no longer reaches past the closed station
+            StationGraph edited = new StationGraph(network);
+            OverlayPlanner rebuilt = new OverlayPlanner(network, new OverlayGraph(edited, new Partition(network, edited), 4, 2));
+            Planner stops = new MinStopsPlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            rebuilt.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+            Assertions.assertEquals(1, rebuilt.getDistance(network.getStation("C"), network.getStation("E")),
+                    "The distance is not correct");
+            Assertions.assertEquals(-1, rebuilt.getDistance(network.getStation("I"), network.getStation("E")),
+                    "The distance is not correct");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
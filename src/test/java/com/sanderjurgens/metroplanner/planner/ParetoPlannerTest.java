@@ -0,0 +1,150 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.Line;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the ParetoPlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class ParetoPlannerTest {
+
+    /**
+     * Returns the number of stops traveled along a route.
+     *
+     * @param route a given route
+     * @return the number of stops traveled along the route
+     */
+    private static int countStops(Route route) {
+        int count = 0;
+        for (RouteSegment segment : route) {
+            Line line = segment.getLine();
+            int f = line.getIndex(segment.getFromStation());
+            int t = line.getIndex(segment.getToStation());
+            if (segment.getDirection() == line.getTerminalB()) {
+                count = count + Math.floorMod(t - f, line.getCount());
+            } else {
+                count = count + Math.floorMod(f - t, line.getCount());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Unit test of findRoutes, of class ParetoPlanner, against the other
+     * planners on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Planner lexicographic = new MinTransfersStopsPlanner(network);
+            Planner stops = new MinStopsPlanner(network);
+            ParetoPlanner planner = new ParetoPlanner(network);
+
+            // A direct route does not exist, but fewer stops are possible with more transfers
+            List<Route> routes = planner.findRoutes(network.getStation("ABB"), network.getStation("ART"));
+            Assertions.assertEquals(3, routes.size(), "Not all Pareto-optimal routes were found");
+            for (int i = 0; i < routes.size(); i++) {
+                Assertions.assertEquals(i + 2, routes.get(i).getCount(), "Not the expected number of transfers");
+            }
+
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    routes = planner.findRoutes(from, to);
+                    if (from == to) {
+                        Assertions.assertTrue(routes.isEmpty(), "A route to the origin was found");
+                        continue;
+                    }
+                    // The extremes of the front are the optimal routes for each criterion
+                    Route first = lexicographic.findRoute(from, to);
+                    Assertions.assertEquals(first.getCount(), routes.get(0).getCount(),
+                            "Not the minimum number of transfers from " + from + " to " + to);
+                    Assertions.assertEquals(countStops(first), countStops(routes.get(0)),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    Assertions.assertEquals(countStops(stops.findRoute(from, to)),
+                            countStops(routes.get(routes.size() - 1)),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                    // Every next route has more transfers and fewer stops
+                    for (int i = 1; i < routes.size(); i++) {
+                        Assertions.assertTrue(routes.get(i - 1).getCount() < routes.get(i).getCount(),
+                                "The number of transfers does not increase");
+                        Assertions.assertTrue(countStops(routes.get(i - 1)) > countStops(routes.get(i)),
+                                "The number of stops does not decrease");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoutes, of class ParetoPlanner, on a network with
+     * circular and one way lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            ParetoPlanner planner = new ParetoPlanner(network);
+
+            // Ride the one way line to its end, then take the circular one way line
+            List<Route> routes = planner.findRoutes(network.getStation("G"), network.getStation("F"));
+            Assertions.assertEquals(1, routes.size(), "Not all Pareto-optimal routes were found");
+            Assertions.assertEquals(2, routes.get(0).getCount(), "Not the minimum number of transfers");
+            Assertions.assertTrue(routes.get(0).get(1).usesCircular(),
+                    "The circular nature of the line is not used");
+
+            // Against the direction of a one way line
+            routes = planner.findRoutes(network.getStation("D"), network.getStation("I"));
+            Assertions.assertTrue(routes.isEmpty(), "A route against the direction was found");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class ParetoPlanner, on a planner that was built
+     * before a station of the network was closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("edit.network"));
+            Planner planner = new ParetoPlanner(network);
+            Assertions.assertEquals(1, planner.findRoute(network.getStation("A"), network.getStation("U")).getCount(),
+                    "Not a single ride");
+
+            // The closed station is no longer reached, and the stops after it have moved
+            network.closeStation(network.getStation("U"));
+            Assertions.assertTrue(planner.findRoute(network.getStation("A"), network.getStation("U")).isEmpty(),
+                    "A closed station was reached");
+            Route route = planner.findRoute(network.getStation("T"), network.getStation("B"));
+            Assertions.assertEquals(1, route.getCount(), "Not a single ride");
+            Assertions.assertEquals(network.getStation("B"), route.get(0).getToStation(),
+                    "The route does not end at the destination");
+
+            // The planner answers like a planner built after the edit
+            Planner fresh = new ParetoPlanner(network);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    CompactRoute expected = fresh.findCompactRoute(from, to);
+                    CompactRoute actual = planner.findCompactRoute(from, to);
+                    Assertions.assertEquals(expected.getCount(), actual.getCount(),
+                            "Not the same number of rides from " + from + " to " + to);
+                    Assertions.assertEquals(expected.getStops(), actual.getStops(),
+                            "Not the same number of stops from " + from + " to " + to);
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.PatternTimetable;
+import com.sanderjurgens.metroplanner.model.Station;
+import com.sanderjurgens.metroplanner.model.Timetable;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the ProfilePlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class ProfilePlannerTest {
+
+    /**
+     * Unit test of findProfile, of class ProfilePlanner, against point
+     * queries of the ConnectionScanPlanner and range queries of the
+     * RaptorPlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Timetable timetable = new Timetable(network,
+                    getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.timetable"));
+            ProfilePlanner planner = new ProfilePlanner(network, timetable);
+            ConnectionScanPlanner scan = new ConnectionScanPlanner(network, timetable);
+            RaptorPlanner raptor = new RaptorPlanner(network, new PatternTimetable(timetable), 8);
+            int begin = Timetable.parseTime("08.00");
+            int end = Timetable.parseTime("09.00");
+            int i = 0;
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    if (i++ % 97 != 0 || from == to) {
+                        continue;
+                    }
+                    List<Journey> profile = planner.findProfile(from, to, begin, end);
+                    Assertions.assertFalse(profile.isEmpty(), "No journeys from " + from + " to " + to);
+                    for (int j = 0; j < profile.size(); j++) {
+                        Journey journey = profile.get(j);
+                        Assertions.assertTrue(journey.getDeparture() >= begin && journey.getDeparture() <= end,
+                                "A journey departs outside the window");
+                        if (j > 0) {
+                            Assertions.assertTrue(profile.get(j - 1).getDeparture() < journey.getDeparture(),
+                                    "Not in order of departure");
+                            Assertions.assertTrue(profile.get(j - 1).getArrival() < journey.getArrival(),
+                                    "A dominated journey");
+                        }
+
+                        // The route of the journey is connected and arrives as early as a point query
+                        Route route = journey.toRoute(network);
+                        Assertions.assertEquals(from, route.get(0).getFromStation(), "The route does not begin at the origin");
+                        Assertions.assertEquals(to, route.get(route.getCount() - 1).getToStation(),
+                                "The route does not end at the destination");
+                        scan.findTimedRoute(from, to, journey.getDeparture());
+                        Assertions.assertEquals(scan.getArrivalTime(), journey.getArrival(), "Not the earliest arrival");
+                    }
+
+                    // The same departures and arrivals as a range query, of which later journeys dominate
+                    List<Journey> range = raptor.findRange(from, to, begin, end + 3600);
+                    range.removeIf(journey -> journey.getDeparture() > end);
+                    Assertions.assertEquals(range.size(), profile.size(), "Not the same profile");
+                    for (int j = 0; j < range.size(); j++) {
+                        Assertions.assertEquals(range.get(j).getDeparture(), profile.get(j).getDeparture(),
+                                "Not the same departure");
+                        Assertions.assertEquals(range.get(j).getArrival(), profile.get(j).getArrival(),
+                                "Not the same arrival");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findProfile, of class ProfilePlanner, on a network with run
+     * times, transfer times and a few trips.
+     */
+    @Test
+    public void testTimes() {
+        try {
+            Network network = new Network(getClass().getResource("timed.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("timed.timetable"));
+            ProfilePlanner planner = new ProfilePlanner(network, timetable);
+            Station a = network.getStation("A");
+            Station d = network.getStation("D");
+            int begin = Timetable.parseTime("07.50");
+            int end = Timetable.parseTime("08.10");
+
+            // The local trip departs earlier, but the express trip arrives earlier
+            List<Journey> profile = planner.findProfile(a, d, begin, end);
+            Assertions.assertEquals(1, profile.size(), "A dominated journey");
+            Assertions.assertEquals(Timetable.parseTime("08.00"), profile.get(0).getDeparture(), "Not the express trip");
+            Assertions.assertEquals(Timetable.parseTime("08.06"), profile.get(0).getArrival(), "Not the earliest arrival");
+
+            // The local trip is dominated by the express trip, even if that departs after the window
+            Assertions.assertTrue(planner.findProfile(a, d, begin, Timetable.parseTime("07.59")).isEmpty(),
+                    "A dominated journey");
+
+            // The transfer at C takes too long for the branch trip
+            profile = planner.findProfile(a, network.getStation("F"), begin, end);
+            Assertions.assertEquals(1, profile.size(), "Not a single journey");
+            Assertions.assertEquals(2, profile.get(0).getLegCount(), "Not a transfer");
+            Assertions.assertEquals(Timetable.parseTime("08.06.40"), profile.get(0).getArrival(),
+                    "Not the earliest arrival");
+
+            // A trip in the other direction, as a compact route at the departure time set
+            planner.setDepartureTime(Timetable.parseTime("08.30"));
+            CompactRoute compact = planner.findCompactRoute(d, a);
+            Assertions.assertEquals(2, compact.getStops(), "Not the local trip");
+            Assertions.assertEquals(CompactRoute.BACKWARD, compact.getDirection(0), "Not the direction of the trip");
+
+            // No trip departs in the window
+            Assertions.assertTrue(planner.findProfile(d, a, begin, end).isEmpty(), "A journey was found");
+
+            Network other = new Network(getClass().getResource("timed.network"));
+            Assertions.assertThrows(IllegalRequestException.class, () -> new ProfilePlanner(other, timetable));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findProfile, of class ProfilePlanner, against point queries
+     * of the ConnectionScanPlanner on a network with circular and one way
+     * lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("loop.timetable"));
+            ProfilePlanner planner = new ProfilePlanner(network, timetable);
+            ConnectionScanPlanner scan = new ConnectionScanPlanner(network, timetable);
+            int begin = Timetable.parseTime("07.55");
+            int end = Timetable.parseTime("08.30");
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    if (from == to) {
+                        continue;
+                    }
+                    for (Journey journey : planner.findProfile(from, to, begin, end)) {
+                        scan.findTimedRoute(from, to, journey.getDeparture());
+                        Assertions.assertEquals(scan.getArrivalTime(), journey.getArrival(),
+                                "Not the earliest arrival from " + from + " to " + to);
+                    }
+                }
+            }
+
+            // Both trips of the circular line, of which the later one passes the terminal
+            List<Journey> profile = planner.findProfile(network.getStation("E"), network.getStation("A"), begin, end);
+            Assertions.assertEquals(2, profile.size(), "Not a journey per trip");
+            Assertions.assertEquals(Timetable.parseTime("08.09"), profile.get(0).getArrival(), "Not the backward trip");
+            Route route = profile.get(1).toRoute(network);
+            Assertions.assertTrue(route.get(0).usesCircular(), "The circular nature of the line is not used");
+            Assertions.assertEquals(Timetable.parseTime("08.10"), profile.get(1).getArrival(), "Not the forward trip");
+
+            // Against the direction of a one way line
+            Assertions.assertTrue(planner.findProfile(network.getStation("D"), network.getStation("I"), begin, end)
+                    .isEmpty(), "A journey against the direction was found");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findProfile, of class ProfilePlanner, after the terminal of
+     * a circular line is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            ProfilePlanner planner = new ProfilePlanner(network,
+                    new Timetable(network, getClass().getResource("loop.timetable")));
+            Station d = network.getStation("D");
+            Station a = network.getStation("A");
+            int begin = Timetable.parseTime("07.55");
+            int end = Timetable.parseTime("08.30");
+            Assertions.assertEquals(2, planner.findProfile(d, a, begin, end).size(), "Not a journey per trip");
+
+            // The profiles would be built from the positions of the stops before the edit
+            network.closeStation(network.getStation("E"));
+            Assertions.assertThrows(IllegalRequestException.class, () -> planner.findProfile(d, a, begin, end));
+
+            // With a timetable read after the edit, the backward trip begins at the new terminal
+            ProfilePlanner reread = new ProfilePlanner(network,
+                    new Timetable(network, getClass().getResource("loop.timetable")));
+            List<Journey> profile = reread.findProfile(d, a, begin, end);
+            Assertions.assertEquals(2, profile.size(), "Not a journey per trip");
+            Assertions.assertEquals(Timetable.parseTime("08.01"), profile.get(0).getDeparture(),
+                    "Not the departure from the terminal");
+            Assertions.assertEquals(Timetable.parseTime("08.10"), profile.get(1).getArrival(),
+                    "The run times around the closed station were not added up");
+            Assertions.assertTrue(profile.get(1).toRoute(network).get(0).usesCircular(),
+                    "The circular nature of the line is not used");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.PatternTimetable;
+import com.sanderjurgens.metroplanner.model.Station;
+import com.sanderjurgens.metroplanner.model.Timetable;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the RaptorPlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class RaptorPlannerTest {
+
+    /**
+     * Unit test of findTimedRoute and findRange, of class RaptorPlanner,
+     * against the ConnectionScanPlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Timetable timetable = new Timetable(network,
+                    getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.timetable"));
+            RaptorPlanner planner = new RaptorPlanner(network, new PatternTimetable(timetable), 8);
+            ConnectionScanPlanner scan = new ConnectionScanPlanner(network, timetable);
+            int departure = Timetable.parseTime("08.00");
+            int i = 0;
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    if (i++ % 7 != 0 || from == to) {
+                        continue;
+                    }
+                    Route route = planner.findTimedRoute(from, to, departure);
+                    scan.findTimedRoute(from, to, departure);
+                    Assertions.assertEquals(scan.getArrivalTime(), planner.getArrivalTime(),
+                            "Not the earliest arrival from " + from + " to " + to);
+                    Assertions.assertEquals(from, route.get(0).getFromStation(), "The route does not begin at the origin");
+                    Assertions.assertEquals(to, route.get(route.getCount() - 1).getToStation(),
+                            "The route does not end at the destination");
+                    Assertions.assertEquals(planner.getArrivalTime(),
+                            ((TimedRouteSegment) route.get(route.getCount() - 1)).getArrival(),
+                            "The route does not arrive at the arrival time");
+
+                    // Every journey of the front takes fewer trips, but arrives later, than the next
+                    List<Journey> journeys = planner.findJourneys(from, to, departure);
+                    Journey last = journeys.get(journeys.size() - 1);
+                    Assertions.assertEquals(planner.getArrivalTime(), last.getArrival(), "Not the earliest arrival");
+                    for (int j = 1; j < journeys.size(); j++) {
+                        Assertions.assertTrue(journeys.get(j - 1).getLegCount() < journeys.get(j).getLegCount(),
+                                "Not fewer trips");
+                        Assertions.assertTrue(journeys.get(j - 1).getArrival() > journeys.get(j).getArrival(),
+                                "Not a later arrival");
+                    }
+                }
+            }
+
+            // Every journey of a range arrives as early as a point query at its departure
+            Station from = network.getStation("NAT");
+            Station to = network.getStation("ZAA");
+            List<Journey> range = planner.findRange(from, to, departure, departure + 3600);
+            Assertions.assertFalse(range.isEmpty(), "No journeys in the range");
+            for (int j = 0; j < range.size(); j++) {
+                Journey journey = range.get(j);
+                scan.findTimedRoute(from, to, journey.getDeparture());
+                Assertions.assertEquals(scan.getArrivalTime(), journey.getArrival(), "Not the earliest arrival");
+                if (j > 0) {
+                    Assertions.assertTrue(range.get(j - 1).getDeparture() < journey.getDeparture(), "Not in order");
+                    Assertions.assertTrue(range.get(j - 1).getArrival() < journey.getArrival(), "A dominated journey");
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of the rounds, of class RaptorPlanner, on a network with run
+     * times, transfer times and a few trips.
+     */
+    @Test
+    public void testTimes() {
+        try {
+            Network network = new Network(getClass().getResource("timed.network"));
+            PatternTimetable patterns = new PatternTimetable(
+                    new Timetable(network, getClass().getResource("timed.timetable")));
+            RaptorPlanner planner = new RaptorPlanner(network, patterns, 4);
+            Station a = network.getStation("A");
+            Station d = network.getStation("D");
+            Station f = network.getStation("F");
+            int departure = Timetable.parseTime("07.50");
+
+            // The express trip departs later, but arrives first
+            List<Journey> journeys = planner.findJourneys(a, d, departure);
+            Assertions.assertEquals(1, journeys.size(), "Not a single journey");
+            Assertions.assertEquals(network.getLineSet().getIndex(network.getLine("Express")), journeys.get(0).getLine(0),
+                    "Not the express trip");
+            Assertions.assertEquals(Timetable.parseTime("08.06"), planner.getArrivalTime(), "Not the earliest arrival");
+
+            // The transfer at C takes too long for the branch trip, so the second round is needed
+            Route route = planner.findTimedRoute(a, f, departure);
+            Assertions.assertEquals(2, route.getCount(), "Not a transfer");
+            Assertions.assertEquals(network.getStation("B"), route.get(0).getToStation(), "Not the transfer at B");
+            Assertions.assertEquals(Timetable.parseTime("08.06.40"), planner.getArrivalTime(), "Not the earliest arrival");
+            Assertions.assertEquals(-1, planner.getArrivalTime(1), "Reached with a single trip");
+
+            // A trip in the other direction, as a compact route at the departure time set
+            planner.setDepartureTime(Timetable.parseTime("08.30"));
+            CompactRoute compact = planner.findCompactRoute(d, a);
+            Assertions.assertEquals(2, compact.getStops(), "Not the local trip");
+            Assertions.assertEquals(CompactRoute.BACKWARD, compact.getDirection(0), "Not the direction of the trip");
+
+            // The local trip departs earlier, but the express trip arrives earlier
+            List<Journey> range = planner.findRange(a, d, departure, Timetable.parseTime("08.10"));
+            Assertions.assertEquals(1, range.size(), "A dominated journey");
+            Assertions.assertEquals(Timetable.parseTime("08.00"), range.get(0).getDeparture(), "Not the express trip");
+
+            // No trip departs late enough
+            Assertions.assertTrue(planner.findTimedRoute(a, d, Timetable.parseTime("08.01")).isEmpty(),
+                    "A trip departed before the departure time");
+            Assertions.assertEquals(-1, planner.getArrivalTime(), "An arrival was found");
+
+            Assertions.assertThrows(IllegalRequestException.class, () -> new RaptorPlanner(network, patterns, 0));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findTimedRoute and findJourneys, of class RaptorPlanner,
+     * against the ConnectionScanPlanner on a network with circular and one way
+     * lines.
+     */
+    @Test
+    public void testOneWay() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            Timetable timetable = new Timetable(network, getClass().getResource("loop.timetable"));
+            RaptorPlanner planner = new RaptorPlanner(network, new PatternTimetable(timetable), 4);
+            ConnectionScanPlanner scan = new ConnectionScanPlanner(network, timetable);
+            for (int departure : new int[]{Timetable.parseTime("07.55"), Timetable.parseTime("08.02"),
+                Timetable.parseTime("08.07")}) {
+                for (Station from : network.getStationSet()) {
+                    for (Station to : network.getStationSet()) {
+                        if (from == to) {
+                            continue;
+                        }
+                        planner.findTimedRoute(from, to, departure);
+                        scan.findTimedRoute(from, to, departure);
+                        Assertions.assertEquals(scan.getArrivalTime(), planner.getArrivalTime(),
+                                "Not the earliest arrival from " + from + " to " + to);
+                    }
+                }
+            }
+
+            // The forward trip passes the terminal of the circular line
+            Route route = planner.findTimedRoute(network.getStation("E"), network.getStation("A"),
+                    Timetable.parseTime("08.02"));
+            Assertions.assertEquals(1, route.getCount(), "Not a single trip");
+            Assertions.assertTrue(route.get(0).usesCircular(), "The circular nature of the line is not used");
+
+            // Changing to the next trip of the loop at its terminal takes a round of its own
+            List<Journey> journeys = planner.findJourneys(network.getStation("G"), network.getStation("F"),
+                    Timetable.parseTime("07.55"));
+            Assertions.assertEquals(1, journeys.size(), "Not a single journey");
+            Assertions.assertEquals(3, journeys.get(0).getLegCount(), "Not a change at the terminal");
+            Assertions.assertEquals(-1, planner.getArrivalTime(2), "Reached with two trips");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findTimedRoute and findRange, of class RaptorPlanner, after
+     * a station served by a one way line is closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            RaptorPlanner planner = new RaptorPlanner(network,
+                    new PatternTimetable(new Timetable(network, getClass().getResource("loop.timetable"))), 4);
+            Station i = network.getStation("I");
+            Station f = network.getStation("F");
+            int departure = Timetable.parseTime("07.55");
+            planner.findTimedRoute(i, f, departure);
+            Assertions.assertEquals(Timetable.parseTime("08.12"), planner.getArrivalTime(), "Not the earliest arrival");
+
+            // The patterns hold the stops before the edit
+            network.closeStation(network.getStation("D"));
+            Assertions.assertThrows(IllegalRequestException.class, () -> planner.findTimedRoute(i, f, departure));
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> planner.findRange(i, f, departure, Timetable.parseTime("08.30")));
+
+            // Patterns of a timetable read after the edit no longer leave the one way line
+            Timetable timetable = new Timetable(network, getClass().getResource("loop.timetable"));
+            RaptorPlanner rebuilt = new RaptorPlanner(network, new PatternTimetable(timetable), 4);
+            Assertions.assertTrue(rebuilt.findTimedRoute(i, f, departure).isEmpty(), "The closed station was reached");
+            ConnectionScanPlanner scan = new ConnectionScanPlanner(network, timetable);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    if (from == to) {
+                        continue;
+                    }
+                    rebuilt.findTimedRoute(from, to, departure);
+                    scan.findTimedRoute(from, to, departure);
+                    Assertions.assertEquals(scan.getArrivalTime(), rebuilt.getArrivalTime(),
+                            "Not the earliest arrival from " + from + " to " + to);
+                }
+            }
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.sanderjurgens.metroplanner.planner;
+
+import com.sanderjurgens.metroplanner.model.IllegalRequestException;
+import com.sanderjurgens.metroplanner.model.Network;
+import com.sanderjurgens.metroplanner.model.Station;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A set of unit tests for the TreeCachePlanner class.
+ *
+ * @author sanderjurgens
+ */
+public class TreeCachePlannerTest {
+
+    /**
+     * Unit test of findRoute, of class TreeCachePlanner, against the
+     * MinStopsPlanner on the Paris network.
+     */
+    @Test
+    public void testParis() {
+        try {
+            Network network = new Network(getClass().getResource("/com/sanderjurgens/metroplanner/model/paris.network"));
+            Planner stops = new MinStopsPlanner(network);
+            TreeCachePlanner planner = new TreeCachePlanner(network, new StationGraph(network), 8);
+            for (Station from : network.getStationSet()) {
+                for (Station to : network.getStationSet()) {
+                    Assertions.assertEquals(stops.findCompactRoute(from, to).getStops(),
+                            planner.findCompactRoute(from, to).getStops(),
+                            "Not the minimum number of stops from " + from + " to " + to);
+                }
+            }
+            int n = network.getStationSet().getCount();
+            Assertions.assertEquals(n, planner.getMisses(), "Every origin was not searched exactly once");
+            Assertions.assertEquals(8, planner.getSize(), "The size of the cache is not bounded");
+            Assertions.assertEquals(8L * 4 * n, planner.getMemoryUsage(), "The memory use is not correct");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of the eviction and statistics, of class TreeCachePlanner, on
+     * a network with circular and one way lines.
+     */
+    @Test
+    public void testEviction() {
+        try {
+            Network network = new Network(getClass().getResource("loop.network"));
+            TreeCachePlanner planner = new TreeCachePlanner(network, new StationGraph(network), 2);
+            Station a = network.getStation("A");
+            Station d = network.getStation("D");
+            Station g = network.getStation("G");
+            Station f = network.getStation("F");
+
+            // Ride the one way line to its end, then take the circular one way line
+            CompactRoute route = planner.findCompactRoute(g, f);
+            Assertions.assertEquals(3, route.getStops(), "Not the minimum number of stops");
+            Assertions.assertEquals(2, route.getCount(), "The rides were not combined into segments");
+            Assertions.assertTrue(planner.findCompactRoute(d, network.getStation("I")).isEmpty(),
+                    "A route against the direction was found");
+
+            // The least recently used origin is evicted
+            planner.findCompactRoute(g, a);
+            planner.findCompactRoute(a, d);
+            Assertions.assertEquals(1, planner.getHits(), "The cached origin was not used");
+            planner.findCompactRoute(d, a);
+            Assertions.assertEquals(4, planner.getMisses(), "The evicted origin was still cached");
+            Assertions.assertEquals(0.2, planner.getHitRate(), 1e-9, "The hit rate is not correct");
+
+            planner.clear();
+            Assertions.assertEquals(0, planner.getSize(), "The cache was not cleared");
+            Assertions.assertThrows(IllegalRequestException.class,
+                    () -> new TreeCachePlanner(network, new StationGraph(network), 0));
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+
+    /**
+     * Unit test of findRoute, of class TreeCachePlanner, after a station is
+     * closed.
+     */
+    @Test
+    public void testEdit() {
+        try {
+            Network network = new Network(getClass().getResource("edit.network"));
+            TreeCachePlanner planner = new TreeCachePlanner(network, new StationGraph(network), 2);
+            Station a = network.getStation("A");
+            Station u = network.getStation("U");
+            Assertions.assertEquals(3, planner.findCompactRoute(a, u).getStops(), "Not the minimum number of stops");
+
+            // The graph is rebuilt and the tree of the origin is searched again
+            network.closeStation(network.getStation("T"));
+            Route route = planner.findRoute(a, u);
+            Assertions.assertEquals(u, route.get(0).getToStation(), "The route does not end at the destination");
+            Assertions.assertEquals(2, planner.findCompactRoute(a, u).getStops(), "Not the minimum number of stops");
+            Assertions.assertEquals(2, planner.getMisses(), "The cached tree was not dropped");
+        } catch (IOException e) {
+            Assertions.fail("Exception " + e + " should not be thrown");
+        }
+    }
+}